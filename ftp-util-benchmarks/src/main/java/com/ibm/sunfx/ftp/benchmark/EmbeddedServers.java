@@ -0,0 +1,169 @@
+package com.ibm.sunfx.ftp.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.ftpserver.FtpServer;
+import org.apache.ftpserver.FtpServerFactory;
+import org.apache.ftpserver.ftplet.Authority;
+import org.apache.ftpserver.ftplet.FtpException;
+import org.apache.ftpserver.ftplet.UserManager;
+import org.apache.ftpserver.listener.ListenerFactory;
+import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
+import org.apache.ftpserver.usermanager.impl.BaseUser;
+import org.apache.ftpserver.usermanager.impl.ConcurrentLoginPermission;
+import org.apache.ftpserver.usermanager.impl.WritePermission;
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+
+/**
+ * 在本机回环地址上启动的ftp和sftp服务器
+ *
+ * <p>
+ * 端口随机分配, 每个服务器使用独立的临时根目录, 基准测试结束后删除
+ * </p>
+ */
+public class EmbeddedServers {
+
+    public static final String HOST = "127.0.0.1";
+
+    public static final String USERNAME = "bench";
+
+    public static final String PASSWORD = "bench";
+
+    private final File baseDir;
+
+    private FtpServer ftpServer;
+
+    private int ftpPort;
+
+    private SshServer sshServer;
+
+    public EmbeddedServers() throws IOException {
+        baseDir = File.createTempFile("ftp-util-bench", "");
+        baseDir.delete();
+        FileUtils.forceMkdir(baseDir);
+    }
+
+    /**
+     * 启动ftp服务器
+     *
+     * @return File 服务器根目录
+     */
+    public File startFtp() throws IOException {
+        File home = new File(baseDir, "ftp-home");
+        FileUtils.forceMkdir(home);
+        ftpPort = freePort();
+
+        FtpServerFactory serverFactory = new FtpServerFactory();
+        ListenerFactory listenerFactory = new ListenerFactory();
+        listenerFactory.setServerAddress(HOST);
+        listenerFactory.setPort(ftpPort);
+        serverFactory.addListener("default", listenerFactory.createListener());
+
+        PropertiesUserManagerFactory userManagerFactory = new PropertiesUserManagerFactory();
+        File users = new File(baseDir, "users.properties");
+        FileUtils.touch(users);
+        userManagerFactory.setFile(users);
+        UserManager userManager = userManagerFactory.createUserManager();
+        BaseUser user = new BaseUser();
+        user.setName(USERNAME);
+        user.setPassword(PASSWORD);
+        user.setHomeDirectory(home.getAbsolutePath());
+        List<Authority> authorities = new ArrayList<>();
+        authorities.add(new WritePermission());
+        authorities.add(new ConcurrentLoginPermission(0, 0));
+        user.setAuthorities(authorities);
+        try {
+            userManager.save(user);
+            serverFactory.setUserManager(userManager);
+            ftpServer = serverFactory.createServer();
+            ftpServer.start();
+        } catch (FtpException e) {
+            throw new IOException("start ftp server failure", e);
+        }
+        return home;
+    }
+
+    /**
+     * 启动sftp服务器
+     *
+     * @return File 服务器根目录
+     */
+    public File startSftp() throws IOException {
+        File home = new File(baseDir, "sftp-home");
+        FileUtils.forceMkdir(home);
+        sshServer = SshServer.setUpDefaultServer();
+        sshServer.setHost(HOST);
+        sshServer.setPort(0);
+        // jsch 0.1.54 支持RSA主机密钥
+        SimpleGeneratorHostKeyProvider keyProvider = new SimpleGeneratorHostKeyProvider(new File(baseDir, "hostkey.ser").toPath());
+        keyProvider.setAlgorithm("RSA");
+        sshServer.setKeyPairProvider(keyProvider);
+        sshServer.setPasswordAuthenticator((username, password, session) -> USERNAME.equals(username) && PASSWORD.equals(password));
+        sshServer.setSubsystemFactories(Collections.singletonList(new SftpSubsystemFactory()));
+        sshServer.setFileSystemFactory(new VirtualFileSystemFactory(home.toPath()));
+        sshServer.start();
+        return home;
+    }
+
+    public int getFtpPort() {
+        return ftpPort;
+    }
+
+    public int getSftpPort() {
+        return sshServer.getPort();
+    }
+
+    public void stop() throws IOException {
+        if (ftpServer != null) {
+            ftpServer.stop();
+        }
+        if (sshServer != null) {
+            sshServer.stop(true);
+        }
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    /**
+     * 生成测试文件
+     *
+     * @param dir 目录
+     * @param count 文件数
+     * @param size 每个文件字节数
+     * @return List 文件路径
+     */
+    public static List<String> createFiles(File dir, int count, int size) throws IOException {
+        FileUtils.forceMkdir(dir);
+        byte[] content = new byte[size];
+        new java.util.Random(count).nextBytes(content);
+        List<String> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            File file = new File(dir, String.format("file-%05d.bin", i));
+            FileUtils.writeByteArrayToFile(file, content);
+            files.add(file.getAbsolutePath());
+        }
+        return files;
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.ibm.sunfx.ftp.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.sunfx.ftp.util.BatchReport;
+import com.ibm.sunfx.ftp.util.PoolConfig;
+import com.ibm.sunfx.ftp.util.RemoteDirectoryCache;
+import com.ibm.sunfx.ftp.util.SFTPChannelPool;
+import com.ibm.sunfx.ftp.util.SFTPChannelUtil;
+import com.ibm.sunfx.ftp.util.TransferResult;
+
+/**
+ * SFTPChannelUtil基准测试, 服务器为本机内嵌的Apache SSHD; 吞吐量模式, 输出ops/s和bytes/s
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class SftpBenchmark {
+
+    // 小文件字节数
+    @Param({ "4096" })
+    public int smallFileSize;
+
+    // 大文件字节数
+    @Param({ "16777216" })
+    public int largeFileSize;
+
+    // 批量上传的文件数
+    @Param({ "200" })
+    public int batchSize;
+
+    @Param({ "4" })
+    public int parallelism;
+
+    private EmbeddedServers servers;
+
+    private SFTPChannelPool pool;
+
+    private SFTPChannelUtil sftp;
+
+    private File localDir;
+
+    private String smallFile;
+
+    private String largeFile;
+
+    private List<String> batchFiles;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        servers = new EmbeddedServers();
+        File home = servers.startSftp();
+        localDir = new File(servers.getBaseDir(), "local");
+        FileUtils.forceMkdir(new File(localDir, "download"));
+        smallFile = EmbeddedServers.createFiles(new File(localDir, "small"), 1, smallFileSize).get(0);
+        largeFile = EmbeddedServers.createFiles(new File(localDir, "large"), 1, largeFileSize).get(0);
+        batchFiles = EmbeddedServers.createFiles(new File(localDir, "batch"), batchSize, smallFileSize);
+        // 下载和同步用的远程目录树
+        for (int i = 0; i < 8; i++) {
+            EmbeddedServers.createFiles(new File(home, "tree/d" + i), batchSize / 8, smallFileSize);
+        }
+        FileUtils.copyFile(new File(largeFile), new File(home, "large/large.bin"));
+
+        PoolConfig config = new PoolConfig();
+        config.setMaxTotalPerKey(Math.max(parallelism, 8));
+        pool = new SFTPChannelPool(config);
+        sftp = new SFTPChannelUtil(EmbeddedServers.HOST, servers.getSftpPort(), EmbeddedServers.USERNAME, EmbeddedServers.PASSWORD);
+        sftp.setPool(pool);
+        sftp.setDirectoryCache(new RemoteDirectoryCache(10000, 10 * 60 * 1000L));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.close();
+        servers.stop();
+    }
+
+    @Benchmark
+    public boolean uploadSmallFile(TransferCounters counters) {
+        return count(counters, sftp.uploadFile("/upload/small", smallFile), smallFileSize);
+    }
+
+    @Benchmark
+    public boolean uploadLargeFile(TransferCounters counters) {
+        return count(counters, sftp.uploadFile("/upload/large", largeFile), largeFileSize);
+    }
+
+    @Benchmark
+    public boolean uploadBatchSequential(TransferCounters counters) {
+        return count(counters, sftp.uploadFileList("/upload/batch-sequential", batchFiles), (long) smallFileSize * batchSize);
+    }
+
+    @Benchmark
+    public BatchReport uploadBatchParallel(TransferCounters counters) {
+        return count(counters, sftp.uploadFileListParallel("/upload/batch-parallel", batchFiles, parallelism));
+    }
+
+    /**
+     * 每次创建一个新的多级目录, 上级目录已存在
+     */
+    @Benchmark
+    public boolean mkdirs() {
+        sftp.connect();
+        try {
+            return sftp.sftpCreateDirectory("/mkdirs/2018/app/" + sequence.incrementAndGet() + "/a/b");
+        } finally {
+            sftp.disconnect();
+        }
+    }
+
+    @Benchmark
+    public boolean downloadLargeFile(TransferCounters counters) {
+        String local = new File(localDir, "download/large-" + sequence.incrementAndGet() + ".bin").getPath();
+        File file = sftp.downloadFile("/large", "large.bin", local, false);
+        boolean success = file != null && file.length() == largeFileSize;
+        new File(local).delete();
+        return count(counters, success, largeFileSize);
+    }
+
+    @Benchmark
+    public TransferResult downloadLargeFileSegmented(TransferCounters counters) {
+        String local = new File(localDir, "download/segmented-" + sequence.incrementAndGet() + ".bin").getPath();
+        TransferResult result = sftp.downloadFileSegmented("/large", "large.bin", local, parallelism);
+        new File(local).delete();
+        counters.bytes += result.getBytes();
+        counters.failures += result.isSuccess() ? 0 : 1;
+        return result;
+    }
+
+    /**
+     * 远程目录未变化时的增量同步, 只列目录
+     */
+    @Benchmark
+    public BatchReport syncUnchanged(TransferCounters counters) {
+        File local = new File(localDir, "sync");
+        return count(counters, sftp.sync(local.getPath(), "/tree", new File(localDir, "sync.manifest").getPath(), false));
+    }
+
+    private static boolean count(TransferCounters counters, boolean success, long bytes) {
+        if (success) {
+            counters.bytes += bytes;
+        } else {
+            counters.failures++;
+        }
+        return success;
+    }
+
+    private static BatchReport count(TransferCounters counters, BatchReport report) {
+        counters.bytes += report.getTotalBytes();
+        counters.failures += report.getFailureCount();
+        return report;
+    }
+
+}
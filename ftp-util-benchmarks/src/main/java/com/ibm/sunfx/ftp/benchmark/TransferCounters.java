@@ -0,0 +1,25 @@
+package com.ibm.sunfx.ftp.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 传输的字节数和失败数, 由JMH按时间折算为速率, 与ops/s一起输出: bytes即bytes/s吞吐量, failures即每秒失败数
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class TransferCounters {
+
+    public long bytes;
+
+    public long failures;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        bytes = 0;
+        failures = 0;
+    }
+}
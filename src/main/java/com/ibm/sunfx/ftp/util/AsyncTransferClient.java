@@ -0,0 +1,218 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 异步传输
+ *
+ * <p>
+ * 在TransferClient之上返回CompletableFuture, 调用线程不再等待传输。JDK支持虚拟线程(21+)时每个任务一个虚拟线程,
+ * 否则使用maxConcurrency个平台线程; 两种情况下同时执行的传输都不超过maxConcurrency, 其余任务排队,
+ * 通常设为连接池每个服务器的最大连接数, 避免排队的任务在连接池借出时超时。
+ * </p>
+ */
+public class AsyncTransferClient {
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private final TransferClient client;
+
+    private final int maxConcurrency;
+
+    private final Semaphore permits;
+
+    private final ExecutorService executor;
+
+    private final boolean virtualThreads;
+
+    public AsyncTransferClient(TransferClient client, int maxConcurrency) {
+        this(client, maxConcurrency, true);
+    }
+
+    /**
+     * @param client 同步传输
+     * @param maxConcurrency 同时执行的传输数
+     * @param preferVirtualThreads JDK支持时是否使用虚拟线程
+     */
+    public AsyncTransferClient(TransferClient client, int maxConcurrency, boolean preferVirtualThreads) {
+        this.client = client;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency, true);
+        ExecutorService virtual = preferVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformExecutor(this.maxConcurrency);
+    }
+
+    public CompletableFuture<TransferResult> upload(final String directory, final String localFile) {
+        return upload(directory, localFile, false);
+    }
+
+    public CompletableFuture<TransferResult> upload(final String directory, final String localFile, final boolean resume) {
+        return submit(new Callable<TransferResult>() {
+            @Override
+            public TransferResult call() {
+                return client.upload(directory, localFile, resume);
+            }
+        });
+    }
+
+    /**
+     * 上传多个文件到同一目录, 全部结束后完成
+     *
+     * @param directory 服务器目录
+     * @param localFiles 本地文件
+     * @return CompletableFuture 按localFiles顺序的结果
+     */
+    public CompletableFuture<BatchReport> uploadAll(String directory, List<String> localFiles) {
+        final long start = System.currentTimeMillis();
+        final List<CompletableFuture<TransferResult>> futures = new ArrayList<>(localFiles.size());
+        for (String localFile : localFiles) {
+            futures.add(upload(directory, localFile));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignore -> {
+            List<TransferResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<TransferResult> future : futures) {
+                results.add(future.join());
+            }
+            return new BatchReport(results, System.currentTimeMillis() - start);
+        });
+    }
+
+    public CompletableFuture<TransferResult> download(String directory, String remoteFileName, String localFile) {
+        return download(directory, remoteFileName, localFile, false);
+    }
+
+    public CompletableFuture<TransferResult> download(final String directory, final String remoteFileName, final String localFile, final boolean resume) {
+        return submit(new Callable<TransferResult>() {
+            @Override
+            public TransferResult call() {
+                return client.download(directory, remoteFileName, localFile, resume);
+            }
+        });
+    }
+
+    public CompletableFuture<Boolean> createDirectory(final String directory) {
+        return submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return client.createDirectory(directory);
+            }
+        });
+    }
+
+    /**
+     * 列目录, 失败时future以IOException异常完成
+     *
+     * @param directory 服务器目录
+     * @return CompletableFuture
+     */
+    public CompletableFuture<List<RemoteEntry>> list(final String directory) {
+        return submit(new Callable<List<RemoteEntry>>() {
+            @Override
+            public List<RemoteEntry> call() throws Exception {
+                return client.list(directory);
+            }
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                // 先释放许可再完成future, 后续阶段看到的活动数不含本任务
+                T result = null;
+                Throwable error = null;
+                try {
+                    result = task.call();
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    permits.release();
+                }
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 不再接受新任务, 已提交的任务继续执行
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 正在执行的传输数
+     *
+     * @return int
+     */
+    public int getActive() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 编译目标为Java 8, 通过反射调用Executors.newVirtualThreadPerTaskExecutor
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("virtual threads not available, using platform threads");
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor(int threads) {
+        final AtomicInteger sequence = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "async-transfer-" + sequence.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量传输报告, 按提交顺序保存每个文件的结果
+ */
+public class BatchReport {
+
+    private final List<TransferResult> results;
+
+    private final long elapsedMillis;
+
+    public BatchReport(List<TransferResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * 全部文件都传输成功
+     * 
+     * @return boolean
+     */
+    public boolean isSuccess() {
+        return getFailureCount() == 0;
+    }
+
+    public List<TransferResult> getResults() {
+        return results;
+    }
+
+    /**
+     * 失败的文件
+     * 
+     * @return List<TransferResult>
+     */
+    public List<TransferResult> getFailures() {
+        List<TransferResult> failures = new ArrayList<>();
+        for (TransferResult result : results) {
+            if (!result.isSuccess()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    public int getFailureCount() {
+        int count = 0;
+        for (TransferResult result : results) {
+            if (!result.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getTotalBytes() {
+        long bytes = 0;
+        for (TransferResult result : results) {
+            bytes += result.getBytes();
+        }
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("files[%s] failures[%s] bytes[%s] elapsed[%s ms]", results.size(), getFailureCount(), getTotalBytes(), elapsedMillis);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 并行批量上传的工作者, 每个工作者独占一个连接, 只在自己的线程中使用
+ */
+public interface BatchUploadWorker {
+
+    /**
+     * 上传一个文件到指定目录, 目录不存在时创建
+     * 
+     * @param file
+     * @param directory
+     * @return TransferResult 实际的传输结果, 含校验信息; 上传日志中已完成而跳过的文件字节数为0
+     * @throws IOException
+     */
+    TransferResult upload(File file, String directory) throws IOException;
+
+    /**
+     * 归还连接
+     */
+    void close();
+
+}
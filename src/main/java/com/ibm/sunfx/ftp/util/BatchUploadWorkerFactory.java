@@ -0,0 +1,12 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+
+/**
+ * 创建批量上传工作者, 在工作线程中调用
+ */
+public interface BatchUploadWorkerFactory {
+
+    BatchUploadWorker open() throws IOException;
+
+}
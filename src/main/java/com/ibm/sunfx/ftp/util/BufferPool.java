@@ -0,0 +1,65 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 可复用的拷贝缓冲区
+ *
+ * <p>
+ * 每次传输借出一个缓冲区, 结束后归还, 大文件和批量传输不再为每个文件分配新的缓冲区; 池满时归还的缓冲区直接丢弃
+ * </p>
+ */
+public class BufferPool {
+
+    private static final ConcurrentMap<Integer, BufferPool> POOLS = new ConcurrentHashMap<>();
+
+    private final int bufferSize;
+
+    private final BlockingQueue<byte[]> buffers;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    /**
+     * 指定大小的共享缓冲区池, 最多保留64个
+     *
+     * @param bufferSize 字节数
+     * @return BufferPool
+     */
+    public static BufferPool forSize(int bufferSize) {
+        BufferPool pool = POOLS.get(bufferSize);
+        if (pool == null) {
+            BufferPool created = new BufferPool(bufferSize, 64);
+            pool = POOLS.putIfAbsent(bufferSize, created);
+            if (pool == null) {
+                pool = created;
+            }
+        }
+        return pool;
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        return buffer == null ? new byte[bufferSize] : buffer;
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getPooled() {
+        return buffers.size();
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * ByteBuffer及映射文件与流之间的适配, 读写直接在缓冲区上进行, 不复制整个内容
+ */
+public final class ByteBufferStreams {
+
+    private ByteBufferStreams() {
+
+    }
+
+    /**
+     * 从position读到limit的输入流, 缓冲区的position随读取前进
+     *
+     * @param buffer
+     * @return InputStream
+     */
+    public static InputStream inputStream(final ByteBuffer buffer) {
+        return new InputStream() {
+
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, buffer.remaining());
+                buffer.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+                buffer.position(buffer.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+
+    /**
+     * 按窗口映射文件区间的输入流, 读完一个窗口再映射下一个
+     * 
+     * <p>
+     * 多个流同时读同一个文件时共用操作系统的页缓存, 文件只从磁盘读一次, 各流的读取进度互不影响; 调用方负责关闭channel
+     * </p>
+     *
+     * @param channel 文件
+     * @param position 起始位置
+     * @param length 字节数
+     * @param windowSize 每次映射的字节数
+     * @return InputStream
+     */
+    public static InputStream mappedInputStream(final FileChannel channel, final long position, final long length, final int windowSize) {
+        return new InputStream() {
+
+            private long mapped;
+
+            private ByteBuffer window = ByteBuffer.allocate(0);
+
+            @Override
+            public int read() throws IOException {
+                return next() ? window.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!next()) {
+                    return -1;
+                }
+                int n = Math.min(len, window.remaining());
+                window.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return window.remaining();
+            }
+
+            private boolean next() throws IOException {
+                if (window.hasRemaining()) {
+                    return true;
+                }
+                if (mapped >= length) {
+                    return false;
+                }
+                long size = Math.min(Math.max(1, windowSize), length - mapped);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position + mapped, size);
+                mapped += size;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 从position写到limit的输出流, 缓冲区的position随写入前进; 超出limit时抛出IOException
+     *
+     * @param buffer
+     * @return OutputStream
+     */
+    public static OutputStream outputStream(final ByteBuffer buffer) {
+        return new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (len > buffer.remaining()) {
+                    throw new IOException(String.format("buffer overflow: %s bytes remaining, %s bytes to write", buffer.remaining(), len));
+                }
+                buffer.put(b, off, len);
+            }
+        };
+    }
+
+}
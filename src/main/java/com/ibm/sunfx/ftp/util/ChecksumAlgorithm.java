@@ -0,0 +1,58 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.Locale;
+
+/**
+ * 传输校验使用的摘要算法
+ */
+public enum ChecksumAlgorithm {
+
+    CRC32("CRC32", 8), CRC32C("CRC32C", 8), MD5("MD5", 32), SHA_256("SHA-256", 64);
+
+    private final String name;
+
+    private final int hexLength;
+
+    ChecksumAlgorithm(String name, int hexLength) {
+        this.name = name;
+        this.hexLength = hexLength;
+    }
+
+    /**
+     * 标准名称, 与ftp HASH命令及MessageDigest一致
+     *
+     * @return String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 十六进制摘要的长度
+     *
+     * @return int
+     */
+    public int getHexLength() {
+        return hexLength;
+    }
+
+    /**
+     * 按名称查找, 忽略大小写和连字符
+     *
+     * @param name 如SHA-256, sha256, crc32
+     * @return ChecksumAlgorithm 不支持的算法返回null
+     */
+    public static ChecksumAlgorithm forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = name.trim().replace("-", "").toUpperCase(Locale.ROOT);
+        for (ChecksumAlgorithm algorithm : values()) {
+            if (algorithm.name.replace("-", "").equals(normalized)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+
+/**
+ * 池化连接的创建、校验、归还复位与销毁
+ * 
+ * @param <T> 连接类型
+ */
+public interface ConnectionFactory<T> {
+
+    /**
+     * 建立一个已登录可用的连接
+     * 
+     * @param key
+     * @return T
+     * @throws IOException
+     */
+    T create(ServerKey key) throws IOException;
+
+    /**
+     * 检查空闲连接是否仍然可用(如ftp NOOP)
+     * 
+     * @param key
+     * @param connection
+     * @return boolean
+     */
+    boolean validate(ServerKey key, T connection);
+
+    /**
+     * 连接归还前复位状态(如回到登录目录)
+     * 
+     * @param key
+     * @param connection
+     * @throws IOException
+     */
+    void passivate(ServerKey key, T connection) throws IOException;
+
+    /**
+     * 关闭连接, 不抛出异常
+     * 
+     * @param key
+     * @param connection
+     */
+    void destroy(ServerKey key, T connection);
+
+}
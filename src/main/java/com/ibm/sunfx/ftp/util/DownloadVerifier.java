@@ -0,0 +1,17 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+
+/**
+ * 下载完成后、临时文件改名为本地文件之前的校验, 不通过时保留原有的本地文件
+ */
+public interface DownloadVerifier {
+
+    /**
+     * @param result 下载成功的结果
+     * @param downloaded 下载完成的临时文件
+     * @return TransferResult 校验不通过时为失败
+     */
+    TransferResult verify(TransferResult result, File downloaded);
+
+}
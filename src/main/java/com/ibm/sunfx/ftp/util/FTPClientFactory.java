@@ -0,0 +1,133 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.log4j.Logger;
+
+/**
+ * 创建并登录FTPClient, 供连接池使用
+ */
+public class FTPClientFactory implements ConnectionFactory<PooledFTPClient> {
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private int connectTimeout = 5 * 1000;
+
+    private TransferMetrics metrics = TransferMetrics.getDefault();
+
+    private TransferIOConfig ioConfig = TransferIOConfig.lan();
+
+    @Override
+    public PooledFTPClient create(ServerKey key) throws IOException {
+        PooledFTPClient ftp = new PooledFTPClient();
+        ftp.setConnectTimeout(connectTimeout);
+        ftp.setBufferSize(ioConfig.getBufferSize());
+        ftp.setDeflateLevel(ioConfig.getCompressionLevel());
+        if (ioConfig.getSendBufferSize() > 0) {
+            ftp.setSendDataSocketBufferSize(ioConfig.getSendBufferSize());
+        }
+        if (ioConfig.getReceiveBufferSize() > 0) {
+            ftp.setReceieveDataSocketBufferSize(ioConfig.getReceiveBufferSize());
+        }
+        try {
+            long start = System.currentTimeMillis();
+            ftp.connect(key.getHost(), key.getPort());
+            ftp.setTcpNoDelay(ioConfig.isTcpNoDelay());
+            ftp.setKeepAlive(ioConfig.isKeepAlive());
+            if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
+                throw new FTPReplyException(ftp.getReplyCode(), String.format("ftp server [%s] refused connection: %s", key, ftp.getReplyString()));
+            }
+            long connected = System.currentTimeMillis();
+            if (!ftp.login(key.getUsername(), key.getPassword())) {
+                throw new FTPReplyException(ftp.getReplyCode(), String.format("ftp server [%s] login failure: %s", key, ftp.getReplyString()));
+            }
+            metrics.recordConnect(connected - start, System.currentTimeMillis() - connected);
+            ftp.setFileType(FTPClient.BINARY_FILE_TYPE);
+            if (ioConfig.isPassiveMode()) {
+                ftp.enterLocalPassiveMode();
+            }
+            ftp.setHomeDirectory(ftp.printWorkingDirectory());
+            logger.debug(String.format("ftp---Session ip[%s] port[%s] connected success", key.getHost(), key.getPort()));
+            return ftp;
+        } catch (IOException e) {
+            logger.debug(String.format("ftp---Session ip[%s] port[%s] connected failure", key.getHost(), key.getPort()));
+            metrics.recordConnectFailure(e);
+            destroy(key, ftp);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean validate(ServerKey key, PooledFTPClient ftp) {
+        try {
+            return ftp.isConnected() && ftp.sendNoOp();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void passivate(ServerKey key, PooledFTPClient ftp) throws IOException {
+        if (!ftp.isConnected()) {
+            throw new IOException("ftp connection closed");
+        }
+        ftp.setRestartOffset(0);
+        // 借用者可能临时切换了编码(如down使用GBK), 其他借用者按协商的编码发送路径
+        ftp.resetControlEncoding();
+        // 其他借用者直接读写数据流, 必须回到MODE S
+        if (ftp.setDeflateMode(false)) {
+            throw new IOException("ftp reset transfer mode failure");
+        }
+        if (!ftp.resetWorkingDirectory()) {
+            throw new IOException("ftp reset working directory failure");
+        }
+    }
+
+    @Override
+    public void destroy(ServerKey key, PooledFTPClient ftp) {
+        if (ftp.isConnected()) {
+            try {
+                ftp.logout();
+            } catch (IOException e) {
+                logger.debug(String.format("ftp---Session ip[%s] port[%s] logout failure", key.getHost(), key.getPort()));
+            }
+            try {
+                ftp.disconnect();
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public TransferIOConfig getIoConfig() {
+        return ioConfig;
+    }
+
+    /**
+     * 传输I/O参数, 对之后新建的连接生效
+     * 
+     * @param ioConfig
+     */
+    public void setIoConfig(TransferIOConfig ioConfig) {
+        this.ioConfig = ioConfig;
+    }
+
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(TransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+}
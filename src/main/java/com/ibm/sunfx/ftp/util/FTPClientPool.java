@@ -0,0 +1,38 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * FTPClient连接池
+ * 
+ * <p>
+ * 同一个host/port/user的连接在多个线程间复用, 避免每次传输都重新建立TCP连接并登录
+ * </p>
+ */
+public class FTPClientPool extends KeyedConnectionPool<PooledFTPClient> {
+
+    private static final FTPClientPool DEFAULT = new FTPClientPool(new PoolConfig());
+
+    private final FTPClientFactory factory;
+
+    public FTPClientPool(PoolConfig config) {
+        this(new FTPClientFactory(), config);
+    }
+
+    public FTPClientPool(FTPClientFactory factory, PoolConfig config) {
+        super(factory, config);
+        this.factory = factory;
+    }
+
+    /**
+     * 默认共享的连接池
+     * 
+     * @return FTPClientPool
+     */
+    public static FTPClientPool getDefault() {
+        return DEFAULT;
+    }
+
+    public FTPClientFactory getFactory() {
+        return factory;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * ftp://用户@主机:端口/路径
+ */
+public class FTPFileSystemProvider extends RemoteFileSystemProvider {
+
+    @Override
+    public String getScheme() {
+        return "ftp";
+    }
+
+    @Override
+    protected TransferClient newClient(String host, int port, String username, String password) {
+        return new FTPUtils(host, port < 0 ? 21 : port, username, password);
+    }
+
+}
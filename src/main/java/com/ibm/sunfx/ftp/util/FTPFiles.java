@@ -0,0 +1,240 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * ftp文件信息查询
+ */
+public final class FTPFiles {
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final Pattern PASSIVE_ADDRESS = Pattern.compile("(\\d{1,3}(?:,\\d{1,3}){5})");
+
+    private FTPFiles() {
+
+    }
+
+    /**
+     * 服务器文件大小
+     * 
+     * <p>
+     * 优先使用SIZE命令, 服务器不支持时使用LIST
+     * </p>
+     * 
+     * @param ftp
+     * @param remotePath
+     * @return long 文件不存在时返回-1
+     * @throws IOException
+     */
+    public static long size(FTPClient ftp, String remotePath) throws IOException {
+        if (ftp.sendCommand("SIZE", remotePath) == FTPReply.FILE_STATUS) {
+            String reply = ftp.getReplyString().trim();
+            try {
+                return Long.parseLong(reply.substring(reply.indexOf(' ') + 1).trim());
+            } catch (NumberFormatException e) {
+                // 非标准回复, 改用LIST
+            }
+        }
+        FTPFile[] files = ftp.listFiles(remotePath);
+        if (files.length == 1 && files[0].isFile()) {
+            return files[0].getSize();
+        }
+        return -1;
+    }
+
+    /**
+     * 服务器文件的修改时间
+     * 
+     * <p>
+     * 优先使用MDTM命令, 服务器不支持时使用LIST(通常只精确到分钟)
+     * </p>
+     * 
+     * @param ftp
+     * @param remotePath
+     * @return long 毫秒, 未知时为0
+     * @throws IOException
+     */
+    public static long modified(FTPClient ftp, String remotePath) throws IOException {
+        FTPFile file = ftp.mdtmFile(remotePath);
+        if (file == null || file.getTimestamp() == null) {
+            FTPFile[] files = ftp.listFiles(remotePath);
+            file = files.length == 1 ? files[0] : null;
+        }
+        return file == null || file.getTimestamp() == null ? 0 : file.getTimestamp().getTimeInMillis();
+    }
+
+    /**
+     * 服务器能计算的文件摘要及对应命令, 来自FEAT: HASH(可用OPTS HASH选择算法), XSHA256, XMD5, MD5, XCRC
+     * 
+     * <p>
+     * commons-net在每个连接上只发送一次FEAT
+     * </p>
+     * 
+     * @param ftp
+     * @return Map 算法到命令, 按HASH优先
+     * @throws IOException
+     */
+    public static Map<ChecksumAlgorithm, String> hashCommands(FTPClient ftp) throws IOException {
+        Map<ChecksumAlgorithm, String> commands = new LinkedHashMap<>();
+        String[] hash = ftp.featureValues("HASH");
+        if (hash != null) {
+            for (String values : hash) {
+                for (String value : values.split(";")) {
+                    ChecksumAlgorithm algorithm = ChecksumAlgorithm.forName(value.replace("*", ""));
+                    if (algorithm != null) {
+                        commands.put(algorithm, "HASH");
+                    }
+                }
+            }
+        }
+        String[][] commandAlgorithms = { { "XSHA256", "SHA-256" }, { "XMD5", "MD5" }, { "MD5", "MD5" }, { "XCRC", "CRC32" } };
+        for (String[] command : commandAlgorithms) {
+            ChecksumAlgorithm algorithm = ChecksumAlgorithm.forName(command[1]);
+            if (!commands.containsKey(algorithm) && ftp.hasFeature(command[0])) {
+                commands.put(algorithm, command[0]);
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * 由服务器计算文件摘要
+     * 
+     * @param ftp
+     * @param command hashCommands返回的命令
+     * @param algorithm 算法
+     * @param remotePath 服务器文件
+     * @return String 十六进制小写摘要, 服务器拒绝或应答无法解析时返回null
+     * @throws IOException
+     */
+    public static String hash(FTPClient ftp, String command, ChecksumAlgorithm algorithm, String remotePath) throws IOException {
+        if ("HASH".equals(command) && !FTPReply.isPositiveCompletion(ftp.sendCommand("OPTS", "HASH " + algorithm.getName()))) {
+            return null;
+        }
+        if (!FTPReply.isPositiveCompletion(ftp.sendCommand(command, remotePath))) {
+            return null;
+        }
+        // 213 SHA-256 0-49 <hex> <path>; 250 <hex>; 251 <path> <hex>
+        String[] tokens = ftp.getReplyString().trim().split("\\s+");
+        for (int i = 1; i < tokens.length; i++) {
+            if (StreamDigest.isHex(algorithm, tokens[i])) {
+                return tokens[i].toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 让服务器进入被动模式, 返回PORT命令可用的数据端口地址
+     * 
+     * <p>
+     * 应答中的地址是内网地址而控制连接不是时(服务器在NAT之后), 改用控制连接的地址
+     * </p>
+     * 
+     * @param ftp
+     * @return String h1,h2,h3,h4,p1,p2
+     * @throws IOException 服务器拒绝PASV或应答无法解析
+     */
+    public static String passiveAddress(FTPClient ftp) throws IOException {
+        if (ftp.pasv() != FTPReply.ENTERING_PASSIVE_MODE) {
+            throw new FTPReplyException(ftp.getReplyCode(), String.format("ftp PASV failure: %s", ftp.getReplyString()));
+        }
+        Matcher matcher = PASSIVE_ADDRESS.matcher(ftp.getReplyString());
+        if (!matcher.find()) {
+            throw new FTPReplyException(ftp.getReplyCode(), String.format("ftp PASV reply unparseable: %s", ftp.getReplyString()));
+        }
+        String[] parts = matcher.group(1).split(",");
+        String host = parts[0] + "." + parts[1] + "." + parts[2] + "." + parts[3];
+        InetAddress control = ftp.getRemoteAddress();
+        if (InetAddress.getByName(host).isSiteLocalAddress() && !control.isSiteLocalAddress() && control instanceof Inet4Address) {
+            host = control.getHostAddress();
+        }
+        return host.replace('.', ',') + "," + parts[4] + "," + parts[5];
+    }
+
+    /**
+     * 列出目录的直接下级(不含.和..)
+     * 
+     * <p>
+     * 服务器支持MLST时使用MLSD, 修改时间精确到秒; 否则使用LIST
+     * </p>
+     * 
+     * @param ftp
+     * @param directory
+     * @return List<RemoteEntry>
+     * @throws IOException
+     */
+    public static List<RemoteEntry> list(FTPClient ftp, String directory) throws IOException {
+        final List<RemoteEntry> entries = new ArrayList<>();
+        visit(ftp, directory, RemoteEntryFilter.ALL, new RemoteEntryVisitor() {
+            @Override
+            public boolean visit(RemoteEntry entry) {
+                return entries.add(entry);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * 流式列目录, 回调返回false时停止
+     * 
+     * <p>
+     * 连接池中的连接逐行读取解析, 内存占用与目录大小无关; 其他FTPClient使用FTPListParseEngine分页解析。
+     * 提前停止时断开该连接, 归还连接池时销毁
+     * </p>
+     * 
+     * @param ftp
+     * @param directory
+     * @param filter
+     * @param visitor
+     * @return int 回调的目录项数
+     * @throws IOException
+     */
+    public static int visit(FTPClient ftp, String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) throws IOException {
+        if (ftp instanceof PooledFTPClient) {
+            FTPListing listing = FTPListing.open((PooledFTPClient) ftp, directory);
+            try {
+                return listing.visit(filter, visitor);
+            } finally {
+                listing.close();
+            }
+        }
+        FTPListParseEngine engine = ftp.initiateListParsing(directory);
+        if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
+            throw new IOException(String.format("ftp list directory [%s] failure: %s", directory, ftp.getReplyString()));
+        }
+        int visited = 0;
+        while (engine.hasNext()) {
+            for (FTPFile file : engine.getNext(PAGE_SIZE)) {
+                if (file == null || ".".equals(file.getName()) || "..".equals(file.getName())) {
+                    continue;
+                }
+                RemoteEntry entry = RemoteEntry.of(file, directory);
+                if (!filter.accept(entry)) {
+                    continue;
+                }
+                visited++;
+                if (!visitor.visit(entry)) {
+                    return visited;
+                }
+            }
+        }
+        return visited;
+    }
+
+}
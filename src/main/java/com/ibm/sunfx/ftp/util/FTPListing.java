@@ -0,0 +1,207 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+import org.apache.log4j.Logger;
+
+/**
+ * 流式读取ftp目录列表
+ * 
+ * <p>
+ * 从数据连接逐行读取并解析MLSD/LIST的回复, 不把整个目录读入内存, 内存占用与目录大小无关。
+ * 列表读完时数据连接结束, 连接可继续使用; 提前关闭时各服务器的回复(426/226)不一致, 直接断开控制连接, 由连接池销毁
+ * </p>
+ */
+public abstract class FTPListing implements Iterator<RemoteEntry>, Closeable {
+
+    private static Logger logger = Logger.getLogger(FTPListing.class);
+
+    private final BufferedReader reader;
+
+    private final FTPFileEntryParser parser;
+
+    private final String directory;
+
+    private RemoteEntry next;
+
+    private boolean complete;
+
+    private boolean closed;
+
+    protected FTPListing(BufferedReader reader, FTPFileEntryParser parser, String directory) {
+        this.reader = reader;
+        this.parser = parser;
+        this.directory = directory;
+    }
+
+    /**
+     * 打开目录列表
+     * 
+     * <p>
+     * 服务器支持MLST时使用MLSD, 修改时间精确到秒; 否则使用LIST, 按SYST选择解析器
+     * </p>
+     * 
+     * @param ftp
+     * @param directory 绝对路径
+     * @return FTPListing 使用后必须关闭
+     * @throws IOException
+     */
+    public static FTPListing open(final PooledFTPClient ftp, final String directory) throws IOException {
+        boolean mlsd = ftp.hasFeature("MLST");
+        FTPFileEntryParser parser = mlsd ? MLSxEntryParser.getInstance() : listParser(ftp);
+        String argument = !mlsd && ftp.getListHiddenFiles() ? "-a " + directory : directory;
+        final Socket socket = ftp.openDataConnection(mlsd ? "MLSD" : "LIST", argument);
+        if (socket == null) {
+            throw new IOException(String.format("ftp list directory [%s] failure: %s", directory, ftp.getReplyString()));
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), ftp.getControlEncoding()));
+        return new FTPListing(reader, parser, directory) {
+            @Override
+            protected void onClose(boolean complete) throws IOException {
+                socket.close();
+                if (!complete) {
+                    ftp.disconnect();
+                    return;
+                }
+                if (!ftp.completePendingCommand()) {
+                    throw new IOException(String.format("ftp list directory [%s] failure: %s", directory, ftp.getReplyString()));
+                }
+            }
+        };
+    }
+
+    private static FTPFileEntryParser listParser(PooledFTPClient ftp) throws IOException {
+        String system;
+        try {
+            system = ftp.getSystemType();
+        } catch (IOException e) {
+            // 不支持SYST的服务器按unix格式解析
+            if (FTPReply.isNegativePermanent(ftp.getReplyCode())) {
+                system = FTPClientConfig.SYST_UNIX;
+            } else {
+                throw e;
+            }
+        }
+        try {
+            return new DefaultFTPFileEntryParserFactory().createFileEntryParser(system);
+        } catch (RuntimeException e) {
+            logger.debug(String.format("ftp system type [%s] unknown, parse list as unix", system));
+            return new DefaultFTPFileEntryParserFactory().createUnixFTPEntryParser();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (complete || closed) {
+            return false;
+        }
+        try {
+            String line;
+            while ((line = parser.readNextEntry(reader)) != null) {
+                FTPFile file = parser.parseFTPEntry(line);
+                if (file == null || ".".equals(file.getName()) || "..".equals(file.getName())) {
+                    continue;
+                }
+                next = RemoteEntry.of(file, directory);
+                return true;
+            }
+            complete = true;
+            return false;
+        } catch (IOException e) {
+            throw new RemoteListingException(directory, e);
+        }
+    }
+
+    @Override
+    public RemoteEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        RemoteEntry entry = next;
+        next = null;
+        return entry;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 依次回调通过过滤的目录项, 回调返回false时停止
+     * 
+     * @param filter
+     * @param visitor
+     * @return int 回调的目录项数
+     * @throws IOException
+     */
+    public int visit(RemoteEntryFilter filter, RemoteEntryVisitor visitor) throws IOException {
+        int visited = 0;
+        try {
+            while (hasNext()) {
+                RemoteEntry entry = next();
+                if (!filter.accept(entry)) {
+                    continue;
+                }
+                visited++;
+                if (!visitor.visit(entry)) {
+                    break;
+                }
+            }
+        } catch (RemoteListingException e) {
+            throw e.getCause();
+        }
+        return visited;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        onClose(complete);
+    }
+
+    /**
+     * 结束数据连接
+     * 
+     * @param complete 是否已读完整个列表
+     * @throws IOException
+     */
+    protected abstract void onClose(boolean complete) throws IOException;
+
+    /**
+     * Iterator不能抛出IOException, 读取列表失败时包装为非受检异常
+     */
+    public static class RemoteListingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public RemoteListingException(String directory, IOException cause) {
+            super(String.format("list directory [%s] error", directory), cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+
+    }
+
+}
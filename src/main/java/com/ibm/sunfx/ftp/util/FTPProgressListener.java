@@ -0,0 +1,42 @@
+package com.ibm.sunfx.ftp.util;
+
+import org.apache.commons.net.io.CopyStreamEvent;
+import org.apache.commons.net.io.CopyStreamListener;
+
+/**
+ * 把commons-net的CopyStreamListener转为TransferListener进度回调
+ */
+public class FTPProgressListener implements CopyStreamListener {
+
+    private final TransferListener listener;
+
+    private final TransferDirection direction;
+
+    private final String remotePath;
+
+    private final long size;
+
+    /**
+     * @param listener 进度监听
+     * @param direction 方向
+     * @param remotePath 服务器文件
+     * @param size 本次要传输的字节数, 未知时为-1
+     */
+    public FTPProgressListener(TransferListener listener, TransferDirection direction, String remotePath, long size) {
+        this.listener = listener;
+        this.direction = direction;
+        this.remotePath = remotePath;
+        this.size = size;
+    }
+
+    @Override
+    public void bytesTransferred(CopyStreamEvent event) {
+        bytesTransferred(event.getTotalBytesTransferred(), event.getBytesTransferred(), event.getStreamSize());
+    }
+
+    @Override
+    public void bytesTransferred(long totalBytesTransferred, int bytesTransferred, long streamSize) {
+        listener.bytesTransferred(direction, remotePath, totalBytesTransferred, size);
+    }
+
+}
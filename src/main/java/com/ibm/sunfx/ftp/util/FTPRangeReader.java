@@ -0,0 +1,117 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.log4j.Logger;
+
+/**
+ * 通过REST+RETR按范围读取ftp文件
+ * 
+ * <p>
+ * 范围读到文件末尾时连接归还连接池, 否则关闭数据连接并发送ABOR中止传输, 服务器正常回复时连接仍归还连接池, 中止失败时销毁该连接
+ * </p>
+ */
+public class FTPRangeReader implements RemoteRangeReader {
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private final FTPClientPool pool;
+
+    private final ServerKey key;
+
+    private int abortTimeout = 5 * 1000;
+
+    public FTPRangeReader(FTPClientPool pool, ServerKey key) {
+        this.pool = pool;
+        this.key = key;
+    }
+
+    @Override
+    public long size(String remotePath) throws IOException {
+        PooledFTPClient ftp = pool.borrow(key);
+        try {
+            long size = FTPFiles.size(ftp, remotePath);
+            pool.release(key, ftp);
+            return size;
+        } catch (IOException e) {
+            pool.invalidate(key, ftp);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openRange(final String remotePath, long offset, long length) throws IOException {
+        final PooledFTPClient ftp = pool.borrow(key);
+        final InputStream raw;
+        try {
+            ftp.setRestartOffset(offset);
+            raw = ftp.retrieveFileStream(remotePath);
+        } catch (IOException e) {
+            pool.invalidate(key, ftp);
+            throw e;
+        }
+        if (raw == null) {
+            String reply = ftp.getReplyString();
+            pool.release(key, ftp);
+            throw new IOException(String.format("ftp retrieve file [%s] from offset [%s] failure: %s", remotePath, offset, reply));
+        }
+        return new RangeInputStream(raw, length) {
+            @Override
+            protected void onClose(boolean complete) throws IOException {
+                // 范围正好到文件末尾时数据连接已结束, 读完回复即可复用连接; 否则发送ABOR中止传输,
+                // 两个回复(RETR的426/226和ABOR的225/226)都读到后连接仍可复用, 中止失败时才销毁连接
+                boolean reusable = false;
+                try {
+                    if (complete && raw.read() == -1) {
+                        raw.close();
+                        reusable = ftp.completePendingCommand();
+                    } else {
+                        reusable = abort(ftp, raw);
+                    }
+                } catch (IOException e) {
+                    logger.debug(String.format("ftp range read of [%s] closed: %s", remotePath, e.getMessage()));
+                }
+                if (reusable) {
+                    pool.release(key, ftp);
+                } else {
+                    pool.invalidate(key, ftp);
+                }
+            }
+        };
+    }
+
+    /**
+     * 中止未读完的RETR
+     * 
+     * @return boolean 控制连接以2xx结束, 可以复用
+     */
+    private boolean abort(PooledFTPClient ftp, InputStream raw) throws IOException {
+        raw.close();
+        int timeout = ftp.getSoTimeout();
+        // 不按规范回复的服务器会让读取回复一直等待, 限时后销毁连接
+        ftp.setSoTimeout(abortTimeout);
+        try {
+            // abort读到的是RETR的结果(426中止或226已传完), 随后是ABOR自己的回复
+            ftp.abort();
+            return FTPReply.isPositiveCompletion(ftp.getReply());
+        } finally {
+            ftp.setSoTimeout(timeout);
+        }
+    }
+
+    public int getAbortTimeout() {
+        return abortTimeout;
+    }
+
+    /**
+     * 中止传输时等待回复的时间(毫秒), 默认5秒
+     * 
+     * @param abortTimeout
+     */
+    public void setAbortTimeout(int abortTimeout) {
+        this.abortTimeout = abortTimeout;
+    }
+
+}
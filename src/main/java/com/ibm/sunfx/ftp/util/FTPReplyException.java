@@ -0,0 +1,23 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+
+/**
+ * ftp服务器返回失败应答
+ */
+public class FTPReplyException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int replyCode;
+
+    public FTPReplyException(int replyCode, String message) {
+        super(message);
+        this.replyCode = replyCode;
+    }
+
+    public int getReplyCode() {
+        return replyCode;
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.io.CopyStreamListener;
+
+/**
+ * ftp数据连接上的文件读写
+ *
+ * <p>
+ * 代替storeFile/retrieveFile: 本地文件用FileChannel按位置读写, 缓冲区从BufferPool借出, 不再为每个文件分配缓冲区和缓冲流。
+ * 传输中断时控制连接上的应答不确定, 直接断开连接, 由调用方从连接池丢弃。连接处于MODE Z时数据流经deflate压缩,
+ * 进度、字节数和摘要按未压缩的文件内容计算。
+ * </p>
+ */
+public final class FTPTransfers {
+
+    private FTPTransfers() {
+
+    }
+
+    /**
+     * 上传, offset大于0时用APPE追加
+     * 
+     * @param ftp
+     * @param remotePath 服务器文件
+     * @param source 本地文件
+     * @param offset 起始位置
+     * @param progress 进度, 可为null
+     * @return boolean 服务器是否确认
+     * @throws IOException
+     */
+    public static boolean store(FTPClient ftp, String remotePath, FileChannel source, long offset, CopyStreamListener progress) throws IOException {
+        return store(ftp, remotePath, source, offset, progress, null);
+    }
+
+    /**
+     * 上传并计算摘要
+     * 
+     * @param ftp
+     * @param remotePath 服务器文件
+     * @param source 本地文件
+     * @param offset 起始位置
+     * @param progress 进度, 可为null
+     * @param digest 按未压缩的内容计算摘要, 不含offset之前的部分, 可为null
+     * @return boolean 服务器是否确认
+     * @throws IOException
+     */
+    public static boolean store(FTPClient ftp, String remotePath, FileChannel source, long offset, CopyStreamListener progress, StreamDigest digest)
+            throws IOException {
+        OutputStream out = offset > 0 ? ftp.appendFileStream(remotePath) : ftp.storeFileStream(remotePath);
+        if (out == null) {
+            return false;
+        }
+        Deflater deflater = null;
+        try {
+            if (isDeflate(ftp)) {
+                deflater = new Deflater(((PooledFTPClient) ftp).getDeflateLevel());
+                out = new DeflaterOutputStream(out, deflater, bufferSize(ftp));
+            }
+            if (digest != null) {
+                out = digest.wrap(out);
+            }
+            TransferStreams.copy(source, offset, out, buffers(ftp), progress);
+            out.close();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            abort(ftp);
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return ftp.completePendingCommand();
+    }
+
+    /**
+     * 下载, offset大于0时发送REST并从offset处写入本地文件, 否则截断本地文件
+     * 
+     * @param ftp
+     * @param remotePath 服务器文件
+     * @param file 本地文件
+     * @param offset 起始位置
+     * @param progress 进度, 可为null
+     * @return boolean 服务器是否确认
+     * @throws IOException
+     */
+    public static boolean retrieve(FTPClient ftp, String remotePath, File file, long offset, CopyStreamListener progress) throws IOException {
+        return retrieve(ftp, remotePath, file, offset, progress, null);
+    }
+
+    /**
+     * 下载并计算摘要
+     * 
+     * @param ftp
+     * @param remotePath 服务器文件
+     * @param file 本地文件
+     * @param offset 起始位置
+     * @param progress 进度, 可为null
+     * @param digest 按解压后的内容计算摘要, 不含offset之前的部分, 可为null
+     * @return boolean 服务器是否确认
+     * @throws IOException
+     */
+    public static boolean retrieve(FTPClient ftp, String remotePath, File file, long offset, CopyStreamListener progress, StreamDigest digest)
+            throws IOException {
+        ftp.setRestartOffset(offset);
+        InputStream in = ftp.retrieveFileStream(remotePath);
+        if (in == null) {
+            return false;
+        }
+        RandomAccessFile target = null;
+        Inflater inflater = null;
+        try {
+            if (isDeflate(ftp)) {
+                inflater = new Inflater();
+                in = new InflaterInputStream(in, inflater, bufferSize(ftp));
+            }
+            if (digest != null) {
+                in = digest.wrap(in);
+            }
+            target = new RandomAccessFile(file, "rw");
+            target.setLength(offset);
+            TransferStreams.copy(in, target.getChannel(), offset, buffers(ftp), progress);
+            target.close();
+            in.close();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            if (target != null) {
+                try {
+                    target.close();
+                } catch (IOException ignore) {
+                    // 已在处理传输异常
+                }
+            }
+            abort(ftp);
+            throw e;
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+        return ftp.completePendingCommand();
+    }
+
+    /**
+     * 从输入流上传
+     * 
+     * @param ftp
+     * @param remotePath 服务器文件
+     * @param in 输入流, 读到结束为止, 不关闭
+     * @param progress 进度, 可为null
+     * @param digest 按未压缩的内容计算摘要, 可为null
+     * @return long 上传的字节数, 服务器拒绝时返回-1
+     * @throws IOException
+     */
+    public static long store(FTPClient ftp, String remotePath, InputStream in, CopyStreamListener progress, StreamDigest digest) throws IOException {
+        OutputStream out = ftp.storeFileStream(remotePath);
+        if (out == null) {
+            return -1;
+        }
+        Deflater deflater = null;
+        long total;
+        try {
+            if (isDeflate(ftp)) {
+                deflater = new Deflater(((PooledFTPClient) ftp).getDeflateLevel());
+                out = new DeflaterOutputStream(out, deflater, bufferSize(ftp));
+            }
+            if (digest != null) {
+                out = digest.wrap(out);
+            }
+            total = TransferStreams.copy(in, out, buffers(ftp), progress);
+            out.close();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            abort(ftp);
+            throw e;
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return ftp.completePendingCommand() ? total : -1;
+    }
+
+    /**
+     * 下载到输出流
+     * 
+     * @param ftp
+     * @param remotePath 服务器文件
+     * @param out 输出流, 不关闭
+     * @param progress 进度, 可为null
+     * @param digest 按解压后的内容计算摘要, 可为null
+     * @return long 下载的字节数, 服务器拒绝时返回-1
+     * @throws IOException
+     */
+    public static long retrieve(FTPClient ftp, String remotePath, OutputStream out, CopyStreamListener progress, StreamDigest digest) throws IOException {
+        ftp.setRestartOffset(0);
+        InputStream in = ftp.retrieveFileStream(remotePath);
+        if (in == null) {
+            return -1;
+        }
+        Inflater inflater = null;
+        long total;
+        try {
+            if (isDeflate(ftp)) {
+                inflater = new Inflater();
+                in = new InflaterInputStream(in, inflater, bufferSize(ftp));
+            }
+            if (digest != null) {
+                in = digest.wrap(in);
+            }
+            total = TransferStreams.copy(in, out, buffers(ftp), progress);
+            in.close();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(in);
+            abort(ftp);
+            throw e;
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+        return ftp.completePendingCommand() ? total : -1;
+    }
+
+    private static boolean isDeflate(FTPClient ftp) {
+        return ftp instanceof PooledFTPClient && ((PooledFTPClient) ftp).isDeflateMode();
+    }
+
+    private static void abort(FTPClient ftp) {
+        try {
+            ftp.disconnect();
+        } catch (IOException ignore) {
+            // 连接已不可用
+        }
+    }
+
+    private static BufferPool buffers(FTPClient ftp) {
+        return BufferPool.forSize(bufferSize(ftp));
+    }
+
+    private static int bufferSize(FTPClient ftp) {
+        int bufferSize = ftp.getBufferSize();
+        return bufferSize > 0 ? bufferSize : 64 * 1024;
+    }
+
+}
@@ -0,0 +1,224 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.log4j.Logger;
+
+/**
+ * 多连接并行下载ftp目录树
+ *
+ * <p>
+ * 列目录和下载文件是独立的任务, 由work-stealing线程池执行, 每个任务从连接池借出连接并使用绝对路径,
+ * 不依赖也不改变工作目录。同时排队的任务数不超过maxInFlight, 超出时由发现它的线程直接执行,
+ * 因此目录树再大内存也保持平稳。
+ * </p>
+ */
+public class FTPTreeDownloader {
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private final FTPClientPool pool;
+
+    private final ServerKey key;
+
+    private final int parallelism;
+
+    private int maxInFlight;
+
+    private String controlEncoding = "GBK";
+
+    private ForkJoinPool executor;
+
+    private Semaphore inFlight;
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private CountDownLatch finished;
+
+    private final List<TransferResult> results = Collections.synchronizedList(new ArrayList<TransferResult>());
+
+    public FTPTreeDownloader(FTPClientPool pool, ServerKey key, int parallelism) {
+        this.pool = pool;
+        this.key = key;
+        this.parallelism = Math.max(1, Math.min(parallelism, pool.getConfig().getMaxTotalPerKey()));
+        this.maxInFlight = this.parallelism * 64;
+    }
+
+    /**
+     * 下载远程目录下的所有文件, 本地已存在的文件跳过
+     *
+     * @param remoteBaseDir 远程目录
+     * @param localBaseDir 本地目录
+     * @return BatchReport 每个下载文件的结果
+     */
+    public synchronized BatchReport download(String remoteBaseDir, String localBaseDir) {
+        long start = System.currentTimeMillis();
+        results.clear();
+        executor = new ForkJoinPool(parallelism);
+        inFlight = new Semaphore(maxInFlight);
+        finished = new CountDownLatch(1);
+        try {
+            submit(new ListTask(trimSlash(remoteBaseDir), new File(localBaseDir)), true);
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        BatchReport report = new BatchReport(results, System.currentTimeMillis() - start);
+        logger.info(String.format("ftp parallel download [%s] from [%s] to [%s] finished: %s", remoteBaseDir, key, localBaseDir, report));
+        return report;
+    }
+
+    /**
+     * 提交任务; 队列已满时在当前线程直接执行
+     */
+    private void submit(final Runnable task, boolean force) {
+        pending.incrementAndGet();
+        if (force) {
+            inFlight.acquireUninterruptibly();
+        } else if (!inFlight.tryAcquire()) {
+            run(task, false);
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                FTPTreeDownloader.this.run(task, true);
+            }
+        });
+    }
+
+    private void run(Runnable task, boolean permit) {
+        try {
+            task.run();
+        } finally {
+            if (permit) {
+                inFlight.release();
+            }
+            if (pending.decrementAndGet() == 0) {
+                finished.countDown();
+            }
+        }
+    }
+
+    private class ListTask implements Runnable {
+
+        private final String remoteDir;
+
+        private final File localDir;
+
+        ListTask(String remoteDir, File localDir) {
+            this.remoteDir = remoteDir;
+            this.localDir = localDir;
+        }
+
+        @Override
+        public void run() {
+            FTPFile[] files;
+            PooledFTPClient ftp = null;
+            try {
+                ftp = pool.borrow(key);
+                ftp.setControlEncoding(controlEncoding);
+                files = ftp.listFiles(remoteDir.isEmpty() ? "/" : remoteDir);
+                pool.release(key, ftp);
+            } catch (IOException | RuntimeException e) {
+                // 列表解析等运行时异常也要销毁连接, 否则占用连接池的名额
+                pool.invalidate(key, ftp);
+                logger.error(String.format("ftp list directory [%s] error", remoteDir), e);
+                results.add(TransferResult.failure(localDir.getPath(), remoteDir, 0, e));
+                return;
+            }
+            if (!localDir.exists()) {
+                localDir.mkdirs();
+            }
+            for (FTPFile file : files) {
+                String name = file.getName();
+                if (".".equals(name) || "..".equals(name)) {
+                    continue;
+                }
+                String remotePath = remoteDir + "/" + name;
+                File localFile = new File(localDir, name);
+                if (file.isDirectory()) {
+                    submit(new ListTask(remotePath, localFile), false);
+                } else if (file.isFile() && !localFile.exists()) {
+                    submit(new FetchTask(remotePath, localFile), false);
+                }
+            }
+        }
+
+    }
+
+    private class FetchTask implements Runnable {
+
+        private final String remotePath;
+
+        private final File localFile;
+
+        FetchTask(String remotePath, File localFile) {
+            this.remotePath = remotePath;
+            this.localFile = localFile;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            PooledFTPClient ftp = null;
+            try {
+                ftp = pool.borrow(key);
+                if (!FTPTransfers.retrieve(ftp, remotePath, localFile, 0, null)) {
+                    throw new FTPReplyException(ftp.getReplyCode(), String.format("ftp retrieve file [%s] failure: %s", remotePath, ftp.getReplyString()));
+                }
+                pool.release(key, ftp);
+                results.add(TransferResult.success(localFile.getPath(), remotePath, localFile.length(), System.currentTimeMillis() - start));
+            } catch (IOException | RuntimeException e) {
+                FileUtils.deleteQuietly(localFile);
+                pool.invalidate(key, ftp);
+                logger.error(String.format("ftp download file [%s] error", remotePath), e);
+                results.add(TransferResult.failure(localFile.getPath(), remotePath, System.currentTimeMillis() - start, e));
+            }
+        }
+
+    }
+
+    private static String trimSlash(String path) {
+        String trimmed = path;
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public String getControlEncoding() {
+        return controlEncoding;
+    }
+
+    public void setControlEncoding(String controlEncoding) {
+        this.controlEncoding = controlEncoding;
+    }
+
+}
@@ -1,20 +1,30 @@
 package com.ibm.sunfx.ftp.util;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
 import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.io.CopyStreamListener;
 import org.apache.log4j.Logger;
 
-public class FTPUtils {
+public class FTPUtils implements TransferClient {
 
     private String host = "192.168.1.100";
 
@@ -24,7 +34,31 @@ public class FTPUtils {
 
     private int port = 21;
 
-    private FTPClient ftp = new FTPClient();
+    // 共享连接池, 每个线程通过connectFtp借出自己的连接
+    private FTPClientPool pool = FTPClientPool.getDefault();
+
+    private final ThreadLocal<PooledFTPClient> current = new ThreadLocal<>();
+
+    // 已知存在的服务器目录
+    private RemoteDirectoryCache directoryCache = RemoteDirectoryCache.getDefault();
+
+    // 传输统计
+    private TransferMetrics metrics = TransferMetrics.getDefault();
+
+    // 传输进度监听, 可为null
+    private TransferListener listener;
+
+    // 传输压缩策略
+    private CompressionPolicy compression = CompressionPolicy.never();
+
+    // 传输校验策略
+    private IntegrityPolicy integrity = IntegrityPolicy.none();
+
+    // 发布方式
+    private PublishPolicy publish = PublishPolicy.direct();
+
+    // 批量上传日志, 可为null
+    private TransferJournal journal;
 
     // 本地编码
     private String localCharset = "GBK";
@@ -40,6 +74,21 @@ public class FTPUtils {
 
     }
 
+    /**
+     * 构造方法
+     * 
+     * @param host 机器IP地址
+     * @param port 端口
+     * @param username 用户名
+     * @param password 密码
+     */
+    public FTPUtils(String host, int port, String username, String password) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+    }
+
     public static FTPUtils getInstance() {
         return util;
     }
@@ -47,30 +96,20 @@ public class FTPUtils {
     /**
      * 获取ftp连接
      * 
-     * @param f
-     * @return
-     * @throws Exception
+     * <p>
+     * 从连接池借出一个连接并绑定到当前线程, 由closeFtp归还
+     * </p>
+     * 
+     * @return boolean
      */
     public boolean connectFtp() {
+        PooledFTPClient ftp = current.get();
+        if (ftp != null && ftp.isConnected()) {
+            return true;
+        }
         try {
-            if (ftp != null && ftp.isConnected()) {
-                return true;
-            }
-            boolean flag = false;
-            int reply;
-            ftp.setConnectTimeout(5 * 1000);
-            ftp.connect(host, port);
-            ftp.login(username, password);
-            ftp.setFileType(FTPClient.BINARY_FILE_TYPE);
-            reply = ftp.getReplyCode();
-            if (!FTPReply.isPositiveCompletion(reply)) {
-                ftp.disconnect();
-                return flag;
-            }
-            flag = true;
-            logger.debug(String.format("ftp---Session ip[%s] port[%s] connected success", host, port));
-            return flag;
-            
+            current.set(pool.borrow(serverKey()));
+            return true;
         } catch (Exception e) {
             logger.debug(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
             logger.error(e.getMessage(), e);
@@ -80,60 +119,133 @@ public class FTPUtils {
 
     /**
      * 关闭ftp连接
+     * 
+     * <p>
+     * 连接归还连接池而不是断开, 已断开的连接直接销毁
+     * </p>
      */
     public void closeFtp() {
-        if (ftp != null && ftp.isConnected()) {
-            try {
-                ftp.logout();
-                ftp.disconnect();
-            } catch (IOException e) {
-                logger.error(e.getMessage(), e);
-            }
+        PooledFTPClient ftp = current.get();
+        if (ftp == null) {
+            return;
+        }
+        current.remove();
+        if (ftp.isConnected()) {
+            pool.release(serverKey(), ftp);
+        } else {
+            pool.invalidate(serverKey(), ftp);
+        }
+    }
+
+    /**
+     * 当前线程借出的连接
+     * 
+     * @return PooledFTPClient
+     */
+    private PooledFTPClient ftp() {
+        PooledFTPClient ftp = current.get();
+        if (ftp == null) {
+            throw new IllegalStateException("ftp not connected, call connectFtp() first");
         }
+        return ftp;
+    }
+
+    private ServerKey serverKey() {
+        return new ServerKey(host, port, username, password);
     }
 
     /**
-     * ftp上传文件或一个目录
+     * ftp上传单个文件, 上传目录树见uploadTree
      * 
      * <p>
-     * directory服务器目录必须存在
+     * directory服务器目录不存在时创建
      * </p>
      * 
      * @param f
      * @return boolean
      */
     public boolean uploadFile(String directory, String uploadFile) {
+        return uploadFile(directory, uploadFile, false);
+    }
 
+    /**
+     * ftp上传文件, 支持断点续传
+     * 
+     * <p>
+     * resume为true时先比较服务器文件大小: 大小相同视为已上传, 较小则用APPE只补传缺少的部分, 否则重新上传
+     * </p>
+     * 
+     * @param directory 服务器目录
+     * @param uploadFile 本地文件
+     * @param resume 是否续传
+     * @return boolean
+     */
+    public boolean uploadFile(String directory, String uploadFile, boolean resume) {
+        return upload(directory, uploadFile, resume).isSuccess();
+    }
+
+    @Override
+    public TransferResult upload(String directory, String uploadFile, boolean resume) {
+        return upload(directory, uploadFile, resume, compression);
+    }
+
+    /**
+     * 按指定的压缩策略上传单个文件
+     * 
+     * @param directory 服务器目录
+     * @param uploadFile 本地文件
+     * @param resume 是否续传
+     * @param compression 压缩策略, 服务器不支持MODE Z时不压缩
+     * @return TransferResult
+     */
+    public TransferResult upload(String directory, String uploadFile, boolean resume, CompressionPolicy compression) {
+
+        long start = System.currentTimeMillis();
         FileInputStream input = null;
         File f = new File(uploadFile);
 
-        if (!new File(uploadFile).exists()) {
+        if (!f.exists()) {
             logger.debug(String.format("uploadFile {%s} not found...", uploadFile));
-            return false;
+            return TransferResult.failure(uploadFile, directory, 0, new FileNotFoundException(uploadFile));
         }
 
         if (!this.connectFtp()) {
-            return false;
+            return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start,
+                    new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port)));
         }
 
         try {
-            // 判断目录是否存在
-            if (!ftp.changeWorkingDirectory(directory)) {
-                this.mkdirs(directory);
+            // 检查并创建服务器目录
+            if (!this.mkdirs(directory)) {
+                String message = String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", host, port, directory);
+                logger.debug(message);
+                return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start, new IOException(message));
+            }
+            long offset = 0;
+            if (resume) {
+                String remotePath = RemotePaths.join(absolutePath(directory), f.getName());
+                long remoteSize = this.remoteSize(remotePath);
+                if (remoteSize == f.length()) {
+                    logger.info(String.format("ftp upload file [%s] already complete on [%s]", uploadFile, host));
+                    return TransferResult.success(uploadFile, remotePath, 0, System.currentTimeMillis() - start);
+                }
+                if (publish.isAtomic()) {
+                    // 未完成的部分在临时文件中
+                    remoteSize = this.remoteSize(publish.tempPath(remotePath));
+                }
+                if (remoteSize > 0 && remoteSize < f.length()) {
+                    offset = remoteSize;
+                }
             }
-        } catch (IOException e1) {
-            logger.debug(String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", host, port, directory));
-            return false;
-        }
-
-        try {
             input = new FileInputStream(f);
-            ftp.storeFile(f.getName(), input);
-            logger.info(String.format("ftp upload file [%s] ftp [%s] save to [%s]", uploadFile, host, directory));
-            return true;
-        } catch (Exception e) {
+            TransferResult result = this.store(directory, f, input, offset, compression);
+            if (result.isSuccess()) {
+                logger.info(String.format("ftp upload file [%s] ftp [%s] save to [%s] from offset [%s]", uploadFile, host, directory, offset));
+            }
+            return result;
+        } catch (IOException e) {
             logger.error(e.getMessage(), e);
-            return false;
+            return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start, e);
         } finally {
             IOUtils.closeQuietly(input);
             closeFtp();
@@ -167,29 +279,22 @@ public class FTPUtils {
             return false;
         }
 
-        try {
-            // 判断目录是否存在
-            if (!this.mkdirs(directory)) {
-                // 创建目录
-                this.mkdirs(directory);
-                // 再判断目录是否存在
-                if (!ftp.changeWorkingDirectory(directory)) {
-                    return false;
-                }
-            }
-        } catch (IOException e1) {
+        // 检查并创建服务器目录
+        if (!this.mkdirs(directory)) {
             logger.debug(String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", host, port, directory));
+            closeFtp();
             return false;
         }
 
         FileInputStream input = null;
 
         try {
-            ftp.changeWorkingDirectory(directory); // 进入目录
             for (String file : fileList) {
                 File f = new File(file);
                 input = new FileInputStream(f);
-                ftp.storeFile(f.getName(), input);
+                if (!this.storeFile(directory, f, input)) {
+                    return false;
+                }
                 input.close();
                 logger.info(String.format("ftp upload file [%s] ftp [%s] save to [%s]", file, host, directory));
             }
@@ -234,11 +339,18 @@ public class FTPUtils {
             return false;
         }
 
-        for (String directoryString : directoryList) {
-            // 检查并创建服务器目录<创建多层目录>
-            if (!this.mkdirs(directoryString)) {
+        // 目标目录去重后逐层创建一次, 之后按绝对路径上传
+        try {
+            Set<String> failed = prepareDirectories(directoryList);
+            if (!failed.isEmpty()) {
+                logger.debug(String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", host, port, failed));
+                closeFtp();
                 return false;
             }
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            closeFtp();
+            return false;
         }
 
         FileInputStream in = null;
@@ -249,8 +361,9 @@ public class FTPUtils {
                 String fileStr = fileList.get(i); // 保存的文件
                 File file = new File(fileStr);
                 in = new FileInputStream(file);
-                ftp.changeWorkingDirectory(directoryStr); // 进入目录
-                ftp.storeFile(file.getName(), in);// 上传文件
+                if (!this.storeFile(directoryStr, file, in)) { // 上传文件
+                    return false;
+                }
                 in.close();
                 logger.info(String.format("ftp connect{%s} upload file{%s} save to{%s}", host, file, directoryStr));
             }
@@ -265,9 +378,68 @@ public class FTPUtils {
 
     }
 
+    /**
+     * 多连接并行上传多个文件到同一目录
+     * 
+     * @param directory
+     * @param fileList
+     * @param parallelism 并行连接数, 不超过连接池每个服务器的最大连接数
+     * @return BatchReport 每个文件的上传结果
+     */
+    public BatchReport uploadFileListParallel(String directory, List<String> fileList, int parallelism) {
+        List<String> directoryList = new ArrayList<>(fileList.size());
+        for (int i = 0; i < fileList.size(); i++) {
+            directoryList.add(directory);
+        }
+        return uploadFileListParallel(directoryList, fileList, parallelism);
+    }
+
+    /**
+     * 多连接并行上传多个文件
+     * <p>
+     * directoryList目录顺序和fileList文件一一对应
+     * </p>
+     * 
+     * @param directoryList
+     * @param fileList
+     * @param parallelism 并行连接数, 不超过连接池每个服务器的最大连接数
+     * @return BatchReport 每个文件的上传结果
+     */
+    public BatchReport uploadFileListParallel(List<String> directoryList, List<String> fileList, int parallelism) {
+        if (directoryList.size() != fileList.size()) {
+            throw new IllegalArgumentException("directoryList and fileList size not match");
+        }
+        // 先在一个连接上按计划建好全部目录, 上传连接不再逐个文件检查目录; 失败时退回逐个文件创建
+        Set<String> failedDirectories = null;
+        if (connectFtp()) {
+            try {
+                failedDirectories = prepareDirectories(directoryList);
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+            } finally {
+                closeFtp();
+            }
+        }
+        final Set<String> failed = failedDirectories;
+        int connections = Math.min(parallelism, pool.getConfig().getMaxTotalPerKey());
+        return ParallelBatchUploader.upload(directoryList, fileList, connections, new BatchUploadWorkerFactory() {
+            @Override
+            public BatchUploadWorker open() throws IOException {
+                if (!connectFtp()) {
+                    throw new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+                }
+                return new FTPBatchUploadWorker(failed);
+            }
+        });
+    }
+
     /**
      * 创建多级目录
      * 
+     * <p>
+     * 已知存在的目录直接返回, 否则只创建缺少的下级目录
+     * </p>
+     * 
      * @param directory
      * @return boolean
      */
@@ -277,177 +449,1081 @@ public class FTPUtils {
             return false;
         }
 
-        // 判断目录是否存在
-        if (this.cheackDirectoryIsExist(directory)) {
-            return true;
-        }
-
-        Boolean success = false;
-        boolean tmpMkdirs = false;
-        String[] subDirs = directory.split("/");
-
-        // check if is absolute path
-        if (directory.substring(0, 1).equalsIgnoreCase("/")) {
-            subDirs[0] = "/" + subDirs[0];
-        }
-
         try {
-            // 开启服务器对UTF-8的支持，如果服务器支持就用UTF-8编码，否则就使用本地编码（GBK）.
-            if (FTPReply.isPositiveCompletion(ftp.sendCommand("OPTS UTF8", "ON"))) {
-                localCharset = "UTF-8";
-            }
-            // 进入根目录
-            ftp.changeWorkingDirectory(subDirs[0]);
-            ftp.setControlEncoding(localCharset);
-            String workingDirectory = ftp.printWorkingDirectory();
-            logger.debug("current WorkingDirectory:" + workingDirectory);
-            for (String subDir : subDirs) {
-                // encoding
-                String strSubDir = new String(subDir.getBytes(localCharset), serverCharset);
-                tmpMkdirs = ftp.makeDirectory(strSubDir);
-                logger.debug(String.format("tmpMkdirs {%s} is {%s}", strSubDir, String.valueOf(tmpMkdirs)));
-                boolean tmpDoCommand = ftp.sendSiteCommand("chmod 755 " + strSubDir);
-                logger.debug("tmpDoCommand:" + tmpDoCommand);
-                ftp.changeWorkingDirectory(strSubDir);
-                success = success || tmpMkdirs;
-            }
+            return directoryMaker().mkdirs(absolutePath(directory));
         } catch (IOException e) {
             logger.debug(String.format("mkdirs directory {%s} failure.", directory));
             logger.error(e.getMessage(), e);
+            return false;
         }
 
-        return success;
-
     }
 
     /**
-     * 判断目录是否存在
+     * 使用绝对路径上传, 不依赖工作目录; 失败时使目录缓存失效
      * 
      * @param directory
+     * @param file
+     * @param input
      * @return boolean
+     * @throws IOException
      */
-    public boolean cheackDirectoryIsExist(String directory) {
-        try {
-            return ftp.changeWorkingDirectory(directory);
-        } catch (IOException e1) {
-            return false;
-        }
+    private boolean storeFile(String directory, File file, FileInputStream input) {
+        return store(directory, file, input, 0, compression).isSuccess();
     }
 
-
     /**
-     * 下载链接配置
+     * 从offset开始上传, offset大于0时用APPE追加到服务器文件
      * 
-     * @param f
-     * @param localBaseDir 本地目录
-     * @param remoteBaseDir 远程目录
-     * @throws Exception
+     * @param directory
+     * @param file
+     * @param input 文件输入流
+     * @param offset 服务器已有的字节数
+     * @param compression 压缩策略
+     * @return TransferResult 失败时包含服务器应答或传输异常
      */
-    public boolean down(String localBaseDir, String remoteBaseDir) {
-        if (this.connectFtp()) {
-            try {
-                FTPFile[] files = null;
-                boolean changedir = ftp.changeWorkingDirectory(remoteBaseDir);
-                if (changedir) {
-                    ftp.setControlEncoding("GBK");
-                    files = ftp.listFiles();
-                    for (int i = 0; i < files.length; i++) {
-                        downloadFile(files[i], localBaseDir, remoteBaseDir);
-                    }
+    private TransferResult store(String directory, File file, FileInputStream input, long offset, CompressionPolicy compression) {
+        String absoluteDirectory = absolutePath(directory);
+        String remotePath = RemotePaths.join(absoluteDirectory, file.getName());
+        if (journal != null && journal.isCompleted(file, remotePath)) {
+            logger.info(String.format("ftp upload file [%s] to [%s] already completed in journal", file, remotePath));
+            return TransferResult.success(file.getPath(), remotePath, 0, 0);
+        }
+        String targetPath = publish.targetPath(remotePath);
+        long size = file.length() - offset;
+        long start = System.currentTimeMillis();
+        started(TransferDirection.UPLOAD, file.getPath(), remotePath, size);
+        TransferResult result;
+        try {
+            if (journal != null) {
+                journal.started(file, remotePath);
+            }
+            ftp().setDeflateMode(compression.shouldCompress(file));
+            Map<ChecksumAlgorithm, String> hashCommands = hashCommands();
+            ChecksumAlgorithm algorithm = integrity.choose(hashCommands.keySet());
+            StreamDigest digest = integrity.newDigest(algorithm);
+            if (digest != null) {
+                digest.update(file, offset);
+            }
+            if (FTPTransfers.store(ftp(), targetPath, input.getChannel(), offset, progress(TransferDirection.UPLOAD, remotePath, size), digest)) {
+                result = TransferResult.success(file.getPath(), remotePath, size, System.currentTimeMillis() - start);
+                result = verify(result, targetPath, file.length(), digest, hashCommands.get(algorithm));
+                if (result.isSuccess() && publish.isAtomic()) {
+                    publish(targetPath, remotePath);
                 }
-                return true;
-            } catch (Exception e) {
-                logger.error(e.getMessage(), e);
-                return false;
+                if (result.isSuccess() && journal != null) {
+                    journal.completed(file, remotePath);
+                }
+            } else {
+                directoryCache.invalidate(serverKey(), absoluteDirectory);
+                FTPReplyException error = new FTPReplyException(ftp().getReplyCode(), String.format("ftp store file [%s] to [%s] failure: %s", file, directory, ftp().getReplyString()));
+                logger.error(error.getMessage());
+                result = TransferResult.failure(file.getPath(), remotePath, System.currentTimeMillis() - start, error);
             }
-        } else {
-            return false;
+        } catch (IOException e) {
+            logger.error(String.format("ftp store file [%s] to [%s] error", file, directory), e);
+            result = TransferResult.failure(file.getPath(), remotePath, System.currentTimeMillis() - start, e);
         }
-
+        completed(TransferDirection.UPLOAD, result);
+        return result;
     }
 
-
     /**
+     * 临时文件改名为最终文件名; 服务器不允许覆盖已有文件时先删除再改名
      * 
-     * 下载FTP文件 当你需要下载FTP文件的时候，调用此方法 根据<b>获取的文件名，本地地址，远程地址</b>进行下载
-     * 
-     * @param ftpFile
-     * @param relativeLocalPath
-     * @param relativeRemotePath
+     * @param tempPath
+     * @param remotePath
+     * @throws IOException
      */
-    public void downloadFile(FTPFile ftpFile, String relativeLocalPath, String relativeRemotePath) {
-        if (ftpFile.isFile()) {
-            OutputStream outputStream = null;
-            try {
-                File locaFile = new File(relativeLocalPath + ftpFile.getName());
-                // 判断文件是否存在，存在则返回
-                if (locaFile.exists()) {
+    private void publish(String tempPath, String remotePath) throws IOException {
+        if (ftp().rename(tempPath, remotePath)) {
+            return;
+        }
+        if (ftp().deleteFile(remotePath) && ftp().rename(tempPath, remotePath)) {
+            return;
+        }
+        throw new FTPReplyException(ftp().getReplyCode(), String.format("ftp rename [%s] to [%s] failure: %s", tempPath, remotePath, ftp().getReplyString()));
+    }
+
+    private void discard(String tempPath) {
+        try {
+            // 传输中断时连接已断开, 换一个连接删除
+            if (!ftp().isConnected()) {
+                closeFtp();
+                if (!connectFtp()) {
                     return;
-                } else {
-                    outputStream = new FileOutputStream(relativeLocalPath + ftpFile.getName());
-                    ftp.retrieveFile(ftpFile.getName(), outputStream);
-                    outputStream.flush();
-                    outputStream.close();
-                }
-            } catch (Exception e) {
-                logger.error(e);
-            } finally {
-                IOUtils.closeQuietly(outputStream);
-            }
-        } else {
-            String newlocalRelatePath = relativeLocalPath + ftpFile.getName();
-            String newRemote = relativeRemotePath + ftpFile.getName();
-            File fl = new File(newlocalRelatePath);
-            if (!fl.exists()) {
-                fl.mkdirs();
-            }
-            try {
-                newlocalRelatePath = newlocalRelatePath + '/';
-                newRemote = newRemote + "/";
-                String currentWorkDir = ftpFile.getName();
-                boolean changedir = ftp.changeWorkingDirectory(currentWorkDir);
-                if (changedir) {
-                    FTPFile[] files = null;
-                    files = ftp.listFiles();
-                    for (int i = 0; i < files.length; i++) {
-                        downloadFile(files[i], newlocalRelatePath, newRemote);
-                    }
-                }
-                if (changedir) {
-                    ftp.changeToParentDirectory();
                 }
-            } catch (Exception e) {
-                logger.error(e);
             }
+            ftp().deleteFile(tempPath);
+        } catch (IOException e) {
+            logger.debug(String.format("ftp delete temp file [%s] failure: %s", tempPath, e.getMessage()));
         }
     }
 
+    /**
+     * 服务器能计算的摘要, 校验策略不比较摘要时为空
+     */
+    private Map<ChecksumAlgorithm, String> hashCommands() throws IOException {
+        if (integrity.getMode() != IntegrityPolicy.Mode.DIGEST) {
+            return Collections.emptyMap();
+        }
+        return FTPFiles.hashCommands(ftp());
+    }
 
-    public String getUsername() {
-        return username;
+    /**
+     * 按校验策略比较两端: 服务器能计算摘要时比较摘要, 否则比较大小
+     * 
+     * @param result 传输成功的结果
+     * @param remotePath 服务器文件
+     * @param localSize 本地文件大小
+     * @param digest 传输中计算的摘要, 可为null
+     * @param hashCommand 服务器计算摘要的命令, 可为null
+     * @return TransferResult 校验不通过时为失败
+     * @throws IOException
+     */
+    private TransferResult verify(TransferResult result, String remotePath, long localSize, StreamDigest digest, String hashCommand)
+            throws IOException {
+        if (!integrity.isEnabled()) {
+            return result;
+        }
+        String remoteDigest = hashCommand == null ? null : FTPFiles.hash(ftp(), hashCommand, digest.getAlgorithm(), remotePath);
+        TransferVerification verification = remoteDigest != null ? TransferVerification.digest(hashCommand, digest, remoteDigest, localSize)
+                : TransferVerification.size(digest, localSize, this.remoteSize(remotePath));
+        result = result.withVerification(verification);
+        if (!verification.isVerified()) {
+            logger.error(result.getError().getMessage());
+        }
+        return result;
     }
 
-    public String getPassword() {
-        return password;
+    /**
+     * 设置了监听时, 把传输进度转给监听
+     */
+    private CopyStreamListener progress(TransferDirection direction, String remotePath, long size) {
+        return listener == null ? null : new FTPProgressListener(listener, direction, remotePath, size);
     }
 
-    public String getHost() {
-        return host;
+    private void started(TransferDirection direction, String localPath, String remotePath, long size) {
+        metrics.transferStarted(direction, localPath, remotePath, size);
+        if (listener != null) {
+            listener.transferStarted(direction, localPath, remotePath, size);
+        }
     }
 
-    public int getPort() {
-        return port;
+    private void completed(TransferDirection direction, TransferResult result) {
+        metrics.transferCompleted(direction, result);
+        if (listener != null) {
+            listener.transferCompleted(direction, result);
+        }
     }
 
-    public void setUsername(String username) {
-        this.username = username;
+    /**
+     * 多连接传输引擎的批量结果, 只通知transferCompleted
+     */
+    private BatchReport completed(TransferDirection direction, BatchReport report) {
+        metrics.record(direction, report);
+        if (listener != null) {
+            for (TransferResult result : report.getResults()) {
+                listener.transferCompleted(direction, result);
+            }
+        }
+        return report;
     }
 
-    public void setPassword(String password) {
-        this.password = password;
+    /**
+     * 相对路径按登录目录解析
+     * 
+     * @param path
+     * @return String
+     */
+    private String absolutePath(String path) {
+        return RemotePaths.absolute(ftp().getHomeDirectory(), path);
     }
 
-    public void setHost(String host) {
+    /**
+     * 按目录计划创建批量上传的目标目录, 须已调用connectFtp
+     * 
+     * @param directoryList 各文件的服务器目录, 可重复
+     * @return Set 创建失败的目录(绝对路径)及空白的目录
+     * @throws IOException
+     */
+    private Set<String> prepareDirectories(List<String> directoryList) throws IOException {
+        RemoteDirectoryPlan plan = new RemoteDirectoryPlan();
+        Set<String> blank = new HashSet<>();
+        for (String directory : new HashSet<>(directoryList)) {
+            if (StringUtils.isBlank(directory)) {
+                blank.add(directory);
+            } else {
+                plan.add(absolutePath(directory));
+            }
+        }
+        Set<String> failed = directoryMaker().mkdirs(plan);
+        failed.addAll(blank);
+        return failed;
+    }
+
+    private RemoteDirectoryMaker directoryMaker() {
+        return new RemoteDirectoryMaker(directoryCache, serverKey(), new RemoteDirectoryMaker.Operations() {
+
+            @Override
+            public boolean exists(String directory) throws IOException {
+                metrics.recordDirectoryRoundTrip();
+                return ftp().changeWorkingDirectory(encode(directory));
+            }
+
+            @Override
+            public boolean mkdir(String directory) throws IOException {
+                String strDirectory = encode(directory);
+                metrics.recordDirectoryRoundTrip();
+                boolean tmpMkdirs = ftp().makeDirectory(strDirectory);
+                logger.debug(String.format("tmpMkdirs {%s} is {%s}", strDirectory, String.valueOf(tmpMkdirs)));
+                if (tmpMkdirs) {
+                    metrics.recordDirectoryRoundTrip();
+                    boolean tmpDoCommand = ftp().sendSiteCommand("chmod 755 " + strDirectory);
+                    logger.debug("tmpDoCommand:" + tmpDoCommand);
+                }
+                return tmpMkdirs;
+            }
+        });
+    }
+
+    /**
+     * 目录名编码
+     * 
+     * <p>
+     * 每个连接只协商一次OPTS UTF8, 如果服务器支持就用UTF-8编码，否则就使用本地编码（GBK）
+     * </p>
+     */
+    private String encode(String directory) throws IOException {
+        PooledFTPClient ftp = ftp();
+        if (!ftp.isUtf8Negotiated()) {
+            if (FTPReply.isPositiveCompletion(ftp.sendCommand("OPTS UTF8", "ON"))) {
+                localCharset = "UTF-8";
+            }
+            ftp.setNegotiatedEncoding(localCharset);
+        } else {
+            // 连接可能由同一服务器的其它实例协商过, 服务器已切换到UTF-8时沿用
+            if ("UTF-8".equals(ftp.getNegotiatedEncoding())) {
+                localCharset = "UTF-8";
+            }
+            ftp.setControlEncoding(localCharset);
+        }
+        return new String(directory.getBytes(localCharset), serverCharset);
+    }
+
+    /**
+     * 判断目录是否存在
+     * 
+     * @param directory
+     * @return boolean
+     */
+    public boolean cheackDirectoryIsExist(String directory) {
+        try {
+            return ftp().changeWorkingDirectory(directory);
+        } catch (IOException e1) {
+            return false;
+        }
+    }
+
+
+    private long remoteSize(String remotePath) throws IOException {
+        return FTPFiles.size(ftp(), remotePath);
+    }
+
+    /**
+     * 下载单个文件, 支持断点续传
+     * 
+     * <p>
+     * resume为true时保留本地未下载完的文件, 用REST从本地文件大小处继续下载; 本地文件大小与服务器相同时不再下载
+     * </p>
+     * 
+     * @param directory 远程目录
+     * @param remoteFileName 服务器文件名称
+     * @param localFile 本地文件路径
+     * @param resume 是否续传
+     * @return boolean
+     */
+    public boolean downloadFile(String directory, String remoteFileName, String localFile, boolean resume) {
+        return download(directory, remoteFileName, localFile, resume).isSuccess();
+    }
+
+    @Override
+    public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume) {
+        return download(directory, remoteFileName, localFile, resume, compression);
+    }
+
+    /**
+     * 按指定的压缩策略下载单个文件, 只能按文件名判断是否压缩
+     * 
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @param localFile 本地文件
+     * @param resume 是否续传
+     * @param compression 压缩策略, 服务器不支持MODE Z时不压缩
+     * @return TransferResult
+     */
+    public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume, CompressionPolicy compression) {
+
+        long start = System.currentTimeMillis();
+        if (!this.connectFtp()) {
+            return TransferResult.failure(localFile, RemotePaths.join(directory, remoteFileName), 0,
+                    new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port)));
+        }
+
+        File file = new File(localFile);
+        String remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+        boolean started = false;
+        TransferResult result;
+        try {
+            long offset = 0;
+            long size = -1;
+            if (resume && file.exists()) {
+                long remoteSize = this.remoteSize(remotePath);
+                if (remoteSize == file.length()) {
+                    logger.info(String.format("ftp download file [%s] already complete at [%s]", remotePath, localFile));
+                    return TransferResult.success(localFile, remotePath, 0, System.currentTimeMillis() - start);
+                }
+                if (remoteSize > file.length()) {
+                    offset = file.length();
+                    size = remoteSize - offset;
+                }
+            }
+            started(TransferDirection.DOWNLOAD, localFile, remotePath, size);
+            started = true;
+            ftp().setDeflateMode(compression.shouldCompress(remoteFileName, size));
+            Map<ChecksumAlgorithm, String> hashCommands = hashCommands();
+            ChecksumAlgorithm algorithm = integrity.choose(hashCommands.keySet());
+            StreamDigest digest = integrity.newDigest(algorithm);
+            if (digest != null) {
+                digest.update(file, offset);
+            }
+            if (FTPTransfers.retrieve(ftp(), remotePath, file, offset, progress(TransferDirection.DOWNLOAD, remotePath, size), digest)) {
+                result = TransferResult.success(localFile, remotePath, file.length() - offset, System.currentTimeMillis() - start);
+                result = verify(result, remotePath, file.length(), digest, hashCommands.get(algorithm));
+                if (!result.isSuccess()) {
+                    // 不保留校验失败的文件, 避免续传时当作已下载完成
+                    file.delete();
+                } else {
+                    logger.info(String.format("ftp download file [%s] save to [%s] from offset [%s]", remotePath, localFile, offset));
+                }
+            } else {
+                FTPReplyException error = new FTPReplyException(ftp().getReplyCode(), String.format("ftp retrieve file [%s] failure: %s", remotePath, ftp().getReplyString()));
+                logger.error(error.getMessage());
+                result = TransferResult.failure(localFile, remotePath, System.currentTimeMillis() - start, error);
+            }
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            result = TransferResult.failure(localFile, remotePath, System.currentTimeMillis() - start, e);
+        } finally {
+            closeFtp();
+        }
+        if (started) {
+            completed(TransferDirection.DOWNLOAD, result);
+        }
+        return result;
+
+    }
+
+    /**
+     * 从输入流上传, 服务器目录不存在时创建
+     * 
+     * <p>
+     * 发布方式、校验策略和压缩策略与上传本地文件相同
+     * </p>
+     * 
+     * @param in 输入流, 读到结束为止, 不关闭
+     * @param length 字节数, 未知时为-1; 已知时实际字节数不符视为失败
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @return TransferResult localPath为null
+     */
+    @Override
+    public TransferResult upload(InputStream in, long length, String directory, String remoteFileName) {
+
+        long start = System.currentTimeMillis();
+        String remotePath = RemotePaths.join(directory, remoteFileName);
+        if (!this.connectFtp()) {
+            return TransferResult.failure(null, remotePath, 0, new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port)));
+        }
+
+        boolean started = false;
+        String targetPath = null;
+        TransferResult result;
+        try {
+            if (!this.mkdirs(directory)) {
+                throw new IOException(String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", host, port, directory));
+            }
+            remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+            targetPath = publish.targetPath(remotePath);
+            started(TransferDirection.UPLOAD, null, remotePath, length);
+            started = true;
+            ftp().setDeflateMode(compression.shouldCompress(remoteFileName, length));
+            Map<ChecksumAlgorithm, String> hashCommands = hashCommands();
+            ChecksumAlgorithm algorithm = integrity.choose(hashCommands.keySet());
+            StreamDigest digest = integrity.newDigest(algorithm);
+            long bytes = FTPTransfers.store(ftp(), targetPath, in, progress(TransferDirection.UPLOAD, remotePath, length), digest);
+            if (bytes < 0) {
+                directoryCache.invalidate(serverKey(), RemotePaths.parent(remotePath));
+                throw new FTPReplyException(ftp().getReplyCode(), String.format("ftp store stream to [%s] failure: %s", remotePath, ftp().getReplyString()));
+            }
+            if (length >= 0 && bytes != length) {
+                throw new IOException(String.format("ftp store stream to [%s] expected [%s] bytes but read [%s]", remotePath, length, bytes));
+            }
+            result = TransferResult.success(null, remotePath, bytes, System.currentTimeMillis() - start);
+            result = verify(result, targetPath, bytes, digest, hashCommands.get(algorithm));
+            if (result.isSuccess() && publish.isAtomic()) {
+                publish(targetPath, remotePath);
+            }
+        } catch (IOException e) {
+            logger.error(String.format("ftp store stream to [%s] error", remotePath), e);
+            result = TransferResult.failure(null, remotePath, System.currentTimeMillis() - start, e);
+        }
+        if (!result.isSuccess() && publish.isAtomic() && targetPath != null) {
+            // 流无法续传, 不保留临时文件
+            discard(targetPath);
+        }
+        closeFtp();
+        if (started) {
+            completed(TransferDirection.UPLOAD, result);
+        }
+        return result;
+
+    }
+
+    /**
+     * 下载到输出流
+     * 
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @param out 输出流, 不关闭
+     * @return TransferResult localPath为null
+     */
+    @Override
+    public TransferResult download(String directory, String remoteFileName, OutputStream out) {
+
+        long start = System.currentTimeMillis();
+        String remotePath = RemotePaths.join(directory, remoteFileName);
+        if (!this.connectFtp()) {
+            return TransferResult.failure(null, remotePath, 0, new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port)));
+        }
+
+        TransferResult result;
+        remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+        started(TransferDirection.DOWNLOAD, null, remotePath, -1);
+        try {
+            ftp().setDeflateMode(compression.shouldCompress(remoteFileName, -1));
+            Map<ChecksumAlgorithm, String> hashCommands = hashCommands();
+            ChecksumAlgorithm algorithm = integrity.choose(hashCommands.keySet());
+            StreamDigest digest = integrity.newDigest(algorithm);
+            long bytes = FTPTransfers.retrieve(ftp(), remotePath, out, progress(TransferDirection.DOWNLOAD, remotePath, -1), digest);
+            if (bytes < 0) {
+                throw new FTPReplyException(ftp().getReplyCode(), String.format("ftp retrieve file [%s] failure: %s", remotePath, ftp().getReplyString()));
+            }
+            result = TransferResult.success(null, remotePath, bytes, System.currentTimeMillis() - start);
+            result = verify(result, remotePath, bytes, digest, hashCommands.get(algorithm));
+        } catch (IOException e) {
+            logger.error(String.format("ftp retrieve file [%s] to stream error", remotePath), e);
+            result = TransferResult.failure(null, remotePath, System.currentTimeMillis() - start, e);
+        } finally {
+            closeFtp();
+        }
+        completed(TransferDirection.DOWNLOAD, result);
+        return result;
+
+    }
+
+    /**
+     * 上传内存中的内容
+     * 
+     * @param data 内容
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @return TransferResult localPath为null
+     */
+    public TransferResult upload(byte[] data, String directory, String remoteFileName) {
+        return upload(new ByteArrayInputStream(data), data.length, directory, remoteFileName);
+    }
+
+    /**
+     * 上传缓冲区从position到limit的内容, position随上传前进
+     * 
+     * @param data 缓冲区, 可以是direct或映射的缓冲区
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @return TransferResult localPath为null
+     */
+    public TransferResult upload(ByteBuffer data, String directory, String remoteFileName) {
+        return upload(ByteBufferStreams.inputStream(data), data.remaining(), directory, remoteFileName);
+    }
+
+    /**
+     * 下载到缓冲区, 从position开始写入; 文件超出缓冲区剩余空间时失败
+     * 
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @param buffer 缓冲区, position随写入前进
+     * @return TransferResult localPath为null
+     */
+    public TransferResult download(String directory, String remoteFileName, ByteBuffer buffer) {
+        return download(directory, remoteFileName, ByteBufferStreams.outputStream(buffer));
+    }
+
+    /**
+     * 打开服务器文件的输入流
+     * 
+     * <p>
+     * 流使用单独借出的连接, 不占用当前线程的连接, 可以交给其它线程读取; 读完并关闭后归还连接, 中途关闭时销毁连接。
+     * 不执行校验策略
+     * </p>
+     * 
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @return InputStream
+     * @throws IOException 文件不存在或服务器拒绝
+     */
+    @Override
+    public InputStream openInputStream(String directory, String remoteFileName) throws IOException {
+        // 连接归还时已回到登录目录, 相对路径按登录目录解析
+        String remotePath = RemotePaths.join(directory, remoteFileName);
+        RemoteRangeReader reader = rangeReader();
+        long size = reader.size(remotePath);
+        if (size < 0) {
+            throw new FileNotFoundException(String.format("ftp file [%s] not found", remotePath));
+        }
+        return reader.openRange(remotePath, 0, size);
+    }
+
+    /**
+     * 按范围读取, 每个范围REST+RETR, 未读到文件末尾时用ABOR中止传输, 连接仍归还连接池
+     */
+    @Override
+    public RemoteRangeReader rangeReader() {
+        return new FTPRangeReader(pool, serverKey());
+    }
+
+    /**
+     * 随机读取服务器文件的通道
+     * 
+     * <p>
+     * 只传输读到的块, 读取大文件的头部或尾部不必下载整个文件; 顺序读取时自动预读。cache可以在多个通道间共用,
+     * 为null时使用通道自己的缓存(64K * 64块)。打开时用SIZE和MDTM查询文件属性
+     * </p>
+     * 
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @param cache 块缓存
+     * @return RemoteByteChannel
+     * @throws IOException 文件不存在或服务器拒绝
+     */
+    public RemoteByteChannel openChannel(String directory, String remoteFileName, RemoteBlockCache cache) throws IOException {
+        // 连接归还时已回到登录目录, 相对路径按登录目录解析
+        String remotePath = RemotePaths.join(directory, remoteFileName);
+        if (!this.connectFtp()) {
+            throw new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+        }
+        RemoteEntry entry;
+        try {
+            long size = this.remoteSize(remotePath);
+            if (size < 0) {
+                throw new FileNotFoundException(String.format("ftp file [%s] not found", remotePath));
+            }
+            // 块缓存的键包含修改时间, 同样大小的改写不会读到旧的块
+            entry = new RemoteEntry(remoteFileName, remotePath, false, size, FTPFiles.modified(ftp(), remotePath));
+        } finally {
+            closeFtp();
+        }
+        return RemoteByteChannel.open(rangeReader(), entry, cache == null ? new RemoteBlockCache(64 * 1024, 64) : cache);
+    }
+
+    /**
+     * 服务器之间直接传输(FXP), 数据不经过本机
+     * 
+     * <p>
+     * 目标服务器PASV, 源服务器PORT到目标的数据端口, 再分别发送STOR和RETR。很多服务器默认拒绝PORT到第三方地址,
+     * 失败时调用方应改用流式中转。目标的目录创建和发布方式与普通上传相同, 开启校验时比较两端大小
+     * </p>
+     * 
+     * @param directory 源服务器目录
+     * @param remoteFileName 源服务器文件名称
+     * @param target 目标服务器, 不能是同一个实例
+     * @param targetDirectory 目标服务器目录
+     * @param targetFileName 目标服务器文件名称
+     * @return TransferResult localPath为源文件路径, remotePath为目标文件路径
+     */
+    public TransferResult fxp(String directory, String remoteFileName, FTPUtils target, String targetDirectory, String targetFileName) {
+
+        long start = System.currentTimeMillis();
+        String sourcePath = RemotePaths.join(directory, remoteFileName);
+        String remotePath = RemotePaths.join(targetDirectory, targetFileName);
+        if (target == this) {
+            return TransferResult.failure(sourcePath, remotePath, 0, new IOException("ftp fxp needs two distinct clients"));
+        }
+        if (!this.connectFtp() || !target.connectFtp()) {
+            closeFtp();
+            target.closeFtp();
+            return TransferResult.failure(sourcePath, remotePath, 0,
+                    new IOException(String.format("ftp fxp [%s:%s] to [%s:%s] connected failure", host, port, target.host, target.port)));
+        }
+
+        boolean started = false;
+        boolean pending = false;
+        TransferResult result;
+        try {
+            if (!target.mkdirs(targetDirectory)) {
+                throw new IOException(String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", target.host, target.port, targetDirectory));
+            }
+            sourcePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+            remotePath = RemotePaths.join(target.absolutePath(targetDirectory), targetFileName);
+            String targetPath = target.publish.targetPath(remotePath);
+            long size = remoteSize(sourcePath);
+            target.started(TransferDirection.UPLOAD, sourcePath, remotePath, size);
+            started = true;
+            ftp().setDeflateMode(false);
+            target.ftp().setDeflateMode(false);
+            String address = FTPFiles.passiveAddress(target.ftp());
+            if (!FTPReply.isPositiveCompletion(ftp().sendCommand("PORT", address))) {
+                throw new FTPReplyException(ftp().getReplyCode(), String.format("ftp fxp PORT refused: %s", ftp().getReplyString()));
+            }
+            if (!FTPReply.isPositivePreliminary(target.ftp().stor(targetPath))) {
+                throw new FTPReplyException(target.ftp().getReplyCode(), String.format("ftp fxp store [%s] failure: %s", remotePath,
+                        target.ftp().getReplyString()));
+            }
+            // 目标已在等待数据连接, 之后失败只能断开连接
+            pending = true;
+            if (!FTPReply.isPositivePreliminary(ftp().retr(sourcePath))) {
+                throw new FTPReplyException(ftp().getReplyCode(), String.format("ftp fxp retrieve [%s] failure: %s", sourcePath,
+                        ftp().getReplyString()));
+            }
+            boolean sent = ftp().completePendingCommand();
+            boolean stored = target.ftp().completePendingCommand();
+            pending = false;
+            if (!sent || !stored) {
+                PooledFTPClient failed = sent ? target.ftp() : ftp();
+                throw new FTPReplyException(failed.getReplyCode(), String.format("ftp fxp [%s] to [%s] failure: %s", sourcePath, remotePath,
+                        failed.getReplyString()));
+            }
+            result = TransferResult.success(sourcePath, remotePath, size, System.currentTimeMillis() - start);
+            if (target.integrity.isEnabled()) {
+                result = result.withVerification(TransferVerification.size(null, size, target.remoteSize(targetPath)));
+            }
+            if (result.isSuccess() && target.publish.isAtomic()) {
+                target.publish(targetPath, remotePath);
+            }
+        } catch (IOException e) {
+            logger.error(String.format("ftp fxp [%s] to [%s] error", sourcePath, remotePath), e);
+            result = TransferResult.failure(sourcePath, remotePath, System.currentTimeMillis() - start, e);
+        } finally {
+            if (pending) {
+                disconnectQuietly(ftp());
+                disconnectQuietly(target.ftp());
+            }
+            closeFtp();
+            target.closeFtp();
+        }
+        if (started) {
+            target.completed(TransferDirection.UPLOAD, result);
+        }
+        return result;
+
+    }
+
+    private static void disconnectQuietly(PooledFTPClient ftp) {
+        try {
+            ftp.disconnect();
+        } catch (IOException e) {
+            // 连接随后由连接池销毁
+        }
+    }
+
+    @Override
+    public boolean createDirectory(String directory) {
+        if (!this.connectFtp()) {
+            return false;
+        }
+        try {
+            return this.mkdirs(directory);
+        } finally {
+            closeFtp();
+        }
+    }
+
+    @Override
+    public List<RemoteEntry> list(String directory) throws IOException {
+        if (!this.connectFtp()) {
+            throw new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+        }
+        try {
+            ftp().setControlEncoding(localCharset);
+            return FTPFiles.list(ftp(), absolutePath(directory));
+        } finally {
+            closeFtp();
+        }
+    }
+
+    @Override
+    public int list(String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) throws IOException {
+        if (!this.connectFtp()) {
+            throw new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+        }
+        try {
+            ftp().setControlEncoding(localCharset);
+            return FTPFiles.visit(ftp(), absolutePath(directory), filter, visitor);
+        } finally {
+            closeFtp();
+        }
+    }
+
+    /**
+     * 下载链接配置
+     * 
+     * @param f
+     * @param localBaseDir 本地目录
+     * @param remoteBaseDir 远程目录
+     * @throws Exception
+     */
+    public boolean down(String localBaseDir, String remoteBaseDir) {
+        if (this.connectFtp()) {
+            try {
+                FTPFile[] files = null;
+                boolean changedir = ftp().changeWorkingDirectory(remoteBaseDir);
+                if (changedir) {
+                    ftp().setControlEncoding("GBK");
+                    files = ftp().listFiles();
+                    for (int i = 0; i < files.length; i++) {
+                        downloadFile(files[i], localBaseDir, remoteBaseDir);
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+                return false;
+            } finally {
+                closeFtp();
+            }
+        } else {
+            return false;
+        }
+
+    }
+
+
+    /**
+     * 多连接分段下载单个大文件
+     * 
+     * <p>
+     * 每段使用连接池中的一个连接从REST偏移处读取, 直接按位置写入预分配的临时文件, 全部完成后改名。
+     * 按校验策略比较两端, 摘要由下载完成的临时文件计算, 校验通过后才改名, 不通过时原有的本地文件不变
+     * </p>
+     * 
+     * @param directory 远程目录
+     * @param remoteFileName 服务器文件名称
+     * @param localFile 本地文件路径
+     * @param segments 分段数, 不超过连接池每个服务器的最大连接数
+     * @return TransferResult
+     */
+    public TransferResult downloadFileSegmented(final String directory, final String remoteFileName, String localFile, int segments) {
+        int connections = Math.min(segments, pool.getConfig().getMaxTotalPerKey());
+        SegmentedDownloader downloader = new SegmentedDownloader(rangeReader(), connections);
+        DownloadVerifier verifier = null;
+        if (integrity.isEnabled()) {
+            verifier = new DownloadVerifier() {
+                @Override
+                public TransferResult verify(TransferResult result, File downloaded) {
+                    return verifyDownloaded(result, directory, remoteFileName, downloaded);
+                }
+            };
+        }
+        TransferResult result = downloader.download(RemotePaths.join(directory, remoteFileName), new File(localFile), verifier);
+        metrics.record(TransferDirection.DOWNLOAD, result);
+        if (listener != null) {
+            listener.transferCompleted(TransferDirection.DOWNLOAD, result);
+        }
+        return result;
+    }
+
+    /**
+     * 按校验策略比较下载完成的临时文件和服务器文件
+     */
+    private TransferResult verifyDownloaded(TransferResult result, String directory, String remoteFileName, File file) {
+        if (!this.connectFtp()) {
+            return TransferResult.failure(result.getLocalPath(), result.getRemotePath(), result.getElapsedMillis(),
+                    new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port)));
+        }
+        try {
+            String remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+            Map<ChecksumAlgorithm, String> hashCommands = hashCommands();
+            ChecksumAlgorithm algorithm = integrity.choose(hashCommands.keySet());
+            StreamDigest digest = integrity.newDigest(algorithm);
+            if (digest != null) {
+                digest.update(file, file.length());
+            }
+            result = verify(result, remotePath, file.length(), digest, hashCommands.get(algorithm));
+        } catch (IOException e) {
+            logger.error(String.format("ftp verify file [%s] error", result.getRemotePath()), e);
+            result = TransferResult.failure(result.getLocalPath(), result.getRemotePath(), result.getElapsedMillis(), e);
+        } finally {
+            closeFtp();
+        }
+        return result;
+    }
+
+    /**
+     * 多连接并行下载目录树
+     * 
+     * <p>
+     * 使用绝对路径, 列目录和下载文件分别由连接池中的多个连接并行执行; 本地已存在的文件跳过
+     * </p>
+     * 
+     * @param localBaseDir 本地目录
+     * @param remoteBaseDir 远程目录
+     * @param parallelism 并行连接数, 不超过连接池每个服务器的最大连接数
+     * @return BatchReport 每个下载文件的结果
+     */
+    public BatchReport downParallel(String localBaseDir, String remoteBaseDir, int parallelism) {
+        FTPTreeDownloader downloader = new FTPTreeDownloader(pool, serverKey(), parallelism);
+        downloader.setControlEncoding(localCharset);
+        return completed(TransferDirection.DOWNLOAD, downloader.download(remoteBaseDir, localBaseDir));
+    }
+
+    /**
+     * 多连接并行上传本地目录树, 上传全部文件
+     * 
+     * @param localBaseDir 本地目录
+     * @param remoteBaseDir 服务器目录
+     * @param parallelism 并行连接数
+     * @return BatchReport
+     */
+    public BatchReport uploadTree(String localBaseDir, String remoteBaseDir, int parallelism) {
+        LocalTreeUploader uploader = new LocalTreeUploader();
+        uploader.setParallelism(parallelism);
+        return uploadTree(localBaseDir, remoteBaseDir, uploader);
+    }
+
+    /**
+     * 多连接并行上传本地目录树
+     * 
+     * <p>
+     * 在一个连接上按目录计划建好服务器目录(跳过未变化的文件时在同一连接上列目录), 再交给uploadFileListParallel
+     * </p>
+     * 
+     * @param localBaseDir 本地目录
+     * @param remoteBaseDir 服务器目录
+     * @param uploader 筛选、跳过未变化文件及并行度的设置
+     * @return BatchReport 本次上传的文件及失败项
+     */
+    public BatchReport uploadTree(String localBaseDir, String remoteBaseDir, LocalTreeUploader uploader) {
+        if (!this.connectFtp()) {
+            IOException error = new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+            return new BatchReport(Collections.singletonList(TransferResult.failure(localBaseDir, remoteBaseDir, 0, error)), 0);
+        }
+        try {
+            return uploader.upload(new LocalTreeTarget() {
+
+                @Override
+                public Set<String> mkdirs(Collection<String> directories) throws IOException {
+                    Set<String> failed = prepareDirectories(new ArrayList<>(directories));
+                    Set<String> result = new HashSet<>();
+                    for (String directory : directories) {
+                        if (failed.contains(directory) || failed.contains(absolutePath(directory))) {
+                            result.add(directory);
+                        }
+                    }
+                    return result;
+                }
+
+                @Override
+                public List<RemoteEntry> list(String directory) throws IOException {
+                    ftp().setControlEncoding(localCharset);
+                    return FTPFiles.list(ftp(), absolutePath(directory));
+                }
+
+                @Override
+                public BatchReport upload(List<String> directoryList, List<String> fileList, int parallelism) {
+                    // 归还规划用的连接, 上传连接从连接池借出
+                    closeFtp();
+                    return uploadFileListParallel(directoryList, fileList, parallelism);
+                }
+            }, new File(localBaseDir), remoteBaseDir);
+        } finally {
+            closeFtp();
+        }
+    }
+
+    /**
+     * 增量同步目录树到本地
+     * 
+     * <p>
+     * 用MLSD(服务器不支持时用LIST)的大小和修改时间与清单比较, 只下载新增或变化的文件
+     * </p>
+     * 
+     * @param localBaseDir 本地目录
+     * @param remoteBaseDir 远程目录
+     * @param manifestFile 清单文件
+     * @param pruneUnchangedDirectories 修改时间未变的目录是否整棵跳过
+     * @return BatchReport 本次下载的文件及失败项
+     */
+    public BatchReport sync(String localBaseDir, String remoteBaseDir, String manifestFile, boolean pruneUnchangedDirectories) {
+        if (!this.connectFtp()) {
+            IOException error = new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+            return new BatchReport(Collections.singletonList(TransferResult.failure(localBaseDir, remoteBaseDir, 0, error)), 0);
+        }
+        try {
+            RemoteSync sync = new RemoteSync();
+            sync.setPruneUnchangedDirectories(pruneUnchangedDirectories);
+            return completed(TransferDirection.DOWNLOAD, sync.sync(new RemoteSyncSource() {
+
+                @Override
+                public List<RemoteEntry> list(String directory) throws IOException {
+                    reconnect();
+                    ftp().setControlEncoding(localCharset);
+                    return FTPFiles.list(ftp(), absolutePath(directory));
+                }
+
+                @Override
+                public void download(RemoteEntry entry, File localFile) throws IOException {
+                    reconnect();
+                    if (!FTPTransfers.retrieve(ftp(), entry.getPath(), localFile, 0, null)) {
+                        throw new FTPReplyException(ftp().getReplyCode(), String.format("ftp retrieve file [%s] failure: %s", entry.getPath(), ftp().getReplyString()));
+                    }
+                }
+
+                /**
+                 * 上一个文件传输中断时连接已断开, 换一个连接继续
+                 */
+                private void reconnect() throws IOException {
+                    if (!ftp().isConnected()) {
+                        closeFtp();
+                        if (!connectFtp()) {
+                            throw new IOException(String.format("ftp---Session ip[%s] port[%s] connected failure", host, port));
+                        }
+                    }
+                }
+            }, remoteBaseDir, new File(localBaseDir), new File(manifestFile)));
+        } finally {
+            closeFtp();
+        }
+    }
+
+    /**
+     * 
+     * 下载FTP文件 当你需要下载FTP文件的时候，调用此方法 根据<b>获取的文件名，本地地址，远程地址</b>进行下载
+     * 
+     * @param ftpFile
+     * @param relativeLocalPath
+     * @param relativeRemotePath
+     */
+    public void downloadFile(FTPFile ftpFile, String relativeLocalPath, String relativeRemotePath) {
+        if (ftpFile.isFile()) {
+            OutputStream outputStream = null;
+            try {
+                File locaFile = new File(relativeLocalPath + ftpFile.getName());
+                // 判断文件是否存在，存在则返回
+                if (locaFile.exists()) {
+                    return;
+                } else {
+                    outputStream = new FileOutputStream(relativeLocalPath + ftpFile.getName());
+                    ftp().retrieveFile(ftpFile.getName(), outputStream);
+                    outputStream.flush();
+                    outputStream.close();
+                }
+            } catch (Exception e) {
+                logger.error(e);
+            } finally {
+                IOUtils.closeQuietly(outputStream);
+            }
+        } else {
+            String newlocalRelatePath = relativeLocalPath + ftpFile.getName();
+            String newRemote = relativeRemotePath + ftpFile.getName();
+            File fl = new File(newlocalRelatePath);
+            if (!fl.exists()) {
+                fl.mkdirs();
+            }
+            try {
+                newlocalRelatePath = newlocalRelatePath + '/';
+                newRemote = newRemote + "/";
+                String currentWorkDir = ftpFile.getName();
+                boolean changedir = ftp().changeWorkingDirectory(currentWorkDir);
+                if (changedir) {
+                    FTPFile[] files = null;
+                    files = ftp().listFiles();
+                    for (int i = 0; i < files.length; i++) {
+                        downloadFile(files[i], newlocalRelatePath, newRemote);
+                    }
+                }
+                if (changedir) {
+                    ftp().changeToParentDirectory();
+                }
+            } catch (Exception e) {
+                logger.error(e);
+            }
+        }
+    }
+
+
+    /**
+     * 并行上传的工作者, 使用当前线程借出的连接
+     */
+    private class FTPBatchUploadWorker implements BatchUploadWorker {
+
+        // 已按计划创建目录时为创建失败的目录, 为null时逐个文件创建
+        private final Set<String> failedDirectories;
+
+        FTPBatchUploadWorker(Set<String> failedDirectories) {
+            this.failedDirectories = failedDirectories;
+        }
+
+        @Override
+        public TransferResult upload(File file, String directory) throws IOException {
+            boolean created = failedDirectories == null ? mkdirs(directory)
+                    : StringUtils.isNotBlank(directory) && !failedDirectories.contains(absolutePath(directory));
+            if (!created) {
+                throw new IOException(String.format("ftp---Session ip[%s] port[%s] create directory {%s} failure", host, port, directory));
+            }
+            FileInputStream in = new FileInputStream(file);
+            TransferResult result;
+            try {
+                result = store(directory, file, in, 0, compression);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            if (result.isSuccess()) {
+                logger.info(String.format("ftp connect{%s} upload file{%s} save to{%s}", host, file, directory));
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            closeFtp();
+        }
+
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public void setHost(String host) {
         this.host = host;
     }
 
@@ -455,4 +1531,106 @@ public class FTPUtils {
         this.port = port;
     }
 
+    public FTPClientPool getPool() {
+        return pool;
+    }
+
+    public void setPool(FTPClientPool pool) {
+        this.pool = pool;
+    }
+
+    public RemoteDirectoryCache getDirectoryCache() {
+        return directoryCache;
+    }
+
+    public void setDirectoryCache(RemoteDirectoryCache directoryCache) {
+        this.directoryCache = directoryCache;
+    }
+
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(TransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public CompressionPolicy getCompression() {
+        return compression;
+    }
+
+    /**
+     * 上传和下载单个文件、批量上传使用的压缩策略, 默认不压缩
+     * 
+     * @param compression
+     */
+    public void setCompression(CompressionPolicy compression) {
+        this.compression = compression;
+    }
+
+    public IntegrityPolicy getIntegrity() {
+        return integrity;
+    }
+
+    /**
+     * 传输校验策略, 默认不校验; 校验结果见TransferResult.getVerification
+     * 
+     * @param integrity
+     */
+    public void setIntegrity(IntegrityPolicy integrity) {
+        this.integrity = integrity;
+    }
+
+    public PublishPolicy getPublish() {
+        return publish;
+    }
+
+    /**
+     * 发布方式, 默认直接写入最终文件名
+     * 
+     * @param publish
+     */
+    public void setPublish(PublishPolicy publish) {
+        this.publish = publish;
+    }
+
+    public TransferJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * 上传日志, 已有完成记录且本地未修改的文件不再上传; 为null时不记录
+     * 
+     * @param journal
+     */
+    public void setJournal(TransferJournal journal) {
+        this.journal = journal;
+    }
+
+    public TransferListener getListener() {
+        return listener;
+    }
+
+    /**
+     * 设置传输进度监听
+     * 
+     * <p>
+     * 分段下载、并行下载目录树和增量同步只在结束时通知transferCompleted
+     * </p>
+     * 
+     * @param listener
+     */
+    public void setListener(TransferListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 当前服务器的连接池统计
+     * 
+     * @return PoolStats
+     */
+    public PoolStats getPoolStats() {
+        return pool.getStats(serverKey());
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一个文件分发到多台服务器的结果, 按目标顺序保存; 达到法定数返回时未完成的目标结果为null
+ */
+public class FanOutReport {
+
+    private final List<TransferResult> results;
+
+    private final int required;
+
+    private final long elapsedMillis;
+
+    private final CompletableFuture<FanOutReport> completion;
+
+    public FanOutReport(TransferResult[] results, int required, long elapsedMillis, CompletableFuture<FanOutReport> completion) {
+        this.results = Collections.unmodifiableList(Arrays.asList(results.clone()));
+        this.required = required;
+        this.elapsedMillis = elapsedMillis;
+        this.completion = completion;
+    }
+
+    /**
+     * 成功的目标数达到法定数
+     *
+     * @return boolean
+     */
+    public boolean isSuccess() {
+        return getSuccessCount() >= required;
+    }
+
+    /**
+     * 每个目标的结果, 与目标列表顺序一致
+     *
+     * @return List 未完成的为null
+     */
+    public List<TransferResult> getResults() {
+        return results;
+    }
+
+    public int getSuccessCount() {
+        int count = 0;
+        for (TransferResult result : results) {
+            if (result != null && result.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getFailureCount() {
+        int count = 0;
+        for (TransferResult result : results) {
+            if (result != null && !result.isSuccess()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 返回时仍在传输的目标数
+     *
+     * @return int
+     */
+    public int getPendingCount() {
+        return results.size() - getSuccessCount() - getFailureCount();
+    }
+
+    public int getRequired() {
+        return required;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * 所有目标都结束后的报告
+     *
+     * @return CompletableFuture
+     */
+    public CompletableFuture<FanOutReport> getCompletion() {
+        return completion;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("targets[%s] required[%s] success[%s] failures[%s] pending[%s] elapsed[%s ms]", results.size(), required,
+                getSuccessCount(), getFailureCount(), getPendingCount(), elapsedMillis);
+    }
+
+}
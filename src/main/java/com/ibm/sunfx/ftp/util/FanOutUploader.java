@@ -0,0 +1,196 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 把一个本地文件同时上传到多台服务器
+ *
+ * <p>
+ * 文件按窗口映射, 每个窗口只映射一次, 各目标读取同一映射的duplicate视图(见MappedWindows), 共用操作系统的页缓存,
+ * 文件只从磁盘读一次。各目标在自己的线程上传, 读取进度互不等待, 慢的服务器不会拖住其它服务器。
+ * 设置法定数quorum后, 成功的目标达到法定数即返回, 其余目标在后台继续, 结束后通过FanOutReport.getCompletion通知
+ * </p>
+ */
+public class FanOutUploader {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ExecutorService executor;
+
+    private int quorum;
+
+    private int windowSize = 64 * 1024 * 1024;
+
+    /**
+     * @param maxConcurrency 同时上传的目标数, 小于目标数时多出的目标排队
+     */
+    public FanOutUploader(int maxConcurrency) {
+        final AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(Math.max(1, maxConcurrency), Math.max(1, maxConcurrency), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "fan-out-upload-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * 上传到所有目标的同一目录
+     *
+     * @param localFile 本地文件
+     * @param directory 服务器目录, 不存在时创建
+     * @param targets 目标服务器
+     * @return FanOutReport 所有目标结束, 或成功数达到法定数, 或已不可能达到法定数时返回
+     */
+    public FanOutReport upload(String localFile, final String directory, List<? extends TransferClient> targets) {
+        final long start = System.currentTimeMillis();
+        final File file = new File(localFile);
+        final int count = targets.size();
+        final int required = quorum <= 0 ? count : Math.min(quorum, count);
+        final TransferResult[] results = new TransferResult[count];
+        final CompletableFuture<FanOutReport> completion = new CompletableFuture<>();
+        if (count == 0) {
+            FanOutReport report = new FanOutReport(results, required, 0, completion);
+            completion.complete(report);
+            return report;
+        }
+
+        final FileChannel channel;
+        final long size;
+        try {
+            channel = new FileInputStream(file).getChannel();
+            size = channel.size();
+        } catch (IOException e) {
+            logger.error(String.format("fan-out upload file [%s] unreadable", file), e);
+            for (int i = 0; i < count; i++) {
+                results[i] = TransferResult.failure(file.getPath(), RemotePaths.join(directory, file.getName()), 0, e);
+            }
+            FanOutReport report = new FanOutReport(results, required, 0, completion);
+            completion.complete(report);
+            return report;
+        }
+
+        final MappedWindows windows = new MappedWindows(channel, size, windowSize, count);
+        final int[] finished = new int[1];
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final TransferClient target = targets.get(i);
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    TransferResult result;
+                    InputStream in = windows.newInputStream();
+                    try {
+                        result = target.upload(in, size, directory, file.getName());
+                        result = new TransferResult(file.getPath(), result.getRemotePath(), result.isSuccess(), result.getBytes(),
+                                result.getElapsedMillis(), result.getError(), result.getVerification());
+                    } catch (RuntimeException e) {
+                        result = TransferResult.failure(file.getPath(), RemotePaths.join(directory, file.getName()), 0, e);
+                    } finally {
+                        // 释放这个目标没有读到的窗口
+                        IOUtils.closeQuietly(in);
+                    }
+                    FanOutReport report = null;
+                    synchronized (results) {
+                        results[index] = result;
+                        finished[0]++;
+                        results.notifyAll();
+                        if (finished[0] == count) {
+                            report = new FanOutReport(results, required, System.currentTimeMillis() - start, completion);
+                        }
+                    }
+                    if (report != null) {
+                        closeQuietly(channel);
+                        logger.info(String.format("fan-out upload [%s] to [%s]: %s", file, directory, report));
+                        completion.complete(report);
+                    }
+                }
+            });
+        }
+
+        synchronized (results) {
+            try {
+                while (finished[0] < count) {
+                    int success = 0;
+                    for (TransferResult result : results) {
+                        if (result != null && result.isSuccess()) {
+                            success++;
+                        }
+                    }
+                    // 达到法定数, 或失败过多已不可能达到
+                    if (success >= required || finished[0] - success > count - required) {
+                        break;
+                    }
+                    results.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new FanOutReport(results, required, System.currentTimeMillis() - start, completion);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 只读文件, 关闭失败不影响结果
+        }
+    }
+
+    public int getQuorum() {
+        return quorum;
+    }
+
+    /**
+     * 成功多少个目标即返回, 0表示等待全部目标
+     *
+     * @param quorum
+     */
+    public void setQuorum(int quorum) {
+        this.quorum = quorum;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 每次映射的字节数
+     *
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * 不再接受新的上传, 已提交的继续执行
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 传输校验策略
+ *
+ * <p>
+ * digest在传输的同时计算摘要, 服务器能计算同一算法的摘要时(ftp HASH/XCRC/XMD5, ssh执行sha256sum/md5sum)比较两端摘要,
+ * 否则退化为比较文件大小; 按preferred的顺序选择两端都支持的算法, 都不支持时本地按fallback计算, 摘要仍记录在结果中。
+ * size只比较文件大小, none不校验(默认)
+ * </p>
+ */
+public class IntegrityPolicy {
+
+    public enum Mode {
+        NONE, SIZE, DIGEST
+    }
+
+    private final Mode mode;
+
+    private final List<ChecksumAlgorithm> preferred;
+
+    // 服务器不能计算摘要时本地使用的算法
+    private ChecksumAlgorithm fallback = ChecksumAlgorithm.CRC32C;
+
+    public IntegrityPolicy(Mode mode, List<ChecksumAlgorithm> preferred) {
+        this.mode = mode;
+        this.preferred = Collections.unmodifiableList(preferred);
+    }
+
+    public static IntegrityPolicy none() {
+        return new IntegrityPolicy(Mode.NONE, Collections.<ChecksumAlgorithm> emptyList());
+    }
+
+    public static IntegrityPolicy size() {
+        return new IntegrityPolicy(Mode.SIZE, Collections.<ChecksumAlgorithm> emptyList());
+    }
+
+    /**
+     * 依次选择SHA-256, MD5, CRC32
+     *
+     * @return IntegrityPolicy
+     */
+    public static IntegrityPolicy digest() {
+        return digest(ChecksumAlgorithm.SHA_256, ChecksumAlgorithm.MD5, ChecksumAlgorithm.CRC32);
+    }
+
+    public static IntegrityPolicy digest(ChecksumAlgorithm... preferred) {
+        return new IntegrityPolicy(Mode.DIGEST, Arrays.asList(preferred));
+    }
+
+    /**
+     * 选择服务器也支持的算法
+     *
+     * @param offered 服务器支持的算法
+     * @return ChecksumAlgorithm 没有共同的算法时返回null
+     */
+    public ChecksumAlgorithm choose(Collection<ChecksumAlgorithm> offered) {
+        if (mode != Mode.DIGEST) {
+            return null;
+        }
+        for (ChecksumAlgorithm algorithm : preferred) {
+            if (offered.contains(algorithm)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 本地计算摘要的对象
+     *
+     * @param chosen choose选出的算法
+     * @return StreamDigest 不计算摘要时返回null
+     */
+    public StreamDigest newDigest(ChecksumAlgorithm chosen) {
+        if (mode != Mode.DIGEST) {
+            return null;
+        }
+        return new StreamDigest(chosen != null ? chosen : fallback);
+    }
+
+    public boolean isEnabled() {
+        return mode != Mode.NONE;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<ChecksumAlgorithm> getPreferred() {
+        return preferred;
+    }
+
+    public ChecksumAlgorithm getFallback() {
+        return fallback;
+    }
+
+    public void setFallback(ChecksumAlgorithm fallback) {
+        this.fallback = fallback;
+    }
+
+}
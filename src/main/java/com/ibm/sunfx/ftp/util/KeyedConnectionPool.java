@@ -0,0 +1,321 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按服务器(host/port/user)分组的线程安全连接池
+ *
+ * <p>
+ * borrow借出连接, release归还, 出错的连接用invalidate销毁。空闲较久的连接借出前先校验,
+ * 超过最大空闲时间的连接由后台线程回收。
+ * </p>
+ *
+ * @param <T> 连接类型
+ */
+public class KeyedConnectionPool<T> {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ConnectionFactory<T> factory;
+
+    private final PoolConfig config;
+
+    private final Map<ServerKey, Bucket<T>> buckets = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService evictor;
+
+    private volatile boolean closed;
+
+    public KeyedConnectionPool(ConnectionFactory<T> factory, PoolConfig config) {
+        this.factory = factory;
+        this.config = config;
+        if (config.getEvictionIntervalMillis() > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "connection-pool-evictor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            evictor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evict();
+                }
+            }, config.getEvictionIntervalMillis(), config.getEvictionIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            evictor = null;
+        }
+    }
+
+    /**
+     * 借出连接, 没有空闲连接且已达上限时等待maxWaitMillis
+     *
+     * @param key
+     * @return T
+     * @throws IOException
+     */
+    public T borrow(ServerKey key) throws IOException {
+        if (closed) {
+            throw new IOException("connection pool is closed");
+        }
+        Bucket<T> bucket = bucket(key);
+        long deadline = System.currentTimeMillis() + config.getMaxWaitMillis();
+        while (true) {
+            IdleConnection<T> idle = null;
+            synchronized (bucket) {
+                while (true) {
+                    idle = bucket.idle.pollFirst();
+                    if (idle != null) {
+                        bucket.active++;
+                        break;
+                    }
+                    if (bucket.active + bucket.idle.size() < config.getMaxTotalPerKey()) {
+                        bucket.active++;
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IOException(String.format("timeout waiting for connection to [%s], pool %s", key, stats(bucket)));
+                    }
+                    bucket.waits.incrementAndGet();
+                    try {
+                        bucket.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted waiting for connection to " + key, e);
+                    }
+                }
+            }
+
+            if (idle == null) {
+                try {
+                    T connection = factory.create(key);
+                    bucket.created.incrementAndGet();
+                    bucket.borrowed.incrementAndGet();
+                    return connection;
+                } catch (IOException | RuntimeException e) {
+                    synchronized (bucket) {
+                        bucket.active--;
+                        bucket.notifyAll();
+                    }
+                    throw e;
+                }
+            }
+
+            if (System.currentTimeMillis() - idle.since < config.getValidateAfterIdleMillis() || factory.validate(key, idle.connection)) {
+                bucket.borrowed.incrementAndGet();
+                return idle.connection;
+            }
+
+            bucket.validationFailures.incrementAndGet();
+            logger.debug(String.format("pool---connection to [%s] failed validation, discarded", key));
+            destroy(key, bucket, idle.connection);
+        }
+    }
+
+    /**
+     * 归还连接
+     *
+     * @param key
+     * @param connection
+     */
+    public void release(ServerKey key, T connection) {
+        if (connection == null) {
+            return;
+        }
+        Bucket<T> bucket = bucket(key);
+        try {
+            factory.passivate(key, connection);
+        } catch (IOException e) {
+            logger.debug(String.format("pool---connection to [%s] failed to passivate, discarded", key));
+            destroy(key, bucket, connection);
+            return;
+        }
+        boolean keep;
+        synchronized (bucket) {
+            bucket.active--;
+            keep = !closed && bucket.idle.size() < config.getMaxIdlePerKey();
+            if (keep) {
+                bucket.idle.addFirst(new IdleConnection<T>(connection));
+            }
+            bucket.returned.incrementAndGet();
+            bucket.notifyAll();
+        }
+        if (!keep) {
+            factory.destroy(key, connection);
+            bucket.destroyed.incrementAndGet();
+        }
+    }
+
+    /**
+     * 销毁一个借出后出错的连接
+     *
+     * @param key
+     * @param connection
+     */
+    public void invalidate(ServerKey key, T connection) {
+        if (connection != null) {
+            destroy(key, bucket(key), connection);
+        }
+    }
+
+    /**
+     * 回收空闲超时的连接
+     */
+    public void evict() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<ServerKey, Bucket<T>> entry : buckets.entrySet()) {
+            Bucket<T> bucket = entry.getValue();
+            List<T> expired = new ArrayList<>();
+            synchronized (bucket) {
+                Iterator<IdleConnection<T>> it = bucket.idle.iterator();
+                while (it.hasNext()) {
+                    IdleConnection<T> idle = it.next();
+                    if (now - idle.since >= config.getMinEvictableIdleMillis()) {
+                        it.remove();
+                        expired.add(idle.connection);
+                    }
+                }
+                if (!expired.isEmpty()) {
+                    bucket.notifyAll();
+                }
+            }
+            for (T connection : expired) {
+                factory.destroy(entry.getKey(), connection);
+                bucket.destroyed.incrementAndGet();
+            }
+            if (!expired.isEmpty()) {
+                logger.debug(String.format("pool---evicted [%s] idle connections to [%s]", expired.size(), entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * 关闭连接池, 销毁所有空闲连接; 借出中的连接在归还时销毁
+     */
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        for (Map.Entry<ServerKey, Bucket<T>> entry : buckets.entrySet()) {
+            Bucket<T> bucket = entry.getValue();
+            List<IdleConnection<T>> idle;
+            synchronized (bucket) {
+                idle = new ArrayList<>(bucket.idle);
+                bucket.idle.clear();
+                bucket.notifyAll();
+            }
+            for (IdleConnection<T> connection : idle) {
+                factory.destroy(entry.getKey(), connection.connection);
+                bucket.destroyed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 单个服务器的统计
+     *
+     * @param key
+     * @return PoolStats
+     */
+    public PoolStats getStats(ServerKey key) {
+        return stats(bucket(key));
+    }
+
+    /**
+     * 所有服务器合计的统计
+     *
+     * @return PoolStats
+     */
+    public PoolStats getStats() {
+        PoolStats total = new PoolStats(0, 0, 0, 0, 0, 0, 0, 0);
+        for (Bucket<T> bucket : buckets.values()) {
+            total = total.add(stats(bucket));
+        }
+        return total;
+    }
+
+    public PoolConfig getConfig() {
+        return config;
+    }
+
+    private void destroy(ServerKey key, Bucket<T> bucket, T connection) {
+        factory.destroy(key, connection);
+        bucket.destroyed.incrementAndGet();
+        synchronized (bucket) {
+            bucket.active--;
+            bucket.notifyAll();
+        }
+    }
+
+    private PoolStats stats(Bucket<T> bucket) {
+        synchronized (bucket) {
+            return new PoolStats(bucket.active, bucket.idle.size(), bucket.created.get(), bucket.destroyed.get(), bucket.borrowed.get(),
+                    bucket.returned.get(), bucket.validationFailures.get(), bucket.waits.get());
+        }
+    }
+
+    private Bucket<T> bucket(ServerKey key) {
+        Bucket<T> bucket = buckets.get(key);
+        if (bucket == null) {
+            Bucket<T> created = new Bucket<>();
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    private static class Bucket<T> {
+
+        // 最近归还的在队首, 优先借出最热的连接
+        final Deque<IdleConnection<T>> idle = new ArrayDeque<>();
+
+        int active;
+
+        final AtomicLong created = new AtomicLong();
+
+        final AtomicLong destroyed = new AtomicLong();
+
+        final AtomicLong borrowed = new AtomicLong();
+
+        final AtomicLong returned = new AtomicLong();
+
+        final AtomicLong validationFailures = new AtomicLong();
+
+        final AtomicLong waits = new AtomicLong();
+
+    }
+
+    private static class IdleConnection<T> {
+
+        final T connection;
+
+        final long since = System.currentTimeMillis();
+
+        IdleConnection(T connection) {
+            this.connection = connection;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时直方图(毫秒)
+ *
+ * <p>
+ * 固定的1-2-5分桶, 记录时无锁, 适合多线程高频调用; 百分位取所在桶的上界
+ * </p>
+ */
+public class LatencyHistogram {
+
+    // 各桶上界(含), 最后一个桶无上界
+    private static final long[] BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000, 60000, 300000 };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        int i = 0;
+        while (i < BOUNDS.length && value > BOUNDS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 各桶上界, 与getBucketCounts对应, 最后一个桶为Long.MAX_VALUE
+     *
+     * @return long[]
+     */
+    public long[] getBucketBounds() {
+        long[] bounds = new long[buckets.length];
+        System.arraycopy(BOUNDS, 0, bounds, 0, BOUNDS.length);
+        bounds[BOUNDS.length] = Long.MAX_VALUE;
+        return bounds;
+    }
+
+    /**
+     * 各桶计数(非累计)
+     *
+     * @return long[]
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * 近似百分位
+     *
+     * @param percentile 0-100
+     * @return long 所在桶的上界, 落在最后一个桶时返回最大值
+     */
+    public long percentile(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS[i], getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+}
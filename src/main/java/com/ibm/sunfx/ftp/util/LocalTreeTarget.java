@@ -0,0 +1,41 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 本地目录树上传所需的协议操作
+ */
+public interface LocalTreeTarget {
+
+    /**
+     * 按计划创建服务器目录
+     * 
+     * @param directories 服务器目录
+     * @return Set 创建失败的目录, 与参数中的写法相同
+     * @throws IOException
+     */
+    Set<String> mkdirs(Collection<String> directories) throws IOException;
+
+    /**
+     * 列出目录的直接下级(不含.和..)
+     * 
+     * @param directory
+     * @return List<RemoteEntry>
+     * @throws IOException
+     */
+    List<RemoteEntry> list(String directory) throws IOException;
+
+    /**
+     * 多连接并行上传, 目录已创建
+     * 
+     * @param directoryList 每个文件对应的服务器目录
+     * @param fileList 本地文件
+     * @param parallelism 并行连接数
+     * @return BatchReport
+     */
+    BatchReport upload(List<String> directoryList, List<String> fileList, int parallelism);
+
+}
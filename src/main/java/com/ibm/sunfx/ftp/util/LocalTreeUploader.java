@@ -0,0 +1,403 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 上传本地目录树
+ *
+ * <p>
+ * 用ForkJoinPool并行遍历本地目录(每个目录一个任务), 按include/exclude通配符(相对路径, 以/分隔, 如**&#47;*.csv)筛选文件,
+ * 先按目录计划一次建好服务器目录, 再由parallelism个连接从同一个队列领取文件上传。开启skipUnchanged时列出服务器目录,
+ * 大小相同且修改时间不早于本地文件的视为未变化, 不再上传。不进入指向目录的符号链接, 避免循环。
+ * 无法读取的目录或目录项(如失效的符号链接)只跳过自身, 作为失败项计入报告。
+ * </p>
+ */
+public class LocalTreeUploader {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final List<String> includes = new ArrayList<>();
+
+    private final List<String> excludes = new ArrayList<>();
+
+    private boolean skipUnchanged;
+
+    private int parallelism = 4;
+
+    private int walkParallelism = Runtime.getRuntime().availableProcessors();
+
+    private int scannedFiles;
+
+    private int skippedFiles;
+
+    /**
+     * 上传
+     *
+     * @param target 协议操作
+     * @param localRoot 本地目录
+     * @param remoteRoot 服务器目录
+     * @return BatchReport 本次上传的文件及失败项(含无法读取的本地目录和文件), 不含未变化而跳过的文件
+     */
+    public BatchReport upload(LocalTreeTarget target, File localRoot, String remoteRoot) {
+        long start = System.currentTimeMillis();
+        scannedFiles = 0;
+        skippedFiles = 0;
+        List<TransferResult> results = new ArrayList<>();
+        List<LocalFile> files;
+        List<String> emptyDirectories = new ArrayList<>();
+        try {
+            files = walk(localRoot, remoteRoot, emptyDirectories, results);
+        } catch (IOException e) {
+            logger.error(String.format("tree upload walk [%s] error", localRoot), e);
+            return new BatchReport(Collections.singletonList(TransferResult.failure(localRoot.getPath(), remoteRoot, 0, e)), 0);
+        }
+        scannedFiles = files.size();
+
+        // 服务器目录 -> 该目录下的文件
+        Map<String, List<LocalFile>> byDirectory = new LinkedHashMap<>();
+        for (LocalFile file : files) {
+            String directory = remoteDirectory(remoteRoot, file.directory);
+            List<LocalFile> list = byDirectory.get(directory);
+            if (list == null) {
+                list = new ArrayList<>();
+                byDirectory.put(directory, list);
+            }
+            list.add(file);
+        }
+        Set<String> directories = new LinkedHashSet<>(byDirectory.keySet());
+        for (String directory : emptyDirectories) {
+            directories.add(remoteDirectory(remoteRoot, directory));
+        }
+        directories.add(remoteRoot);
+
+        Set<String> failed;
+        try {
+            failed = target.mkdirs(directories);
+        } catch (IOException e) {
+            logger.error(String.format("tree upload create directories under [%s] error", remoteRoot), e);
+            return new BatchReport(Collections.singletonList(TransferResult.failure(localRoot.getPath(), remoteRoot, 0, e)), 0);
+        }
+
+        List<String> directoryList = new ArrayList<>();
+        List<String> fileList = new ArrayList<>();
+        for (Map.Entry<String, List<LocalFile>> entry : byDirectory.entrySet()) {
+            String directory = entry.getKey();
+            if (failed.contains(directory)) {
+                IOException error = new IOException(String.format("create directory [%s] failure", directory));
+                for (LocalFile file : entry.getValue()) {
+                    results.add(TransferResult.failure(file.file.getPath(), RemotePaths.join(directory, file.file.getName()), 0, error));
+                }
+                continue;
+            }
+            Map<String, RemoteEntry> remote = skipUnchanged ? remoteFiles(target, directory) : Collections.<String, RemoteEntry> emptyMap();
+            for (LocalFile file : entry.getValue()) {
+                if (unchanged(file, remote.get(file.file.getName()))) {
+                    skippedFiles++;
+                    continue;
+                }
+                directoryList.add(directory);
+                fileList.add(file.file.getPath());
+            }
+        }
+        if (!fileList.isEmpty()) {
+            results.addAll(target.upload(directoryList, fileList, parallelism).getResults());
+        }
+        BatchReport report = new BatchReport(results, System.currentTimeMillis() - start);
+        logger.info(String.format("tree upload [%s] to [%s]: %s, scanned files[%s] skipped files[%s]", localRoot, remoteRoot, report, scannedFiles,
+                skippedFiles));
+        return report;
+    }
+
+    private static String remoteDirectory(String remoteRoot, String relative) {
+        return relative.isEmpty() ? remoteRoot : RemotePaths.join(remoteRoot, relative);
+    }
+
+    private Map<String, RemoteEntry> remoteFiles(LocalTreeTarget target, String directory) {
+        Map<String, RemoteEntry> entries = new HashMap<>();
+        try {
+            for (RemoteEntry entry : target.list(directory)) {
+                if (!entry.isDirectory()) {
+                    entries.put(entry.getName(), entry);
+                }
+            }
+        } catch (IOException e) {
+            // 列目录失败时全部上传
+            logger.warn(String.format("tree upload list directory [%s] error: %s", directory, e));
+        }
+        return entries;
+    }
+
+    private static boolean unchanged(LocalFile file, RemoteEntry remote) {
+        // 服务器修改时间一般是上传时间, 只有不早于本地修改时间才说明上传的是当前内容
+        return remote != null && remote.getSize() == file.size && remote.getModified() > 0 && remote.getModified() >= file.modified;
+    }
+
+    /**
+     * 并行遍历本地目录
+     *
+     * @param root 本地目录
+     * @param remoteRoot 服务器目录, 用于失败项的服务器路径
+     * @param emptyDirectories 输出没有任何文件的目录(相对路径); 设置了include时不输出
+     * @param errors 输出无法读取的目录和目录项
+     * @return List 筛选后的文件, 按相对路径排序
+     * @throws IOException root不是目录
+     */
+    private List<LocalFile> walk(File root, String remoteRoot, List<String> emptyDirectories, List<TransferResult> errors) throws IOException {
+        if (!root.isDirectory()) {
+            throw new IOException(String.format("[%s] is not a directory", root));
+        }
+        List<PathMatcher> includeMatchers = matchers(includes);
+        List<PathMatcher> excludeMatchers = matchers(excludes);
+        Queue<LocalFile> files = new ConcurrentLinkedQueue<>();
+        Queue<String> empty = new ConcurrentLinkedQueue<>();
+        Queue<TransferResult> failures = new ConcurrentLinkedQueue<>();
+        ForkJoinPool walkers = new ForkJoinPool(Math.max(1, walkParallelism));
+        try {
+            walkers.invoke(new Walk(root.toPath(), "", remoteRoot, includeMatchers, excludeMatchers, files, empty, failures));
+        } finally {
+            walkers.shutdown();
+        }
+        errors.addAll(failures);
+        List<LocalFile> sorted = new ArrayList<>(files);
+        Collections.sort(sorted);
+        if (includes.isEmpty()) {
+            emptyDirectories.addAll(empty);
+            Collections.sort(emptyDirectories);
+        }
+        return sorted;
+    }
+
+    private static List<PathMatcher> matchers(Collection<String> globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        return matchers;
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, String relative) {
+        Path path = FileSystems.getDefault().getPath(relative);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 遍历一个目录, 子目录分叉为新的任务
+     */
+    private class Walk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        private final String relative;
+
+        private final String remoteRoot;
+
+        private final List<PathMatcher> includeMatchers;
+
+        private final List<PathMatcher> excludeMatchers;
+
+        private final Queue<LocalFile> files;
+
+        private final Queue<String> empty;
+
+        private final Queue<TransferResult> failures;
+
+        Walk(Path directory, String relative, String remoteRoot, List<PathMatcher> includeMatchers, List<PathMatcher> excludeMatchers,
+                Queue<LocalFile> files, Queue<String> empty, Queue<TransferResult> failures) {
+            this.directory = directory;
+            this.relative = relative;
+            this.remoteRoot = remoteRoot;
+            this.includeMatchers = includeMatchers;
+            this.excludeMatchers = excludeMatchers;
+            this.files = files;
+            this.empty = empty;
+            this.failures = failures;
+        }
+
+        @Override
+        protected void compute() {
+            List<Walk> children = new ArrayList<>();
+            boolean hasEntries = false;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    hasEntries = true;
+                    String name = path.getFileName().toString();
+                    String childRelative = relative.isEmpty() ? name : relative + "/" + name;
+                    if (matches(excludeMatchers, childRelative)) {
+                        continue;
+                    }
+                    // 单个目录项无法读取时只跳过该项
+                    try {
+                        visit(path, childRelative, children);
+                    } catch (IOException e) {
+                        logger.error(String.format("tree upload read [%s] error", path), e);
+                        failures.add(TransferResult.failure(path.toString(), remoteDirectory(remoteRoot, childRelative), 0, e));
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                // 目录读取中断时已找到的子目录仍继续遍历
+                IOException error = e instanceof DirectoryIteratorException ? ((DirectoryIteratorException) e).getCause() : (IOException) e;
+                logger.error(String.format("tree upload read directory [%s] error", directory), error);
+                failures.add(TransferResult.failure(directory.toString(), remoteDirectory(remoteRoot, relative), 0, error));
+                hasEntries = true;
+            }
+            if (!hasEntries && !relative.isEmpty()) {
+                empty.add(relative);
+            }
+            invokeAll(children);
+        }
+
+        private void visit(Path path, String childRelative, List<Walk> children) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink()) {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attributes.isDirectory()) {
+                    logger.debug(String.format("tree upload skip directory link [%s]", path));
+                    return;
+                }
+            }
+            if (attributes.isDirectory()) {
+                children.add(new Walk(path, childRelative, remoteRoot, includeMatchers, excludeMatchers, files, empty, failures));
+            } else if (attributes.isRegularFile() && (includeMatchers.isEmpty() || matches(includeMatchers, childRelative))) {
+                files.add(new LocalFile(path.toFile(), relative, attributes.size(), attributes.lastModifiedTime().toMillis()));
+            }
+        }
+
+    }
+
+    private static class LocalFile implements Comparable<LocalFile> {
+
+        final File file;
+
+        // 相对于本地根目录的所在目录, 根目录为空串
+        final String directory;
+
+        final long size;
+
+        final long modified;
+
+        LocalFile(File file, String directory, long size, long modified) {
+            this.file = file;
+            this.directory = directory;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        @Override
+        public int compareTo(LocalFile other) {
+            int compare = directory.compareTo(other.directory);
+            return compare != 0 ? compare : file.getName().compareTo(other.file.getName());
+        }
+
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * 只上传匹配的文件, 未设置时上传全部文件
+     *
+     * @param glob 相对路径的通配符, 如**&#47;*.csv, *.txt(只匹配根目录下的文件)
+     */
+    public void addInclude(String glob) {
+        includes.add(glob);
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * 跳过匹配的文件和目录(整个目录不再遍历)
+     *
+     * @param glob 相对路径的通配符
+     */
+    public void addExclude(String glob) {
+        excludes.add(glob);
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 并行上传的连接数, 默认4
+     *
+     * @param parallelism
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getWalkParallelism() {
+        return walkParallelism;
+    }
+
+    /**
+     * 遍历本地目录的线程数, 默认CPU数
+     *
+     * @param walkParallelism
+     */
+    public void setWalkParallelism(int walkParallelism) {
+        this.walkParallelism = walkParallelism;
+    }
+
+    /**
+     * 上次上传中遍历到的文件数(筛选后)
+     *
+     * @return int
+     */
+    public int getScannedFiles() {
+        return scannedFiles;
+    }
+
+    /**
+     * 上次上传中未变化而跳过的文件数
+     *
+     * @return int
+     */
+    public int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+}
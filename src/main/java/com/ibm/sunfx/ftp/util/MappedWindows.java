@@ -0,0 +1,139 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 多个读取方共用的文件映射窗口
+ *
+ * <p>
+ * 文件按窗口映射, 每个窗口只映射一次, 各读取方拿到duplicate的视图, 读取位置互不影响。
+ * 所有读取方都读过或关闭后不再引用该窗口, 映射随之可被回收; 调用方负责关闭channel
+ * </p>
+ */
+public class MappedWindows {
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final int windowSize;
+
+    private final int readers;
+
+    private final MappedByteBuffer[] windows;
+
+    // 每个窗口已读过或关闭的读取方数
+    private final int[] released;
+
+    private int mapCount;
+
+    /**
+     * @param channel 文件
+     * @param size 映射的字节数, 从0开始
+     * @param windowSize 每个窗口的字节数
+     * @param readers 读取方数, 即newInputStream的调用次数
+     */
+    public MappedWindows(FileChannel channel, long size, int windowSize, int readers) {
+        this.channel = channel;
+        this.size = size;
+        this.windowSize = Math.max(1, windowSize);
+        this.readers = readers;
+        int count = (int) ((size + this.windowSize - 1) / this.windowSize);
+        this.windows = new MappedByteBuffer[count];
+        this.released = new int[count];
+    }
+
+    /**
+     * 一个读取方的输入流, 关闭时释放未读到的窗口
+     *
+     * @return InputStream
+     */
+    public InputStream newInputStream() {
+        return new InputStream() {
+
+            private int index = -1;
+
+            private ByteBuffer window = ByteBuffer.allocate(0);
+
+            private boolean closed;
+
+            @Override
+            public int read() throws IOException {
+                return next() ? window.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!next()) {
+                    return -1;
+                }
+                int n = Math.min(len, window.remaining());
+                window.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return window.remaining();
+            }
+
+            private boolean next() throws IOException {
+                if (window.hasRemaining()) {
+                    return true;
+                }
+                if (closed || index + 1 >= windows.length) {
+                    return false;
+                }
+                if (index >= 0) {
+                    release(index);
+                }
+                window = acquire(++index);
+                return true;
+            }
+
+            @Override
+            public void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                window = ByteBuffer.allocate(0);
+                for (int i = Math.max(0, index); i < windows.length; i++) {
+                    release(i);
+                }
+            }
+        };
+    }
+
+    private synchronized ByteBuffer acquire(int index) throws IOException {
+        if (windows[index] == null) {
+            long position = (long) index * windowSize;
+            windows[index] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+            mapCount++;
+        }
+        return windows[index].duplicate();
+    }
+
+    private synchronized void release(int index) {
+        if (++released[index] >= readers) {
+            windows[index] = null;
+        }
+    }
+
+    /**
+     * 实际映射的次数, 每个窗口最多一次
+     *
+     * @return int
+     */
+    public synchronized int getMapCount() {
+        return mapCount;
+    }
+
+}
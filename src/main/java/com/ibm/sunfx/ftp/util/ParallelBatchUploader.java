@@ -0,0 +1,201 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 多连接并行批量上传
+ *
+ * <p>
+ * 文件按大小降序排列后由parallelism个线程从同一个队列领取, 每个线程使用自己的连接,
+ * 大文件先传可以缩短最后一个文件结束的时间。结果按提交顺序返回。
+ * </p>
+ */
+public class ParallelBatchUploader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelBatchUploader.class);
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    // 最后一个工作者打开连接的尝试次数
+    private static final int OPEN_ATTEMPTS = 3;
+
+    private ParallelBatchUploader() {
+
+    }
+
+    /**
+     * 并行上传
+     *
+     * @param directoryList 每个文件对应的服务器目录
+     * @param fileList 本地文件
+     * @param parallelism 并行连接数
+     * @param factory 工作者工厂
+     * @return BatchReport
+     */
+    public static BatchReport upload(List<String> directoryList, List<String> fileList, int parallelism, final BatchUploadWorkerFactory factory) {
+        long start = System.currentTimeMillis();
+        final TransferResult[] results = new TransferResult[fileList.size()];
+        List<Item> items = new ArrayList<>(fileList.size());
+        for (int i = 0; i < fileList.size(); i++) {
+            items.add(new Item(i, new File(fileList.get(i)), directoryList.get(i)));
+        }
+        Collections.sort(items, new Comparator<Item>() {
+            @Override
+            public int compare(Item a, Item b) {
+                return Long.compare(b.length, a.length);
+            }
+        });
+        final Queue<Item> queue = new ConcurrentLinkedQueue<>(items);
+
+        int threads = Math.max(1, Math.min(parallelism, items.size()));
+        final CountDownLatch done = new CountDownLatch(threads);
+        // 仍在领取文件的工作者数, 与队列一起在队列的锁下修改
+        final int[] live = { threads };
+        String prefix = "batch-upload-" + SEQUENCE.incrementAndGet() + "-";
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        work(queue, live, results, factory);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, prefix + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 最后一个工作者重试后仍没能取得连接时, 剩余文件记为失败
+        Item item;
+        while ((item = queue.poll()) != null) {
+            results[item.index] = TransferResult.failure(item.file.getPath(), remotePath(item), 0, new IOException("no connection available"));
+        }
+        for (Item pending : items) {
+            if (results[pending.index] == null) {
+                results[pending.index] = TransferResult.failure(pending.file.getPath(), remotePath(pending), 0, new IOException("interrupted"));
+            }
+        }
+        BatchReport report = new BatchReport(Arrays.asList(results), System.currentTimeMillis() - start);
+        logger.info(String.format("parallel upload with [%s] connections finished: %s", threads, report));
+        return report;
+    }
+
+    private static void work(Queue<Item> queue, int[] live, TransferResult[] results, BatchUploadWorkerFactory factory) {
+        BatchUploadWorker worker = null;
+        try {
+            Item item;
+            while ((item = next(queue, live)) != null) {
+                if (worker == null) {
+                    worker = open(queue, live, item, factory);
+                    if (worker == null) {
+                        return;
+                    }
+                }
+                long start = System.currentTimeMillis();
+                try {
+                    TransferResult result = worker.upload(item.file, item.directory);
+                    results[item.index] = result;
+                    if (!result.isSuccess()) {
+                        logger.error(String.format("parallel upload file [%s] to [%s] failure", item.file, item.directory), result.getError());
+                        // 失败后连接状态未知, 换一个连接
+                        worker.close();
+                        worker = null;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    results[item.index] = TransferResult.failure(item.file.getPath(), remotePath(item), System.currentTimeMillis() - start, e);
+                    logger.error(String.format("parallel upload file [%s] to [%s] error", item.file, item.directory), e);
+                    // 出错后连接状态未知, 换一个连接
+                    worker.close();
+                    worker = null;
+                }
+            }
+        } finally {
+            if (worker != null) {
+                worker.close();
+            }
+        }
+    }
+
+    /**
+     * 领取下一个文件, 没有文件或线程被中断时退出
+     * 
+     * <p>
+     * 领取和退出在队列的锁下完成, 放回队列的文件总能被仍在运行的工作者领取
+     * </p>
+     */
+    private static Item next(Queue<Item> queue, int[] live) {
+        synchronized (queue) {
+            Item item = Thread.currentThread().isInterrupted() ? null : queue.poll();
+            if (item == null) {
+                live[0]--;
+            }
+            return item;
+        }
+    }
+
+    /**
+     * 打开连接, 失败时文件放回队列交给其他仍在运行的工作者; 已是最后一个工作者时在本线程重试
+     * 
+     * @return BatchUploadWorker 放弃时返回null, 该工作者已退出
+     */
+    private static BatchUploadWorker open(Queue<Item> queue, int[] live, Item item, BatchUploadWorkerFactory factory) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return factory.open();
+            } catch (IOException e) {
+                logger.error(String.format("parallel upload open connection error, attempt [%s]", attempt), e);
+                synchronized (queue) {
+                    if (live[0] > 1 || attempt >= OPEN_ATTEMPTS) {
+                        queue.add(item);
+                        live[0]--;
+                        return null;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String remotePath(Item item) {
+        return item.directory.endsWith("/") ? item.directory + item.file.getName() : item.directory + "/" + item.file.getName();
+    }
+
+    private static class Item {
+
+        final int index;
+
+        final File file;
+
+        final String directory;
+
+        final long length;
+
+        Item(int index, File file, String directory) {
+            this.index = index;
+            this.file = file;
+            this.directory = directory;
+            this.length = file.length();
+        }
+
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 连接池配置
+ */
+public class PoolConfig {
+
+    // 每个服务器(host/port/user)最多连接数
+    private int maxTotalPerKey = 8;
+
+    // 每个服务器最多保留的空闲连接数
+    private int maxIdlePerKey = 8;
+
+    // 借连接时最长等待时间, 毫秒
+    private long maxWaitMillis = 30 * 1000;
+
+    // 空闲超过该时间的连接在借出前先做校验(NOOP), 毫秒
+    private long validateAfterIdleMillis = 5 * 1000;
+
+    // 空闲超过该时间的连接被回收, 毫秒
+    private long minEvictableIdleMillis = 5 * 60 * 1000;
+
+    // 回收线程执行间隔, 毫秒; <=0 不启动回收线程
+    private long evictionIntervalMillis = 30 * 1000;
+
+    public int getMaxTotalPerKey() {
+        return maxTotalPerKey;
+    }
+
+    public void setMaxTotalPerKey(int maxTotalPerKey) {
+        this.maxTotalPerKey = maxTotalPerKey;
+    }
+
+    public int getMaxIdlePerKey() {
+        return maxIdlePerKey;
+    }
+
+    public void setMaxIdlePerKey(int maxIdlePerKey) {
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public long getValidateAfterIdleMillis() {
+        return validateAfterIdleMillis;
+    }
+
+    public void setValidateAfterIdleMillis(long validateAfterIdleMillis) {
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+    }
+
+    public long getMinEvictableIdleMillis() {
+        return minEvictableIdleMillis;
+    }
+
+    public void setMinEvictableIdleMillis(long minEvictableIdleMillis) {
+        this.minEvictableIdleMillis = minEvictableIdleMillis;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public void setEvictionIntervalMillis(long evictionIntervalMillis) {
+        this.evictionIntervalMillis = evictionIntervalMillis;
+    }
+
+}
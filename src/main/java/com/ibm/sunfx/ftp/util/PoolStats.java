@@ -0,0 +1,84 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 连接池统计快照
+ */
+public class PoolStats {
+
+    private final int active;
+
+    private final int idle;
+
+    private final long created;
+
+    private final long destroyed;
+
+    private final long borrowed;
+
+    private final long returned;
+
+    private final long validationFailures;
+
+    private final long waits;
+
+    public PoolStats(int active, int idle, long created, long destroyed, long borrowed, long returned, long validationFailures, long waits) {
+        this.active = active;
+        this.idle = idle;
+        this.created = created;
+        this.destroyed = destroyed;
+        this.borrowed = borrowed;
+        this.returned = returned;
+        this.validationFailures = validationFailures;
+        this.waits = waits;
+    }
+
+    /**
+     * 合并两个快照
+     * 
+     * @param other
+     * @return PoolStats
+     */
+    public PoolStats add(PoolStats other) {
+        return new PoolStats(active + other.active, idle + other.idle, created + other.created, destroyed + other.destroyed,
+                borrowed + other.borrowed, returned + other.returned, validationFailures + other.validationFailures, waits + other.waits);
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getDestroyed() {
+        return destroyed;
+    }
+
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    public long getReturned() {
+        return returned;
+    }
+
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    public long getWaits() {
+        return waits;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active[%s] idle[%s] created[%s] destroyed[%s] borrowed[%s] returned[%s] validationFailures[%s] waits[%s]", active, idle,
+                created, destroyed, borrowed, returned, validationFailures, waits);
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.net.Socket;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * 池化的FTPClient
+ * 
+ * <p>
+ * 记录登录目录及工作目录是否被改变, 归还连接池时只在必要时才发送CWD回到登录目录; 记录是否处于MODE Z,
+ * commons-net只支持MODE S/B/C, MODE Z的压缩和解压由FTPTransfers完成; 记录协商的控制连接编码, 归还时恢复, 借用者临时切换的编码不会带给下一个借用者
+ * </p>
+ */
+public class PooledFTPClient extends FTPClient {
+
+    private String homeDirectory;
+
+    private boolean workingDirectoryChanged;
+
+    // 协商OPTS UTF8后确定的控制连接编码, 未协商时为null
+    private String negotiatedEncoding;
+
+    private boolean deflateMode;
+
+    // 服务器是否接受MODE Z, null表示未尝试
+    private Boolean deflateSupported;
+
+    private int deflateLevel = 6;
+
+    @Override
+    public boolean changeWorkingDirectory(String pathname) throws IOException {
+        workingDirectoryChanged = true;
+        return super.changeWorkingDirectory(pathname);
+    }
+
+    @Override
+    public boolean changeToParentDirectory() throws IOException {
+        workingDirectoryChanged = true;
+        return super.changeToParentDirectory();
+    }
+
+    /**
+     * 回到登录目录
+     * 
+     * @return boolean
+     * @throws IOException
+     */
+    public boolean resetWorkingDirectory() throws IOException {
+        if (!workingDirectoryChanged || homeDirectory == null) {
+            return true;
+        }
+        boolean reset = super.changeWorkingDirectory(homeDirectory);
+        workingDirectoryChanged = !reset;
+        return reset;
+    }
+
+    /**
+     * 发送命令并打开数据连接, 供流式读取列表使用; 读完后须关闭socket并调用completePendingCommand
+     * 
+     * @param command
+     * @param arg
+     * @return Socket 服务器拒绝时返回null
+     * @throws IOException
+     */
+    public Socket openDataConnection(String command, String arg) throws IOException {
+        return _openDataConnection_(command, arg);
+    }
+
+    /**
+     * 切换MODE Z/MODE S, 只在模式变化时发送命令; 服务器拒绝MODE Z后不再尝试
+     * 
+     * @param deflate
+     * @return boolean 当前是否为MODE Z
+     * @throws IOException
+     */
+    public boolean setDeflateMode(boolean deflate) throws IOException {
+        if (deflate == deflateMode || (deflate && Boolean.FALSE.equals(deflateSupported))) {
+            return deflateMode;
+        }
+        boolean accepted = FTPReply.isPositiveCompletion(sendCommand("MODE", deflate ? "Z" : "S"));
+        if (deflate) {
+            deflateSupported = accepted;
+        }
+        if (accepted) {
+            deflateMode = deflate;
+        }
+        return deflateMode;
+    }
+
+    public boolean isDeflateMode() {
+        return deflateMode;
+    }
+
+    public int getDeflateLevel() {
+        return deflateLevel;
+    }
+
+    public void setDeflateLevel(int deflateLevel) {
+        this.deflateLevel = deflateLevel;
+    }
+
+    /**
+     * 恢复协商的控制连接编码, 未协商时恢复commons-net的默认编码
+     */
+    public void resetControlEncoding() {
+        setControlEncoding(negotiatedEncoding != null ? negotiatedEncoding : DEFAULT_CONTROL_ENCODING);
+    }
+
+    public boolean isUtf8Negotiated() {
+        return negotiatedEncoding != null;
+    }
+
+    public String getNegotiatedEncoding() {
+        return negotiatedEncoding;
+    }
+
+    /**
+     * 记录协商结果并设置控制连接编码
+     * 
+     * @param negotiatedEncoding 服务器接受OPTS UTF8时为UTF-8, 否则为本地编码
+     */
+    public void setNegotiatedEncoding(String negotiatedEncoding) {
+        this.negotiatedEncoding = negotiatedEncoding;
+        setControlEncoding(negotiatedEncoding);
+    }
+
+    public String getHomeDirectory() {
+        return homeDirectory;
+    }
+
+    void setHomeDirectory(String homeDirectory) {
+        this.homeDirectory = homeDirectory;
+        this.workingDirectoryChanged = false;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 上传文件的发布方式
+ *
+ * <p>
+ * direct直接写入最终文件名(默认); atomic先写入同目录下的临时文件名(默认.name.part), 传输和校验完成后改名(ftp RNFR/RNTO, sftp rename),
+ * 轮询目录的下游不会读到写了一半的文件。续传时从临时文件继续。
+ * </p>
+ */
+public class PublishPolicy {
+
+    private final boolean atomic;
+
+    private String tempPrefix = ".";
+
+    private String tempSuffix = ".part";
+
+    public PublishPolicy(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    public static PublishPolicy direct() {
+        return new PublishPolicy(false);
+    }
+
+    public static PublishPolicy atomic() {
+        return new PublishPolicy(true);
+    }
+
+    /**
+     * 传输时写入的服务器路径
+     *
+     * @param remotePath 最终路径
+     * @return String atomic时为临时路径
+     */
+    public String targetPath(String remotePath) {
+        return atomic ? tempPath(remotePath) : remotePath;
+    }
+
+    /**
+     * 临时路径, 与最终文件在同一目录, 改名不跨文件系统
+     *
+     * @param remotePath 最终路径
+     * @return String
+     */
+    public String tempPath(String remotePath) {
+        return RemotePaths.join(RemotePaths.parent(remotePath), tempPrefix + RemotePaths.name(remotePath) + tempSuffix);
+    }
+
+    public boolean isAtomic() {
+        return atomic;
+    }
+
+    public String getTempPrefix() {
+        return tempPrefix;
+    }
+
+    public void setTempPrefix(String tempPrefix) {
+        this.tempPrefix = tempPrefix;
+    }
+
+    public String getTempSuffix() {
+        return tempSuffix;
+    }
+
+    public void setTempSuffix(String tempSuffix) {
+        this.tempSuffix = tempSuffix;
+    }
+
+}
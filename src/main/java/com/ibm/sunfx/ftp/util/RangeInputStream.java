@@ -0,0 +1,79 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 最多读取length字节的输入流, 关闭时回调onClose(是否读完)
+ */
+public abstract class RangeInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    private boolean closed;
+
+    public RangeInputStream(InputStream in, long length) {
+        super(in);
+        this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int b = super.read();
+        if (b >= 0) {
+            remaining--;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = super.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) {
+            remaining -= n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        onClose(remaining <= 0);
+    }
+
+    /**
+     * 释放底层连接; 关闭底层流由实现负责
+     * 
+     * @param complete 是否已读完请求的范围
+     * @throws IOException
+     */
+    protected abstract void onClose(boolean complete) throws IOException;
+
+}
@@ -0,0 +1,232 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * 中转用的有界环形缓冲区
+ *
+ * <p>
+ * 写入端和读取端分别在两个线程上使用, 缓冲区满时写入阻塞、空时读取阻塞, 内存占用固定为slots * slotSize。
+ * 一端失败时另一端随之抛出异常, 两边连接都能及时释放
+ * </p>
+ */
+public class RelayBuffer {
+
+    private final byte[][] slots;
+
+    private final int[] lengths;
+
+    /** 下一个读取的槽 */
+    private int head;
+
+    /** 已写满待读取的槽数 */
+    private int filled;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    private final Output output = new Output();
+
+    private final Input input = new Input();
+
+    public RelayBuffer(int slots, int slotSize) {
+        this.slots = new byte[Math.max(2, slots)][];
+        this.lengths = new int[this.slots.length];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = new byte[Math.max(1, slotSize)];
+        }
+    }
+
+    /**
+     * 写入端, close表示数据结束
+     *
+     * @return OutputStream
+     */
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    /**
+     * 读取端, 数据未结束时close会使写入端失败
+     *
+     * @return InputStream
+     */
+    public InputStream getInputStream() {
+        return input;
+    }
+
+    /**
+     * 中止中转, 两端的后续读写抛出该异常
+     *
+     * @param e 原因
+     */
+    public synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    private void check() throws IOException {
+        if (failure != null) {
+            throw new IOException("relay aborted: " + failure.getMessage(), failure);
+        }
+    }
+
+    private void await() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("relay interrupted");
+            fail(interrupted);
+            throw interrupted;
+        }
+    }
+
+    private class Output extends OutputStream {
+
+        /** 正在写入的槽内已写字节数 */
+        private int position;
+
+        private byte[] current;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                byte[] slot = slot();
+                int n = Math.min(len, slot.length - position);
+                System.arraycopy(b, off, slot, position, n);
+                position += n;
+                off += n;
+                len -= n;
+                if (position == slot.length) {
+                    commit();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (position > 0) {
+                commit();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (RelayBuffer.this) {
+                if (closed) {
+                    return;
+                }
+            }
+            flush();
+            synchronized (RelayBuffer.this) {
+                closed = true;
+                RelayBuffer.this.notifyAll();
+            }
+        }
+
+        /**
+         * 取得可写入的槽, 没有空槽时等待读取端
+         */
+        private byte[] slot() throws IOException {
+            if (current == null) {
+                synchronized (RelayBuffer.this) {
+                    while (filled == slots.length) {
+                        check();
+                        await();
+                    }
+                    check();
+                    if (closed) {
+                        throw new IOException("relay output closed");
+                    }
+                    current = slots[(head + filled) % slots.length];
+                }
+            }
+            return current;
+        }
+
+        private void commit() throws IOException {
+            synchronized (RelayBuffer.this) {
+                check();
+                lengths[(head + filled) % slots.length] = position;
+                filled++;
+                RelayBuffer.this.notifyAll();
+            }
+            current = null;
+            position = 0;
+        }
+
+    }
+
+    private class Input extends InputStream {
+
+        /** 当前槽内已读字节数 */
+        private int position;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            synchronized (RelayBuffer.this) {
+                while (filled == 0) {
+                    check();
+                    if (closed) {
+                        return -1;
+                    }
+                    await();
+                }
+                check();
+            }
+            // 写入端只会写其它槽, 读取当前槽不需要持锁
+            int n = Math.min(len, lengths[head] - position);
+            System.arraycopy(slots[head], position, b, off, n);
+            position += n;
+            if (position == lengths[head]) {
+                synchronized (RelayBuffer.this) {
+                    head = (head + 1) % slots.length;
+                    filled--;
+                    RelayBuffer.this.notifyAll();
+                }
+                position = 0;
+            }
+            return n;
+        }
+
+        @Override
+        public int available() {
+            synchronized (RelayBuffer.this) {
+                return filled == 0 ? 0 : lengths[head] - position;
+            }
+        }
+
+        @Override
+        public void close() {
+            synchronized (RelayBuffer.this) {
+                if (!closed || filled > 0) {
+                    fail(new IOException("relay input closed before end of data"));
+                }
+            }
+        }
+
+    }
+
+}
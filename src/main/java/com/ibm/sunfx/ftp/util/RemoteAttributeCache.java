@@ -0,0 +1,177 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 远程文件属性和目录列表缓存
+ *
+ * <p>
+ * 条目数有上限(LRU淘汰), 超过ttl后需重新查询。缓存目录列表时同时缓存其中每一项的属性, 遍历目录树时各文件的属性不再单独查询;
+ * 列表已缓存时, 不在列表中的文件视为不存在。本机修改服务器文件后由调用方使对应路径失效
+ * </p>
+ */
+public class RemoteAttributeCache {
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, Cached<RemoteEntry>> attributes;
+
+    private final LinkedHashMap<String, Cached<List<RemoteEntry>>> listings;
+
+    public RemoteAttributeCache(final int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.attributes = new LinkedHashMap<String, Cached<RemoteEntry>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached<RemoteEntry>> eldest) {
+                return size() > RemoteAttributeCache.this.maxEntries;
+            }
+        };
+        this.listings = new LinkedHashMap<String, Cached<List<RemoteEntry>>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached<List<RemoteEntry>>> eldest) {
+                return size() > RemoteAttributeCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 文件属性
+     *
+     * @param path 绝对路径
+     * @return RemoteEntry 未缓存或已过期时返回null
+     */
+    public synchronized RemoteEntry getAttributes(String path) {
+        return get(attributes, RemotePaths.normalize(path));
+    }
+
+    /**
+     * 目录列表
+     *
+     * @param directory 绝对路径
+     * @return List 未缓存或已过期时返回null
+     */
+    public synchronized List<RemoteEntry> getListing(String directory) {
+        return get(listings, RemotePaths.normalize(directory));
+    }
+
+    public synchronized void putAttributes(RemoteEntry entry) {
+        attributes.put(RemotePaths.normalize(entry.getPath()), new Cached<>(entry, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 缓存目录列表及其中每一项的属性
+     *
+     * @param directory 绝对路径
+     * @param entries
+     */
+    public synchronized void putListing(String directory, List<RemoteEntry> entries) {
+        long expires = System.currentTimeMillis() + ttlMillis;
+        listings.put(RemotePaths.normalize(directory), new Cached<>(Collections.unmodifiableList(new ArrayList<>(entries)), expires));
+        for (RemoteEntry entry : entries) {
+            attributes.put(RemotePaths.normalize(entry.getPath()), new Cached<>(entry, expires));
+        }
+    }
+
+    /**
+     * 使文件的属性、目录的列表以及上级目录的列表失效
+     *
+     * @param path 绝对路径
+     */
+    public synchronized void invalidate(String path) {
+        String normalized = RemotePaths.normalize(path);
+        attributes.remove(normalized);
+        listings.remove(normalized);
+        String parent = RemotePaths.parent(normalized);
+        if (parent != null) {
+            listings.remove(parent);
+        }
+    }
+
+    /**
+     * 使路径及其下级全部失效
+     *
+     * @param path 绝对路径
+     */
+    public synchronized void invalidateTree(String path) {
+        String normalized = RemotePaths.normalize(path);
+        String prefix = normalized.endsWith("/") ? normalized : normalized + "/";
+        removeTree(attributes, normalized, prefix);
+        removeTree(listings, normalized, prefix);
+        String parent = RemotePaths.parent(normalized);
+        if (parent != null) {
+            listings.remove(parent);
+        }
+    }
+
+    public synchronized void clear() {
+        attributes.clear();
+        listings.clear();
+    }
+
+    /**
+     * 缓存的属性和列表条目数
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return attributes.size() + listings.size();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private static <T> T get(Map<String, Cached<T>> map, String key) {
+        Cached<T> cached = map.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expires < System.currentTimeMillis()) {
+            map.remove(key);
+            return null;
+        }
+        return cached.value;
+    }
+
+    private static void removeTree(Map<String, ?> map, String path, String prefix) {
+        Iterator<String> it = map.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (key.equals(path) || key.startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    private static final class Cached<T> {
+
+        final T value;
+
+        final long expires;
+
+        Cached(T value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+    }
+
+}
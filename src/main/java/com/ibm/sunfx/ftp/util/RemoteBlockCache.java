@@ -0,0 +1,113 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 远程文件的数据块缓存
+ *
+ * <p>
+ * 按"文件键+块号"缓存固定大小的数据块, 块数有上限(LRU淘汰), 内存占用不超过maxBlocks * blockSize。
+ * 文件键通常包含路径、大小和修改时间, 文件变化后自然使用新的键; 本机修改文件后也可按路径失效
+ * </p>
+ */
+public class RemoteBlockCache {
+
+    private final int blockSize;
+
+    private final int maxBlocks;
+
+    private final LinkedHashMap<String, byte[]> blocks;
+
+    private long hits;
+
+    private long misses;
+
+    public RemoteBlockCache(int blockSize, final int maxBlocks) {
+        this.blockSize = Math.max(1, blockSize);
+        this.maxBlocks = maxBlocks;
+        this.blocks = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > RemoteBlockCache.this.maxBlocks;
+            }
+        };
+    }
+
+    /**
+     * 文件键, 由路径、大小和修改时间组成
+     *
+     * @param path
+     * @param size
+     * @param modified 未知时为0
+     * @return String
+     */
+    public static String key(String path, long size, long modified) {
+        return path + "@" + size + ":" + modified;
+    }
+
+    /**
+     * 数据块
+     *
+     * @param key 文件键
+     * @param index 块号
+     * @return byte[] 未缓存时返回null
+     */
+    public synchronized byte[] get(String key, long index) {
+        byte[] block = blocks.get(key + "#" + index);
+        if (block == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return block;
+    }
+
+    public synchronized void put(String key, long index, byte[] block) {
+        blocks.put(key + "#" + index, block);
+    }
+
+    /**
+     * 使某个路径的所有数据块失效
+     *
+     * @param path
+     */
+    public synchronized void invalidate(String path) {
+        String prefix = path + "@";
+        Iterator<String> it = blocks.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        blocks.clear();
+    }
+
+    public synchronized int size() {
+        return blocks.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getMaxBlocks() {
+        return maxBlocks;
+    }
+
+}
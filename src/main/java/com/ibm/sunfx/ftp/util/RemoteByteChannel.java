@@ -0,0 +1,202 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * 随机读取远程文件的只读通道
+ *
+ * <p>
+ * 按块读取: 命中RemoteBlockCache时不访问服务器, 否则用RemoteRangeReader只取需要的块(ftp为REST+RETR后中止,
+ * sftp为带偏移的读取)。连续顺序读取时预读的块数逐次加倍, 直到maxReadAhead, 一次请求取回多个块; 随机读取时只取一块
+ * </p>
+ */
+public class RemoteByteChannel implements SeekableByteChannel {
+
+    private final RemoteRangeReader reader;
+
+    private final String remotePath;
+
+    private final long size;
+
+    private final String key;
+
+    private final RemoteBlockCache cache;
+
+    private final int blockSize;
+
+    private int maxReadAhead = 16;
+
+    private int readAhead;
+
+    private long lastBlock = -2;
+
+    private long position;
+
+    private volatile boolean open = true;
+
+    /**
+     * @param reader 范围读取
+     * @param remotePath 服务器文件
+     * @param size 文件大小
+     * @param key 缓存的文件键, 见RemoteBlockCache.key
+     * @param cache 块缓存, 可与其它通道共用
+     */
+    public RemoteByteChannel(RemoteRangeReader reader, String remotePath, long size, String key, RemoteBlockCache cache) {
+        this.reader = reader;
+        this.remotePath = remotePath;
+        this.size = size;
+        this.key = key;
+        this.cache = cache;
+        this.blockSize = cache.getBlockSize();
+    }
+
+    /**
+     * 打开文件的通道, 缓存的文件键包含大小和修改时间, 共用块缓存时服务器上改写的文件不会读到旧的块
+     *
+     * @param reader 范围读取
+     * @param entry 文件属性, 路径为完整路径
+     * @param cache 块缓存
+     * @return RemoteByteChannel
+     */
+    public static RemoteByteChannel open(RemoteRangeReader reader, RemoteEntry entry, RemoteBlockCache cache) {
+        String key = RemoteBlockCache.key(entry.getPath(), entry.getSize(), entry.getModified());
+        return new RemoteByteChannel(reader, entry.getPath(), entry.getSize(), key, cache);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (position >= size) {
+            return -1;
+        }
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / blockSize;
+            byte[] block = block(index);
+            int offset = (int) (position - index * blockSize);
+            int n = Math.min(dst.remaining(), block.length - offset);
+            dst.put(block, offset, n);
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * 取得数据块, 未缓存时从服务器读取, 顺序读取时连同后续的块一起读取
+     */
+    private byte[] block(long index) throws IOException {
+        boolean sequential = index == lastBlock + 1;
+        lastBlock = index;
+        byte[] block = cache.get(key, index);
+        if (block != null) {
+            return block;
+        }
+        readAhead = sequential ? Math.min(maxReadAhead, Math.max(1, readAhead * 2)) : 0;
+        long blocks = (size + blockSize - 1) / blockSize;
+        int count = (int) Math.min(1 + readAhead, blocks - index);
+        long start = index * blockSize;
+        long length = Math.min((long) count * blockSize, size - start);
+
+        byte[] first = null;
+        InputStream in = reader.openRange(remotePath, start, length);
+        try {
+            for (int i = 0; i < count; i++) {
+                byte[] data = new byte[(int) Math.min(blockSize, size - start - (long) i * blockSize)];
+                readFully(in, data);
+                cache.put(key, index + i, data);
+                if (i == 0) {
+                    first = data;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return first;
+    }
+
+    private void readFully(InputStream in, byte[] data) throws IOException {
+        int read = 0;
+        while (read < data.length) {
+            int n = in.read(data, read, data.length - read);
+            if (n < 0) {
+                throw new EOFException(String.format("remote file [%s] shorter than [%s] bytes", remotePath, size));
+            }
+            read += n;
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        if (newPosition < 0) {
+            throw new IllegalArgumentException(String.valueOf(newPosition));
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    public int getMaxReadAhead() {
+        return maxReadAhead;
+    }
+
+    /**
+     * 顺序读取时最多预读的块数
+     *
+     * @param maxReadAhead
+     */
+    public void setMaxReadAhead(int maxReadAhead) {
+        this.maxReadAhead = Math.max(0, maxReadAhead);
+    }
+
+}
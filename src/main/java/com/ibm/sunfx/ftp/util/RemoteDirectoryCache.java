@@ -0,0 +1,146 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已确认存在的远程目录缓存
+ * 
+ * <p>
+ * 按服务器(host/port/user)区分, 条目数有上限(LRU淘汰), 超过ttl后需重新确认; 上传失败时使对应目录失效
+ * </p>
+ */
+public class RemoteDirectoryCache {
+
+    private static final RemoteDirectoryCache DEFAULT = new RemoteDirectoryCache(10000, 10 * 60 * 1000);
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Entry, Long> entries;
+
+    public RemoteDirectoryCache(final int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Entry, Long>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Entry, Long> eldest) {
+                return size() > RemoteDirectoryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 默认共享的缓存
+     * 
+     * @return RemoteDirectoryCache
+     */
+    public static RemoteDirectoryCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 目录是否已知存在
+     * 
+     * @param key
+     * @param directory 绝对路径
+     * @return boolean
+     */
+    public synchronized boolean contains(ServerKey key, String directory) {
+        if ("/".equals(directory)) {
+            return true;
+        }
+        Entry entry = new Entry(key, RemotePaths.normalize(directory));
+        Long expires = entries.get(entry);
+        if (expires == null) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis()) {
+            entries.remove(entry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 记录目录存在, 同时记录其上级目录
+     * 
+     * @param key
+     * @param directory 绝对路径
+     */
+    public synchronized void put(ServerKey key, String directory) {
+        long expires = System.currentTimeMillis() + ttlMillis;
+        for (String path : RemotePaths.ancestors(directory)) {
+            entries.put(new Entry(key, path), expires);
+        }
+    }
+
+    /**
+     * 使目录及其下级目录失效
+     * 
+     * @param key
+     * @param directory 绝对路径
+     */
+    public synchronized void invalidate(ServerKey key, String directory) {
+        String path = RemotePaths.normalize(directory);
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Iterator<Entry> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.key.equals(key) && (entry.path.equals(path) || entry.path.startsWith(prefix))) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空某个服务器的缓存
+     * 
+     * @param key
+     */
+    public synchronized void clear(ServerKey key) {
+        Iterator<Entry> it = entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().key.equals(key)) {
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        final ServerKey key;
+
+        final String path;
+
+        Entry(ServerKey key, String path) {
+            this.key = key;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) obj;
+            return key.equals(other.key) && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + path.hashCode();
+        }
+
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 借助RemoteDirectoryCache创建多级远程目录
+ * 
+ * <p>
+ * 已缓存的目录不产生任何请求; 否则自下而上检查, 找到最深的已存在目录后只创建缺少的部分
+ * </p>
+ */
+public class RemoteDirectoryMaker {
+
+    /**
+     * 具体协议的目录操作
+     */
+    public interface Operations {
+
+        /**
+         * 目录是否存在
+         * 
+         * @param directory 绝对路径
+         * @return boolean
+         * @throws IOException
+         */
+        boolean exists(String directory) throws IOException;
+
+        /**
+         * 创建单级目录
+         * 
+         * @param directory 绝对路径
+         * @return boolean
+         * @throws IOException
+         */
+        boolean mkdir(String directory) throws IOException;
+
+    }
+
+    private final RemoteDirectoryCache cache;
+
+    private final ServerKey key;
+
+    private final Operations operations;
+
+    public RemoteDirectoryMaker(RemoteDirectoryCache cache, ServerKey key, Operations operations) {
+        this.cache = cache;
+        this.key = key;
+        this.operations = operations;
+    }
+
+    /**
+     * 创建多级目录
+     * 
+     * @param directory 绝对路径
+     * @return boolean 目录已存在或创建成功
+     * @throws IOException
+     */
+    public boolean mkdirs(String directory) throws IOException {
+        String path = RemotePaths.normalize(directory);
+        if (cache.contains(key, path)) {
+            return true;
+        }
+        List<String> ancestors = RemotePaths.ancestors(path);
+        // 自下而上找到第一个存在的目录
+        int missing = ancestors.size();
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            String current = ancestors.get(i);
+            if (cache.contains(key, current) || operations.exists(current)) {
+                break;
+            }
+            missing = i;
+        }
+        for (int i = missing; i < ancestors.size(); i++) {
+            String current = ancestors.get(i);
+            // 并发创建时目录可能已被其他连接建好
+            if (!operations.mkdir(current) && !operations.exists(current)) {
+                cache.invalidate(key, current);
+                return false;
+            }
+        }
+        cache.put(key, path);
+        return true;
+    }
+
+    /**
+     * 按计划逐层创建目录
+     * 
+     * <p>
+     * 已缓存的目录不产生请求; 上级目录是本次新建的, 下级一定不存在, 直接创建; 否则先检查是否存在。
+     * 创建失败的目录, 其下级不再尝试
+     * </p>
+     * 
+     * @param plan 目录计划
+     * @return Set 创建失败的目标目录, 全部成功时为空
+     * @throws IOException
+     */
+    public Set<String> mkdirs(RemoteDirectoryPlan plan) throws IOException {
+        Set<String> created = new HashSet<>();
+        Set<String> failed = new HashSet<>();
+        for (Set<String> level : plan.getLevels()) {
+            for (String directory : level) {
+                String parent = RemotePaths.parent(directory);
+                if (failed.contains(parent)) {
+                    failed.add(directory);
+                    continue;
+                }
+                if (cache.contains(key, directory)) {
+                    continue;
+                }
+                boolean exists = !created.contains(parent) && operations.exists(directory);
+                if (!exists) {
+                    // 并发创建时目录可能已被其他连接建好
+                    if (operations.mkdir(directory)) {
+                        created.add(directory);
+                    } else if (!operations.exists(directory)) {
+                        cache.invalidate(key, directory);
+                        failed.add(directory);
+                        continue;
+                    }
+                }
+                cache.put(key, directory);
+            }
+        }
+        Set<String> failedTargets = new LinkedHashSet<>();
+        for (String target : plan.getTargets()) {
+            if (failed.contains(target)) {
+                failedTargets.add(target);
+            }
+        }
+        return failedTargets;
+    }
+
+    /**
+     * 目录下的操作失败时调用, 下次重新确认目录
+     * 
+     * @param directory
+     */
+    public void invalidate(String directory) {
+        cache.invalidate(key, directory);
+    }
+
+}
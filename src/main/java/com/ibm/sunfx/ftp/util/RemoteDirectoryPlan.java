@@ -0,0 +1,86 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 批量上传的目录计划
+ * 
+ * <p>
+ * 把各文件的目标目录去重并补全上级目录, 按深度分层, 由RemoteDirectoryMaker逐层(广度优先)创建一次;
+ * 目录请求数只与不同目录的个数有关, 与文件数无关
+ * </p>
+ */
+public class RemoteDirectoryPlan {
+
+    private final Set<String> targets = new LinkedHashSet<>();
+
+    // levels.get(i)为深度i+1的目录
+    private final List<Set<String>> levels = new ArrayList<>();
+
+    public RemoteDirectoryPlan() {
+
+    }
+
+    public RemoteDirectoryPlan(Collection<String> directories) {
+        for (String directory : directories) {
+            add(directory);
+        }
+    }
+
+    /**
+     * 加入目标目录
+     * 
+     * @param directory 绝对路径
+     * @return RemoteDirectoryPlan
+     */
+    public RemoteDirectoryPlan add(String directory) {
+        String path = RemotePaths.normalize(directory);
+        if (!targets.add(path)) {
+            return this;
+        }
+        List<String> ancestors = RemotePaths.ancestors(path);
+        for (int depth = 0; depth < ancestors.size(); depth++) {
+            if (levels.size() == depth) {
+                levels.add(new LinkedHashSet<String>());
+            }
+            levels.get(depth).add(ancestors.get(depth));
+        }
+        return this;
+    }
+
+    /**
+     * 加入的目标目录(已规范化、去重)
+     * 
+     * @return Set
+     */
+    public Set<String> getTargets() {
+        return targets;
+    }
+
+    /**
+     * 按深度分层的全部目录, 含目标目录的各级上级目录, 不含根目录
+     * 
+     * @return List
+     */
+    public List<Set<String>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * 计划中的目录总数
+     * 
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (Set<String> level : levels) {
+            size += level.size();
+        }
+        return size;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.ibm.sunfx.ftp.util;
+
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.SftpATTRS;
+
+import org.apache.commons.net.ftp.FTPFile;
+
+/**
+ * 远程目录项: 名称、完整路径、是否目录、大小和修改时间
+ */
+public class RemoteEntry {
+
+    private final String name;
+
+    private final String path;
+
+    private final boolean directory;
+
+    private final long size;
+
+    // 毫秒, 未知时为0
+    private final long modified;
+
+    public RemoteEntry(String name, String path, boolean directory, long size, long modified) {
+        this.name = name;
+        this.path = path;
+        this.directory = directory;
+        this.size = size;
+        this.modified = modified;
+    }
+
+    /**
+     * 由ftp列表项转换
+     * 
+     * @param file
+     * @param directory 所在目录
+     * @return RemoteEntry
+     */
+    public static RemoteEntry of(FTPFile file, String directory) {
+        long modified = file.getTimestamp() == null ? 0 : file.getTimestamp().getTimeInMillis();
+        return new RemoteEntry(file.getName(), RemotePaths.join(directory, file.getName()), file.isDirectory(), file.getSize(), modified);
+    }
+
+    /**
+     * 由sftp列表项转换
+     * 
+     * @param entry
+     * @param directory 所在目录
+     * @return RemoteEntry
+     */
+    public static RemoteEntry of(LsEntry entry, String directory) {
+        SftpATTRS attrs = entry.getAttrs();
+        return new RemoteEntry(entry.getFilename(), RemotePaths.join(directory, entry.getFilename()), attrs.isDir(), attrs.getSize(),
+                attrs.getMTime() * 1000L);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s size[%s] modified[%s]", path, directory ? "/" : "", size, modified);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.ibm.sunfx.ftp.util;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * 目录项过滤
+ */
+public interface RemoteEntryFilter {
+
+    RemoteEntryFilter ALL = new RemoteEntryFilter() {
+        @Override
+        public boolean accept(RemoteEntry entry) {
+            return true;
+        }
+    };
+
+    RemoteEntryFilter FILES = new RemoteEntryFilter() {
+        @Override
+        public boolean accept(RemoteEntry entry) {
+            return !entry.isDirectory();
+        }
+    };
+
+    RemoteEntryFilter DIRECTORIES = new RemoteEntryFilter() {
+        @Override
+        public boolean accept(RemoteEntry entry) {
+            return entry.isDirectory();
+        }
+    };
+
+    boolean accept(RemoteEntry entry);
+
+    /**
+     * 文件名匹配通配符(*和?), 区分大小写
+     * 
+     * @param wildcard
+     * @return RemoteEntryFilter
+     */
+    static RemoteEntryFilter name(final String wildcard) {
+        return new RemoteEntryFilter() {
+            @Override
+            public boolean accept(RemoteEntry entry) {
+                return FilenameUtils.wildcardMatch(entry.getName(), wildcard);
+            }
+        };
+    }
+
+    /**
+     * 修改时间晚于time(毫秒)
+     * 
+     * @param time
+     * @return RemoteEntryFilter
+     */
+    static RemoteEntryFilter modifiedAfter(final long time) {
+        return new RemoteEntryFilter() {
+            @Override
+            public boolean accept(RemoteEntry entry) {
+                return entry.getModified() > time;
+            }
+        };
+    }
+
+    /**
+     * 同时满足所有条件
+     * 
+     * @param filters
+     * @return RemoteEntryFilter
+     */
+    static RemoteEntryFilter and(final RemoteEntryFilter... filters) {
+        return new RemoteEntryFilter() {
+            @Override
+            public boolean accept(RemoteEntry entry) {
+                for (RemoteEntryFilter filter : filters) {
+                    if (!filter.accept(entry)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,17 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+
+/**
+ * 流式列目录的回调, 每个目录项调用一次
+ */
+public interface RemoteEntryVisitor {
+
+    /**
+     * @param entry 目录项
+     * @return boolean 返回false时停止列目录
+     * @throws IOException 停止列目录并抛给调用方
+     */
+    boolean visit(RemoteEntry entry) throws IOException;
+
+}
@@ -0,0 +1,66 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * 远程目录项的基本属性; 服务器只提供修改时间, 访问和创建时间同修改时间
+ */
+public class RemoteFileAttributes implements BasicFileAttributes {
+
+    private final RemoteEntry entry;
+
+    public RemoteFileAttributes(RemoteEntry entry) {
+        this.entry = entry;
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return FileTime.fromMillis(entry.getModified());
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return lastModifiedTime();
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return lastModifiedTime();
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !entry.isDirectory();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return entry.isDirectory();
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return entry.isDirectory() ? 0 : entry.getSize();
+    }
+
+    @Override
+    public Object fileKey() {
+        return null;
+    }
+
+    public RemoteEntry getEntry() {
+        return entry;
+    }
+
+}
@@ -0,0 +1,342 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * ftp/sftp服务器上的文件系统, 由RemoteFileSystemProvider创建
+ *
+ * <p>
+ * 读写和列目录通过TransferClient完成, 每次操作从连接池借出连接。文件属性取自上级目录的列表,
+ * 属性和列表缓存在RemoteAttributeCache中, 本文件系统的写操作自动使对应路径失效, 其它途径修改服务器文件后调用invalidate。
+ * newByteChannel按块随机读取, 读过的块缓存在RemoteBlockCache中
+ * </p>
+ */
+public class RemoteFileSystem extends FileSystem {
+
+    private static final AtomicInteger UPLOADS = new AtomicInteger();
+
+    private static final RemoteEntry ROOT = new RemoteEntry("/", "/", true, 0, 0);
+
+    private final RemoteFileSystemProvider provider;
+
+    private final URI uri;
+
+    private final TransferClient client;
+
+    private final RemoteAttributeCache cache;
+
+    private final RemoteBlockCache blockCache;
+
+    private volatile boolean open = true;
+
+    RemoteFileSystem(RemoteFileSystemProvider provider, URI uri, TransferClient client, RemoteAttributeCache cache,
+            RemoteBlockCache blockCache) {
+        this.provider = provider;
+        this.uri = uri;
+        this.client = client;
+        this.cache = cache;
+        this.blockCache = blockCache;
+    }
+
+    @Override
+    public RemoteFileSystemProvider provider() {
+        return provider;
+    }
+
+    /**
+     * 文件系统的URI, 只含协议、用户、主机和端口
+     *
+     * @return URI
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+    public TransferClient getClient() {
+        return client;
+    }
+
+    public RemoteAttributeCache getCache() {
+        return cache;
+    }
+
+    public RemoteBlockCache getBlockCache() {
+        return blockCache;
+    }
+
+    /**
+     * 使路径的缓存失效, 在其它途径修改了服务器文件后调用
+     *
+     * @param path
+     */
+    public void invalidate(Path path) {
+        String absolute = absolute(path);
+        cache.invalidate(absolute);
+        blockCache.invalidate(absolute);
+    }
+
+    /**
+     * 使路径及其下级的缓存失效
+     *
+     * @param path
+     */
+    public void invalidateTree(Path path) {
+        cache.invalidateTree(absolute(path));
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            cache.clear();
+            blockCache.clear();
+            provider.remove(this);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return false;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.<Path> singletonList(new RemotePath(this, "/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton("basic");
+    }
+
+    @Override
+    public RemotePath getPath(String first, String... more) {
+        StringBuilder builder = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) {
+                if (builder.length() > 0) {
+                    builder.append('/');
+                }
+                builder.append(name);
+            }
+        }
+        return new RemotePath(this, builder.toString());
+    }
+
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int index = syntaxAndPattern.indexOf(':');
+        if (index <= 0) {
+            throw new IllegalArgumentException(syntaxAndPattern);
+        }
+        String syntax = syntaxAndPattern.substring(0, index);
+        final String pattern = syntaxAndPattern.substring(index + 1);
+        if (syntax.equalsIgnoreCase("regex")) {
+            final Pattern regex = Pattern.compile(pattern);
+            return new PathMatcher() {
+                @Override
+                public boolean matches(Path path) {
+                    return regex.matcher(path.toString()).matches();
+                }
+            };
+        }
+        // glob按'/'分隔匹配, 借用本地文件系统的实现
+        final PathMatcher glob = FileSystems.getDefault().getPathMatcher(syntaxAndPattern);
+        return new PathMatcher() {
+            @Override
+            public boolean matches(Path path) {
+                return glob.matches(FileSystems.getDefault().getPath(path.toString()));
+            }
+        };
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 文件属性, 优先使用缓存, 否则列出上级目录
+     *
+     * @param path 绝对路径
+     * @return RemoteEntry 不存在时返回null
+     * @throws IOException
+     */
+    RemoteEntry stat(String path) throws IOException {
+        if ("/".equals(path)) {
+            return ROOT;
+        }
+        RemoteEntry entry = cache.getAttributes(path);
+        if (entry != null) {
+            return entry;
+        }
+        String name = RemotePaths.name(path);
+        for (RemoteEntry item : list(RemotePaths.parent(path))) {
+            if (item.getName().equals(name)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 目录列表, 优先使用缓存
+     *
+     * @param directory 绝对路径
+     * @return List
+     * @throws IOException
+     */
+    List<RemoteEntry> list(String directory) throws IOException {
+        List<RemoteEntry> entries = cache.getListing(directory);
+        if (entries == null) {
+            entries = client.list(directory);
+            cache.putListing(directory, entries);
+        }
+        return entries;
+    }
+
+    InputStream openInputStream(String path) throws IOException {
+        return client.openInputStream(RemotePaths.parent(path), RemotePaths.name(path));
+    }
+
+    /**
+     * 随机读取的通道, 块缓存的键包含文件大小和修改时间, 属性缓存过期后服务器上的修改自然生效
+     *
+     * @param entry 文件属性, 路径为绝对路径
+     * @return SeekableByteChannel
+     */
+    SeekableByteChannel openChannel(RemoteEntry entry) {
+        return RemoteByteChannel.open(client.rangeReader(), entry, blockCache);
+    }
+
+    /**
+     * 写入服务器文件的输出流: 上传在后台线程执行, 数据经RelayBuffer传递; 关闭时等待上传结束, 失败时抛出上传的错误
+     *
+     * @param path 绝对路径
+     * @return OutputStream
+     */
+    OutputStream openOutputStream(final String path) {
+        final RelayBuffer buffer = new RelayBuffer(4, 64 * 1024);
+        final FutureTask<TransferResult> upload = new FutureTask<>(new Callable<TransferResult>() {
+
+            @Override
+            public TransferResult call() {
+                try {
+                    return client.upload(buffer.getInputStream(), -1, RemotePaths.parent(path), RemotePaths.name(path));
+                } finally {
+                    // 上传提前结束时让写入端停止
+                    IOUtils.closeQuietly(buffer.getInputStream());
+                }
+            }
+        });
+        Thread thread = new Thread(upload, "remote-fs-upload-" + UPLOADS.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+
+        return new FilterOutputStream(buffer.getOutputStream()) {
+
+            private boolean closed;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    out.write(b, off, len);
+                } catch (IOException e) {
+                    throw uploadError(e);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    buffer.fail(e);
+                }
+                TransferResult result = result();
+                cache.invalidate(path);
+                blockCache.invalidate(path);
+                if (!result.isSuccess()) {
+                    throw new IOException(String.format("upload [%s] failure", path), result.getError());
+                }
+            }
+
+            private IOException uploadError(IOException e) {
+                if (!upload.isDone()) {
+                    return e;
+                }
+                TransferResult result = result();
+                return result.isSuccess() ? e : new IOException(String.format("upload [%s] failure", path), result.getError());
+            }
+
+            private TransferResult result() {
+                try {
+                    return upload.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    buffer.fail(new IOException("upload interrupted"));
+                    return TransferResult.failure(null, path, 0, e);
+                } catch (ExecutionException e) {
+                    return TransferResult.failure(null, path, 0, e.getCause());
+                }
+            }
+        };
+    }
+
+    boolean createDirectory(String path) {
+        boolean created = client.createDirectory(path);
+        cache.invalidate(path);
+        return created;
+    }
+
+    String absolute(Path path) {
+        return provider.check(path).toAbsolutePath().normalize().toString();
+    }
+
+}
@@ -0,0 +1,449 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ftp://和sftp://的文件系统
+ *
+ * <p>
+ * 每个"用户@主机:端口"对应一个RemoteFileSystem, 由newFileSystem创建, env可指定:
+ * </p>
+ * <ul>
+ * <li>password: 密码, 也可写在URI的user-info中(user:password)</li>
+ * <li>client: 已配置好的TransferClient, 指定后不再新建客户端</li>
+ * <li>cache.ttl: 属性和列表的缓存时间(毫秒), 默认30秒</li>
+ * <li>cache.size: 缓存条目上限, 默认10000</li>
+ * <li>block.size: newByteChannel随机读取的块大小(字节), 默认64K</li>
+ * <li>block.cache: 缓存的块数上限, 默认256</li>
+ * </ul>
+ * <p>
+ * URI带密码时getPath自动创建文件系统。不支持删除、改名和修改属性, 写入的通道只能顺序写
+ * </p>
+ */
+public abstract class RemoteFileSystemProvider extends FileSystemProvider {
+
+    private final ConcurrentMap<String, RemoteFileSystem> fileSystems = new ConcurrentHashMap<>();
+
+    /**
+     * 新建客户端
+     *
+     * @param host
+     * @param port URI未指定端口时为-1
+     * @param username
+     * @param password
+     * @return TransferClient
+     */
+    protected abstract TransferClient newClient(String host, int port, String username, String password);
+
+    @Override
+    public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
+        checkScheme(uri);
+        String key = key(uri);
+        RemoteFileSystem fileSystem = create(uri, env);
+        if (fileSystems.putIfAbsent(key, fileSystem) != null) {
+            throw new FileSystemAlreadyExistsException(key);
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public FileSystem getFileSystem(URI uri) {
+        checkScheme(uri);
+        RemoteFileSystem fileSystem = fileSystems.get(key(uri));
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(key(uri));
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        checkScheme(uri);
+        String key = key(uri);
+        RemoteFileSystem fileSystem = fileSystems.get(key);
+        if (fileSystem == null) {
+            if (password(uri, null) == null) {
+                throw new FileSystemNotFoundException(key);
+            }
+            RemoteFileSystem created = create(uri, null);
+            fileSystem = fileSystems.putIfAbsent(key, created);
+            if (fileSystem == null) {
+                fileSystem = created;
+            }
+        }
+        String path = uri.getPath();
+        return fileSystem.getPath(path == null || path.isEmpty() ? "/" : path);
+    }
+
+    private RemoteFileSystem create(URI uri, Map<String, ?> env) {
+        Object client = env == null ? null : env.get("client");
+        if (client == null) {
+            client = newClient(uri.getHost(), uri.getPort(), username(uri), password(uri, env));
+        }
+        long ttl = env == null || env.get("cache.ttl") == null ? 30 * 1000 : Long.parseLong(env.get("cache.ttl").toString());
+        int size = env == null || env.get("cache.size") == null ? 10000 : Integer.parseInt(env.get("cache.size").toString());
+        int blockSize = env == null || env.get("block.size") == null ? 64 * 1024 : Integer.parseInt(env.get("block.size").toString());
+        int blocks = env == null || env.get("block.cache") == null ? 256 : Integer.parseInt(env.get("block.cache").toString());
+        try {
+            URI base = new URI(uri.getScheme(), username(uri), uri.getHost(), uri.getPort(), null, null, null);
+            return new RemoteFileSystem(this, base, (TransferClient) client, new RemoteAttributeCache(size, ttl), new RemoteBlockCache(blockSize, blocks));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    void remove(RemoteFileSystem fileSystem) {
+        fileSystems.remove(key(fileSystem.getUri()), fileSystem);
+    }
+
+    private void checkScheme(URI uri) {
+        if (!getScheme().equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException(String.format("URI scheme is not [%s]: %s", getScheme(), uri));
+        }
+    }
+
+    private static String key(URI uri) {
+        return username(uri) + "@" + uri.getHost() + ":" + uri.getPort();
+    }
+
+    private static String username(URI uri) {
+        String userInfo = uri.getUserInfo();
+        if (userInfo == null) {
+            return null;
+        }
+        int index = userInfo.indexOf(':');
+        return index < 0 ? userInfo : userInfo.substring(0, index);
+    }
+
+    private static String password(URI uri, Map<String, ?> env) {
+        if (env != null && env.get("password") != null) {
+            return env.get("password").toString();
+        }
+        String userInfo = uri.getUserInfo();
+        int index = userInfo == null ? -1 : userInfo.indexOf(':');
+        return index < 0 ? null : userInfo.substring(index + 1);
+    }
+
+    RemotePath check(Path path) {
+        if (!(path instanceof RemotePath) || path.getFileSystem().provider() != this) {
+            throw new ProviderMismatchException();
+        }
+        return (RemotePath) path;
+    }
+
+    private RemoteEntry existing(Path path) throws IOException {
+        RemotePath remote = check(path);
+        RemoteEntry entry = remote.getFileSystem().stat(remote.getFileSystem().absolute(path));
+        if (entry == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return entry;
+    }
+
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        RemoteEntry entry = existing(path);
+        if (entry.isDirectory()) {
+            throw new IOException(String.format("[%s] is a directory", path));
+        }
+        RemotePath remote = check(path);
+        return remote.getFileSystem().openInputStream(remote.getFileSystem().absolute(path));
+    }
+
+    @Override
+    public OutputStream newOutputStream(Path path, OpenOption... options) throws IOException {
+        Set<OpenOption> set = new HashSet<>(Arrays.asList(options));
+        if (set.isEmpty()) {
+            set.add(StandardOpenOption.CREATE);
+        }
+        RemotePath remote = check(path);
+        String absolute = remote.getFileSystem().absolute(path);
+        if (set.contains(StandardOpenOption.APPEND)) {
+            throw new UnsupportedOperationException("APPEND");
+        }
+        RemoteEntry entry = remote.getFileSystem().stat(absolute);
+        if (entry != null && set.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new FileAlreadyExistsException(path.toString());
+        }
+        if (entry == null && !set.contains(StandardOpenOption.CREATE) && !set.contains(StandardOpenOption.CREATE_NEW)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (entry != null && entry.isDirectory()) {
+            throw new IOException(String.format("[%s] is a directory", path));
+        }
+        return remote.getFileSystem().openOutputStream(absolute);
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        if (options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND)) {
+            return new WriteChannel(Channels.newChannel(newOutputStream(path, options.toArray(new OpenOption[options.size()]))));
+        }
+        RemoteEntry entry = existing(path);
+        if (entry.isDirectory()) {
+            throw new IOException(String.format("[%s] is a directory", path));
+        }
+        return check(path).getFileSystem().openChannel(entry);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(final Path dir, final DirectoryStream.Filter<? super Path> filter) throws IOException {
+        if (!existing(dir).isDirectory()) {
+            throw new NotDirectoryException(dir.toString());
+        }
+        RemotePath remote = check(dir);
+        final List<Path> children = new ArrayList<>();
+        for (RemoteEntry entry : remote.getFileSystem().list(remote.getFileSystem().absolute(dir))) {
+            Path child = dir.resolve(entry.getName());
+            if (filter == null || filter.accept(child)) {
+                children.add(child);
+            }
+        }
+        return new DirectoryStream<Path>() {
+
+            @Override
+            public Iterator<Path> iterator() {
+                return children.iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        RemotePath remote = check(dir);
+        String absolute = remote.getFileSystem().absolute(dir);
+        if (remote.getFileSystem().stat(absolute) != null) {
+            throw new FileAlreadyExistsException(dir.toString());
+        }
+        String parent = RemotePaths.parent(absolute);
+        RemoteEntry parentEntry = parent == null ? null : remote.getFileSystem().stat(parent);
+        if (parentEntry == null || !parentEntry.isDirectory()) {
+            throw new NoSuchFileException(parent);
+        }
+        if (!remote.getFileSystem().createDirectory(absolute)) {
+            throw new IOException(String.format("create directory [%s] failure", dir));
+        }
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new UnsupportedOperationException("delete");
+    }
+
+    /**
+     * 经本机流式复制, 源和目标可以在不同服务器上
+     */
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) throws IOException {
+        boolean replace = Arrays.asList(options).contains(StandardCopyOption.REPLACE_EXISTING);
+        if (existing(source).isDirectory()) {
+            throw new IOException(String.format("[%s] is a directory", source));
+        }
+        OpenOption create = replace ? StandardOpenOption.CREATE : StandardOpenOption.CREATE_NEW;
+        try (InputStream in = newInputStream(source); OutputStream out = newOutputStream(target, create)) {
+            TransferStreams.copy(in, out, BufferPool.forSize(64 * 1024), null);
+        }
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new UnsupportedOperationException("move");
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) {
+        return check(path).toAbsolutePath().normalize().equals(check(path2).toAbsolutePath().normalize());
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path name = check(path).getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        existing(path);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(final Path path, Class<V> type, LinkOption... options) {
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        return (V) new BasicFileAttributeView() {
+
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return new RemoteFileAttributes(existing(path));
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
+        if (!type.isAssignableFrom(RemoteFileAttributes.class)) {
+            throw new UnsupportedOperationException(type.getName());
+        }
+        return (A) new RemoteFileAttributes(existing(path));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        String names = attributes;
+        int index = attributes.indexOf(':');
+        if (index >= 0) {
+            if (!attributes.substring(0, index).equals("basic")) {
+                throw new UnsupportedOperationException(attributes);
+            }
+            names = attributes.substring(index + 1);
+        }
+        RemoteFileAttributes attrs = new RemoteFileAttributes(existing(path));
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("lastModifiedTime", attrs.lastModifiedTime());
+        all.put("lastAccessTime", attrs.lastAccessTime());
+        all.put("creationTime", attrs.creationTime());
+        all.put("size", attrs.size());
+        all.put("isRegularFile", attrs.isRegularFile());
+        all.put("isDirectory", attrs.isDirectory());
+        all.put("isSymbolicLink", attrs.isSymbolicLink());
+        all.put("isOther", attrs.isOther());
+        all.put("fileKey", attrs.fileKey());
+        if (names.equals("*")) {
+            return all;
+        }
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            if (!all.containsKey(name)) {
+                throw new IllegalArgumentException(name);
+            }
+            selected.put(name, all.get(name));
+        }
+        return selected;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new UnsupportedOperationException(attribute);
+    }
+
+    /**
+     * 顺序写的通道
+     */
+    private static class WriteChannel implements SeekableByteChannel {
+
+        private final WritableByteChannel out;
+
+        private long position;
+
+        WriteChannel(WritableByteChannel out) {
+            this.out = out;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            throw new NonReadableChannelException();
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = out.write(src);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            throw new UnsupportedOperationException("sequential access only");
+        }
+
+        @Override
+        public long size() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return out.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+    }
+
+}
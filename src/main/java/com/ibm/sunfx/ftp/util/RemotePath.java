@@ -0,0 +1,312 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 远程文件系统中的路径, '/'分隔
+ *
+ * <p>
+ * 只做字符串处理, 不访问服务器; 相对路径按根目录解析
+ * </p>
+ */
+public class RemotePath implements Path {
+
+    private final RemoteFileSystem fileSystem;
+
+    private final String path;
+
+    private volatile String[] names;
+
+    RemotePath(RemoteFileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.path = path.isEmpty() ? path : RemotePaths.normalize(path);
+    }
+
+    private String[] names() {
+        String[] result = names;
+        if (result == null) {
+            String relative = path.startsWith("/") ? path.substring(1) : path;
+            result = relative.isEmpty() ? new String[0] : relative.split("/");
+            names = result;
+        }
+        return result;
+    }
+
+    private RemotePath of(String value) {
+        return new RemotePath(fileSystem, value);
+    }
+
+    private RemotePath check(Path other) {
+        if (!(other instanceof RemotePath)) {
+            throw new ProviderMismatchException();
+        }
+        return (RemotePath) other;
+    }
+
+    @Override
+    public RemoteFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return path.startsWith("/");
+    }
+
+    @Override
+    public Path getRoot() {
+        return isAbsolute() ? of("/") : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        String[] parts = names();
+        return parts.length == 0 ? (path.isEmpty() ? this : null) : of(parts[parts.length - 1]);
+    }
+
+    @Override
+    public Path getParent() {
+        String[] parts = names();
+        if (parts.length == 0 || (parts.length == 1 && !isAbsolute())) {
+            return null;
+        }
+        return parts.length == 1 ? of("/") : of(join(parts, 0, parts.length - 1, isAbsolute()));
+    }
+
+    @Override
+    public int getNameCount() {
+        return path.isEmpty() ? 1 : names().length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        if (path.isEmpty() && index == 0) {
+            return this;
+        }
+        String[] parts = names();
+        if (index < 0 || index >= parts.length) {
+            throw new IllegalArgumentException(String.valueOf(index));
+        }
+        return of(parts[index]);
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        String[] parts = names();
+        if (beginIndex < 0 || endIndex > parts.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException(beginIndex + "-" + endIndex);
+        }
+        return of(join(parts, beginIndex, endIndex, false));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        RemotePath prefix = check(other);
+        if (prefix.isAbsolute() != isAbsolute()) {
+            return false;
+        }
+        String[] parts = names();
+        String[] prefixParts = prefix.names();
+        if (prefixParts.length > parts.length) {
+            return false;
+        }
+        for (int i = 0; i < prefixParts.length; i++) {
+            if (!prefixParts[i].equals(parts[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return startsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        RemotePath suffix = check(other);
+        if (suffix.isAbsolute()) {
+            return suffix.path.equals(path);
+        }
+        String[] parts = names();
+        String[] suffixParts = suffix.names();
+        if (suffixParts.length > parts.length) {
+            return false;
+        }
+        for (int i = 1; i <= suffixParts.length; i++) {
+            if (!suffixParts[suffixParts.length - i].equals(parts[parts.length - i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return endsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path normalize() {
+        List<String> parts = new ArrayList<>();
+        for (String name : names()) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..") && !parts.isEmpty() && !parts.get(parts.size() - 1).equals("..")) {
+                parts.remove(parts.size() - 1);
+                continue;
+            }
+            if (name.equals("..") && isAbsolute()) {
+                // 根目录的上级还是根目录
+                continue;
+            }
+            parts.add(name);
+        }
+        return of(join(parts.toArray(new String[parts.size()]), 0, parts.size(), isAbsolute()));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        RemotePath child = check(other);
+        if (child.isAbsolute()) {
+            return child;
+        }
+        if (child.path.isEmpty()) {
+            return this;
+        }
+        return path.isEmpty() ? child : of(RemotePaths.join(path, child.path));
+    }
+
+    @Override
+    public Path resolve(String other) {
+        return resolve(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        Path parent = getParent();
+        return parent == null ? other : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return resolveSibling(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        RemotePath target = check(other);
+        if (target.isAbsolute() != isAbsolute()) {
+            throw new IllegalArgumentException("'other' is different type of Path");
+        }
+        String[] parts = names();
+        String[] targetParts = target.names();
+        int common = 0;
+        while (common < parts.length && common < targetParts.length && parts[common].equals(targetParts[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < parts.length; i++) {
+            relative.add("..");
+        }
+        relative.addAll(Arrays.asList(targetParts).subList(common, targetParts.length));
+        return of(join(relative.toArray(new String[relative.size()]), 0, relative.size(), false));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            URI base = fileSystem.getUri();
+            return new URI(base.getScheme(), base.getUserInfo(), base.getHost(), base.getPort(), toAbsolutePath().toString(), null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return isAbsolute() ? this : of("/" + path);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) throws IOException {
+        RemotePath absolute = (RemotePath) toAbsolutePath().normalize();
+        fileSystem.provider().checkAccess(absolute);
+        return absolute;
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>[] events, WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> list = new ArrayList<>();
+        for (int i = 0; i < getNameCount(); i++) {
+            list.add(getName(i));
+        }
+        return list.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return path.compareTo(check(other).path);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RemotePath)) {
+            return false;
+        }
+        RemotePath other = (RemotePath) obj;
+        return fileSystem == other.fileSystem && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private static String join(String[] parts, int from, int to, boolean absolute) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            builder.append('/').append(parts[i]);
+        }
+        if (absolute) {
+            return builder.length() == 0 ? "/" : builder.toString();
+        }
+        return builder.length() == 0 ? "" : builder.substring(1);
+    }
+
+}
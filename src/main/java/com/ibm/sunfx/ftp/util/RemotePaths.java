@@ -0,0 +1,112 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 远程路径('/'分隔)处理
+ */
+public final class RemotePaths {
+
+    private RemotePaths() {
+
+    }
+
+    /**
+     * 去掉重复及末尾的'/', 根目录返回"/"
+     * 
+     * @param path
+     * @return String
+     */
+    public static String normalize(String path) {
+        StringBuilder builder = new StringBuilder(path.length());
+        char last = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && last == '/') {
+                continue;
+            }
+            builder.append(c);
+            last = c;
+        }
+        if (builder.length() > 1 && last == '/') {
+            builder.setLength(builder.length() - 1);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 拼接目录和名称
+     * 
+     * @param directory
+     * @param name
+     * @return String
+     */
+    public static String join(String directory, String name) {
+        if (directory == null || directory.isEmpty()) {
+            return name;
+        }
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        return directory.endsWith("/") ? directory + name : directory + "/" + name;
+    }
+
+    /**
+     * 相对路径按base解析为绝对路径
+     * 
+     * @param base 登录目录
+     * @param path
+     * @return String
+     */
+    public static String absolute(String base, String path) {
+        if (path.startsWith("/") || base == null) {
+            return normalize(path);
+        }
+        return normalize(join(base, path));
+    }
+
+    /**
+     * 上级目录, 根目录或单级相对路径返回null
+     * 
+     * @param path
+     * @return String
+     */
+    public static String parent(String path) {
+        String normalized = normalize(path);
+        int index = normalized.lastIndexOf('/');
+        if (index < 0 || normalized.equals("/")) {
+            return null;
+        }
+        return index == 0 ? "/" : normalized.substring(0, index);
+    }
+
+    /**
+     * 文件名
+     * 
+     * @param path
+     * @return String
+     */
+    public static String name(String path) {
+        String normalized = normalize(path);
+        int index = normalized.lastIndexOf('/');
+        return index < 0 ? normalized : normalized.substring(index + 1);
+    }
+
+    /**
+     * 从上到下的各级目录, 如/a/b/c返回[/a, /a/b, /a/b/c]
+     * 
+     * @param path
+     * @return List<String>
+     */
+    public static List<String> ancestors(String path) {
+        List<String> list = new ArrayList<>();
+        String current = normalize(path);
+        while (current != null && !current.equals("/")) {
+            list.add(0, current);
+            current = parent(current);
+        }
+        return list;
+    }
+
+}
@@ -0,0 +1,31 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 按字节范围读取服务器文件
+ */
+public interface RemoteRangeReader {
+
+    /**
+     * 服务器文件大小
+     * 
+     * @param remotePath
+     * @return long 文件不存在时返回-1
+     * @throws IOException
+     */
+    long size(String remotePath) throws IOException;
+
+    /**
+     * 打开从offset开始最多length字节的输入流, 关闭流时释放连接
+     * 
+     * @param remotePath
+     * @param offset
+     * @param length
+     * @return InputStream
+     * @throws IOException
+     */
+    InputStream openRange(String remotePath, long offset, long length) throws IOException;
+
+}
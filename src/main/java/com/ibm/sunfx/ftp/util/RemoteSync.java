@@ -0,0 +1,155 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 增量同步远程目录到本地
+ *
+ * <p>
+ * 比较服务器文件的大小和修改时间与上次同步的清单, 只下载新增或变化的文件。开启pruneUnchangedDirectories后,
+ * 修改时间未变的目录整棵跳过, 不再列目录; 目录修改时间只随直接下级的增删改名变化, 适合文件只新增或整体替换的目录树。
+ * </p>
+ */
+public class RemoteSync {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private boolean pruneUnchangedDirectories;
+
+    private int skippedFiles;
+
+    private int prunedDirectories;
+
+    /**
+     * 同步
+     *
+     * @param source 协议操作
+     * @param remoteRoot 远程目录
+     * @param localRoot 本地目录
+     * @param manifestFile 清单文件
+     * @return BatchReport 本次下载的文件及失败项
+     */
+    public BatchReport sync(RemoteSyncSource source, String remoteRoot, File localRoot, File manifestFile) {
+        long start = System.currentTimeMillis();
+        skippedFiles = 0;
+        prunedDirectories = 0;
+        List<TransferResult> results = new ArrayList<>();
+        SyncManifest previous;
+        try {
+            previous = SyncManifest.load(manifestFile);
+        } catch (IOException | RuntimeException e) {
+            logger.error(String.format("sync manifest [%s] unreadable, full sync", manifestFile), e);
+            previous = new SyncManifest();
+        }
+        SyncManifest next = new SyncManifest();
+
+        Deque<String> directories = new ArrayDeque<>();
+        directories.push("");
+        while (!directories.isEmpty()) {
+            String relative = directories.pop();
+            String remoteDirectory = relative.isEmpty() ? remoteRoot : RemotePaths.join(remoteRoot, relative);
+            List<RemoteEntry> entries;
+            try {
+                entries = source.list(remoteDirectory);
+            } catch (IOException e) {
+                logger.error(String.format("sync list directory [%s] error", remoteDirectory), e);
+                results.add(TransferResult.failure(new File(localRoot, relative).getPath(), remoteDirectory, 0, e));
+                // 保留上次的记录, 下次再比较
+                next.copySubtree(previous, relative);
+                continue;
+            }
+            for (RemoteEntry entry : entries) {
+                String path = relative.isEmpty() ? entry.getName() : relative + "/" + entry.getName();
+                SyncManifest.Item item = previous.get(path);
+                File localFile = new File(localRoot, path);
+                if (entry.isDirectory()) {
+                    next.put(path, true, 0, entry.getModified());
+                    if (pruneUnchangedDirectories && item != null && item.isDirectory() && entry.getModified() > 0
+                            && item.getModified() == entry.getModified() && localFile.isDirectory()) {
+                        next.copySubtree(previous, path);
+                        prunedDirectories++;
+                    } else {
+                        localFile.mkdirs();
+                        directories.push(path);
+                    }
+                    continue;
+                }
+                if (item != null && !item.isDirectory() && item.getSize() == entry.getSize() && item.getModified() == entry.getModified()
+                        && localFile.isFile() && localFile.length() == entry.getSize()) {
+                    next.put(path, false, entry.getSize(), entry.getModified());
+                    skippedFiles++;
+                    continue;
+                }
+                results.add(download(source, entry, localFile));
+                if (results.get(results.size() - 1).isSuccess()) {
+                    next.put(path, false, entry.getSize(), entry.getModified());
+                }
+            }
+        }
+
+        try {
+            next.save(manifestFile);
+        } catch (IOException e) {
+            logger.error(String.format("sync save manifest [%s] error", manifestFile), e);
+        }
+        BatchReport report = new BatchReport(results, System.currentTimeMillis() - start);
+        logger.info(String.format("sync [%s] to [%s]: %s, skipped files[%s] pruned directories[%s]", remoteRoot, localRoot, report, skippedFiles,
+                prunedDirectories));
+        return report;
+    }
+
+    private TransferResult download(RemoteSyncSource source, RemoteEntry entry, File localFile) {
+        long start = System.currentTimeMillis();
+        try {
+            File parent = localFile.getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            source.download(entry, localFile);
+            if (entry.getModified() > 0) {
+                localFile.setLastModified(entry.getModified());
+            }
+            return TransferResult.success(localFile.getPath(), entry.getPath(), localFile.length(), System.currentTimeMillis() - start);
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(localFile);
+            logger.error(String.format("sync download [%s] error", entry.getPath()), e);
+            return TransferResult.failure(localFile.getPath(), entry.getPath(), System.currentTimeMillis() - start, e);
+        }
+    }
+
+    public boolean isPruneUnchangedDirectories() {
+        return pruneUnchangedDirectories;
+    }
+
+    public void setPruneUnchangedDirectories(boolean pruneUnchangedDirectories) {
+        this.pruneUnchangedDirectories = pruneUnchangedDirectories;
+    }
+
+    /**
+     * 上次同步中未变化而跳过的文件数
+     *
+     * @return int
+     */
+    public int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * 上次同步中整棵跳过的目录数
+     *
+     * @return int
+     */
+    public int getPrunedDirectories() {
+        return prunedDirectories;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 增量同步所需的协议操作
+ */
+public interface RemoteSyncSource {
+
+    /**
+     * 列出目录的直接下级(不含.和..)
+     * 
+     * @param directory
+     * @return List<RemoteEntry>
+     * @throws IOException
+     */
+    List<RemoteEntry> list(String directory) throws IOException;
+
+    /**
+     * 下载文件
+     * 
+     * @param entry
+     * @param localFile
+     * @throws IOException
+     */
+    void download(RemoteEntry entry, File localFile) throws IOException;
+
+}
@@ -0,0 +1,399 @@
+package com.ibm.sunfx.ftp.util;
+
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 创建sftp通道, 供连接池使用
+ * 
+ * <p>
+ * 同一个服务器的多个ChannelSftp复用已认证的ssh Session, 每个Session最多打开maxChannelsPerSession个通道,
+ * Session上最后一个通道关闭时断开该Session。compressed的ServerKey使用单独的zlib压缩Session。新建和校验通道时记录一次realpath的往返时间, 用于估算请求窗口使用率。
+ * 校验文件时在同一Session上打开exec通道执行sha256sum/md5sum, 没有该命令的Session不再尝试
+ * </p>
+ */
+public class SFTPChannelFactory implements ConnectionFactory<ChannelSftp> {
+
+  // shell找不到命令时的退出码
+  private static final int COMMAND_NOT_FOUND = 127;
+
+  private static final Map<ChecksumAlgorithm, String> DIGEST_COMMANDS = new EnumMap<>(ChecksumAlgorithm.class);
+
+  static {
+    DIGEST_COMMANDS.put(ChecksumAlgorithm.SHA_256, "sha256sum");
+    DIGEST_COMMANDS.put(ChecksumAlgorithm.MD5, "md5sum");
+  }
+
+  private Logger logger = LoggerFactory.getLogger(getClass());
+
+  private int maxChannelsPerSession = 4;
+
+  private int timeout = 20 * 1000;
+
+  private TransferMetrics metrics = TransferMetrics.getDefault();
+
+  private TransferIOConfig ioConfig = TransferIOConfig.lan();
+
+  private final Map<ServerKey, List<SessionHolder>> sessions = new HashMap<>();
+
+  private final Map<ChannelSftp, SessionHolder> channels = new IdentityHashMap<>();
+
+  @Override
+  public ChannelSftp create(ServerKey key) throws IOException {
+    SessionHolder holder = acquireSession(key);
+    try {
+      Channel channel = holder.session.openChannel("sftp");
+      channel.connect();
+      ChannelSftp sftp = (ChannelSftp) channel;
+      sftp.setFilenameEncoding("UTF-8");
+      sftp.setBulkRequests(ioConfig.getSftpBulkRequests());
+      holder.roundTripMicros = roundTrip(sftp);
+      synchronized (this) {
+        channels.put(sftp, holder);
+      }
+      if (logger.isDebugEnabled()) {
+        logger.debug(String.format("sftp---Session ip[%s]port[%s]success", key.getHost(), key.getPort()));
+      }
+      return sftp;
+    } catch (JSchException | SftpException e) {
+      releaseSession(key, holder);
+      throw new IOException(String.format("sftp open channel to [%s] failure", key), e);
+    }
+  }
+
+  @Override
+  public boolean validate(ServerKey key, ChannelSftp sftp) {
+    if (!sftp.isConnected() || sftp.isClosed()) {
+      return false;
+    }
+    try {
+      long roundTrip = roundTrip(sftp);
+      SessionHolder holder;
+      synchronized (this) {
+        holder = channels.get(sftp);
+      }
+      if (holder != null) {
+        holder.roundTripMicros = roundTrip;
+      }
+      return true;
+    } catch (SftpException e) {
+      return false;
+    }
+  }
+
+  private static long roundTrip(ChannelSftp sftp) throws SftpException {
+    long start = System.nanoTime();
+    sftp.realpath(".");
+    return Math.max(1, (System.nanoTime() - start) / 1000);
+  }
+
+  /**
+   * 通道所在Session最近测得的往返时间
+   * 
+   * @param sftp
+   * @return long 微秒, 未知时为0
+   */
+  public long getRoundTripMicros(ChannelSftp sftp) {
+    SessionHolder holder;
+    synchronized (this) {
+      holder = channels.get(sftp);
+    }
+    return holder == null ? 0 : holder.roundTripMicros;
+  }
+
+  /**
+   * 通道所在Session上可由服务器计算的摘要算法
+   * 
+   * @param sftp
+   * @return Set 执行失败过的Session返回空集合
+   */
+  public Set<ChecksumAlgorithm> getRemoteDigests(ChannelSftp sftp) {
+    SessionHolder holder;
+    synchronized (this) {
+      holder = channels.get(sftp);
+    }
+    if (holder == null || holder.digestUnsupported) {
+      return Collections.emptySet();
+    }
+    return DIGEST_COMMANDS.keySet();
+  }
+
+  /**
+   * 服务器计算摘要的命令
+   * 
+   * @param algorithm
+   * @return String 不支持的算法返回null
+   */
+  public String getDigestCommand(ChecksumAlgorithm algorithm) {
+    return DIGEST_COMMANDS.get(algorithm);
+  }
+
+  /**
+   * 在通道所在Session上执行sha256sum/md5sum
+   * 
+   * <p>
+   * 服务器不允许exec或没有该命令(退出码127, 或失败且没有任何输出)时, 该Session之后不再尝试;
+   * 命令执行了但没有得到摘要(文件不可读、超时等)时只是这个文件校验失败
+   * </p>
+   * 
+   * @param sftp
+   * @param algorithm 算法
+   * @param remotePath 服务器文件绝对路径
+   * @return String 十六进制小写摘要, 服务器不能执行时返回null
+   * @throws IOException 命令执行了但没有得到这个文件的摘要
+   */
+  public String remoteDigest(ChannelSftp sftp, ChecksumAlgorithm algorithm, String remotePath) throws IOException {
+    SessionHolder holder;
+    synchronized (this) {
+      holder = channels.get(sftp);
+    }
+    String command = DIGEST_COMMANDS.get(algorithm);
+    if (holder == null || command == null || holder.digestUnsupported) {
+      return null;
+    }
+    ChannelExec exec = null;
+    int status;
+    String output;
+    String error;
+    try {
+      exec = (ChannelExec) holder.session.openChannel("exec");
+      exec.setCommand(command + " -- '" + remotePath.replace("'", "'\\''") + "'");
+      ByteArrayOutputStream err = new ByteArrayOutputStream();
+      exec.setErrStream(err);
+      InputStream in = exec.getInputStream();
+      exec.connect(timeout);
+      output = IOUtils.toString(in, "UTF-8").trim();
+      long deadline = System.currentTimeMillis() + timeout;
+      while (!exec.isClosed() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      status = exec.getExitStatus();
+      error = new String(err.toByteArray(), "UTF-8").trim();
+    } catch (JSchException e) {
+      logger.warn(String.format("sftp remote %s of [%s] unavailable: %s", command, remotePath, e));
+      holder.digestUnsupported = true;
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      if (exec != null) {
+        exec.disconnect();
+      }
+    }
+    String digest = output.isEmpty() ? null : output.split("\\s+")[0].toLowerCase(Locale.ROOT);
+    if (status == 0 && StreamDigest.isHex(algorithm, digest)) {
+      return digest;
+    }
+    if (status == COMMAND_NOT_FOUND || (status > 0 && output.isEmpty() && error.isEmpty())) {
+      logger.warn(String.format("sftp remote %s of [%s] unavailable, exit status [%s]", command, remotePath, status));
+      holder.digestUnsupported = true;
+      return null;
+    }
+    throw new IOException(String.format("sftp remote %s of [%s] failure, exit status [%s]: %s", command, remotePath, status,
+        error.isEmpty() ? output : error));
+  }
+
+  @Override
+  public void passivate(ServerKey key, ChannelSftp sftp) throws IOException {
+    if (!sftp.isConnected()) {
+      throw new IOException("sftp channel closed");
+    }
+    try {
+      // pwd和home都是本地缓存的值, 只有目录变化时才发送cd
+      String home = sftp.getHome();
+      if (!home.equals(sftp.pwd())) {
+        sftp.cd(home);
+      }
+    } catch (SftpException e) {
+      throw new IOException("sftp reset working directory failure", e);
+    }
+  }
+
+  @Override
+  public void destroy(ServerKey key, ChannelSftp sftp) {
+    sftp.disconnect();
+    SessionHolder holder;
+    synchronized (this) {
+      holder = channels.remove(sftp);
+    }
+    if (holder != null) {
+      releaseSession(key, holder);
+    }
+  }
+
+  /**
+   * 当前打开的ssh Session数
+   * 
+   * @param key
+   * @return int
+   */
+  public synchronized int getSessionCount(ServerKey key) {
+    List<SessionHolder> list = sessions.get(key);
+    return list == null ? 0 : list.size();
+  }
+
+  private SessionHolder acquireSession(ServerKey key) throws IOException {
+    synchronized (this) {
+      List<SessionHolder> list = sessions.get(key);
+      if (list != null) {
+        Iterator<SessionHolder> it = list.iterator();
+        while (it.hasNext()) {
+          SessionHolder holder = it.next();
+          if (!holder.session.isConnected()) {
+            if (holder.channels == 0) {
+              it.remove();
+            }
+            continue;
+          }
+          if (holder.channels < maxChannelsPerSession) {
+            holder.channels++;
+            return holder;
+          }
+        }
+      }
+    }
+    SessionHolder holder = new SessionHolder(openSession(key));
+    synchronized (this) {
+      List<SessionHolder> list = sessions.get(key);
+      if (list == null) {
+        list = new ArrayList<>();
+        sessions.put(key, list);
+      }
+      list.add(holder);
+    }
+    return holder;
+  }
+
+  private void releaseSession(ServerKey key, SessionHolder holder) {
+    synchronized (this) {
+      holder.channels--;
+      if (holder.channels > 0) {
+        return;
+      }
+      List<SessionHolder> list = sessions.get(key);
+      if (list != null) {
+        list.remove(holder);
+        if (list.isEmpty()) {
+          sessions.remove(key);
+        }
+      }
+    }
+    holder.session.disconnect();
+    if (logger.isDebugEnabled()) {
+      logger.debug(String.format("sftp---Session ip[%s]port[%s]disconnected", key.getHost(), key.getPort()));
+    }
+  }
+
+  private Session openSession(ServerKey key) throws IOException {
+    JSch jsch = new JSch();
+    try {
+      Session session = jsch.getSession(key.getUsername(), key.getHost(), key.getPort());
+      session.setPassword(key.getPassword());
+      Properties properties = new Properties();
+      properties.put("StrictHostKeyChecking", "no");
+      properties.put("userauth.gssapi-with-mic", "no");
+      if (key.isCompressed()) {
+        // 服务器不支持压缩时协商为none
+        properties.put("compression.s2c", "zlib@openssh.com,zlib,none");
+        properties.put("compression.c2s", "zlib@openssh.com,zlib,none");
+        properties.put("compression_level", String.valueOf(ioConfig.getCompressionLevel()));
+      }
+      session.setTimeout(timeout);
+      session.setSocketFactory(new SFTPSocketFactory(ioConfig, timeout));
+      session.setConfig(properties);
+      long start = System.currentTimeMillis();
+      session.connect();
+      // 握手和认证在connect中一起完成, 不单独统计认证耗时
+      metrics.recordConnect(System.currentTimeMillis() - start, -1);
+      if (logger.isDebugEnabled()) {
+        logger.debug(String.format("sftp---Session ip[%s]port[%s]connected", key.getHost(), key.getPort()));
+      }
+      return session;
+    } catch (JSchException e) {
+      metrics.recordConnectFailure(e);
+      throw new IOException(String.format("sftp connect to [%s] failure", key), e);
+    }
+  }
+
+  public int getMaxChannelsPerSession() {
+    return maxChannelsPerSession;
+  }
+
+  public void setMaxChannelsPerSession(int maxChannelsPerSession) {
+    this.maxChannelsPerSession = maxChannelsPerSession;
+  }
+
+  public int getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(int timeout) {
+    this.timeout = timeout;
+  }
+
+  public TransferIOConfig getIoConfig() {
+    return ioConfig;
+  }
+
+  /**
+   * 传输I/O参数, 对之后新建的Session和通道生效
+   * 
+   * @param ioConfig
+   */
+  public void setIoConfig(TransferIOConfig ioConfig) {
+    this.ioConfig = ioConfig;
+  }
+
+  public TransferMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(TransferMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  private static class SessionHolder {
+
+    final Session session;
+
+    // 新建时即为调用者预留一个通道
+    int channels = 1;
+
+    volatile long roundTripMicros;
+
+    // 执行sha256sum/md5sum失败过
+    volatile boolean digestUnsupported;
+
+    SessionHolder(Session session) {
+      this.session = session;
+    }
+
+  }
+
+}
@@ -0,0 +1,40 @@
+package com.ibm.sunfx.ftp.util;
+
+import com.jcraft.jsch.ChannelSftp;
+
+/**
+ * sftp通道连接池
+ * 
+ * <p>
+ * 复用已完成密钥交换和认证的ssh Session, 每个Session上复用多个ChannelSftp
+ * </p>
+ */
+public class SFTPChannelPool extends KeyedConnectionPool<ChannelSftp> {
+
+  private static final SFTPChannelPool DEFAULT = new SFTPChannelPool(new PoolConfig());
+
+  private final SFTPChannelFactory factory;
+
+  public SFTPChannelPool(PoolConfig config) {
+    this(new SFTPChannelFactory(), config);
+  }
+
+  public SFTPChannelPool(SFTPChannelFactory factory, PoolConfig config) {
+    super(factory, config);
+    this.factory = factory;
+  }
+
+  /**
+   * 默认共享的连接池
+   * 
+   * @return SFTPChannelPool
+   */
+  public static SFTPChannelPool getDefault() {
+    return DEFAULT;
+  }
+
+  public SFTPChannelFactory getFactory() {
+    return factory;
+  }
+
+}
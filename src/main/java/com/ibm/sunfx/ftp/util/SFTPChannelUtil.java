@@ -1,26 +1,33 @@
 package com.ibm.sunfx.ftp.util;
 
-import com.alibaba.fastjson.JSON;
-import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.JSchException;
-import com.jcraft.jsch.Session;
+import com.jcraft.jsch.ChannelSftp.LsEntry;
+import com.jcraft.jsch.ChannelSftp.LsEntrySelector;
+import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,15 +37,40 @@ import org.slf4j.LoggerFactory;
  * @author sunfeixiang
  * @since 2018年1月17日
  */
-public class SFTPChannelUtil {
+public class SFTPChannelUtil implements TransferClient {
 
   private Logger logger = LoggerFactory.getLogger(getClass());
   
   public static final String NO_FILE = "No such file";
 
-  private ChannelSftp sftp = null;
+  // 共享连接池, 每个线程通过connect借出自己的通道
+  private SFTPChannelPool pool = SFTPChannelPool.getDefault();
 
-  private Session sshSession = null;
+  private final ThreadLocal<ChannelSftp> current = new ThreadLocal<>();
+
+  // 借出通道时使用的ServerKey, 压缩和普通通道来自不同的Session
+  private final ThreadLocal<ServerKey> currentKey = new ThreadLocal<>();
+
+  // 已知存在的服务器目录
+  private RemoteDirectoryCache directoryCache = RemoteDirectoryCache.getDefault();
+
+  // 传输统计
+  private TransferMetrics metrics = TransferMetrics.getDefault();
+
+  // 传输进度监听, 可为null
+  private TransferListener listener;
+
+  // 传输压缩策略, sftp压缩按Session协商
+  private CompressionPolicy compression = CompressionPolicy.never();
+
+  // 传输校验策略
+  private IntegrityPolicy integrity = IntegrityPolicy.none();
+
+  // 发布方式
+  private PublishPolicy publish = PublishPolicy.direct();
+
+  // 批量上传日志, 可为null
+  private TransferJournal journal;
 
   private String username;
 
@@ -66,39 +98,35 @@ public class SFTPChannelUtil {
   /**
    * 连接sftp服务器
    * 
+   * <p>
+   * 从连接池借出一个通道并绑定到当前线程, 由disconnect归还
+   * </p>
+   * 
    * @return ChannelSftp sftp类型
-   * @throws GoPayException
    */
   public ChannelSftp connect() {
-    JSch jsch = new JSch();
+    return connect(false);
+  }
+
+  /**
+   * 借出压缩或普通Session上的通道; 当前线程已有通道时直接使用
+   * 
+   * @param compressed
+   * @return ChannelSftp
+   */
+  private ChannelSftp connect(boolean compressed) {
+    ChannelSftp sftp = current.get();
+    if (sftp != null && sftp.isConnected()) {
+      return sftp;
+    }
     try {
-      jsch.getSession(username, host, port);
-      sshSession = jsch.getSession(username, host, port);
-      if (logger.isDebugEnabled()) {
-        logger.debug(String.format("sftp---Session ip[%s]port[%s]created", host, port));
-      }
-      sshSession.setPassword(password);
-      Properties properties = new Properties();
-      properties.put("StrictHostKeyChecking", "no");
-      properties.put("userauth.gssapi-with-mic", "no");
-      sshSession.setTimeout(20 * 1000); //设置超时时间,20s
-      sshSession.setConfig(properties);
-      sshSession.connect();
-      if (logger.isDebugEnabled()) {
-        logger.debug(String.format("sftp---Session ip[%s]port[%s]connected", host, port));
-      }
-      Channel channel = sshSession.openChannel("sftp");
-      channel.connect();
-      sftp = (ChannelSftp) channel;
-      sftp.setFilenameEncoding("UTF-8");
-      if (logger.isDebugEnabled()) {
-        logger.debug(String.format("sftp---Session ip[%s]port[%s]success", host, port));
-      }
-    } catch (JSchException e) {
+      ServerKey key = serverKey(compressed);
+      sftp = pool.borrow(key);
+      current.set(sftp);
+      currentKey.set(key);
+    } catch (IOException e) {
       logger.error("SFTPChannelUtil connect error", e);
-    } catch (SftpException e) {
-        logger.error("SFTPChannelUtil connect error", e);
-      } 
+    }
     return sftp;
   }
 
@@ -112,34 +140,96 @@ public class SFTPChannelUtil {
    * @return File
    */
   public File downloadFile(String directory, String remoteFileName, String localFile) {
+    return downloadFile(directory, remoteFileName, localFile, false);
+  }
 
-    connect();
+  /**
+   * 
+   * 下载单个文件, 支持断点续传
+   * 
+   * <p>
+   * resume为true时保留本地未下载完的文件, 从本地文件大小处继续下载(RESUME); 大小与服务器相同时不再下载
+   * </p>
+   * 
+   * @param directory 远程下载目录
+   * @param remoteFileName FTP服务器文件名称 如：xxx.txt ||xxx.txt.zip
+   * @param localFile 本地文件路径 如 D:\\xxx.txt
+   * @param resume 是否续传
+   * @return File
+   */
+  public File downloadFile(String directory, String remoteFileName, String localFile, boolean resume) {
+    download(directory, remoteFileName, localFile, resume);
+    return new File(localFile);
+  }
+
+  @Override
+  public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume) {
+    return download(directory, remoteFileName, localFile, resume, compression);
+  }
+
+  /**
+   * 按指定的压缩策略下载单个文件, 只能按文件名判断是否压缩
+   * 
+   * @param directory 远程下载目录
+   * @param remoteFileName 服务器文件名称
+   * @param localFile 本地文件路径
+   * @param resume 是否续传
+   * @param compression 压缩策略, 压缩时使用zlib Session
+   * @return TransferResult
+   */
+  public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume, CompressionPolicy compression) {
+
+    long start = System.currentTimeMillis();
+    if (connect(compression.shouldCompress(remoteFileName, -1)) == null) {
+      return TransferResult.failure(localFile, RemotePaths.join(directory, remoteFileName), 0,
+          new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port)));
+    }
 
-    File file = null;
+    File file = new File(localFile);
+    String remotePath = RemotePaths.join(directory, remoteFileName);
     OutputStream output = null;
 
     try {
-      file = new File(localFile);
-      if (file.exists()) {
-        FileUtils.deleteQuietly(file);
+      remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+      long offset = 0;
+      if (resume && file.exists()) {
+        long remoteSize = sftp().stat(remotePath).getSize();
+        if (remoteSize == file.length()) {
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format("SFTPChannelUtil---file[%s] already complete at[%s]", remoteFileName, localFile));
+          }
+          return TransferResult.success(localFile, remotePath, 0, System.currentTimeMillis() - start);
+        }
+        if (remoteSize > file.length()) {
+          offset = file.length();
+        }
+      }
+      if (offset == 0) {
+        if (file.exists()) {
+          FileUtils.deleteQuietly(file);
+        }
+        if (!file.createNewFile()) {
+          return TransferResult.failure(localFile, remotePath, System.currentTimeMillis() - start,
+              new IOException(String.format("create file [%s] failure", localFile)));
+        }
       }
-      if (!file.createNewFile()) {
-        return file;
+      output = new FileOutputStream(file, offset > 0);
+      TransferResult result = this.get(remotePath, localFile, output, offset);
+      if (!result.isSuccess()) {
+        // 不保留校验失败的文件, 避免续传时当作已下载完成
+        IOUtils.closeQuietly(output);
+        FileUtils.deleteQuietly(file);
       }
-      sftp.cd(directory);
-      output = new FileOutputStream(file);
-      sftp.get(remoteFileName, output);
       if (logger.isDebugEnabled()) {
-        logger.debug(String.format("SFTPChannelUtil---dowload file[%s] save to[%s] success...", remoteFileName, localFile));
+        logger.debug(String.format("SFTPChannelUtil---dowload file[%s] save to[%s] from offset[%s] success...", remoteFileName, localFile, offset));
       }
+      return result;
     } catch (SftpException e) {
-      if (e.toString().equals(NO_FILE)) {
-        logger.error("SftpException:", e);
-      }
-    } catch (FileNotFoundException e) {
-      logger.error("FileNotFoundException:", e);
+      logger.error("SftpException:", e);
+      return TransferResult.failure(localFile, remotePath, System.currentTimeMillis() - start, e);
     } catch (IOException e) {
       logger.error("IOException:", e);
+      return TransferResult.failure(localFile, remotePath, System.currentTimeMillis() - start, e);
     } finally {
       if (output != null) {
         try {
@@ -151,8 +241,374 @@ public class SFTPChannelUtil {
       disconnect();
     }
 
-    return file;
+  }
+
+  /**
+   * 从输入流上传, 服务器目录不存在时创建
+   * 
+   * <p>
+   * 发布方式、校验策略和压缩策略与上传本地文件相同
+   * </p>
+   * 
+   * @param in 输入流, 读到结束为止, 不关闭
+   * @param length 字节数, 未知时为-1; 已知时实际字节数不符视为失败
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @return TransferResult localPath为null
+   */
+  @Override
+  public TransferResult upload(InputStream in, long length, String directory, String remoteFileName) {
+
+    long start = System.currentTimeMillis();
+    String remotePath = RemotePaths.join(directory, remoteFileName);
+    if (connect(compression.shouldCompress(remoteFileName, length)) == null) {
+      return TransferResult.failure(null, remotePath, 0, new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port)));
+    }
+
+    boolean started = false;
+    String targetPath = null;
+    TransferResult result;
+    try {
+      if (!this.sftpCreateDirectory(directory)) {
+        throw new IOException(String.format("sftp create directory [%s] failure", directory));
+      }
+      remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+      targetPath = publish.targetPath(remotePath);
+      SFTPProgressMonitor monitor = new SFTPProgressMonitor(listener, TransferDirection.UPLOAD, remotePath, length);
+      started(TransferDirection.UPLOAD, null, remotePath, length);
+      started = true;
+      StreamDigest digest = newDigest();
+      sftp().put(digest == null ? in : digest.wrap(in), targetPath, monitor, ChannelSftp.OVERWRITE);
+      long bytes = monitor.getTransferred();
+      if (length >= 0 && bytes != length) {
+        throw new IOException(String.format("sftp put stream to [%s] expected [%s] bytes but read [%s]", remotePath, length, bytes));
+      }
+      result = TransferResult.success(null, remotePath, bytes, System.currentTimeMillis() - start);
+      result = verify(result, targetPath, bytes, digest);
+      if (result.isSuccess() && publish.isAtomic()) {
+        publish(targetPath, remotePath);
+      }
+    } catch (SftpException | IOException e) {
+      directoryCache.invalidate(serverKey(), RemotePaths.parent(remotePath));
+      logger.error(String.format("sftp put stream to [%s] error", remotePath), e);
+      result = TransferResult.failure(null, remotePath, System.currentTimeMillis() - start, e);
+    }
+    if (!result.isSuccess() && publish.isAtomic() && targetPath != null) {
+      // 流无法续传, 不保留临时文件
+      discard(targetPath);
+    }
+    // 先记录结果再归还通道, 窗口使用率按当前通道计算
+    if (started) {
+      completed(TransferDirection.UPLOAD, result);
+    }
+    disconnect();
+    return result;
+
+  }
+
+  private void discard(String tempPath) {
+    try {
+      sftp().rm(tempPath);
+    } catch (SftpException e) {
+      logger.debug(String.format("sftp remove temp file [%s] failure: %s", tempPath, e.getMessage()));
+    }
+  }
+
+  /**
+   * 下载到输出流
+   * 
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @param out 输出流, 不关闭
+   * @return TransferResult localPath为null
+   */
+  @Override
+  public TransferResult download(String directory, String remoteFileName, OutputStream out) {
+
+    long start = System.currentTimeMillis();
+    String remotePath = RemotePaths.join(directory, remoteFileName);
+    if (connect(compression.shouldCompress(remoteFileName, -1)) == null) {
+      return TransferResult.failure(null, remotePath, 0, new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port)));
+    }
+
+    boolean started = false;
+    TransferResult result;
+    try {
+      remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+      SFTPProgressMonitor monitor = new SFTPProgressMonitor(listener, TransferDirection.DOWNLOAD, remotePath, -1);
+      started(TransferDirection.DOWNLOAD, null, remotePath, -1);
+      started = true;
+      StreamDigest digest = newDigest();
+      sftp().get(remotePath, digest == null ? out : digest.wrap(out), monitor);
+      result = TransferResult.success(null, remotePath, monitor.getTransferred(), System.currentTimeMillis() - start);
+      result = verify(result, remotePath, monitor.getTransferred(), digest);
+    } catch (SftpException | IOException e) {
+      logger.error(String.format("sftp get [%s] to stream error", remotePath), e);
+      result = TransferResult.failure(null, remotePath, System.currentTimeMillis() - start, e);
+    }
+    if (started) {
+      completed(TransferDirection.DOWNLOAD, result);
+    }
+    disconnect();
+    return result;
+
+  }
+
+  /**
+   * 上传内存中的内容
+   * 
+   * @param data 内容
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @return TransferResult localPath为null
+   */
+  public TransferResult upload(byte[] data, String directory, String remoteFileName) {
+    return upload(new ByteArrayInputStream(data), data.length, directory, remoteFileName);
+  }
+
+  /**
+   * 上传缓冲区从position到limit的内容, position随上传前进
+   * 
+   * @param data 缓冲区, 可以是direct或映射的缓冲区
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @return TransferResult localPath为null
+   */
+  public TransferResult upload(ByteBuffer data, String directory, String remoteFileName) {
+    return upload(ByteBufferStreams.inputStream(data), data.remaining(), directory, remoteFileName);
+  }
+
+  /**
+   * 下载到缓冲区, 从position开始写入; 文件超出缓冲区剩余空间时失败
+   * 
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @param buffer 缓冲区, position随写入前进
+   * @return TransferResult localPath为null
+   */
+  public TransferResult download(String directory, String remoteFileName, ByteBuffer buffer) {
+    return download(directory, remoteFileName, ByteBufferStreams.outputStream(buffer));
+  }
+
+  /**
+   * 打开服务器文件的输入流
+   * 
+   * <p>
+   * 流使用单独借出的通道, 不占用当前线程的通道, 可以交给其它线程读取; 关闭时归还通道。不执行校验策略
+   * </p>
+   * 
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @return InputStream
+   * @throws IOException 文件不存在或服务器拒绝
+   */
+  @Override
+  public InputStream openInputStream(String directory, String remoteFileName) throws IOException {
+    // 通道归还时已回到登录目录, 相对路径按登录目录解析
+    String remotePath = RemotePaths.join(directory, remoteFileName);
+    RemoteRangeReader reader = rangeReader();
+    long size = reader.size(remotePath);
+    if (size < 0) {
+      throw new FileNotFoundException(String.format("sftp file [%s] not found", remotePath));
+    }
+    return reader.openRange(remotePath, 0, size);
+  }
+
+  /**
+   * 按范围读取, 每个范围从偏移处读取, 提前关闭不影响通道
+   */
+  @Override
+  public RemoteRangeReader rangeReader() {
+    return new SFTPRangeReader(pool, serverKey());
+  }
+
+  /**
+   * 随机读取服务器文件的通道
+   * 
+   * <p>
+   * 只传输读到的块, 读取大文件的头部或尾部不必下载整个文件; 顺序读取时自动预读。cache可以在多个通道间共用,
+   * 为null时使用通道自己的缓存(64K * 64块)。打开时用stat查询文件属性
+   * </p>
+   * 
+   * @param directory 服务器目录
+   * @param remoteFileName 服务器文件名称
+   * @param cache 块缓存
+   * @return RemoteByteChannel
+   * @throws IOException 文件不存在或服务器拒绝
+   */
+  public RemoteByteChannel openChannel(String directory, String remoteFileName, RemoteBlockCache cache) throws IOException {
+    // 通道归还时已回到登录目录, 相对路径按登录目录解析
+    String remotePath = RemotePaths.join(directory, remoteFileName);
+    if (connect() == null) {
+      throw new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port));
+    }
+    RemoteEntry entry;
+    try {
+      SftpATTRS attrs = sftp().stat(remotePath);
+      // 块缓存的键包含修改时间, 同样大小的改写不会读到旧的块
+      entry = new RemoteEntry(remoteFileName, remotePath, attrs.isDir(), attrs.getSize(), attrs.getMTime() * 1000L);
+    } catch (SftpException e) {
+      if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+        throw new FileNotFoundException(String.format("sftp file [%s] not found", remotePath));
+      }
+      throw new IOException(String.format("sftp stat [%s] failure", remotePath), e);
+    } finally {
+      disconnect();
+    }
+    return RemoteByteChannel.open(rangeReader(), entry, cache == null ? new RemoteBlockCache(64 * 1024, 64) : cache);
+  }
+
+  @Override
+  public boolean createDirectory(String directory) {
+    if (connect() == null) {
+      return false;
+    }
+    try {
+      return this.sftpCreateDirectory(directory);
+    } finally {
+      disconnect();
+    }
+  }
 
+  @Override
+  public List<RemoteEntry> list(String directory) throws IOException {
+    if (connect() == null) {
+      throw new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port));
+    }
+    try {
+      return listEntries(absolutePath(directory));
+    } finally {
+      disconnect();
+    }
+  }
+
+  @Override
+  public int list(String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) throws IOException {
+    if (connect() == null) {
+      throw new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port));
+    }
+    try {
+      return visitEntries(absolutePath(directory), filter, visitor);
+    } finally {
+      disconnect();
+    }
+  }
+
+  /**
+   * 列目录, 不含.和..
+   * 
+   * @param path 绝对路径
+   * @return List
+   * @throws IOException
+   */
+  private List<RemoteEntry> listEntries(String path) throws IOException {
+    final List<RemoteEntry> entries = new ArrayList<>();
+    visitEntries(path, RemoteEntryFilter.ALL, new RemoteEntryVisitor() {
+      @Override
+      public boolean visit(RemoteEntry entry) {
+        return entries.add(entry);
+      }
+    });
+    return entries;
+  }
+
+  /**
+   * 通过LsEntrySelector逐项回调, JSch按READDIR分批读取, 不保存整个目录; 回调返回false时发送BREAK停止读取
+   * 
+   * @param path 绝对路径
+   * @param filter
+   * @param visitor
+   * @return int 回调的目录项数
+   * @throws IOException
+   */
+  private int visitEntries(final String path, final RemoteEntryFilter filter, final RemoteEntryVisitor visitor) throws IOException {
+    final int[] visited = new int[1];
+    final IOException[] error = new IOException[1];
+    try {
+      sftp().ls(path, new LsEntrySelector() {
+        @Override
+        public int select(LsEntry item) {
+          if (".".equals(item.getFilename()) || "..".equals(item.getFilename())) {
+            return CONTINUE;
+          }
+          RemoteEntry entry = RemoteEntry.of(item, path);
+          if (!filter.accept(entry)) {
+            return CONTINUE;
+          }
+          visited[0]++;
+          try {
+            return visitor.visit(entry) ? CONTINUE : BREAK;
+          } catch (IOException e) {
+            error[0] = e;
+            return BREAK;
+          }
+        }
+      });
+    } catch (SftpException e) {
+      throw new IOException(String.format("sftp ls [%s] failure", path), e);
+    }
+    if (error[0] != null) {
+      throw error[0];
+    }
+    return visited[0];
+  }
+
+  /**
+   * 多通道分段下载单个大文件
+   * 
+   * <p>
+   * 每段使用连接池中的一个通道从偏移处读取, 直接按位置写入预分配的临时文件, 全部完成后改名。
+   * 按校验策略比较两端, 摘要由下载完成的临时文件计算, 校验通过后才改名, 不通过时原有的本地文件不变
+   * </p>
+   * 
+   * @param directory 远程下载目录
+   * @param remoteFileName 服务器文件名称
+   * @param localFile 本地文件路径
+   * @param segments 分段数, 不超过连接池每个服务器的最大连接数
+   * @return TransferResult
+   */
+  public TransferResult downloadFileSegmented(final String directory, final String remoteFileName, String localFile, int segments) {
+    int channels = Math.min(segments, pool.getConfig().getMaxTotalPerKey());
+    SegmentedDownloader downloader = new SegmentedDownloader(rangeReader(), channels);
+    DownloadVerifier verifier = null;
+    if (integrity.isEnabled()) {
+      verifier = new DownloadVerifier() {
+        @Override
+        public TransferResult verify(TransferResult result, File downloaded) {
+          return verifyDownloaded(result, directory, remoteFileName, downloaded);
+        }
+      };
+    }
+    TransferResult result = downloader.download(RemotePaths.join(directory, remoteFileName), new File(localFile), verifier);
+    metrics.record(TransferDirection.DOWNLOAD, result);
+    if (listener != null) {
+      listener.transferCompleted(TransferDirection.DOWNLOAD, result);
+    }
+    return result;
+  }
+
+  /**
+   * 按校验策略比较下载完成的临时文件和服务器文件
+   */
+  private TransferResult verifyDownloaded(TransferResult result, String directory, String remoteFileName, File file) {
+    if (connect() == null) {
+      return TransferResult.failure(result.getLocalPath(), result.getRemotePath(), result.getElapsedMillis(),
+          new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port)));
+    }
+    try {
+      String remotePath = RemotePaths.join(absolutePath(directory), remoteFileName);
+      StreamDigest digest = newDigest();
+      if (digest != null) {
+        digest.update(file, file.length());
+      }
+      result = verify(result, remotePath, file.length(), digest);
+    } catch (SftpException | IOException e) {
+      logger.error(String.format("sftp verify file [%s] error", result.getRemotePath()), e);
+      result = TransferResult.failure(result.getLocalPath(), result.getRemotePath(), result.getElapsedMillis(), e);
+    } finally {
+      disconnect();
+    }
+    return result;
   }
 
   /**
@@ -161,11 +617,13 @@ public class SFTPChannelUtil {
    * @param directory
    * @param uploadFile
    * @return boolean
+   * @deprecated 返回未类型化的LsEntry且整个目录读入内存, 使用list(String)或list(String, RemoteEntryFilter, RemoteEntryVisitor)
    */
+  @Deprecated
   public List<Object> listFiles(String directory) {
     try {
       connect();
-      return Arrays.asList(sftp.ls(directory).toArray());
+      return Arrays.asList(sftp().ls(directory).toArray());
     } catch (SftpException e) {
       return new ArrayList<>();
     } finally {
@@ -173,6 +631,115 @@ public class SFTPChannelUtil {
     }
   }
 
+  /**
+   * 多通道并行上传本地目录树, 上传全部文件
+   * 
+   * @param localBaseDir 本地目录
+   * @param remoteBaseDir 服务器目录
+   * @param parallelism 并行通道数
+   * @return BatchReport
+   */
+  public BatchReport uploadTree(String localBaseDir, String remoteBaseDir, int parallelism) {
+    LocalTreeUploader uploader = new LocalTreeUploader();
+    uploader.setParallelism(parallelism);
+    return uploadTree(localBaseDir, remoteBaseDir, uploader);
+  }
+
+  /**
+   * 多通道并行上传本地目录树
+   * 
+   * <p>
+   * 在一个通道上按目录计划建好服务器目录(跳过未变化的文件时在同一通道上列目录), 再交给uploadFileListParallel
+   * </p>
+   * 
+   * @param localBaseDir 本地目录
+   * @param remoteBaseDir 服务器目录
+   * @param uploader 筛选、跳过未变化文件及并行度的设置
+   * @return BatchReport 本次上传的文件及失败项
+   */
+  public BatchReport uploadTree(String localBaseDir, String remoteBaseDir, LocalTreeUploader uploader) {
+    if (connect() == null) {
+      IOException error = new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port));
+      return new BatchReport(Collections.singletonList(TransferResult.failure(localBaseDir, remoteBaseDir, 0, error)), 0);
+    }
+    try {
+      return uploader.upload(new LocalTreeTarget() {
+
+        @Override
+        public Set<String> mkdirs(Collection<String> directories) throws IOException {
+          Map<String, String> targets = targetDirectories(null, new ArrayList<>(directories));
+          Set<String> failed = directoryMaker().mkdirs(new RemoteDirectoryPlan(targets.values()));
+          Set<String> result = new HashSet<>();
+          for (Map.Entry<String, String> target : targets.entrySet()) {
+            if (failed.contains(target.getValue())) {
+              result.add(target.getKey());
+            }
+          }
+          return result;
+        }
+
+        @Override
+        public List<RemoteEntry> list(String directory) throws IOException {
+          return listEntries(absolutePath(directory));
+        }
+
+        @Override
+        public BatchReport upload(List<String> directoryList, List<String> fileList, int parallelism) {
+          // 归还规划用的通道, 上传通道从连接池借出
+          disconnect();
+          return uploadFileListParallel(null, directoryList, fileList, parallelism);
+        }
+      }, new File(localBaseDir), remoteBaseDir);
+    } finally {
+      disconnect();
+    }
+  }
+
+  /**
+   * 增量同步目录树到本地
+   * 
+   * <p>
+   * 用SftpATTRS的大小和修改时间与清单比较, 只下载新增或变化的文件
+   * </p>
+   * 
+   * @param localBaseDir 本地目录
+   * @param remoteBaseDir 远程目录
+   * @param manifestFile 清单文件
+   * @param pruneUnchangedDirectories 修改时间未变的目录是否整棵跳过
+   * @return BatchReport 本次下载的文件及失败项
+   */
+  public BatchReport sync(String localBaseDir, String remoteBaseDir, String manifestFile, boolean pruneUnchangedDirectories) {
+    if (connect() == null) {
+      IOException error = new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port));
+      return new BatchReport(Collections.singletonList(TransferResult.failure(localBaseDir, remoteBaseDir, 0, error)), 0);
+    }
+    try {
+      RemoteSync sync = new RemoteSync();
+      sync.setPruneUnchangedDirectories(pruneUnchangedDirectories);
+      return completed(TransferDirection.DOWNLOAD, sync.sync(new RemoteSyncSource() {
+
+        @Override
+        public List<RemoteEntry> list(String directory) throws IOException {
+          return listEntries(absolutePath(directory));
+        }
+
+        @Override
+        public void download(RemoteEntry entry, File localFile) throws IOException {
+          OutputStream output = new FileOutputStream(localFile);
+          try {
+            sftp().get(entry.getPath(), output);
+          } catch (SftpException e) {
+            throw new IOException(String.format("sftp get [%s] failure", entry.getPath()), e);
+          } finally {
+            output.close();
+          }
+        }
+      }, remoteBaseDir, new File(localBaseDir), new File(manifestFile)));
+    } finally {
+      disconnect();
+    }
+  }
+
   /**
    * 上传单个文件
    * 
@@ -181,35 +748,93 @@ public class SFTPChannelUtil {
    * @return boolean 成功或失败
    */
   public boolean uploadFile(String directory, String uploadFile) {
+    return uploadFile(directory, uploadFile, false);
+  }
+
+  /**
+   * 上传单个文件, 支持断点续传
+   * 
+   * <p>
+   * resume为true时先比较服务器文件大小: 大小相同视为已上传, 较小则只补传缺少的部分(RESUME), 否则重新上传
+   * </p>
+   * 
+   * @param directory 远程服务器的目录
+   * @param uploadFile 要上传的文件
+   * @param resume 是否续传
+   * @return boolean 成功或失败
+   */
+  public boolean uploadFile(String directory, String uploadFile, boolean resume) {
+    return upload(directory, uploadFile, resume).isSuccess();
+  }
+
+  @Override
+  public TransferResult upload(String directory, String uploadFile, boolean resume) {
+    return upload(directory, uploadFile, resume, compression);
+  }
+
+  /**
+   * 按指定的压缩策略上传单个文件
+   * 
+   * @param directory 远程服务器的目录
+   * @param uploadFile 要上传的文件
+   * @param resume 是否续传
+   * @param compression 压缩策略, 压缩时使用zlib Session
+   * @return TransferResult
+   */
+  public TransferResult upload(String directory, String uploadFile, boolean resume, CompressionPolicy compression) {
 
-    if (!new File(uploadFile).exists()) {
+    long start = System.currentTimeMillis();
+    File file = new File(uploadFile);
+    if (!file.exists()) {
       if (logger.isDebugEnabled()) {
         logger.debug(String.format("file [%s] not found:", uploadFile));
       }
-      return false;
+      return TransferResult.failure(uploadFile, directory, 0, new FileNotFoundException(uploadFile));
     }
 
-    connect();
-    FileInputStream in = null;
-    File file = new File(uploadFile);
-
-    // 检查并创建服务器目录
-    if (!this.sftpCreateDirectory(directory)) {
-      return false;
+    if (connect(compression.shouldCompress(file)) == null) {
+      return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start,
+          new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port)));
     }
+    FileInputStream in = null;
 
     try {
+      // 检查并创建服务器目录
+      if (!this.sftpCreateDirectory(directory)) {
+        return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start,
+            new IOException(String.format("sftp create directory [%s] failure", directory)));
+      }
+      String remoteDirectory = absolutePath(directory);
+      int mode = ChannelSftp.OVERWRITE;
+      if (resume) {
+        String remotePath = RemotePaths.join(remoteDirectory, file.getName());
+        long remoteSize = this.remoteSize(remotePath);
+        if (remoteSize == file.length()) {
+          if (logger.isDebugEnabled()) {
+            logger.debug(String.format("file [%s] already complete on [%s]", uploadFile, host));
+          }
+          return TransferResult.success(uploadFile, remotePath, 0, System.currentTimeMillis() - start);
+        }
+        if (publish.isAtomic()) {
+          // 未完成的部分在临时文件中
+          remoteSize = this.remoteSize(publish.tempPath(remotePath));
+        }
+        if (remoteSize > 0 && remoteSize < file.length()) {
+          mode = ChannelSftp.RESUME;
+        }
+      }
       in = new FileInputStream(file);
-      sftp.put(in, file.getName());
+      TransferResult result = this.put(in, remoteDirectory, file, mode);
       if (logger.isDebugEnabled()) {
         logger.info(String.format("upload file:[%s] ftp connect:[%s] save to:[%s]", uploadFile, host, directory));
       }
-    } catch (FileNotFoundException e) {
-      logger.error("FileNotFoundException:", e);
-      return false;
+      return result;
     } catch (SftpException e) {
       logger.error("SftpException:", e);
-      return false;
+      return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start, e);
+    } catch (IOException e) {
+      logger.error("IOException:", e);
+      return TransferResult.failure(uploadFile, directory, System.currentTimeMillis() - start, e);
     } finally {
       disconnect();
       if (in != null) {
@@ -221,8 +846,6 @@ public class SFTPChannelUtil {
       }
     }
 
-    return true;
-
   }
 
   /**
@@ -247,10 +870,13 @@ public class SFTPChannelUtil {
       }
     }
 
-    connect();
+    if (connect() == null) {
+      return false;
+    }
 
     // 检查并创建服务器目录
     if (!this.sftpCreateDirectory(directory)) {
+      disconnect();
       return false;
     }
 
@@ -258,8 +884,11 @@ public class SFTPChannelUtil {
       for (String uploadFile : fileList) {
         File file = new File(uploadFile);
         FileInputStream in = new FileInputStream(file);
-        sftp.put(in, file.getName());
-        in.close();
+        try {
+          this.put(in, absolutePath(directory), file);
+        } finally {
+          in.close();
+        }
         if (logger.isDebugEnabled()) {
           logger.info(String.format("ftp connect{%s} upload file{%s} save to{%s}", host, uploadFile, directory));
         }
@@ -272,6 +901,7 @@ public class SFTPChannelUtil {
       return false;
     } catch (IOException e) {
       logger.error("IOException", e);
+      return false;
     } finally {
       disconnect();
     }
@@ -307,24 +937,25 @@ public class SFTPChannelUtil {
     }
   
     // 开始连接
-    connect();
+    if (connect() == null) {
+      return false;
+    }
     FileInputStream in = null;
   
-    for (String directoryString : directoryList) {
-      // 检查并创建服务器目录<创建多层目录>
-      if (!this.sftpCreateDirectorys(baseDirectory, directoryString)) {
+    try {
+      // 目标目录去重后逐层创建一次, 之后按绝对路径上传
+      Map<String, String> targets = targetDirectories(baseDirectory, directoryList);
+      Set<String> failed = directoryMaker().mkdirs(new RemoteDirectoryPlan(targets.values()));
+      if (!failed.isEmpty()) {
+        logger.error(String.format("sftp create directory %s failure", failed));
         return false;
       }
-    }
-  
-    try {
       for (int i = 0; i < fileList.size(); i++) {
         String directoryStr = directoryList.get(i); //保存在服务器的目录
         String fileStr = fileList.get(i); //保存的文件
         File file = new File(fileStr);
         in = new FileInputStream(file);
-        sftp.cd(directoryStr);  //进入目录
-        sftp.put(in, file.getName()); //上传文件
+        this.put(in, targets.get(directoryStr), file); //上传文件
         in.close();
         if (logger.isDebugEnabled()) {
           logger.info(String.format("ftp connect{%s} upload file{%s} save to{%s}", host, file, directoryStr));
@@ -338,6 +969,7 @@ public class SFTPChannelUtil {
       return false;
     } catch (IOException e) {
       logger.error("IOException", e);
+      return false;
     } finally {
       if (in != null) {
         try {
@@ -353,26 +985,79 @@ public class SFTPChannelUtil {
   
   }
 
+  /**
+   * 多通道并行上传多个文件到同一目录
+   * 
+   * @param directory
+   * @param fileList
+   * @param parallelism 并行通道数, 不超过连接池每个服务器的最大连接数
+   * @return BatchReport 每个文件的上传结果
+   */
+  public BatchReport uploadFileListParallel(String directory, List<String> fileList, int parallelism) {
+    List<String> directoryList = new ArrayList<>(fileList.size());
+    for (int i = 0; i < fileList.size(); i++) {
+      directoryList.add(directory);
+    }
+    return uploadFileListParallel(null, directoryList, fileList, parallelism);
+  }
+
+  /**
+   * 多通道并行上传多个文件
+   * <p>
+   * directoryList目录顺序和fileList文件一一对应, baseDirectory不为空时按sftpCreateDirectorys创建多层目录
+   * </p>
+   * 
+   * @param baseDirectory 根目录
+   * @param directoryList
+   * @param fileList
+   * @param parallelism 并行通道数, 不超过连接池每个服务器的最大连接数
+   * @return BatchReport 每个文件的上传结果
+   */
+  public BatchReport uploadFileListParallel(final String baseDirectory, List<String> directoryList, List<String> fileList, int parallelism) {
+    if (directoryList.size() != fileList.size()) {
+      throw new IllegalArgumentException("directoryList and fileList size not match");
+    }
+    // 先在一个通道上按计划建好全部目录, 上传通道不再逐个文件检查目录; 失败时退回逐个文件创建
+    Set<String> failedDirectories = null;
+    if (connect() != null) {
+      try {
+        failedDirectories = directoryMaker().mkdirs(new RemoteDirectoryPlan(targetDirectories(baseDirectory, directoryList).values()));
+      } catch (IOException e) {
+        logger.error("sftp prepare directories error", e);
+      } finally {
+        disconnect();
+      }
+    }
+    final Set<String> failed = failedDirectories;
+    int channels = Math.min(parallelism, pool.getConfig().getMaxTotalPerKey());
+    return ParallelBatchUploader.upload(directoryList, fileList, channels, new BatchUploadWorkerFactory() {
+      @Override
+      public BatchUploadWorker open() throws IOException {
+        if (connect() == null) {
+          throw new IOException(String.format("sftp---Session ip[%s]port[%s] connect failure", host, port));
+        }
+        return new SFTPBatchUploadWorker(baseDirectory, failed);
+      }
+    });
+  }
+
   /**
    * sftp 检查目录是否存在不存在则新建一个该目录
    * 
+   * <p>
+   * 已知存在的目录直接返回, 否则只创建缺少的下级目录
+   * </p>
+   * 
    * @param directory
    * @return boolean
    */
   public boolean sftpCreateDirectory(String directory) {
     try {
-      sftp.cd(directory);
-      return true;
-    } catch (SftpException e) {
-      try {
-        sftp.mkdir(directory);
-        sftp.cd(directory);
-        return true;
-      } catch (SftpException e1) {
-        logger.debug(String.format("ftp create directory [%s] is error", directory));
-        logger.error(e.getMessage(), e1);
-        return false;
-      }
+      return directoryMaker().mkdirs(absolutePath(directory));
+    } catch (IOException e) {
+      logger.debug(String.format("ftp create directory [%s] is error", directory));
+      logger.error(e.getMessage(), e);
+      return false;
     }
   }
   
@@ -389,48 +1074,481 @@ public class SFTPChannelUtil {
    * @return boolean
    */
   public boolean sftpCreateDirectorys(String baseDirectory, String directory) {
+    try {
+      return directoryMaker().mkdirs(targetDirectory(baseDirectory, directory));
+    } catch (IOException e) {
+      logger.error("FolderName create error:", e);
+      return false;
+    }
+  }
+
+  /**
+   * baseDirectory下的目录
+   * 
+   * @param baseDirectory
+   * @param directory
+   * @return String 绝对路径
+   * @throws IOException
+   */
+  private String targetDirectory(String baseDirectory, String directory) throws IOException {
     String newDirectory = StringUtils.replace(directory, baseDirectory, "");  //directory去掉baseDirectory目录
-    String [] folderNames = newDirectory.split("/");
-    if(logger.isDebugEnabled()) {
-      logger.debug(JSON.toJSONString(folderNames));
+    return absolutePath(RemotePaths.join(baseDirectory, newDirectory));
+  }
+
+  /**
+   * 各目录去重后的目标绝对路径
+   * 
+   * @param baseDirectory 为null时相对登录目录
+   * @param directoryList
+   * @return Map 目录 -> 绝对路径
+   * @throws IOException
+   */
+  private Map<String, String> targetDirectories(String baseDirectory, List<String> directoryList) throws IOException {
+    Map<String, String> targets = new LinkedHashMap<>();
+    for (String directory : directoryList) {
+      if (!targets.containsKey(directory)) {
+        targets.put(directory, baseDirectory == null ? absolutePath(directory) : targetDirectory(baseDirectory, directory));
+      }
+    }
+    return targets;
+  }
+
+  /**
+   * 使用绝对路径上传, 不依赖工作目录; 失败时使目录缓存失效
+   * 
+   * @param in
+   * @param directory 绝对路径
+   * @param file 本地文件, 取文件名
+   * @throws SftpException
+   * @throws IOException 写上传日志失败
+   */
+  private TransferResult put(InputStream in, String directory, File file) throws SftpException, IOException {
+    return put(in, directory, file, ChannelSftp.OVERWRITE);
+  }
+
+  /**
+   * 按mode(OVERWRITE/RESUME/APPEND)上传
+   * 
+   * @param in
+   * @param directory 绝对路径
+   * @param file 本地文件, 取文件名
+   * @param mode
+   * @return TransferResult 成功的结果
+   * @throws SftpException 失败时已通知统计和监听
+   * @throws IOException 写上传日志失败, 已通知统计和监听
+   */
+  private TransferResult put(InputStream in, String directory, File file, int mode) throws SftpException, IOException {
+    String remotePath = RemotePaths.join(directory, file.getName());
+    if (journal != null && journal.isCompleted(file, remotePath)) {
+      logger.info(String.format("sftp upload file [%s] to [%s] already completed in journal", file, remotePath));
+      return TransferResult.success(file.getPath(), remotePath, 0, 0);
     }
+    String targetPath = publish.targetPath(remotePath);
+    long size = mode == ChannelSftp.OVERWRITE ? file.length() : -1;
+    SFTPProgressMonitor monitor = new SFTPProgressMonitor(listener, TransferDirection.UPLOAD, remotePath, size);
+    long start = System.currentTimeMillis();
+    started(TransferDirection.UPLOAD, file.getPath(), remotePath, size);
+    // 续传时JSch用skip跳过服务器已有的部分, 摘要流读取被跳过的字节
+    StreamDigest digest = newDigest();
+    TransferResult result;
     try {
-      sftp.cd(baseDirectory);
-    } catch (SftpException e2) {
-      logger.error("Root directory not found:", e2);
-    } 
-    //循环创建文件夹
-    for ( String folderName : folderNames ) {
-        if (StringUtils.isNotBlank(folderName) ) { 
-            try {  
-                sftp.cd(folderName);  
-            } catch ( SftpException e ) {  
-                try {
-                  sftp.mkdir(folderName);
-                  sftp.cd(folderName);
-                  logger.debug("pwd=" + sftp.pwd());
-                } catch (SftpException e1) {
-                  logger.error("FolderName create error:", e1);
-                  return false;
-                }  
-            }  
-        }  
-    } 
-    return true;
+      if (journal != null) {
+        journal.started(file, remotePath);
+      }
+      sftp().put(digest == null ? in : digest.wrap(in), targetPath, monitor, mode);
+      result = TransferResult.success(file.getPath(), remotePath, monitor.getTransferred(), System.currentTimeMillis() - start);
+      result = verify(result, targetPath, file.length(), digest);
+      if (result.isSuccess() && publish.isAtomic()) {
+        publish(targetPath, remotePath);
+      }
+      if (result.isSuccess() && journal != null) {
+        journal.completed(file, remotePath);
+      }
+    } catch (SftpException | IOException e) {
+      directoryCache.invalidate(serverKey(), directory);
+      completed(TransferDirection.UPLOAD, TransferResult.failure(file.getPath(), remotePath, System.currentTimeMillis() - start, e));
+      throw e;
+    }
+    completed(TransferDirection.UPLOAD, result);
+    return result;
+  }
+
+  private void started(TransferDirection direction, String localPath, String remotePath, long size) {
+    metrics.transferStarted(direction, localPath, remotePath, size);
+    if (listener != null) {
+      listener.transferStarted(direction, localPath, remotePath, size);
+    }
+  }
+
+  private void completed(TransferDirection direction, TransferResult result) {
+    metrics.transferCompleted(direction, result);
+    ChannelSftp sftp = sftp();
+    if (result.isSuccess() && sftp != null) {
+      SFTPChannelFactory factory = pool.getFactory();
+      metrics.recordWindowUse(direction, result.getBytes(), result.getElapsedMillis(), factory.getRoundTripMicros(sftp),
+          (long) sftp.getBulkRequests() * TransferIOConfig.SFTP_REQUEST_SIZE);
+    }
+    if (listener != null) {
+      listener.transferCompleted(direction, result);
+    }
+  }
+
+  /**
+   * 多通道传输引擎的批量结果, 只通知transferCompleted
+   */
+  private BatchReport completed(TransferDirection direction, BatchReport report) {
+    metrics.record(direction, report);
+    if (listener != null) {
+      for (TransferResult result : report.getResults()) {
+        listener.transferCompleted(direction, result);
+      }
+    }
+    return report;
+  }
+
+  /**
+   * 从offset处下载到output, offset大于0时续传(RESUME)
+   * 
+   * @param remotePath 绝对路径
+   * @param localFile 本地文件路径
+   * @param output
+   * @param offset 本地已有的字节数
+   * @return TransferResult 成功的结果
+   * @throws SftpException 失败时已通知统计和监听
+   * @throws IOException 计算续传部分的摘要失败, 已通知统计和监听
+   */
+  private TransferResult get(String remotePath, String localFile, OutputStream output, long offset) throws SftpException, IOException {
+    SFTPProgressMonitor monitor = new SFTPProgressMonitor(listener, TransferDirection.DOWNLOAD, remotePath, -1);
+    long start = System.currentTimeMillis();
+    started(TransferDirection.DOWNLOAD, localFile, remotePath, -1);
+    StreamDigest digest = newDigest();
+    TransferResult result;
+    try {
+      if (digest != null) {
+        digest.update(new File(localFile), offset);
+        output = digest.wrap(output);
+      }
+      sftp().get(remotePath, output, monitor, offset > 0 ? ChannelSftp.RESUME : ChannelSftp.OVERWRITE, offset);
+      output.flush();
+      result = TransferResult.success(localFile, remotePath, monitor.getTransferred(), System.currentTimeMillis() - start);
+      result = verify(result, remotePath, new File(localFile).length(), digest);
+    } catch (SftpException | IOException e) {
+      completed(TransferDirection.DOWNLOAD, TransferResult.failure(localFile, remotePath, System.currentTimeMillis() - start, e));
+      throw e;
+    }
+    completed(TransferDirection.DOWNLOAD, result);
+    return result;
+  }
+
+  /**
+   * 临时文件改名为最终文件名; SFTP v3的rename不覆盖已有文件, 失败时先删除再改名
+   * 
+   * @param tempPath
+   * @param remotePath
+   * @throws SftpException
+   */
+  private void publish(String tempPath, String remotePath) throws SftpException {
+    try {
+      sftp().rename(tempPath, remotePath);
+    } catch (SftpException e) {
+      if (remoteSize(remotePath) < 0) {
+        throw e;
+      }
+      sftp().rm(remotePath);
+      sftp().rename(tempPath, remotePath);
+    }
+  }
+
+  /**
+   * 按校验策略选择算法, 优先使用服务器也能计算的算法
+   * 
+   * @return StreamDigest 不计算摘要时返回null
+   */
+  private StreamDigest newDigest() {
+    if (integrity.getMode() != IntegrityPolicy.Mode.DIGEST) {
+      return null;
+    }
+    return integrity.newDigest(integrity.choose(pool.getFactory().getRemoteDigests(sftp())));
+  }
+
+  /**
+   * 按校验策略比较两端: 服务器能计算摘要时比较摘要, 否则比较大小
+   * 
+   * @param result 传输成功的结果
+   * @param remotePath 服务器文件绝对路径
+   * @param localSize 本地文件大小
+   * @param digest 传输中计算的摘要, 可为null
+   * @return TransferResult 校验不通过时为失败
+   * @throws SftpException
+   */
+  private TransferResult verify(TransferResult result, String remotePath, long localSize, StreamDigest digest) throws SftpException {
+    if (!integrity.isEnabled()) {
+      return result;
+    }
+    String remoteDigest = null;
+    if (digest != null && pool.getFactory().getRemoteDigests(sftp()).contains(digest.getAlgorithm())) {
+      try {
+        remoteDigest = pool.getFactory().remoteDigest(sftp(), digest.getAlgorithm(), remotePath);
+      } catch (IOException e) {
+        // 服务器有该命令但没有算出这个文件的摘要, 不能退回到比较大小
+        logger.error(e.getMessage());
+        return new TransferResult(result.getLocalPath(), result.getRemotePath(), false, result.getBytes(), result.getElapsedMillis(), e);
+      }
+    }
+    TransferVerification verification = remoteDigest != null
+        ? TransferVerification.digest(pool.getFactory().getDigestCommand(digest.getAlgorithm()), digest, remoteDigest, localSize)
+        : TransferVerification.size(digest, localSize, sftp().stat(remotePath).getSize());
+    result = result.withVerification(verification);
+    if (!verification.isVerified()) {
+      logger.error(result.getError().getMessage());
+    }
+    return result;
+  }
+
+  /**
+   * 服务器文件大小
+   * 
+   * @param remotePath
+   * @return long 文件不存在时返回-1
+   */
+  private long remoteSize(String remotePath) {
+    try {
+      return sftp().stat(remotePath).getSize();
+    } catch (SftpException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * 相对路径按登录目录解析
+   * 
+   * @param path
+   * @return String
+   * @throws IOException
+   */
+  private String absolutePath(String path) throws IOException {
+    try {
+      return RemotePaths.absolute(sftp().getHome(), path);
+    } catch (SftpException e) {
+      throw new IOException("sftp get home directory failure", e);
+    }
+  }
+
+  private RemoteDirectoryMaker directoryMaker() {
+    return new RemoteDirectoryMaker(directoryCache, serverKey(), new RemoteDirectoryMaker.Operations() {
+
+      @Override
+      public boolean exists(String directory) throws IOException {
+        metrics.recordDirectoryRoundTrip();
+        try {
+          return sftp().stat(directory).isDir();
+        } catch (SftpException e) {
+          return false;
+        }
+      }
+
+      @Override
+      public boolean mkdir(String directory) throws IOException {
+        metrics.recordDirectoryRoundTrip();
+        try {
+          sftp().mkdir(directory);
+          logger.debug("mkdir=" + directory);
+          return true;
+        } catch (SftpException e) {
+          return false;
+        }
+      }
+    });
+  }
+
+  /**
+   * 并行上传的工作者, 使用当前线程借出的通道
+   */
+  private class SFTPBatchUploadWorker implements BatchUploadWorker {
+
+    private final String baseDirectory;
+
+    // 已按计划创建目录时为创建失败的目录, 为null时逐个文件创建
+    private final Set<String> failedDirectories;
+
+    SFTPBatchUploadWorker(String baseDirectory, Set<String> failedDirectories) {
+      this.baseDirectory = baseDirectory;
+      this.failedDirectories = failedDirectories;
+    }
+
+    @Override
+    public TransferResult upload(File file, String directory) throws IOException {
+      String target = baseDirectory == null ? absolutePath(directory) : targetDirectory(baseDirectory, directory);
+      boolean created;
+      if (failedDirectories != null) {
+        created = !failedDirectories.contains(target);
+      } else {
+        created = baseDirectory == null ? sftpCreateDirectory(directory) : sftpCreateDirectorys(baseDirectory, directory);
+      }
+      if (!created) {
+        throw new IOException(String.format("sftp create directory [%s] failure", directory));
+      }
+      FileInputStream in = new FileInputStream(file);
+      TransferResult result;
+      try {
+        result = put(in, target, file);
+      } catch (SftpException e) {
+        throw new IOException(String.format("sftp put file [%s] failure", file), e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+      if (logger.isDebugEnabled()) {
+        logger.debug(String.format("ftp connect{%s} upload file{%s} save to{%s}", host, file, directory));
+      }
+      return result;
+    }
+
+    @Override
+    public void close() {
+      disconnect();
+    }
+
   }
 
   /**
    * 关闭连接
+   * 
+   * <p>
+   * 通道归还连接池, ssh Session保持连接供后续调用复用
+   * </p>
    */
   public void disconnect() {
-    if (this.sftp != null && this.sftp.isConnected()) {
-      this.sftp.disconnect();
-      this.sftp = null;
+    ChannelSftp sftp = current.get();
+    if (sftp == null) {
+      return;
     }
-    if (this.sshSession != null && this.sshSession.isConnected()) {
-      this.sshSession.disconnect();
-      this.sshSession = null;
+    current.remove();
+    ServerKey key = currentKey.get();
+    currentKey.remove();
+    if (sftp.isConnected()) {
+      pool.release(key, sftp);
+    } else {
+      pool.invalidate(key, sftp);
     }
   }
 
+  /**
+   * 当前线程借出的通道
+   * 
+   * @return ChannelSftp
+   */
+  private ChannelSftp sftp() {
+    return current.get();
+  }
+
+  private ServerKey serverKey() {
+    return serverKey(false);
+  }
+
+  private ServerKey serverKey(boolean compressed) {
+    return new ServerKey(host, port, username, password, compressed);
+  }
+
+  public SFTPChannelPool getPool() {
+    return pool;
+  }
+
+  public void setPool(SFTPChannelPool pool) {
+    this.pool = pool;
+  }
+
+  public RemoteDirectoryCache getDirectoryCache() {
+    return directoryCache;
+  }
+
+  public void setDirectoryCache(RemoteDirectoryCache directoryCache) {
+    this.directoryCache = directoryCache;
+  }
+
+  public TransferMetrics getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(TransferMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public CompressionPolicy getCompression() {
+    return compression;
+  }
+
+  /**
+   * 上传和下载单个文件使用的压缩策略, 默认不压缩; 批量、目录树和同步使用普通Session
+   * 
+   * @param compression
+   */
+  public void setCompression(CompressionPolicy compression) {
+    this.compression = compression;
+  }
+
+  public IntegrityPolicy getIntegrity() {
+    return integrity;
+  }
+
+  /**
+   * 传输校验策略, 默认不校验; 校验结果见TransferResult.getVerification
+   * 
+   * @param integrity
+   */
+  public void setIntegrity(IntegrityPolicy integrity) {
+    this.integrity = integrity;
+  }
+
+  public PublishPolicy getPublish() {
+    return publish;
+  }
+
+  /**
+   * 发布方式, 默认直接写入最终文件名
+   * 
+   * @param publish
+   */
+  public void setPublish(PublishPolicy publish) {
+    this.publish = publish;
+  }
+
+  public TransferJournal getJournal() {
+    return journal;
+  }
+
+  /**
+   * 上传日志, 已有完成记录且本地未修改的文件不再上传; 为null时不记录
+   * 
+   * @param journal
+   */
+  public void setJournal(TransferJournal journal) {
+    this.journal = journal;
+  }
+
+  public TransferListener getListener() {
+    return listener;
+  }
+
+  /**
+   * 设置传输进度监听
+   * 
+   * <p>
+   * 分段下载和增量同步只在结束时通知transferCompleted
+   * </p>
+   * 
+   * @param listener
+   */
+  public void setListener(TransferListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * 当前服务器的连接池统计
+   * 
+   * @return PoolStats
+   */
+  public PoolStats getPoolStats() {
+    return pool.getStats(serverKey());
+  }
+
 }
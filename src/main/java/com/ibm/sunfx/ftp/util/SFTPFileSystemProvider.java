@@ -0,0 +1,18 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * sftp://用户@主机:端口/路径
+ */
+public class SFTPFileSystemProvider extends RemoteFileSystemProvider {
+
+  @Override
+  public String getScheme() {
+    return "sftp";
+  }
+
+  @Override
+  protected TransferClient newClient(String host, int port, String username, String password) {
+    return new SFTPChannelUtil(host, port < 0 ? 22 : port, username, password);
+  }
+
+}
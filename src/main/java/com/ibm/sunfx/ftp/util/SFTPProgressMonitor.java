@@ -0,0 +1,56 @@
+package com.ibm.sunfx.ftp.util;
+
+import com.jcraft.jsch.SftpProgressMonitor;
+
+/**
+ * 把JSch的SftpProgressMonitor转为TransferListener进度回调, 同时累计已传输的字节数; count在JSch的读写线程上调用, 在此处限速
+ */
+public class SFTPProgressMonitor implements SftpProgressMonitor {
+
+  private final TransferListener listener;
+
+  private final TransferDirection direction;
+
+  private final String remotePath;
+
+  private final long size;
+
+  private long transferred;
+
+  /**
+   * @param listener 进度监听, 为null时只计数
+   * @param direction 方向
+   * @param remotePath 服务器文件
+   * @param size 本次要传输的字节数, 未知时为-1
+   */
+  public SFTPProgressMonitor(TransferListener listener, TransferDirection direction, String remotePath, long size) {
+    this.listener = listener;
+    this.direction = direction;
+    this.remotePath = remotePath;
+    this.size = size;
+  }
+
+  @Override
+  public void init(int op, String src, String dest, long max) {
+    transferred = 0;
+  }
+
+  @Override
+  public boolean count(long count) {
+    transferred += count;
+    TransferThrottle.acquire(count);
+    if (listener != null) {
+      listener.bytesTransferred(direction, remotePath, transferred, size);
+    }
+    return true;
+  }
+
+  public long getTransferred() {
+    return transferred;
+  }
+
+  @Override
+  public void end() {
+  }
+
+}
@@ -0,0 +1,62 @@
+package com.ibm.sunfx.ftp.util;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 通过带偏移的sftp get按范围读取文件
+ */
+public class SFTPRangeReader implements RemoteRangeReader {
+
+  private final SFTPChannelPool pool;
+
+  private final ServerKey key;
+
+  public SFTPRangeReader(SFTPChannelPool pool, ServerKey key) {
+    this.pool = pool;
+    this.key = key;
+  }
+
+  @Override
+  public long size(String remotePath) throws IOException {
+    ChannelSftp sftp = pool.borrow(key);
+    try {
+      return sftp.stat(remotePath).getSize();
+    } catch (SftpException e) {
+      if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+        return -1;
+      }
+      throw new IOException(String.format("sftp stat [%s] failure", remotePath), e);
+    } finally {
+      pool.release(key, sftp);
+    }
+  }
+
+  @Override
+  public InputStream openRange(String remotePath, long offset, long length) throws IOException {
+    final ChannelSftp sftp = pool.borrow(key);
+    final InputStream raw;
+    try {
+      raw = sftp.get(remotePath, null, offset);
+    } catch (SftpException e) {
+      pool.release(key, sftp);
+      throw new IOException(String.format("sftp get [%s] from offset [%s] failure", remotePath, offset), e);
+    }
+    return new RangeInputStream(raw, length) {
+      @Override
+      protected void onClose(boolean complete) throws IOException {
+        try {
+          raw.close();
+          pool.release(key, sftp);
+        } catch (IOException e) {
+          pool.invalidate(key, sftp);
+          throw e;
+        }
+      }
+    };
+  }
+
+}
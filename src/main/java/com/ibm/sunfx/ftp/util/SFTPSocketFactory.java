@@ -0,0 +1,59 @@
+package com.ibm.sunfx.ftp.util;
+
+import com.jcraft.jsch.SocketFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * 按TransferIOConfig设置ssh连接的socket参数
+ * 
+ * <p>
+ * 接收缓冲区在connect之前设置, 才能协商TCP窗口扩大因子
+ * </p>
+ */
+public class SFTPSocketFactory implements SocketFactory {
+
+  private final TransferIOConfig config;
+
+  private final int connectTimeout;
+
+  public SFTPSocketFactory(TransferIOConfig config, int connectTimeout) {
+    this.config = config;
+    this.connectTimeout = connectTimeout;
+  }
+
+  @Override
+  public Socket createSocket(String host, int port) throws IOException {
+    Socket socket = new Socket();
+    try {
+      if (config.getSendBufferSize() > 0) {
+        socket.setSendBufferSize(config.getSendBufferSize());
+      }
+      if (config.getReceiveBufferSize() > 0) {
+        socket.setReceiveBufferSize(config.getReceiveBufferSize());
+      }
+      socket.setTcpNoDelay(config.isTcpNoDelay());
+      socket.setKeepAlive(config.isKeepAlive());
+      socket.connect(new InetSocketAddress(host, port), connectTimeout);
+      return socket;
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public InputStream getInputStream(Socket socket) throws IOException {
+    return socket.getInputStream();
+  }
+
+  @Override
+  public OutputStream getOutputStream(Socket socket) throws IOException {
+    return socket.getOutputStream();
+  }
+
+}
@@ -0,0 +1,199 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 分段并行下载单个大文件
+ *
+ * <p>
+ * 文件按范围切分, 每段使用连接池中的一个连接(ftp REST偏移/sftp带偏移的get)读取, 通过FileChannel按位置直接写入预分配的临时文件(本地文件名.part)。
+ * 每段失败后从已写入的位置重试, 全部段完成且临时文件校验通过后才改名为本地文件; 失败时删除临时文件, 不会留下部分为空的完整大小文件, 也不会覆盖原有的本地文件。
+ * </p>
+ */
+public class SegmentedDownloader {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final RemoteRangeReader reader;
+
+    private final int segments;
+
+    // 每段最小字节数, 小文件不切分
+    private long minSegmentSize = 8 * 1024 * 1024;
+
+    // 每段失败后的重试次数
+    private int retries = 3;
+
+    private int bufferSize = 64 * 1024;
+
+    public SegmentedDownloader(RemoteRangeReader reader, int segments) {
+        this.reader = reader;
+        this.segments = Math.max(1, segments);
+    }
+
+    /**
+     * 分段下载
+     *
+     * @param remotePath 服务器文件
+     * @param localFile 本地文件
+     * @return TransferResult
+     */
+    public TransferResult download(String remotePath, File localFile) {
+        return download(remotePath, localFile, null);
+    }
+
+    /**
+     * 分段下载, 改名为本地文件之前校验临时文件
+     *
+     * @param remotePath 服务器文件
+     * @param localFile 本地文件
+     * @param verifier 校验, 为null时不校验; 不通过时删除临时文件, 原有的本地文件不变
+     * @return TransferResult
+     */
+    public TransferResult download(final String remotePath, File localFile, DownloadVerifier verifier) {
+        long start = System.currentTimeMillis();
+        ExecutorService executor = null;
+        RandomAccessFile file = null;
+        File tempFile = new File(localFile.getPath() + ".part");
+        try {
+            final long size = reader.size(remotePath);
+            if (size < 0) {
+                throw new IOException(String.format("remote file [%s] not found", remotePath));
+            }
+            file = new RandomAccessFile(tempFile, "rw");
+            file.setLength(size);
+            final FileChannel channel = file.getChannel();
+
+            int count = (int) Math.max(1, Math.min(segments, (size + minSegmentSize - 1) / minSegmentSize));
+            long segmentSize = (size + count - 1) / Math.max(1, count);
+            executor = Executors.newFixedThreadPool(count);
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (long offset = 0; offset < size || futures.isEmpty(); offset += segmentSize) {
+                final long segmentOffset = offset;
+                final long length = Math.min(segmentSize, size - offset);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        fetch(remotePath, channel, segmentOffset, length);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            channel.force(false);
+            file.close();
+            file = null;
+            long elapsed = System.currentTimeMillis() - start;
+            TransferResult result = TransferResult.success(localFile.getPath(), remotePath, size, elapsed);
+            if (verifier != null) {
+                result = verifier.verify(result, tempFile);
+                if (!result.isSuccess()) {
+                    return result;
+                }
+            }
+            Files.move(tempFile.toPath(), localFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.info(String.format("segmented download [%s] to [%s] with [%s] segments, %s bytes in %s ms", remotePath, localFile, futures.size(), size, elapsed));
+            return result;
+        } catch (ExecutionException e) {
+            logger.error(String.format("segmented download [%s] error", remotePath), e.getCause());
+            return TransferResult.failure(localFile.getPath(), remotePath, System.currentTimeMillis() - start, e.getCause());
+        } catch (IOException e) {
+            logger.error(String.format("segmented download [%s] error", remotePath), e);
+            return TransferResult.failure(localFile.getPath(), remotePath, System.currentTimeMillis() - start, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TransferResult.failure(localFile.getPath(), remotePath, System.currentTimeMillis() - start, e);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    logger.error("Close file error.", e);
+                }
+            }
+            // 成功时已改名, 失败或校验不通过时不保留临时文件
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * 下载一段, 失败时从已写入位置重试
+     */
+    private void fetch(String remotePath, FileChannel channel, long offset, long length) throws IOException {
+        byte[] buffer = new byte[bufferSize];
+        long written = 0;
+        int attempt = 0;
+        while (written < length) {
+            InputStream in = null;
+            try {
+                in = reader.openRange(remotePath, offset + written, length - written);
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    ByteBuffer wrap = ByteBuffer.wrap(buffer, 0, n);
+                    while (wrap.hasRemaining()) {
+                        channel.write(wrap, offset + written + wrap.position());
+                    }
+                    written += n;
+                }
+                if (written < length) {
+                    throw new IOException(String.format("unexpected end of [%s] at [%s]", remotePath, offset + written));
+                }
+            } catch (IOException e) {
+                if (++attempt > retries) {
+                    throw e;
+                }
+                logger.debug(String.format("segment [%s] of [%s] retry %s after %s", offset, remotePath, attempt, e.getMessage()));
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    public long getMinSegmentSize() {
+        return minSegmentSize;
+    }
+
+    public void setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 连接池的服务器标识(host/port/username)
+ * 
+ * <p>
+ * 密码参与比较, 以免修改密码后继续复用旧会话; toString不输出密码。compressed区分sftp的zlib压缩会话和普通会话
+ * </p>
+ */
+public final class ServerKey {
+
+    private final String host;
+
+    private final int port;
+
+    private final String username;
+
+    private final String password;
+
+    private final boolean compressed;
+
+    public ServerKey(String host, int port, String username, String password) {
+        this(host, port, username, password, false);
+    }
+
+    public ServerKey(String host, int port, String username, String password, boolean compressed) {
+        if (host == null) {
+            throw new IllegalArgumentException("host must not be null");
+        }
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.compressed = compressed;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ServerKey)) {
+            return false;
+        }
+        ServerKey other = (ServerKey) obj;
+        return port == other.port && compressed == other.compressed && host.equals(other.host) && equals(username, other.username) && equals(password, other.password);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = host.hashCode();
+        result = 31 * result + port;
+        result = 31 * result + (username == null ? 0 : username.hashCode());
+        result = 31 * result + (password == null ? 0 : password.hashCode());
+        result = 31 * result + (compressed ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(compressed ? "%s@%s:%s(zlib)" : "%s@%s:%s", username, host, port);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+}
@@ -0,0 +1,245 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 传输过程中计算的摘要
+ *
+ * <p>
+ * wrap得到的流在读写时同步更新摘要, 不需要传输后再读一遍文件; 续传时先用update(File, long)计入本地已有的部分。
+ * CRC32C优先使用JDK的实现(Java 9+), 否则使用PureJavaCRC32C
+ * </p>
+ */
+public class StreamDigest {
+
+    private static final Class<?> JDK_CRC32C = jdkCrc32c();
+
+    private final ChecksumAlgorithm algorithm;
+
+    private final Checksum checksum;
+
+    private final MessageDigest digest;
+
+    private long bytes;
+
+    private String value;
+
+    public StreamDigest(ChecksumAlgorithm algorithm) {
+        this.algorithm = algorithm;
+        switch (algorithm) {
+        case CRC32:
+            this.checksum = new CRC32();
+            this.digest = null;
+            break;
+        case CRC32C:
+            this.checksum = crc32c();
+            this.digest = null;
+            break;
+        default:
+            this.checksum = null;
+            try {
+                this.digest = MessageDigest.getInstance(algorithm.getName());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException(algorithm.getName(), e);
+            }
+        }
+    }
+
+    public void update(byte[] b, int off, int len) {
+        if (value != null) {
+            throw new IllegalStateException("digest already computed");
+        }
+        if (checksum != null) {
+            checksum.update(b, off, len);
+        } else {
+            digest.update(b, off, len);
+        }
+        bytes += len;
+    }
+
+    /**
+     * 计入本地文件开头length个字节, 用于续传
+     *
+     * @param file 本地文件
+     * @param length 字节数
+     * @throws IOException 文件不足length个字节
+     */
+    public void update(File file, long length) throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        BufferPool buffers = BufferPool.forSize(64 * 1024);
+        byte[] buffer = buffers.acquire();
+        try (RandomAccessFile source = new RandomAccessFile(file, "r")) {
+            FileChannel channel = source.getChannel();
+            long position = 0;
+            while (position < length) {
+                ByteBuffer wrap = ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, length - position));
+                int n = channel.read(wrap, position);
+                if (n < 0) {
+                    throw new IOException(String.format("file [%s] shorter than [%s] bytes", file, length));
+                }
+                update(buffer, 0, n);
+                position += n;
+            }
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    /**
+     * 读取时更新摘要; skip也会读取被跳过的字节(JSch续传上传时跳过服务器已有的部分)
+     *
+     * @param in
+     * @return InputStream
+     */
+    public InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b >= 0) {
+                    update(new byte[] { (byte) b }, 0, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = in.read(b, off, len);
+                if (n > 0) {
+                    update(b, off, n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                byte[] buffer = new byte[(int) Math.min(8192, Math.max(n, 1))];
+                long skipped = 0;
+                while (skipped < n) {
+                    int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                    if (read < 0) {
+                        break;
+                    }
+                    skipped += read;
+                }
+                return skipped;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 写入时更新摘要
+     *
+     * @param out
+     * @return OutputStream
+     */
+    public OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                update(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                update(b, off, len);
+            }
+        };
+    }
+
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * 已计入的字节数
+     *
+     * @return long
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 十六进制小写摘要, 取值后不能再更新
+     *
+     * @return String
+     */
+    public String getValue() {
+        if (value == null) {
+            if (checksum != null) {
+                value = String.format("%08x", checksum.getValue());
+            } else {
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    hex.append(String.format("%02x", b & 0xff));
+                }
+                value = hex.toString();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 是否为该算法的十六进制摘要
+     *
+     * @param algorithm
+     * @param text
+     * @return boolean
+     */
+    static boolean isHex(ChecksumAlgorithm algorithm, String text) {
+        if (text == null || text.length() != algorithm.getHexLength()) {
+            return false;
+        }
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Checksum crc32c() {
+        if (JDK_CRC32C != null) {
+            try {
+                return (Checksum) JDK_CRC32C.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                // 使用纯Java实现
+            }
+        }
+        return new PureJavaCRC32C();
+    }
+
+    private static Class<?> jdkCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+}
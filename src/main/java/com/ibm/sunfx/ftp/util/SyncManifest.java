@@ -0,0 +1,155 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 增量同步清单, 记录上次同步的每个文件和目录的大小及修改时间
+ * 
+ * <p>
+ * 每行一项: 类型(F/D)\t大小\t修改时间\t相对路径; 保存时先写临时文件并落盘, 再原子替换旧清单, 中途崩溃或掉电不会损坏旧清单
+ * </p>
+ */
+public class SyncManifest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Map<String, Item> items = new HashMap<>();
+
+    /**
+     * 读取清单, 文件不存在时返回空清单
+     * 
+     * @param file
+     * @return SyncManifest
+     * @throws IOException
+     */
+    public static SyncManifest load(File file) throws IOException {
+        SyncManifest manifest = new SyncManifest();
+        if (file == null || !file.exists()) {
+            return manifest;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                if (fields.length != 4) {
+                    continue;
+                }
+                manifest.items.put(fields[3], new Item("D".equals(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return manifest;
+    }
+
+    /**
+     * 保存清单
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, UTF8));
+        try {
+            for (Map.Entry<String, Item> entry : items.entrySet()) {
+                Item item = entry.getValue();
+                writer.write(item.directory ? "D" : "F");
+                writer.write('\t');
+                writer.write(Long.toString(item.size));
+                writer.write('\t');
+                writer.write(Long.toString(item.modified));
+                writer.write('\t');
+                writer.write(entry.getKey());
+                writer.newLine();
+            }
+            writer.flush();
+            // 落盘后再改名, 掉电后不会留下改了名但内容为空的清单
+            out.getChannel().force(false);
+        } finally {
+            writer.close();
+        }
+        // 原子替换, 任何时刻清单都是旧的或新的完整内容
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Item get(String path) {
+        return items.get(path);
+    }
+
+    public void put(String path, boolean directory, long size, long modified) {
+        items.put(path, new Item(directory, size, modified));
+    }
+
+    /**
+     * 复制另一个清单中path目录下的所有项(不含path本身)
+     * 
+     * @param other
+     * @param path
+     */
+    public void copySubtree(SyncManifest other, String path) {
+        String prefix = path.isEmpty() ? "" : path + "/";
+        for (Map.Entry<String, Item> entry : other.items.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                items.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * 清单项
+     */
+    public static class Item {
+
+        private final boolean directory;
+
+        private final long size;
+
+        private final long modified;
+
+        Item(boolean directory, long size, long modified) {
+            this.directory = directory;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+    }
+
+}
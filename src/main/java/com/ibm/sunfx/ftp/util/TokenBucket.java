@@ -0,0 +1,69 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 令牌桶限速
+ *
+ * <p>
+ * 每秒补充rate个令牌(字节), 最多积累capacity个; 取令牌允许透支, 透支部分按速率折算为等待时间,
+ * 因此单次取用可以大于capacity, 长期速率不超过rate
+ * </p>
+ */
+public class TokenBucket {
+
+    private final long rate;
+
+    private final long capacity;
+
+    private double tokens;
+
+    private long updated;
+
+    /**
+     * 可积累1秒的令牌
+     *
+     * @param rate 字节/秒
+     */
+    public TokenBucket(long rate) {
+        this(rate, rate);
+    }
+
+    /**
+     * @param rate 字节/秒
+     * @param capacity 最多积累的字节数, 即允许的突发量
+     */
+    public TokenBucket(long rate, long capacity) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+        this.rate = rate;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.updated = System.nanoTime();
+    }
+
+    /**
+     * 取出bytes个令牌
+     *
+     * @param bytes
+     * @return long 需要等待的纳秒数, 令牌足够时为0
+     */
+    public long reserve(long bytes) {
+        return reserve(bytes, System.nanoTime());
+    }
+
+    synchronized long reserve(long bytes, long now) {
+        tokens = Math.min(capacity, tokens + (now - updated) * rate / 1e9);
+        updated = now;
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * ftp/sftp的统一传输接口
+ *
+ * <p>
+ * 每次调用从连接池借出连接, 结束后归还, 可在多个线程中同时调用; 传输失败不抛出异常, 由TransferResult返回原因
+ * </p>
+ */
+public interface TransferClient {
+
+    /**
+     * 上传单个文件, 服务器目录不存在时创建
+     *
+     * @param directory 服务器目录
+     * @param localFile 本地文件
+     * @param resume 是否续传
+     * @return TransferResult
+     */
+    TransferResult upload(String directory, String localFile, boolean resume);
+
+    /**
+     * 下载单个文件
+     *
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @param localFile 本地文件
+     * @param resume 是否续传
+     * @return TransferResult
+     */
+    TransferResult download(String directory, String remoteFileName, String localFile, boolean resume);
+
+    /**
+     * 从输入流上传, 服务器目录不存在时创建
+     *
+     * @param in 输入流, 读到结束为止, 不关闭
+     * @param length 字节数, 未知时为-1
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @return TransferResult localPath为null
+     */
+    TransferResult upload(InputStream in, long length, String directory, String remoteFileName);
+
+    /**
+     * 下载到输出流
+     *
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @param out 输出流, 不关闭
+     * @return TransferResult localPath为null
+     */
+    TransferResult download(String directory, String remoteFileName, OutputStream out);
+
+    /**
+     * 打开服务器文件的输入流, 关闭流时归还连接
+     *
+     * @param directory 服务器目录
+     * @param remoteFileName 服务器文件名称
+     * @return InputStream 读到文件末尾为止, available不超过剩余字节数
+     * @throws IOException 文件不存在或服务器拒绝
+     */
+    InputStream openInputStream(String directory, String remoteFileName) throws IOException;
+
+    /**
+     * 按范围读取服务器文件, 供分段下载和随机读取使用
+     *
+     * @return RemoteRangeReader 路径为完整路径, 相对路径按登录目录解析
+     */
+    RemoteRangeReader rangeReader();
+
+    /**
+     * 创建多级目录
+     *
+     * @param directory 服务器目录
+     * @return boolean
+     */
+    boolean createDirectory(String directory);
+
+    /**
+     * 列出目录下的文件和子目录
+     *
+     * @param directory 服务器目录
+     * @return List 不含.和..
+     * @throws IOException
+     */
+    List<RemoteEntry> list(String directory) throws IOException;
+
+    /**
+     * 流式列目录, 不把整个目录读入内存, 适合几十万项的大目录
+     *
+     * @param directory 服务器目录
+     * @param filter 过滤条件
+     * @param visitor 回调, 返回false时停止
+     * @return int 回调的目录项数
+     * @throws IOException
+     */
+    int list(String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) throws IOException;
+
+}
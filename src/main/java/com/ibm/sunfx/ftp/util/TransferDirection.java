@@ -0,0 +1,10 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 传输方向
+ */
+public enum TransferDirection {
+
+    UPLOAD, DOWNLOAD
+
+}
@@ -0,0 +1,136 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 传输I/O参数
+ *
+ * <p>
+ * 拷贝缓冲区、socket收发缓冲区(决定TCP窗口上限)、ftp数据连接模式和sftp请求窗口。高带宽高延迟链路需要收发缓冲区和sftp请求窗口
+ * 不小于带宽时延积, 否则单个连接的吞吐受窗口限制; 局域网保持系统默认让内核自动调整即可。
+ * </p>
+ */
+public class TransferIOConfig {
+
+    // JSch每个sftp读写请求的数据量上限, 由32K的ssh通道包大小决定
+    public static final int SFTP_REQUEST_SIZE = 32 * 1024;
+
+    // 拷贝缓冲区和commons-net内部流缓冲区字节数
+    private int bufferSize = 64 * 1024;
+
+    // socket发送缓冲区字节数, 0表示系统默认
+    private int sendBufferSize;
+
+    // socket接收缓冲区字节数, 0表示系统默认
+    private int receiveBufferSize;
+
+    // ftp使用被动模式
+    private boolean passiveMode;
+
+    private boolean tcpNoDelay = true;
+
+    private boolean keepAlive = true;
+
+    // ftp MODE Z和sftp zlib会话的压缩级别(1~9)
+    private int compressionLevel = 6;
+
+    // sftp同时未确认的读/写请求数(JSch bulk requests), 默认16即512K窗口
+    private int sftpBulkRequests = 16;
+
+    /**
+     * 局域网: 64K拷贝缓冲区, socket缓冲区由系统自动调整, ftp主动模式(与原来的行为一致)
+     *
+     * @return TransferIOConfig
+     */
+    public static TransferIOConfig lan() {
+        return new TransferIOConfig();
+    }
+
+    /**
+     * 广域网: 256K拷贝缓冲区, 4M socket缓冲区(约100ms时延下300Mbit/s), ftp被动模式便于穿过防火墙和NAT,
+     * sftp窗口64个请求即2M, 与JSch通道的2M接收窗口相同, 再大下载也不会更快
+     *
+     * @return TransferIOConfig
+     */
+    public static TransferIOConfig wan() {
+        TransferIOConfig config = new TransferIOConfig();
+        config.setBufferSize(256 * 1024);
+        config.setSendBufferSize(4 * 1024 * 1024);
+        config.setReceiveBufferSize(4 * 1024 * 1024);
+        config.setPassiveMode(true);
+        config.setSftpBulkRequests(64);
+        return config;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public boolean isPassiveMode() {
+        return passiveMode;
+    }
+
+    public void setPassiveMode(boolean passiveMode) {
+        this.passiveMode = passiveMode;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getSftpBulkRequests() {
+        return sftpBulkRequests;
+    }
+
+    public void setSftpBulkRequests(int sftpBulkRequests) {
+        this.sftpBulkRequests = sftpBulkRequests;
+    }
+
+    /**
+     * sftp请求窗口字节数
+     *
+     * @return int
+     */
+    public int getSftpWindowBytes() {
+        return sftpBulkRequests * SFTP_REQUEST_SIZE;
+    }
+
+}
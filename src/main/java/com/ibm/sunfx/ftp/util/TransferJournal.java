@@ -0,0 +1,219 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * 批量上传的本地日志, 只追加
+ *
+ * <p>
+ * 每行一项: 类型(S开始/D完成)\t大小\t修改时间\t服务器路径\t本地路径。完成记录写入后强制刷盘, 作业崩溃重启后,
+ * 本地文件大小和修改时间与完成记录相同的文件不再上传; 崩溃时写了一半的最后一行在打开时截掉。批量全部完成后可调用clear。
+ * </p>
+ */
+public class TransferJournal implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    // 服务器路径 -> 完成时的本地文件
+    private final Map<String, Entry> completed = new HashMap<>();
+
+    // 已开始但未完成的服务器路径
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    private FileOutputStream out;
+
+    /**
+     * 读取已有的日志并打开以追加
+     *
+     * @param file 日志文件, 不存在时创建
+     * @throws IOException
+     */
+    public TransferJournal(File file) throws IOException {
+        this.file = file;
+        truncateTornLine();
+        load();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            FileUtils.forceMkdir(parent);
+        }
+        this.out = new FileOutputStream(file, true);
+    }
+
+    /**
+     * 截掉崩溃时写了一半的最后一行, 否则之后追加的记录会接在这一行后面而被忽略
+     */
+    private void truncateTornLine() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            long end = raf.length();
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < raf.length()) {
+                raf.setLength(end);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = new Entry(fields[4], Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if ("S".equals(fields[0])) {
+                    completed.remove(fields[3]);
+                    pending.add(fields[3]);
+                } else if ("D".equals(fields[0])) {
+                    pending.remove(fields[3]);
+                    completed.put(fields[3], entry);
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * 本地文件是否已上传到remotePath且之后未修改
+     *
+     * @param local 本地文件
+     * @param remotePath 服务器路径
+     * @return boolean
+     */
+    public synchronized boolean isCompleted(File local, String remotePath) {
+        Entry entry = completed.get(remotePath);
+        return entry != null && entry.localPath.equals(local.getPath()) && entry.size == local.length() && entry.modified == local.lastModified();
+    }
+
+    /**
+     * 记录开始上传, 不刷盘
+     *
+     * @param local
+     * @param remotePath
+     * @throws IOException
+     */
+    public synchronized void started(File local, String remotePath) throws IOException {
+        completed.remove(remotePath);
+        pending.add(remotePath);
+        append("S", local, remotePath, false);
+    }
+
+    /**
+     * 记录上传完成, 刷盘后返回
+     *
+     * @param local
+     * @param remotePath
+     * @throws IOException
+     */
+    public synchronized void completed(File local, String remotePath) throws IOException {
+        pending.remove(remotePath);
+        completed.put(remotePath, new Entry(local.getPath(), local.length(), local.lastModified()));
+        append("D", local, remotePath, true);
+    }
+
+    private void append(String type, File local, String remotePath, boolean sync) throws IOException {
+        if (out == null) {
+            throw new IOException(String.format("journal [%s] closed", file));
+        }
+        String line = type + '\t' + local.length() + '\t' + local.lastModified() + '\t' + remotePath + '\t' + local.getPath() + '\n';
+        out.write(line.getBytes(UTF8));
+        if (sync) {
+            out.getChannel().force(false);
+        }
+    }
+
+    /**
+     * 已开始但没有完成记录的服务器路径, 即崩溃时正在传输的文件
+     *
+     * @return Set
+     */
+    public synchronized Set<String> getPending() {
+        return new LinkedHashSet<>(pending);
+    }
+
+    public synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * 清空日志, 批量全部完成后调用
+     *
+     * @throws IOException
+     */
+    public synchronized void clear() throws IOException {
+        completed.clear();
+        pending.clear();
+        if (out != null) {
+            out.getChannel().truncate(0);
+            out.getChannel().force(false);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private static class Entry {
+
+        final String localPath;
+
+        final long size;
+
+        final long modified;
+
+        Entry(String localPath, long size, long modified) {
+            this.localPath = localPath;
+            this.size = size;
+            this.modified = modified;
+        }
+
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 文件传输进度监听
+ *
+ * <p>
+ * 回调在执行传输的线程上调用, 实现需线程安全且尽快返回
+ * </p>
+ */
+public interface TransferListener {
+
+    /**
+     * 开始传输
+     *
+     * @param direction 方向
+     * @param localPath 本地文件
+     * @param remotePath 服务器文件
+     * @param size 本次要传输的字节数, 未知时为-1
+     */
+    void transferStarted(TransferDirection direction, String localPath, String remotePath, long size);
+
+    /**
+     * 传输进度
+     *
+     * @param direction 方向
+     * @param remotePath 服务器文件
+     * @param transferred 本次已传输的字节数
+     * @param size 本次要传输的字节数, 未知时为-1
+     */
+    void bytesTransferred(TransferDirection direction, String remotePath, long transferred, long size);
+
+    /**
+     * 传输结束(成功或失败)
+     *
+     * @param direction 方向
+     * @param result 结果
+     */
+    void transferCompleted(TransferDirection direction, TransferResult result);
+
+}
@@ -0,0 +1,336 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.jcraft.jsch.SftpException;
+
+/**
+ * 传输统计
+ *
+ * <p>
+ * 按方向累计文件数、字节数、耗时和失败原因, 记录建连、登录耗时、建目录的服务器往返次数和sftp请求窗口使用率。计数器无锁, 可在多个线程中同时记录;
+ * snapshot返回扁平的名称-数值表, 供监控系统定时采集。
+ * </p>
+ */
+public class TransferMetrics implements TransferListener {
+
+    private static final TransferMetrics DEFAULT = new TransferMetrics();
+
+    private final Counters upload = new Counters();
+
+    private final Counters download = new Counters();
+
+    private final LongAdder connects = new LongAdder();
+
+    private final LongAdder connectFailures = new LongAdder();
+
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+
+    private final LatencyHistogram authLatency = new LatencyHistogram();
+
+    private final LongAdder directoryRoundTrips = new LongAdder();
+
+    private final ConcurrentMap<String, LongAdder> failuresByCause = new ConcurrentHashMap<>();
+
+    /**
+     * 默认的共享统计, 未单独设置时各工具类和连接工厂都记录到这里
+     *
+     * @return TransferMetrics
+     */
+    public static TransferMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public void transferStarted(TransferDirection direction, String localPath, String remotePath, long size) {
+        counters(direction).inFlight.increment();
+    }
+
+    @Override
+    public void bytesTransferred(TransferDirection direction, String remotePath, long transferred, long size) {
+    }
+
+    @Override
+    public void transferCompleted(TransferDirection direction, TransferResult result) {
+        Counters counters = counters(direction);
+        counters.inFlight.decrement();
+        record(direction, result);
+    }
+
+    /**
+     * 记录一个未经transferStarted的结果, 如分段下载、并行下载的批量结果
+     *
+     * @param direction 方向
+     * @param result 结果
+     */
+    public void record(TransferDirection direction, TransferResult result) {
+        Counters counters = counters(direction);
+        if (result.isSuccess()) {
+            counters.files.increment();
+            counters.bytes.add(result.getBytes());
+            counters.millis.add(result.getElapsedMillis());
+            counters.latency.record(result.getElapsedMillis());
+        } else {
+            counters.failures.increment();
+            recordFailure(result.getError());
+        }
+    }
+
+    public void record(TransferDirection direction, BatchReport report) {
+        for (TransferResult result : report.getResults()) {
+            record(direction, result);
+        }
+    }
+
+    /**
+     * 建立连接成功
+     *
+     * @param connectMillis 建立连接耗时(sftp包含密钥交换和认证)
+     * @param authMillis 登录耗时, 不单独统计时为-1
+     */
+    public void recordConnect(long connectMillis, long authMillis) {
+        connects.increment();
+        connectLatency.record(connectMillis);
+        if (authMillis >= 0) {
+            authLatency.record(authMillis);
+        }
+    }
+
+    public void recordConnectFailure(Throwable error) {
+        connectFailures.increment();
+        recordFailure(error);
+    }
+
+    /**
+     * 记录一次流水线传输的窗口使用率
+     *
+     * <p>
+     * 实际在途字节按 吞吐 × 往返时间 估算, 与请求窗口字节数相比; 接近100%说明吞吐受窗口限制, 应增大窗口。
+     * 小于一个窗口的传输填不满窗口, 不计入
+     * </p>
+     *
+     * @param direction 方向
+     * @param bytes 传输字节数
+     * @param millis 传输耗时
+     * @param roundTripMicros 往返时间(微秒)
+     * @param windowBytes 请求窗口字节数
+     */
+    public void recordWindowUse(TransferDirection direction, long bytes, long millis, long roundTripMicros, long windowBytes) {
+        if (millis <= 0 || roundTripMicros <= 0 || windowBytes <= 0 || bytes < windowBytes) {
+            return;
+        }
+        double inFlight = bytes * (double) roundTripMicros / (millis * 1000.0);
+        Counters counters = counters(direction);
+        counters.windowSamples.increment();
+        counters.windowPercent.add(Math.min(100, Math.round(inFlight * 100 / windowBytes)));
+    }
+
+    /**
+     * 建目录时的一次服务器往返(检查、创建或修改权限)
+     */
+    public void recordDirectoryRoundTrip() {
+        directoryRoundTrips.increment();
+    }
+
+    public void recordFailure(Throwable error) {
+        String cause = causeOf(error);
+        LongAdder counter = failuresByCause.get(cause);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = failuresByCause.putIfAbsent(cause, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.increment();
+    }
+
+    /**
+     * 失败原因: ftp应答码、sftp状态码, 其余取异常类名
+     */
+    static String causeOf(Throwable error) {
+        if (error == null) {
+            return "unknown";
+        }
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof FTPReplyException) {
+                return "ftp-" + ((FTPReplyException) t).getReplyCode();
+            }
+            if (t instanceof SftpException) {
+                return "sftp-" + ((SftpException) t).id;
+            }
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    private Counters counters(TransferDirection direction) {
+        return direction == TransferDirection.UPLOAD ? upload : download;
+    }
+
+    public long getFiles(TransferDirection direction) {
+        return counters(direction).files.sum();
+    }
+
+    public long getBytes(TransferDirection direction) {
+        return counters(direction).bytes.sum();
+    }
+
+    public long getFailures(TransferDirection direction) {
+        return counters(direction).failures.sum();
+    }
+
+    public long getInFlight(TransferDirection direction) {
+        return counters(direction).inFlight.sum();
+    }
+
+    /**
+     * 平均吞吐量
+     *
+     * @param direction 方向
+     * @return double 字节/秒, 按各文件传输耗时之和计算
+     */
+    public double getThroughput(TransferDirection direction) {
+        Counters counters = counters(direction);
+        long millis = counters.millis.sum();
+        return millis == 0 ? 0 : counters.bytes.sum() * 1000.0 / millis;
+    }
+
+    /**
+     * 平均窗口使用率
+     *
+     * @param direction 方向
+     * @return double 百分比, 没有记录时为0
+     */
+    public double getWindowUse(TransferDirection direction) {
+        Counters counters = counters(direction);
+        long samples = counters.windowSamples.sum();
+        return samples == 0 ? 0 : counters.windowPercent.sum() / (double) samples;
+    }
+
+    public LatencyHistogram getLatency(TransferDirection direction) {
+        return counters(direction).latency;
+    }
+
+    public long getConnects() {
+        return connects.sum();
+    }
+
+    public long getConnectFailures() {
+        return connectFailures.sum();
+    }
+
+    public LatencyHistogram getConnectLatency() {
+        return connectLatency;
+    }
+
+    public LatencyHistogram getAuthLatency() {
+        return authLatency;
+    }
+
+    public long getDirectoryRoundTrips() {
+        return directoryRoundTrips.sum();
+    }
+
+    public Map<String, Long> getFailuresByCause() {
+        Map<String, Long> failures = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : failuresByCause.entrySet()) {
+            failures.put(entry.getKey(), entry.getValue().sum());
+        }
+        return failures;
+    }
+
+    /**
+     * 所有计数的快照
+     *
+     * <p>
+     * 名称如 upload.bytes, download.latency.p99, connect.latency.le.100, failures.ftp-550
+     * </p>
+     *
+     * @return Map 按名称排序
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (TransferDirection direction : TransferDirection.values()) {
+            String prefix = direction.name().toLowerCase();
+            Counters counters = counters(direction);
+            snapshot.put(prefix + ".files", counters.files.sum());
+            snapshot.put(prefix + ".bytes", counters.bytes.sum());
+            snapshot.put(prefix + ".failures", counters.failures.sum());
+            snapshot.put(prefix + ".inFlight", counters.inFlight.sum());
+            snapshot.put(prefix + ".bytesPerSecond", (long) getThroughput(direction));
+            snapshot.put(prefix + ".window.samples", counters.windowSamples.sum());
+            snapshot.put(prefix + ".window.usePercent", Math.round(getWindowUse(direction)));
+            histogram(snapshot, prefix + ".latency", counters.latency);
+        }
+        snapshot.put("connect.count", connects.sum());
+        snapshot.put("connect.failures", connectFailures.sum());
+        histogram(snapshot, "connect.latency", connectLatency);
+        histogram(snapshot, "auth.latency", authLatency);
+        snapshot.put("directory.roundTrips", directoryRoundTrips.sum());
+        for (Map.Entry<String, Long> entry : getFailuresByCause().entrySet()) {
+            snapshot.put("failures." + entry.getKey(), entry.getValue());
+        }
+        return snapshot;
+    }
+
+    private static void histogram(Map<String, Long> snapshot, String name, LatencyHistogram histogram) {
+        snapshot.put(name + ".count", histogram.getCount());
+        snapshot.put(name + ".sum", histogram.getSum());
+        snapshot.put(name + ".max", histogram.getMax());
+        snapshot.put(name + ".p50", histogram.percentile(50));
+        snapshot.put(name + ".p99", histogram.percentile(99));
+        long[] bounds = histogram.getBucketBounds();
+        long[] counts = histogram.getBucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i];
+            snapshot.put(name + ".le." + (bounds[i] == Long.MAX_VALUE ? "inf" : String.valueOf(bounds[i])), cumulative);
+        }
+    }
+
+    /**
+     * 清零, 用于按周期采集增量
+     */
+    public void reset() {
+        for (Counters counters : new Counters[] { upload, download }) {
+            counters.files.reset();
+            counters.bytes.reset();
+            counters.millis.reset();
+            counters.failures.reset();
+            counters.latency.reset();
+            counters.windowSamples.reset();
+            counters.windowPercent.reset();
+        }
+        connects.reset();
+        connectFailures.reset();
+        connectLatency.reset();
+        authLatency.reset();
+        directoryRoundTrips.reset();
+        failuresByCause.clear();
+    }
+
+    private static class Counters {
+
+        final LongAdder files = new LongAdder();
+
+        final LongAdder bytes = new LongAdder();
+
+        final LongAdder millis = new LongAdder();
+
+        final LongAdder failures = new LongAdder();
+
+        final LongAdder inFlight = new LongAdder();
+
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        final LongAdder windowSamples = new LongAdder();
+
+        final LongAdder windowPercent = new LongAdder();
+
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 服务器之间中转文件, 不落本地磁盘
+ *
+ * <p>
+ * 源服务器下载和目标服务器上传同时进行, 中间经过有界的环形缓冲区(见RelayBuffer): 上传慢时下载阻塞,
+ * 内存占用固定为buffers * bufferSize。两端都是ftp时先尝试FXP由服务器直接传输, 服务器拒绝时再改用流式中转。
+ * 目标端的发布方式和校验策略按目标客户端的设置执行, 中转失败时目标端按原子发布不会留下不完整的文件
+ * </p>
+ */
+public class TransferRelay {
+
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private int bufferSize = 64 * 1024;
+
+    private int buffers = 16;
+
+    private boolean fxp = true;
+
+    /**
+     * 中转一个文件
+     *
+     * @param source 源服务器
+     * @param directory 源服务器目录
+     * @param remoteFileName 源服务器文件名称
+     * @param target 目标服务器
+     * @param targetDirectory 目标服务器目录, 不存在时创建
+     * @param targetFileName 目标服务器文件名称
+     * @return TransferResult localPath为源文件路径, remotePath为目标文件路径
+     */
+    public TransferResult relay(TransferClient source, String directory, String remoteFileName, TransferClient target, String targetDirectory,
+            String targetFileName) {
+        if (fxp && source instanceof FTPUtils && target instanceof FTPUtils && source != target) {
+            TransferResult result = ((FTPUtils) source).fxp(directory, remoteFileName, (FTPUtils) target, targetDirectory, targetFileName);
+            if (result.isSuccess()) {
+                return result;
+            }
+            logger.info(String.format("fxp [%s] failed, relay through local buffer", RemotePaths.join(directory, remoteFileName)));
+        }
+        return stream(source, directory, remoteFileName, target, targetDirectory, targetFileName);
+    }
+
+    /**
+     * 经本机内存中转, 下载在后台线程执行, 上传在当前线程执行
+     *
+     * @param source 源服务器
+     * @param directory 源服务器目录
+     * @param remoteFileName 源服务器文件名称
+     * @param target 目标服务器
+     * @param targetDirectory 目标服务器目录, 不存在时创建
+     * @param targetFileName 目标服务器文件名称
+     * @return TransferResult localPath为源文件路径, remotePath为目标文件路径
+     */
+    public TransferResult stream(final TransferClient source, final String directory, final String remoteFileName, TransferClient target,
+            String targetDirectory, String targetFileName) {
+        long start = System.currentTimeMillis();
+        String sourcePath = RemotePaths.join(directory, remoteFileName);
+        final RelayBuffer buffer = new RelayBuffer(buffers, bufferSize);
+        final AtomicReference<TransferResult> downloaded = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                TransferResult result;
+                try {
+                    result = source.download(directory, remoteFileName, buffer.getOutputStream());
+                } catch (RuntimeException e) {
+                    result = TransferResult.failure(null, RemotePaths.join(directory, remoteFileName), 0, e);
+                }
+                if (result.isSuccess()) {
+                    try {
+                        buffer.getOutputStream().close();
+                    } catch (IOException e) {
+                        result = TransferResult.failure(result.getLocalPath(), result.getRemotePath(), result.getElapsedMillis(), e);
+                    }
+                } else {
+                    buffer.fail(result.getError() instanceof IOException ? (IOException) result.getError()
+                            : new IOException("relay source failure", result.getError()));
+                }
+                downloaded.set(result);
+            }
+        }, "transfer-relay-" + THREADS.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+
+        TransferResult uploaded;
+        try {
+            uploaded = target.upload(buffer.getInputStream(), -1, targetDirectory, targetFileName);
+        } catch (RuntimeException e) {
+            uploaded = TransferResult.failure(null, RemotePaths.join(targetDirectory, targetFileName), 0, e);
+        } finally {
+            // 上传提前结束时让下载端停止
+            IOUtils.closeQuietly(buffer.getInputStream());
+        }
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            buffer.fail(new IOException("relay interrupted"));
+            return TransferResult.failure(sourcePath, uploaded.getRemotePath(), System.currentTimeMillis() - start, e);
+        }
+
+        TransferResult result = downloaded.get();
+        if (result.isSuccess()) {
+            sourcePath = result.getRemotePath();
+            result = new TransferResult(sourcePath, uploaded.getRemotePath(), uploaded.isSuccess(), uploaded.getBytes(),
+                    System.currentTimeMillis() - start, uploaded.getError(), uploaded.getVerification());
+        } else {
+            // 源端的错误是根本原因, 目标端只是随之中止
+            result = TransferResult.failure(sourcePath, uploaded.getRemotePath(), System.currentTimeMillis() - start, result.getError());
+        }
+        if (result.isSuccess()) {
+            logger.info(String.format("relay [%s] to [%s]: %s bytes in %s ms", sourcePath, result.getRemotePath(), result.getBytes(),
+                    result.getElapsedMillis()));
+        } else {
+            logger.error(String.format("relay [%s] to [%s] failure", sourcePath, result.getRemotePath()), result.getError());
+        }
+        return result;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 每个缓冲区的字节数
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getBuffers() {
+        return buffers;
+    }
+
+    /**
+     * 缓冲区个数, 决定下载最多领先上传多少数据
+     *
+     * @param buffers
+     */
+    public void setBuffers(int buffers) {
+        this.buffers = buffers;
+    }
+
+    public boolean isFxp() {
+        return fxp;
+    }
+
+    /**
+     * 两端都是ftp时是否先尝试FXP
+     *
+     * @param fxp
+     */
+    public void setFxp(boolean fxp) {
+        this.fxp = fxp;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+
+/**
+ * 单个文件的传输结果
+ */
+public class TransferResult {
+
+    private final String localPath;
+
+    private final String remotePath;
+
+    private final boolean success;
+
+    private final long bytes;
+
+    private final long elapsedMillis;
+
+    private final Throwable error;
+
+    private final TransferVerification verification;
+
+    public TransferResult(String localPath, String remotePath, boolean success, long bytes, long elapsedMillis, Throwable error) {
+        this(localPath, remotePath, success, bytes, elapsedMillis, error, null);
+    }
+
+    public TransferResult(String localPath, String remotePath, boolean success, long bytes, long elapsedMillis, Throwable error,
+            TransferVerification verification) {
+        this.localPath = localPath;
+        this.remotePath = remotePath;
+        this.success = success;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+        this.verification = verification;
+    }
+
+    public static TransferResult success(String localPath, String remotePath, long bytes, long elapsedMillis) {
+        return new TransferResult(localPath, remotePath, true, bytes, elapsedMillis, null);
+    }
+
+    public static TransferResult failure(String localPath, String remotePath, long elapsedMillis, Throwable error) {
+        return new TransferResult(localPath, remotePath, false, 0, elapsedMillis, error);
+    }
+
+    public String getLocalPath() {
+        return localPath;
+    }
+
+    public String getRemotePath() {
+        return remotePath;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * 校验结果
+     *
+     * @return TransferVerification 未校验时为null
+     */
+    public TransferVerification getVerification() {
+        return verification;
+    }
+
+    /**
+     * 附加校验结果, 校验不通过时转为失败
+     *
+     * @param verification
+     * @return TransferResult
+     */
+    public TransferResult withVerification(TransferVerification verification) {
+        if (!success || verification.isVerified()) {
+            return new TransferResult(localPath, remotePath, success, bytes, elapsedMillis, error, verification);
+        }
+        return new TransferResult(localPath, remotePath, false, bytes, elapsedMillis,
+                new IOException(String.format("verification failed for [%s]: %s", remotePath, verification)), verification);
+    }
+
+    /**
+     * 吞吐量
+     *
+     * @return double 字节/秒, 耗时为0时返回0
+     */
+    public double getThroughput() {
+        return elapsedMillis <= 0 ? 0 : bytes * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        if (success) {
+            return String.format("[%s] -> [%s] success, %s bytes in %s ms%s", localPath, remotePath, bytes, elapsedMillis,
+                    verification == null ? "" : ", verified " + verification);
+        }
+        return String.format("[%s] -> [%s] failure: %s", localPath, remotePath, error == null ? "unknown" : error.getMessage());
+    }
+
+}
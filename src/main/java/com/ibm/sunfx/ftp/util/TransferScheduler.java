@@ -0,0 +1,408 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.log4j.Logger;
+
+/**
+ * 传输调度
+ *
+ * <p>
+ * 多个作业共用几台服务器时, 由调度器统一决定何时开始传输: 优先级高的任务先执行, 同一优先级内各租户轮流执行;
+ * 每台服务器同时执行的任务不超过其会话上限, 已满的服务器不妨碍其他服务器的任务。执行线程绑定全局和该服务器的令牌桶,
+ * 数据拷贝按速率限速(见TransferThrottle)。
+ * </p>
+ */
+public class TransferScheduler {
+
+    private Logger logger = Logger.getLogger(getClass());
+
+    private final int maxConcurrency;
+
+    private final ExecutorService executor;
+
+    private int defaultHostLimit = 4;
+
+    private final Map<String, Integer> hostLimits = new HashMap<>();
+
+    private final Map<String, TokenBucket> hostBandwidth = new HashMap<>();
+
+    private TokenBucket bandwidth;
+
+    // 优先级从高到低 -> 租户(轮流顺序) -> 服务器 -> 任务
+    private final TreeMap<Integer, Map<String, Map<String, ArrayDeque<Task<?>>>>> queues = new TreeMap<>();
+
+    private final Map<String, Integer> queuedByHost = new HashMap<>();
+
+    private final Map<String, Integer> runningByHost = new HashMap<>();
+
+    private int queued;
+
+    private int running;
+
+    private long sequence;
+
+    private boolean shutdown;
+
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * @param maxConcurrency 所有服务器合计同时执行的任务数
+     */
+    public TransferScheduler(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        final AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(this.maxConcurrency, this.maxConcurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "transfer-scheduler-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * 提交任务
+     *
+     * @param host 服务器标识, 会话上限和限速按此区分
+     * @param tenant 租户, 同一优先级内各租户轮流执行
+     * @param priority 优先级, 越大越先执行
+     * @param task 传输
+     * @return CompletableFuture
+     */
+    public <T> CompletableFuture<T> submit(String host, String tenant, int priority, Callable<T> task) {
+        Task<T> item = new Task<>(host, tenant, task);
+        synchronized (this) {
+            if (shutdown) {
+                throw new IllegalStateException("scheduler is shut down");
+            }
+            item.sequence = sequence++;
+            Map<String, Map<String, ArrayDeque<Task<?>>>> tenants = queues.get(-priority);
+            if (tenants == null) {
+                tenants = new LinkedHashMap<>();
+                queues.put(-priority, tenants);
+            }
+            Map<String, ArrayDeque<Task<?>>> hosts = tenants.get(tenant);
+            if (hosts == null) {
+                hosts = new HashMap<>();
+                tenants.put(tenant, hosts);
+            }
+            ArrayDeque<Task<?>> tasks = hosts.get(host);
+            if (tasks == null) {
+                tasks = new ArrayDeque<>();
+                hosts.put(host, tasks);
+            }
+            tasks.add(item);
+            queued++;
+            increment(queuedByHost, host, 1);
+        }
+        dispatch();
+        return item.future;
+    }
+
+    public CompletableFuture<TransferResult> upload(final TransferClient client, String host, String tenant, int priority, final String directory,
+            final String localFile) {
+        return submit(host, tenant, priority, new Callable<TransferResult>() {
+            @Override
+            public TransferResult call() {
+                return client.upload(directory, localFile, false);
+            }
+        });
+    }
+
+    public CompletableFuture<TransferResult> download(final TransferClient client, String host, String tenant, int priority, final String directory,
+            final String remoteFileName, final String localFile) {
+        return submit(host, tenant, priority, new Callable<TransferResult>() {
+            @Override
+            public TransferResult call() {
+                return client.download(directory, remoteFileName, localFile, false);
+            }
+        });
+    }
+
+    /**
+     * 在会话和并发上限内启动尽可能多的任务
+     */
+    private void dispatch() {
+        synchronized (this) {
+            while (running < maxConcurrency && queued > 0) {
+                Task<?> task = next();
+                if (task == null) {
+                    break;
+                }
+                queued--;
+                running++;
+                increment(queuedByHost, task.host, -1);
+                increment(runningByHost, task.host, 1);
+                waitTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.submitted));
+                // 线程池队列无界, 在锁内提交不会阻塞
+                execute(task, buckets(task.host));
+            }
+            if (shutdown && queued == 0) {
+                notifyAll();
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 按优先级从高到低, 同一优先级按租户轮流, 取服务器未满的最早提交的任务; 取出后该租户排到最后
+     */
+    private Task<?> next() {
+        for (Map<String, Map<String, ArrayDeque<Task<?>>>> tenants : queues.values()) {
+            for (Map.Entry<String, Map<String, ArrayDeque<Task<?>>>> tenant : tenants.entrySet()) {
+                ArrayDeque<Task<?>> oldest = null;
+                for (Map.Entry<String, ArrayDeque<Task<?>>> host : tenant.getValue().entrySet()) {
+                    Task<?> head = host.getValue().peek();
+                    if (count(runningByHost, host.getKey()) < getHostLimit(host.getKey())
+                            && (oldest == null || head.sequence < oldest.peek().sequence)) {
+                        oldest = host.getValue();
+                    }
+                }
+                if (oldest == null) {
+                    continue;
+                }
+                Task<?> task = oldest.poll();
+                Map<String, ArrayDeque<Task<?>>> hosts = tenants.remove(tenant.getKey());
+                if (oldest.isEmpty()) {
+                    hosts.remove(task.host);
+                }
+                if (!hosts.isEmpty()) {
+                    tenants.put(task.tenant, hosts);
+                }
+                if (tenants.isEmpty()) {
+                    removeEmptyLevels();
+                }
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void removeEmptyLevels() {
+        Iterator<Map<String, Map<String, ArrayDeque<Task<?>>>>> it = queues.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    private TokenBucket[] buckets(String host) {
+        TokenBucket hostBucket = hostBandwidth.get(host);
+        if (bandwidth != null && hostBucket != null) {
+            return new TokenBucket[] { bandwidth, hostBucket };
+        }
+        if (bandwidth != null) {
+            return new TokenBucket[] { bandwidth };
+        }
+        return hostBucket != null ? new TokenBucket[] { hostBucket } : new TokenBucket[0];
+    }
+
+    private <T> void execute(final Task<T> task, final TokenBucket[] buckets) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                T result = null;
+                Throwable error = null;
+                TransferThrottle.bind(buckets);
+                try {
+                    result = task.callable.call();
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    TransferThrottle.unbind();
+                    synchronized (TransferScheduler.this) {
+                        running--;
+                        increment(runningByHost, task.host, -1);
+                    }
+                    completed.increment();
+                }
+                // 先让出名额再完成future, 后续阶段提交的任务可以立即执行
+                dispatch();
+                if (error != null) {
+                    logger.debug(String.format("scheduled transfer on [%s] failed: %s", task.host, error));
+                    task.future.completeExceptionally(error);
+                } else {
+                    task.future.complete(result);
+                }
+            }
+        });
+    }
+
+    private static void increment(Map<String, Integer> counts, String host, int delta) {
+        int count = count(counts, host) + delta;
+        if (count == 0) {
+            counts.remove(host);
+        } else {
+            counts.put(host, count);
+        }
+    }
+
+    private static int count(Map<String, Integer> counts, String host) {
+        Integer count = counts.get(host);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 不再接受新任务, 已排队的任务继续执行
+     */
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        dispatch();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (queued > 0 || !shutdown) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized int getDefaultHostLimit() {
+        return defaultHostLimit;
+    }
+
+    /**
+     * 未单独设置的服务器同时执行的任务数, 默认4
+     *
+     * @param defaultHostLimit
+     */
+    public void setDefaultHostLimit(int defaultHostLimit) {
+        synchronized (this) {
+            this.defaultHostLimit = defaultHostLimit;
+        }
+        dispatch();
+    }
+
+    public synchronized int getHostLimit(String host) {
+        Integer limit = hostLimits.get(host);
+        return limit == null ? defaultHostLimit : limit;
+    }
+
+    /**
+     * 服务器同时执行的任务数(会话数)上限
+     *
+     * @param host
+     * @param maxSessions
+     */
+    public void setHostLimit(String host, int maxSessions) {
+        synchronized (this) {
+            hostLimits.put(host, maxSessions);
+        }
+        dispatch();
+    }
+
+    /**
+     * 全局带宽上限, 对之后开始的任务生效
+     *
+     * @param bytesPerSecond 0表示不限
+     */
+    public synchronized void setBandwidth(long bytesPerSecond) {
+        this.bandwidth = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+    }
+
+    /**
+     * 服务器带宽上限, 对之后开始的任务生效
+     *
+     * @param host
+     * @param bytesPerSecond 0表示不限
+     */
+    public synchronized void setHostBandwidth(String host, long bytesPerSecond) {
+        if (bytesPerSecond > 0) {
+            hostBandwidth.put(host, new TokenBucket(bytesPerSecond));
+        } else {
+            hostBandwidth.remove(host);
+        }
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * 排队等待的任务数
+     *
+     * @return int
+     */
+    public synchronized int getQueueDepth() {
+        return queued;
+    }
+
+    public synchronized int getQueueDepth(String host) {
+        return count(queuedByHost, host);
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getRunning(String host) {
+        return count(runningByHost, host);
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * 从提交到开始执行的等待时间
+     *
+     * @return LatencyHistogram
+     */
+    public LatencyHistogram getWaitTime() {
+        return waitTime;
+    }
+
+    private static class Task<T> {
+
+        final String host;
+
+        final String tenant;
+
+        final Callable<T> callable;
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+
+        final long submitted = System.nanoTime();
+
+        long sequence;
+
+        Task(String host, String tenant, Callable<T> callable) {
+            this.host = host;
+            this.tenant = tenant;
+            this.callable = callable;
+        }
+
+    }
+
+}
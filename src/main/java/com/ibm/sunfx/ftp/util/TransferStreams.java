@@ -0,0 +1,129 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.commons.net.io.CopyStreamListener;
+
+/**
+ * 本地文件与网络流之间的拷贝, 以及流到流的拷贝
+ *
+ * <p>
+ * 本地一侧用FileChannel按位置读写, 缓冲区从BufferPool借出; 网络一侧是commons-net/JSch提供的流, 不经过额外的缓冲流。
+ * 每拷贝一块按当前线程的TransferThrottle限速
+ * </p>
+ */
+public class TransferStreams {
+
+    private TransferStreams() {
+    }
+
+    /**
+     * 从文件的position处读到末尾, 写入out
+     *
+     * @param source 本地文件
+     * @param position 起始位置
+     * @param out 网络输出流
+     * @param buffers 缓冲区池
+     * @param listener 进度, 可为null
+     * @return long 拷贝的字节数
+     * @throws IOException
+     */
+    public static long copy(FileChannel source, long position, OutputStream out, BufferPool buffers, CopyStreamListener listener) throws IOException {
+        byte[] buffer = buffers.acquire();
+        try {
+            ByteBuffer wrap = ByteBuffer.wrap(buffer);
+            long total = 0;
+            int n;
+            while ((n = source.read(wrap, position + total)) >= 0) {
+                if (n == 0) {
+                    continue;
+                }
+                out.write(buffer, 0, n);
+                total += n;
+                wrap.clear();
+                TransferThrottle.acquire(n);
+                if (listener != null) {
+                    listener.bytesTransferred(total, n, -1);
+                }
+            }
+            out.flush();
+            return total;
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    /**
+     * 读取in直到结束, 写入out
+     *
+     * @param in 输入流
+     * @param out 输出流
+     * @param buffers 缓冲区池
+     * @param listener 进度, 可为null
+     * @return long 拷贝的字节数
+     * @throws IOException
+     */
+    public static long copy(InputStream in, OutputStream out, BufferPool buffers, CopyStreamListener listener) throws IOException {
+        byte[] buffer = buffers.acquire();
+        try {
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                if (n == 0) {
+                    continue;
+                }
+                out.write(buffer, 0, n);
+                total += n;
+                TransferThrottle.acquire(n);
+                if (listener != null) {
+                    listener.bytesTransferred(total, n, -1);
+                }
+            }
+            out.flush();
+            return total;
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    /**
+     * 读取in直到结束, 从position处写入文件
+     *
+     * @param in 网络输入流
+     * @param target 本地文件
+     * @param position 起始位置
+     * @param buffers 缓冲区池
+     * @param listener 进度, 可为null
+     * @return long 拷贝的字节数
+     * @throws IOException
+     */
+    public static long copy(InputStream in, FileChannel target, long position, BufferPool buffers, CopyStreamListener listener) throws IOException {
+        byte[] buffer = buffers.acquire();
+        try {
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                if (n == 0) {
+                    continue;
+                }
+                ByteBuffer wrap = ByteBuffer.wrap(buffer, 0, n);
+                while (wrap.hasRemaining()) {
+                    target.write(wrap, position + total + wrap.position());
+                }
+                total += n;
+                TransferThrottle.acquire(n);
+                if (listener != null) {
+                    listener.bytesTransferred(total, n, -1);
+                }
+            }
+            return total;
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 当前线程的传输限速
+ *
+ * <p>
+ * TransferScheduler执行任务前把全局和该服务器的令牌桶绑定到执行线程, 数据拷贝(TransferStreams、SFTPProgressMonitor)
+ * 每传输一块调用acquire, 令牌不足时在拷贝线程上等待。未绑定时acquire直接返回; 任务内部另开的线程不受限速
+ * </p>
+ */
+public final class TransferThrottle {
+
+    private static final ThreadLocal<TokenBucket[]> CURRENT = new ThreadLocal<>();
+
+    private TransferThrottle() {
+
+    }
+
+    /**
+     * 绑定到当前线程, 由unbind解除
+     *
+     * @param buckets 同时生效的令牌桶
+     */
+    public static void bind(TokenBucket... buckets) {
+        if (buckets.length == 0) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(buckets);
+        }
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 已传输bytes字节后调用, 超过速率时等待
+     *
+     * @param bytes
+     */
+    public static void acquire(long bytes) {
+        TokenBucket[] buckets = CURRENT.get();
+        if (buckets == null) {
+            return;
+        }
+        long wait = 0;
+        for (TokenBucket bucket : buckets) {
+            wait = Math.max(wait, bucket.reserve(bytes));
+        }
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            // 保留中断状态, 由传输本身响应
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.ibm.sunfx.ftp.util;
+
+/**
+ * 单个文件的传输校验结果
+ */
+public class TransferVerification {
+
+    /**
+     * 只比较了文件大小
+     */
+    public static final String SIZE = "SIZE";
+
+    // 服务器计算摘要使用的命令, 或SIZE
+    private final String method;
+
+    private final ChecksumAlgorithm algorithm;
+
+    private final String localDigest;
+
+    private final String remoteDigest;
+
+    private final long localSize;
+
+    private final long remoteSize;
+
+    private final boolean verified;
+
+    public TransferVerification(String method, ChecksumAlgorithm algorithm, String localDigest, String remoteDigest, long localSize,
+            long remoteSize, boolean verified) {
+        this.method = method;
+        this.algorithm = algorithm;
+        this.localDigest = localDigest;
+        this.remoteDigest = remoteDigest;
+        this.localSize = localSize;
+        this.remoteSize = remoteSize;
+        this.verified = verified;
+    }
+
+    /**
+     * 比较两端摘要
+     *
+     * @param method 服务器命令
+     * @param local 本地摘要
+     * @param remoteDigest 服务器摘要
+     * @param size 文件大小
+     * @return TransferVerification
+     */
+    public static TransferVerification digest(String method, StreamDigest local, String remoteDigest, long size) {
+        String localDigest = local.getValue();
+        return new TransferVerification(method, local.getAlgorithm(), localDigest, remoteDigest, size, size, localDigest.equalsIgnoreCase(remoteDigest));
+    }
+
+    /**
+     * 比较两端大小
+     *
+     * @param local 本地摘要, 仅记录, 可为null
+     * @param localSize
+     * @param remoteSize
+     * @return TransferVerification
+     */
+    public static TransferVerification size(StreamDigest local, long localSize, long remoteSize) {
+        return new TransferVerification(SIZE, local == null ? null : local.getAlgorithm(), local == null ? null : local.getValue(), null, localSize,
+                remoteSize, localSize == remoteSize);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getLocalDigest() {
+        return localDigest;
+    }
+
+    public String getRemoteDigest() {
+        return remoteDigest;
+    }
+
+    public long getLocalSize() {
+        return localSize;
+    }
+
+    public long getRemoteSize() {
+        return remoteSize;
+    }
+
+    public boolean isVerified() {
+        return verified;
+    }
+
+    /**
+     * 是否比较了两端摘要, 否则只比较了大小
+     *
+     * @return boolean
+     */
+    public boolean isDigestCompared() {
+        return remoteDigest != null;
+    }
+
+    @Override
+    public String toString() {
+        if (remoteDigest != null) {
+            return String.format("%s by %s: local [%s] remote [%s]", algorithm.getName(), method, localDigest, remoteDigest);
+        }
+        return String.format("size: local [%s] remote [%s]%s", localSize, remoteSize,
+                localDigest == null ? "" : String.format(", local %s [%s]", algorithm.getName(), localDigest));
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class AsyncTransferClientTest extends TestCase {
+
+    @Test
+    public void testConcurrencyBounded() throws Exception {
+        for (boolean virtual : new boolean[] { true, false }) {
+            SlowClient client = new SlowClient();
+            AsyncTransferClient async = new AsyncTransferClient(client, 3, virtual);
+            List<String> files = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                files.add("f" + i);
+            }
+            BatchReport report = async.uploadAll("/d", files).get(10, TimeUnit.SECONDS);
+            assertEquals(20, report.getResults().size());
+            assertEquals("f7", report.getResults().get(7).getLocalPath());
+            assertTrue(report.isSuccess());
+            assertTrue(client.maxActive.get() <= 3);
+            assertEquals(0, async.getActive());
+            async.shutdown();
+        }
+    }
+
+    @Test
+    public void testListFailure() throws InterruptedException {
+        AsyncTransferClient async = new AsyncTransferClient(new SlowClient(), 1);
+        try {
+            async.list("/missing").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        async.shutdown();
+    }
+
+    private static class SlowClient implements TransferClient {
+
+        final AtomicInteger active = new AtomicInteger();
+
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        @Override
+        public TransferResult upload(String directory, String localFile, boolean resume) {
+            int now = active.incrementAndGet();
+            while (true) {
+                int max = maxActive.get();
+                if (now <= max || maxActive.compareAndSet(max, now)) {
+                    break;
+                }
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            return TransferResult.success(localFile, directory + "/" + localFile, 1, 5);
+        }
+
+        @Override
+        public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume) {
+            return TransferResult.success(localFile, directory + "/" + remoteFileName, 1, 1);
+        }
+
+        @Override
+        public TransferResult upload(InputStream in, long length, String directory, String remoteFileName) {
+            return TransferResult.success(null, directory + "/" + remoteFileName, length, 1);
+        }
+
+        @Override
+        public TransferResult download(String directory, String remoteFileName, OutputStream out) {
+            return TransferResult.success(null, directory + "/" + remoteFileName, 0, 1);
+        }
+
+        @Override
+        public InputStream openInputStream(String directory, String remoteFileName) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public RemoteRangeReader rangeReader() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean createDirectory(String directory) {
+            return true;
+        }
+
+        @Override
+        public List<RemoteEntry> list(String directory) throws IOException {
+            if ("/missing".equals(directory)) {
+                throw new IOException("no such directory");
+            }
+            return Arrays.asList();
+        }
+
+        @Override
+        public int list(String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) throws IOException {
+            return list(directory).size();
+        }
+
+    }
+
+}
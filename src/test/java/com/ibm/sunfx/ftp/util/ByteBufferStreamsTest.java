@@ -0,0 +1,44 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ByteBufferStreamsTest extends TestCase {
+
+    @Test
+    public void testReadFromPosition() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10);
+        buffer.put("0123456789".getBytes());
+        buffer.position(3);
+        buffer.limit(8);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copy(ByteBufferStreams.inputStream(buffer), out);
+        assertEquals("34567", out.toString());
+        assertEquals(8, buffer.position());
+    }
+
+    @Test
+    public void testWriteOverflow() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        OutputStream out = ByteBufferStreams.outputStream(buffer);
+        IOUtils.copy(new ByteArrayInputStream("abc".getBytes()), out);
+        assertEquals(3, buffer.position());
+        try {
+            out.write("de".getBytes());
+            fail();
+        } catch (IOException e) {
+            // 超出缓冲区时不写入部分内容
+            assertEquals(3, buffer.position());
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class CompressionPolicyTest extends TestCase {
+
+    private File dir = new File("target/compression");
+
+    @Test
+    public void testAdaptive() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            csv.append(i).append(",order-").append(i % 37).append(",2024-01-01,100.00\n");
+        }
+        File text = new File(dir, "export.csv");
+        FileUtils.writeStringToFile(text, csv.toString());
+        byte[] random = new byte[64 * 1024];
+        new Random(1).nextBytes(random);
+        File noise = new File(dir, "data.bin");
+        FileUtils.writeByteArrayToFile(noise, random);
+        File archive = new File(dir, "export.zip");
+        FileUtils.writeStringToFile(archive, csv.toString());
+        File small = new File(dir, "small.txt");
+        FileUtils.writeStringToFile(small, "a,b\n");
+
+        CompressionPolicy policy = CompressionPolicy.adaptive();
+        assertTrue(policy.shouldCompress(text));
+        // 取样熵接近8
+        assertFalse(policy.shouldCompress(noise));
+        // 扩展名
+        assertFalse(policy.shouldCompress(archive));
+        assertFalse(policy.shouldCompress(small));
+
+        assertTrue(policy.shouldCompress("app.log", -1));
+        assertFalse(policy.shouldCompress("photo.JPG", -1));
+        assertTrue(CompressionPolicy.always().shouldCompress(noise));
+        assertFalse(CompressionPolicy.never().shouldCompress(text));
+    }
+
+    @Test
+    public void testEntropy() {
+        assertEquals(0.0, CompressionPolicy.entropy(new byte[100], 100), 1e-9);
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        assertEquals(8.0, CompressionPolicy.entropy(all, all.length), 1e-9);
+    }
+
+}
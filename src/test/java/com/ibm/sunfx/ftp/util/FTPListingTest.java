@@ -0,0 +1,95 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class FTPListingTest extends TestCase {
+
+    private static final String MLSD = "type=cdir;modify=20240101000000; .\r\n"
+            + "type=pdir;modify=20240101000000; ..\r\n"
+            + "type=file;size=3;modify=20240102030405; a.txt\r\n"
+            + "type=dir;modify=20240101000000; sub\r\n"
+            + "type=file;size=5;modify=20240103000000; b.csv\r\n"
+            + "type=file;size=7;modify=20240104000000; c.txt\r\n";
+
+    private static final String LIST = "total 8\r\n"
+            + "-rw-r--r--   1 ftp ftp        3 Jan  2  2024 a.txt\r\n"
+            + "drwxr-xr-x   2 ftp ftp     4096 Jan  1  2024 sub\r\n";
+
+    @Test
+    public void testMlsdStreamed() throws IOException {
+        Listing listing = new Listing(MLSD, MLSxEntryParser.getInstance());
+        List<String> names = new ArrayList<>();
+        while (listing.hasNext()) {
+            RemoteEntry entry = listing.next();
+            names.add(entry.getName());
+            if ("a.txt".equals(entry.getName())) {
+                assertEquals("/data/a.txt", entry.getPath());
+                assertEquals(3, entry.getSize());
+                assertTrue(entry.getModified() > 0);
+            }
+        }
+        listing.close();
+        assertEquals("[a.txt, sub, b.csv, c.txt]", names.toString());
+        assertEquals(Boolean.TRUE, listing.closedComplete);
+    }
+
+    @Test
+    public void testFilterAndEarlyStop() throws IOException {
+        Listing listing = new Listing(MLSD, MLSxEntryParser.getInstance());
+        final List<String> names = new ArrayList<>();
+        int visited = listing.visit(RemoteEntryFilter.and(RemoteEntryFilter.FILES, RemoteEntryFilter.name("*.txt")), new RemoteEntryVisitor() {
+            @Override
+            public boolean visit(RemoteEntry entry) {
+                names.add(entry.getName());
+                return false;
+            }
+        });
+        listing.close();
+        assertEquals(1, visited);
+        assertEquals("[a.txt]", names.toString());
+        // 未读完时关闭, 由实现断开连接
+        assertEquals(Boolean.FALSE, listing.closedComplete);
+    }
+
+    @Test
+    public void testUnixList() throws IOException {
+        Listing listing = new Listing(LIST, new DefaultFTPFileEntryParserFactory().createUnixFTPEntryParser());
+        final List<RemoteEntry> entries = new ArrayList<>();
+        listing.visit(RemoteEntryFilter.ALL, new RemoteEntryVisitor() {
+            @Override
+            public boolean visit(RemoteEntry entry) {
+                return entries.add(entry);
+            }
+        });
+        assertEquals(2, entries.size());
+        assertFalse(entries.get(0).isDirectory());
+        assertTrue(entries.get(1).isDirectory());
+    }
+
+    private static class Listing extends FTPListing {
+
+        Boolean closedComplete;
+
+        Listing(String reply, FTPFileEntryParser parser) {
+            super(new BufferedReader(new StringReader(reply)), parser, "/data");
+        }
+
+        @Override
+        protected void onClose(boolean complete) {
+            closedComplete = complete;
+        }
+
+    }
+
+}
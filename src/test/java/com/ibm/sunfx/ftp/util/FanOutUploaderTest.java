@@ -0,0 +1,154 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class FanOutUploaderTest extends TestCase {
+
+    private File file = new File("target/fan-out/package.bin");
+
+    private byte[] content = new byte[100000];
+
+    @Override
+    protected void setUp() throws Exception {
+        new Random(5).nextBytes(content);
+        FileUtils.writeByteArrayToFile(file, content);
+    }
+
+    @Test
+    public void testAllTargetsReceiveFile() {
+        MemoryClient a = new MemoryClient(null, false);
+        MemoryClient b = new MemoryClient(null, false);
+        FanOutUploader uploader = new FanOutUploader(4);
+        // 窗口小于文件, 按多个窗口映射
+        uploader.setWindowSize(30000);
+        FanOutReport report = uploader.upload(file.getPath(), "/pkg", Arrays.asList(a, b));
+
+        assertTrue(report.isSuccess());
+        assertEquals(2, report.getSuccessCount());
+        assertTrue(Arrays.equals(content, a.received));
+        assertTrue(Arrays.equals(content, b.received));
+        assertEquals(file.getPath(), report.getResults().get(0).getLocalPath());
+        uploader.shutdown();
+    }
+
+    @Test
+    public void testQuorumDoesNotWaitForSlowTarget() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        MemoryClient slow = new MemoryClient(release, false);
+        MemoryClient fast = new MemoryClient(null, false);
+        MemoryClient broken = new MemoryClient(null, true);
+        FanOutUploader uploader = new FanOutUploader(4);
+        uploader.setQuorum(1);
+        List<MemoryClient> targets = Arrays.asList(slow, broken, fast);
+        FanOutReport report = uploader.upload(file.getPath(), "/pkg", targets);
+
+        assertTrue(report.isSuccess());
+        assertNull(report.getResults().get(0));
+        assertTrue(report.getResults().get(2).isSuccess());
+
+        release.countDown();
+        FanOutReport all = report.getCompletion().get(5, TimeUnit.SECONDS);
+        assertEquals(2, all.getSuccessCount());
+        assertEquals(1, all.getFailureCount());
+        assertTrue(Arrays.equals(content, slow.received));
+        uploader.shutdown();
+    }
+
+    @Test
+    public void testQuorumUnreachable() {
+        FanOutUploader uploader = new FanOutUploader(4);
+        uploader.setQuorum(2);
+        FanOutReport report = uploader.upload(file.getPath(), "/pkg",
+                Arrays.asList(new MemoryClient(null, true), new MemoryClient(null, true), new MemoryClient(null, false)));
+        assertFalse(report.isSuccess());
+        uploader.shutdown();
+    }
+
+    private static class MemoryClient implements TransferClient {
+
+        final CountDownLatch gate;
+
+        final boolean fail;
+
+        volatile byte[] received;
+
+        MemoryClient(CountDownLatch gate, boolean fail) {
+            this.gate = gate;
+            this.fail = fail;
+        }
+
+        @Override
+        public TransferResult upload(InputStream in, long length, String directory, String remoteFileName) {
+            String remotePath = directory + "/" + remoteFileName;
+            try {
+                if (gate != null) {
+                    gate.await(5, TimeUnit.SECONDS);
+                }
+                if (fail) {
+                    throw new IOException("connection refused");
+                }
+                received = IOUtils.toByteArray(in);
+                return TransferResult.success(null, remotePath, received.length, 1);
+            } catch (IOException | InterruptedException e) {
+                return TransferResult.failure(null, remotePath, 1, e);
+            }
+        }
+
+        @Override
+        public TransferResult upload(String directory, String localFile, boolean resume) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TransferResult download(String directory, String remoteFileName, OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream openInputStream(String directory, String remoteFileName) {
+            return new ByteArrayInputStream(received);
+        }
+
+        @Override
+        public RemoteRangeReader rangeReader() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean createDirectory(String directory) {
+            return true;
+        }
+
+        @Override
+        public List<RemoteEntry> list(String directory) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int list(String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
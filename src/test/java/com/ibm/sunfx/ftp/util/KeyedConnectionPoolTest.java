@@ -0,0 +1,117 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class KeyedConnectionPoolTest extends TestCase {
+
+    private ServerKey key = new ServerKey("127.0.0.1", 21, "root", "123456");
+
+    @Test
+    public void testReuseReturnedConnection() throws IOException {
+        FakeFactory factory = new FakeFactory();
+        KeyedConnectionPool<FakeConnection> pool = new KeyedConnectionPool<>(factory, config());
+        FakeConnection first = pool.borrow(key);
+        pool.release(key, first);
+        FakeConnection second = pool.borrow(key);
+        assertSame(first, second);
+        assertEquals(1, factory.created.get());
+        pool.release(key, second);
+        assertEquals(1, pool.getStats(key).getIdle());
+        assertEquals(2, pool.getStats(key).getBorrowed());
+        pool.close();
+    }
+
+    @Test
+    public void testMaxTotalPerKey() throws IOException {
+        PoolConfig config = config();
+        config.setMaxTotalPerKey(1);
+        config.setMaxWaitMillis(50);
+        KeyedConnectionPool<FakeConnection> pool = new KeyedConnectionPool<>(new FakeFactory(), config);
+        FakeConnection connection = pool.borrow(key);
+        try {
+            pool.borrow(key);
+            fail("pool should be exhausted");
+        } catch (IOException e) {
+            assertEquals(1, pool.getStats(key).getWaits());
+        }
+        // 其他服务器不受影响
+        FakeConnection other = pool.borrow(new ServerKey("127.0.0.2", 21, "root", "123456"));
+        assertNotSame(connection, other);
+        pool.close();
+    }
+
+    @Test
+    public void testInvalidIdleConnectionIsReplaced() throws IOException {
+        PoolConfig config = config();
+        config.setValidateAfterIdleMillis(0);
+        FakeFactory factory = new FakeFactory();
+        KeyedConnectionPool<FakeConnection> pool = new KeyedConnectionPool<>(factory, config);
+        FakeConnection first = pool.borrow(key);
+        pool.release(key, first);
+        first.valid = false;
+        FakeConnection second = pool.borrow(key);
+        assertNotSame(first, second);
+        assertTrue(first.destroyed);
+        assertEquals(1, pool.getStats(key).getValidationFailures());
+        pool.close();
+    }
+
+    @Test
+    public void testEvictIdleConnection() throws IOException {
+        PoolConfig config = config();
+        config.setMinEvictableIdleMillis(0);
+        KeyedConnectionPool<FakeConnection> pool = new KeyedConnectionPool<>(new FakeFactory(), config);
+        FakeConnection connection = pool.borrow(key);
+        pool.release(key, connection);
+        pool.evict();
+        assertTrue(connection.destroyed);
+        assertEquals(0, pool.getStats(key).getIdle());
+        pool.close();
+    }
+
+    private PoolConfig config() {
+        PoolConfig config = new PoolConfig();
+        config.setEvictionIntervalMillis(0);
+        return config;
+    }
+
+    private static class FakeConnection {
+
+        boolean valid = true;
+
+        boolean destroyed;
+
+    }
+
+    private static class FakeFactory implements ConnectionFactory<FakeConnection> {
+
+        AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public FakeConnection create(ServerKey key) throws IOException {
+            created.incrementAndGet();
+            return new FakeConnection();
+        }
+
+        @Override
+        public boolean validate(ServerKey key, FakeConnection connection) {
+            return connection.valid;
+        }
+
+        @Override
+        public void passivate(ServerKey key, FakeConnection connection) throws IOException {
+        }
+
+        @Override
+        public void destroy(ServerKey key, FakeConnection connection) {
+            connection.destroyed = true;
+        }
+
+    }
+
+}
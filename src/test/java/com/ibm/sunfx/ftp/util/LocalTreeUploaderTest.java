@@ -0,0 +1,152 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class LocalTreeUploaderTest extends TestCase {
+
+    private File root = new File("target/tree/local");
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.deleteDirectory(root);
+        FileUtils.writeStringToFile(new File(root, "a.csv"), "a");
+        FileUtils.writeStringToFile(new File(root, "x/b.csv"), "bb");
+        FileUtils.writeStringToFile(new File(root, "x/y/c.txt"), "ccc");
+        FileUtils.writeStringToFile(new File(root, "tmp/d.csv"), "dddd");
+        new File(root, "empty").mkdirs();
+    }
+
+    @Test
+    public void testUploadTree() {
+        FakeTarget target = new FakeTarget();
+        LocalTreeUploader uploader = new LocalTreeUploader();
+        uploader.addExclude("tmp");
+        BatchReport report = uploader.upload(target, root, "/r");
+
+        assertEquals(3, report.getResults().size());
+        assertEquals(new TreeSet<>(Arrays.asList("/r/a.csv", "/r/x/b.csv", "/r/x/y/c.txt")), new TreeSet<>(target.uploaded.keySet()));
+        // 目录一次建好, 包括空目录
+        assertEquals(1, target.mkdirsCalls);
+        assertTrue(target.created.contains("/r/empty"));
+        assertFalse(target.created.contains("/r/tmp"));
+    }
+
+    @Test
+    public void testIncludeAndSkipUnchanged() {
+        FakeTarget target = new FakeTarget();
+        LocalTreeUploader uploader = new LocalTreeUploader();
+        uploader.addInclude("*.csv");
+        uploader.addInclude("**/*.csv");
+        uploader.setSkipUnchanged(true);
+        uploader.upload(target, root, "/r");
+        assertEquals(new TreeSet<>(Arrays.asList("/r/a.csv", "/r/tmp/d.csv", "/r/x/b.csv")), new TreeSet<>(target.uploaded.keySet()));
+        assertFalse(target.created.contains("/r/empty"));
+
+        // 服务器上大小相同且不早于本地修改时间的文件跳过
+        target.uploaded.clear();
+        target.remote.put("/r/x/b.csv", new RemoteEntry("b.csv", "/r/x/b.csv", false, 2, System.currentTimeMillis() + 1000));
+        target.remote.put("/r/a.csv", new RemoteEntry("a.csv", "/r/a.csv", false, 5, System.currentTimeMillis() + 1000));
+        uploader.upload(target, root, "/r");
+        assertEquals(new TreeSet<>(Arrays.asList("/r/a.csv", "/r/tmp/d.csv")), new TreeSet<>(target.uploaded.keySet()));
+        assertEquals(1, uploader.getSkippedFiles());
+        assertEquals(3, uploader.getScannedFiles());
+    }
+
+    @Test
+    public void testFailedDirectory() {
+        FakeTarget target = new FakeTarget();
+        target.denied.add("/r/x");
+        BatchReport report = new LocalTreeUploader().upload(target, root, "/r");
+        assertEquals(2, report.getFailures().size());
+        assertFalse(target.uploaded.containsKey("/r/x/b.csv"));
+    }
+
+    @Test
+    public void testBrokenLinkSkipsOnlyItself() throws IOException {
+        Files.createSymbolicLink(new File(root, "broken").toPath(), new File(root, "missing").getAbsoluteFile().toPath());
+        FakeTarget target = new FakeTarget();
+        BatchReport report = new LocalTreeUploader().upload(target, root, "/r");
+
+        // 同一目录的其它文件和子目录照常上传, 失效的链接计为失败
+        assertEquals(new TreeSet<>(Arrays.asList("/r/a.csv", "/r/tmp/d.csv", "/r/x/b.csv", "/r/x/y/c.txt")), new TreeSet<>(target.uploaded.keySet()));
+        assertEquals(1, report.getFailures().size());
+        assertEquals("/r/broken", report.getFailures().get(0).getRemotePath());
+        assertFalse(report.isSuccess());
+    }
+
+    private static class FakeTarget implements LocalTreeTarget {
+
+        final Set<String> created = new HashSet<>();
+
+        final Set<String> denied = new HashSet<>();
+
+        final Map<String, RemoteEntry> remote = new HashMap<>();
+
+        final Map<String, String> uploaded = new HashMap<>();
+
+        int mkdirsCalls;
+
+        @Override
+        public Set<String> mkdirs(Collection<String> directories) {
+            mkdirsCalls++;
+            Set<String> failed = new HashSet<>();
+            for (String directory : directories) {
+                boolean deny = false;
+                for (String ancestor : RemotePaths.ancestors(directory)) {
+                    deny |= denied.contains(ancestor);
+                }
+                if (deny || denied.contains(directory)) {
+                    failed.add(directory);
+                } else {
+                    created.add(directory);
+                }
+            }
+            return failed;
+        }
+
+        @Override
+        public List<RemoteEntry> list(String directory) {
+            List<RemoteEntry> entries = new ArrayList<>();
+            for (RemoteEntry entry : remote.values()) {
+                if (RemotePaths.parent(entry.getPath()).equals(directory)) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public BatchReport upload(List<String> directoryList, List<String> fileList, int parallelism) {
+            List<TransferResult> results = new ArrayList<>();
+            for (int i = 0; i < fileList.size(); i++) {
+                File file = new File(fileList.get(i));
+                String path = RemotePaths.join(directoryList.get(i), file.getName());
+                try {
+                    uploaded.put(path, FileUtils.readFileToString(file));
+                    results.add(TransferResult.success(file.getPath(), path, file.length(), 0));
+                } catch (IOException e) {
+                    results.add(TransferResult.failure(file.getPath(), path, 0, e));
+                }
+            }
+            return new BatchReport(results, 0);
+        }
+
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class MappedWindowsTest extends TestCase {
+
+    @Test
+    public void testEachWindowMappedOnce() throws IOException {
+        byte[] content = new byte[100000];
+        new Random(3).nextBytes(content);
+        File file = new File("target/mapped/data.bin");
+        FileUtils.writeByteArrayToFile(file, content);
+
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            MappedWindows windows = new MappedWindows(channel, content.length, 30000, 3);
+            InputStream a = windows.newInputStream();
+            InputStream b = windows.newInputStream();
+            InputStream c = windows.newInputStream();
+            // 交替读取, 各读取方的位置互不影响
+            byte[] head = new byte[10];
+            assertEquals(10, a.read(head));
+            assertTrue(Arrays.equals(Arrays.copyOf(content, 10), head));
+            assertTrue(Arrays.equals(content, IOUtils.toByteArray(b)));
+            assertTrue(Arrays.equals(Arrays.copyOfRange(content, 10, content.length), IOUtils.toByteArray(a)));
+            // 中途关闭的读取方不影响其它读取方
+            c.close();
+            assertEquals(-1, c.read());
+            assertEquals(4, windows.getMapCount());
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ParallelBatchUploaderTest extends TestCase {
+
+    @Test
+    public void testReportKeepsOrderAndFailures() throws IOException {
+        File dir = new File("target/parallel-upload");
+        FileUtils.forceMkdir(dir);
+        File small = new File(dir, "small.txt");
+        File large = new File(dir, "large.txt");
+        File broken = new File(dir, "broken.txt");
+        FileUtils.writeStringToFile(small, "a");
+        FileUtils.writeStringToFile(large, "aaaaaaaaaa");
+        FileUtils.writeStringToFile(broken, "aaaaa");
+
+        final List<String> uploaded = Collections.synchronizedList(new ArrayList<String>());
+        BatchReport report = ParallelBatchUploader.upload(Arrays.asList("/a", "/a", "/b"),
+                Arrays.asList(small.getPath(), large.getPath(), broken.getPath()), 1, new BatchUploadWorkerFactory() {
+                    @Override
+                    public BatchUploadWorker open() throws IOException {
+                        return new BatchUploadWorker() {
+                            @Override
+                            public TransferResult upload(File file, String directory) throws IOException {
+                                if (file.getName().equals("broken.txt")) {
+                                    throw new IOException("broken");
+                                }
+                                uploaded.add(file.getName());
+                                // small.txt已在上传日志中完成, 不传输
+                                long bytes = file.getName().equals("small.txt") ? 0 : file.length();
+                                return TransferResult.success(file.getPath(), RemotePaths.join(directory, file.getName()), bytes, 1);
+                            }
+
+                            @Override
+                            public void close() {
+                            }
+                        };
+                    }
+                });
+
+        // 单连接时按大小降序上传
+        assertEquals(Arrays.asList("large.txt", "small.txt"), uploaded);
+        assertFalse(report.isSuccess());
+        assertEquals(1, report.getFailureCount());
+        assertEquals("/a/small.txt", report.getResults().get(0).getRemotePath());
+        assertEquals("/b/broken.txt", report.getFailures().get(0).getRemotePath());
+        // 使用工作者返回的实际字节数
+        assertEquals(10, report.getTotalBytes());
+    }
+
+    @Test
+    public void testNoConnection() {
+        BatchReport report = ParallelBatchUploader.upload(Arrays.asList("/a"), Arrays.asList("pom.xml"), 4, new BatchUploadWorkerFactory() {
+            @Override
+            public BatchUploadWorker open() throws IOException {
+                throw new IOException("refused");
+            }
+        });
+        assertEquals(1, report.getResults().size());
+        assertFalse(report.getResults().get(0).isSuccess());
+    }
+
+    @Test
+    public void testFailedOpenAfterOthersFinished() throws IOException {
+        File dir = new File("target/parallel-upload");
+        FileUtils.forceMkdir(dir);
+        List<String> directories = new ArrayList<>();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File file = new File(dir, "f" + i + ".txt");
+            FileUtils.writeStringToFile(file, "a");
+            directories.add("/a");
+            files.add(file.getPath());
+        }
+        final AtomicInteger opened = new AtomicInteger();
+        final CountDownLatch second = new CountDownLatch(1);
+        BatchReport report = ParallelBatchUploader.upload(directories, files, 2, new BatchUploadWorkerFactory() {
+            @Override
+            public BatchUploadWorker open() throws IOException {
+                // 第二个连接在其他工作者传完退出后才失败, 由本线程重试, 不把文件记为失败
+                if (opened.incrementAndGet() == 2) {
+                    second.countDown();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IOException("refused");
+                }
+                return new BatchUploadWorker() {
+                    @Override
+                    public TransferResult upload(File file, String directory) {
+                        try {
+                            // 等另一个工作者领取文件后再上传
+                            second.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return TransferResult.success(file.getPath(), RemotePaths.join(directory, file.getName()), file.length(), 1);
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+        });
+        assertTrue(report.isSuccess());
+        assertEquals(0, report.getFailureCount());
+        assertEquals(4, report.getTotalBytes());
+    }
+
+}
@@ -0,0 +1,90 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RelayBufferTest extends TestCase {
+
+    @Test
+    public void testCopyAcrossThreads() throws Exception {
+        final byte[] content = new byte[100000];
+        new Random(3).nextBytes(content);
+        final RelayBuffer buffer = new RelayBuffer(4, 1000);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    OutputStream out = buffer.getOutputStream();
+                    for (int off = 0; off < content.length; off += 777) {
+                        out.write(content, off, Math.min(777, content.length - off));
+                    }
+                    out.close();
+                } catch (IOException e) {
+                    error.set(e);
+                }
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        IOUtils.copy(buffer.getInputStream(), copy);
+        writer.join();
+        assertNull(error.get());
+        assertTrue(Arrays.equals(content, copy.toByteArray()));
+    }
+
+    @Test
+    public void testWriterBlocksWhenFull() throws Exception {
+        final RelayBuffer buffer = new RelayBuffer(2, 10);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    buffer.getOutputStream().write(new byte[35]);
+                } catch (IOException e) {
+                    error.set(e);
+                }
+            }
+        });
+        writer.start();
+        writer.join(200);
+        // 两个槽写满后等待读取
+        assertTrue(writer.isAlive());
+
+        // 读取端提前关闭, 写入端随之失败
+        InputStream in = buffer.getInputStream();
+        assertEquals(10, in.read(new byte[10]));
+        in.close();
+        writer.join(5000);
+        assertFalse(writer.isAlive());
+        assertTrue(error.get() instanceof IOException);
+    }
+
+    @Test
+    public void testFailurePropagatesToReader() throws IOException {
+        RelayBuffer buffer = new RelayBuffer(2, 10);
+        buffer.getOutputStream().write(new byte[5]);
+        buffer.fail(new IOException("source reset"));
+        try {
+            buffer.getInputStream().read(new byte[10]);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("source reset"));
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RemoteByteChannelTest extends TestCase {
+
+    private static final int BLOCK = 1024;
+
+    @Test
+    public void testRandomReadTransfersOneBlock() throws IOException {
+        byte[] content = content(1000 * BLOCK);
+        CountingReader reader = new CountingReader(content);
+        RemoteByteChannel channel = RemoteByteChannel.open(reader, entry("/big.bin", content, 1000), new RemoteBlockCache(BLOCK, 16));
+
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        channel.position(500L * BLOCK + 10);
+        assertEquals(100, channel.read(buffer));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 500 * BLOCK + 10, 500 * BLOCK + 110), buffer.array()));
+        assertEquals(BLOCK, reader.transferred.get());
+
+        // 同一块再次读取不访问服务器
+        buffer.clear();
+        channel.position(500L * BLOCK);
+        channel.read(buffer);
+        assertEquals(1, reader.opened.get());
+
+        // 文件末尾的短块
+        buffer.clear();
+        channel.position(content.length - 10);
+        assertEquals(10, channel.read(buffer));
+        assertEquals(-1, channel.read(buffer));
+        channel.close();
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testSequentialReadAhead() throws IOException {
+        byte[] content = content(100 * BLOCK + 7);
+        CountingReader reader = new CountingReader(content);
+        RemoteByteChannel channel = RemoteByteChannel.open(reader, entry("/big.bin", content, 1000), new RemoteBlockCache(BLOCK, 256));
+        channel.setMaxReadAhead(8);
+
+        ByteBuffer all = ByteBuffer.allocate(content.length);
+        ByteBuffer buffer = ByteBuffer.allocate(100);
+        while (channel.read(buffer) > 0) {
+            buffer.flip();
+            all.put(buffer);
+            buffer.clear();
+        }
+        assertTrue(Arrays.equals(content, all.array()));
+        assertEquals(content.length, reader.transferred.get());
+        // 1, 1+1, 1+2, 1+4, 之后每次1+8块
+        assertTrue(reader.opened.get() < 20);
+    }
+
+    @Test
+    public void testReadOnly() throws IOException {
+        RemoteByteChannel channel = RemoteByteChannel.open(new CountingReader(content(10)), entry("/a.bin", content(10), 1000), new RemoteBlockCache(BLOCK, 1));
+        try {
+            channel.write(ByteBuffer.allocate(1));
+            fail();
+        } catch (NonWritableChannelException e) {
+            // 只读
+        }
+    }
+
+    @Test
+    public void testSharedCacheSeesRewrite() throws IOException {
+        RemoteBlockCache cache = new RemoteBlockCache(BLOCK, 16);
+        byte[] before = content(100);
+        byte[] after = content(100);
+        after[0] = (byte) (before[0] + 1);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        RemoteByteChannel.open(new CountingReader(before), entry("/a.bin", before, 1000), cache).read(buffer);
+        assertEquals(before[0], buffer.get(0));
+
+        // 大小相同但修改时间不同, 不使用旧的块
+        buffer.clear();
+        RemoteByteChannel.open(new CountingReader(after), entry("/a.bin", after, 2000), cache).read(buffer);
+        assertEquals(after[0], buffer.get(0));
+    }
+
+    private static RemoteEntry entry(String path, byte[] content, long modified) {
+        return new RemoteEntry(RemotePaths.name(path), path, false, content.length, modified);
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(5).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * 统计打开次数和读出的字节数
+     */
+    private static class CountingReader implements RemoteRangeReader {
+
+        final byte[] content;
+
+        final AtomicInteger opened = new AtomicInteger();
+
+        final AtomicLong transferred = new AtomicLong();
+
+        CountingReader(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public long size(String remotePath) {
+            return content.length;
+        }
+
+        @Override
+        public InputStream openRange(String remotePath, long offset, long length) {
+            opened.incrementAndGet();
+            return new ByteArrayInputStream(content, (int) offset, (int) length) {
+
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    int n = super.read(b, off, len);
+                    transferred.addAndGet(Math.max(n, 0));
+                    return n;
+                }
+            };
+        }
+
+    }
+
+}
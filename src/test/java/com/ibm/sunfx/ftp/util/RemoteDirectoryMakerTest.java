@@ -0,0 +1,124 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RemoteDirectoryMakerTest extends TestCase {
+
+    private ServerKey key = new ServerKey("127.0.0.1", 21, "root", "123456");
+
+    @Test
+    public void testCreateOnlyMissingSuffix() throws IOException {
+        FakeServer server = new FakeServer("/srv", "/srv/data");
+        RemoteDirectoryMaker maker = new RemoteDirectoryMaker(new RemoteDirectoryCache(100, 60000), key, server);
+        assertTrue(maker.mkdirs("/srv/data/2018/app/1.0"));
+        assertEquals(Arrays.asList("/srv/data/2018", "/srv/data/2018/app", "/srv/data/2018/app/1.0"), server.created);
+
+        // 第二次及其上级目录不再访问服务器
+        int requests = server.requests;
+        assertTrue(maker.mkdirs("/srv/data/2018/app/1.0/"));
+        assertTrue(maker.mkdirs("/srv/data/2018"));
+        assertEquals(requests, server.requests);
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        FakeServer server = new FakeServer("/a");
+        RemoteDirectoryCache cache = new RemoteDirectoryCache(100, 60000);
+        RemoteDirectoryMaker maker = new RemoteDirectoryMaker(cache, key, server);
+        assertTrue(maker.mkdirs("/a/b/c"));
+        maker.invalidate("/a/b");
+        assertTrue(cache.contains(key, "/a"));
+        assertFalse(cache.contains(key, "/a/b"));
+        assertFalse(cache.contains(key, "/a/b/c"));
+    }
+
+    @Test
+    public void testExpiredEntry() throws IOException {
+        RemoteDirectoryCache cache = new RemoteDirectoryCache(100, -1);
+        cache.put(key, "/a");
+        assertFalse(cache.contains(key, "/a"));
+    }
+
+    @Test
+    public void testPlanCreatesEachDirectoryOnce() throws IOException {
+        FakeServer server = new FakeServer("/srv");
+        RemoteDirectoryMaker maker = new RemoteDirectoryMaker(new RemoteDirectoryCache(100, 60000), key, server);
+        List<String> directories = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            directories.add("/srv/data/" + (i % 20) + (i % 2 == 0 ? "" : "/"));
+        }
+        RemoteDirectoryPlan plan = new RemoteDirectoryPlan(directories);
+        assertEquals(20, plan.getTargets().size());
+        assertEquals(22, plan.size());
+        assertTrue(maker.mkdirs(plan).isEmpty());
+        // /srv检查1次, /srv/data检查并创建, 20个目录的上级是新建的, 只创建
+        assertEquals(23, server.requests);
+        assertEquals(21, server.created.size());
+
+        // 再次执行全部命中缓存
+        assertTrue(maker.mkdirs(plan).isEmpty());
+        assertEquals(23, server.requests);
+    }
+
+    @Test
+    public void testPlanSkipsBelowFailedDirectory() throws IOException {
+        FakeServer server = new FakeServer("/a");
+        server.denied.add("/a/x");
+        RemoteDirectoryMaker maker = new RemoteDirectoryMaker(new RemoteDirectoryCache(100, 60000), key, server);
+        Set<String> failed = maker.mkdirs(new RemoteDirectoryPlan(Arrays.asList("/a/x/1", "/a/x/2", "/a/y")));
+        assertEquals(new HashSet<>(Arrays.asList("/a/x/1", "/a/x/2")), failed);
+        assertTrue(server.created.contains("/a/y"));
+        assertFalse(server.created.contains("/a/x/1"));
+    }
+
+    @Test
+    public void testPaths() {
+        assertEquals("/a/b", RemotePaths.normalize("//a//b/"));
+        assertEquals("/home/ftp/a", RemotePaths.absolute("/home/ftp", "a"));
+        assertEquals("/", RemotePaths.parent("/a"));
+        assertEquals(Arrays.asList("/a", "/a/b"), RemotePaths.ancestors("/a/b"));
+    }
+
+    private static class FakeServer implements RemoteDirectoryMaker.Operations {
+
+        final Set<String> directories = new HashSet<>();
+
+        final List<String> created = new ArrayList<>();
+
+        // 拒绝创建的目录
+        final Set<String> denied = new HashSet<>();
+
+        int requests;
+
+        FakeServer(String... existing) {
+            directories.addAll(Arrays.asList(existing));
+        }
+
+        @Override
+        public boolean exists(String directory) {
+            requests++;
+            return directories.contains(directory);
+        }
+
+        @Override
+        public boolean mkdir(String directory) {
+            requests++;
+            if (denied.contains(directory)) {
+                return false;
+            }
+            created.add(directory);
+            return directories.add(directory);
+        }
+
+    }
+
+}
@@ -0,0 +1,226 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RemoteFileSystemTest extends TestCase {
+
+    private MemoryClient client;
+
+    private FileSystem fileSystem;
+
+    @Override
+    protected void setUp() throws Exception {
+        client = new MemoryClient();
+        client.directories.add("/data");
+        client.directories.add("/data/a");
+        client.files.put("/data/x.txt", "xxx".getBytes());
+        client.files.put("/data/a/y.txt", "yy".getBytes());
+        Map<String, Object> env = new HashMap<>();
+        env.put("client", client);
+        fileSystem = new FTPFileSystemProvider().newFileSystem(URI.create("ftp://user@host:2121/"), env);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        fileSystem.close();
+    }
+
+    @Test
+    public void testAttributesServedFromListing() throws IOException {
+        assertTrue(Files.exists(fileSystem.getPath("/data/x.txt")));
+        assertEquals(2, Files.size(fileSystem.getPath("/data/a/y.txt")));
+        assertTrue(Files.isDirectory(fileSystem.getPath("/data/a")));
+        assertFalse(Files.exists(fileSystem.getPath("/data/none.txt")));
+        int listed = client.listed.get();
+
+        // 再次查询不访问服务器
+        assertEquals(3, Files.size(fileSystem.getPath("/data/x.txt")));
+        assertFalse(Files.exists(fileSystem.getPath("/data/none.txt")));
+        assertEquals(listed, client.listed.get());
+    }
+
+    @Test
+    public void testWalk() throws IOException {
+        List<String> paths = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(fileSystem.getPath("/data"))) {
+            stream.forEach(path -> paths.add(path.toString()));
+        }
+        Collections.sort(paths);
+        assertEquals("[/data, /data/a, /data/a/y.txt, /data/x.txt]", paths.toString());
+        // 每个目录只列一次
+        assertEquals(3, client.listed.get());
+    }
+
+    @Test
+    public void testWriteInvalidatesCache() throws IOException {
+        Path path = fileSystem.getPath("/data/z.txt");
+        assertFalse(Files.exists(path));
+        Files.write(path, "zzzz".getBytes());
+        assertEquals(4, Files.size(path));
+        assertEquals("zzzz", new String(Files.readAllBytes(path)));
+
+        // 其它途径修改后显式失效
+        client.files.put("/data/z.txt", "z".getBytes());
+        assertEquals(4, Files.size(path));
+        ((RemoteFileSystem) fileSystem).invalidate(path);
+        assertEquals(1, Files.size(path));
+    }
+
+    @Test
+    public void testRandomAccessChannel() throws IOException {
+        byte[] content = new byte[200 * 1024];
+        new Random(3).nextBytes(content);
+        client.files.put("/data/big.bin", content);
+        Path path = fileSystem.getPath("/data/big.bin");
+
+        ByteBuffer tail = ByteBuffer.allocate(16);
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            assertEquals(content.length, channel.size());
+            channel.position(content.length - 16);
+            assertEquals(16, channel.read(tail));
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, content.length - 16, content.length), tail.array()));
+        assertEquals(1, client.ranges.get());
+
+        // 再次读取命中块缓存
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            channel.position(content.length - 8);
+            channel.read(ByteBuffer.allocate(8));
+        }
+        assertEquals(1, client.ranges.get());
+    }
+
+    @Test
+    public void testPaths() {
+        Path path = fileSystem.getPath("/data", "a", "../x.txt");
+        assertEquals("/data/x.txt", path.normalize().toString());
+        assertEquals("a/y.txt", fileSystem.getPath("/data").relativize(fileSystem.getPath("/data/a/y.txt")).toString());
+        assertEquals("ftp://user@host:2121/data/x.txt", path.normalize().toUri().toString());
+        assertTrue(fileSystem.getPathMatcher("glob:/data/**/*.txt").matches(fileSystem.getPath("/data/a/y.txt")));
+        try {
+            fileSystem.provider().checkAccess(fileSystem.getPath("/data/none.txt"));
+            fail();
+        } catch (NoSuchFileException e) {
+            // 不存在
+        } catch (IOException e) {
+            fail();
+        }
+    }
+
+    private static class MemoryClient implements TransferClient {
+
+        final Map<String, byte[]> files = new TreeMap<>();
+
+        final TreeSet<String> directories = new TreeSet<>();
+
+        final AtomicInteger listed = new AtomicInteger();
+
+        final AtomicInteger ranges = new AtomicInteger();
+
+        @Override
+        public List<RemoteEntry> list(String directory) {
+            listed.incrementAndGet();
+            List<RemoteEntry> entries = new ArrayList<>();
+            for (String dir : directories) {
+                if (directory.equals(RemotePaths.parent(dir))) {
+                    entries.add(new RemoteEntry(RemotePaths.name(dir), dir, true, 0, 1000));
+                }
+            }
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                if (directory.equals(RemotePaths.parent(file.getKey()))) {
+                    entries.add(new RemoteEntry(RemotePaths.name(file.getKey()), file.getKey(), false, file.getValue().length, 1000));
+                }
+            }
+            return entries;
+        }
+
+        @Override
+        public TransferResult upload(InputStream in, long length, String directory, String remoteFileName) {
+            String path = RemotePaths.join(directory, remoteFileName);
+            try {
+                byte[] data = IOUtils.toByteArray(in);
+                files.put(path, data);
+                return TransferResult.success(null, path, data.length, 1);
+            } catch (IOException e) {
+                return TransferResult.failure(null, path, 1, e);
+            }
+        }
+
+        @Override
+        public InputStream openInputStream(String directory, String remoteFileName) {
+            return new ByteArrayInputStream(files.get(RemotePaths.join(directory, remoteFileName)));
+        }
+
+        @Override
+        public RemoteRangeReader rangeReader() {
+            return new RemoteRangeReader() {
+
+                @Override
+                public long size(String remotePath) {
+                    byte[] data = files.get(remotePath);
+                    return data == null ? -1 : data.length;
+                }
+
+                @Override
+                public InputStream openRange(String remotePath, long offset, long length) {
+                    ranges.incrementAndGet();
+                    return new ByteArrayInputStream(files.get(remotePath), (int) offset, (int) length);
+                }
+            };
+        }
+
+        @Override
+        public boolean createDirectory(String directory) {
+            return directories.add(directory);
+        }
+
+        @Override
+        public TransferResult upload(String directory, String localFile, boolean resume) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TransferResult download(String directory, String remoteFileName, String localFile, boolean resume) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TransferResult download(String directory, String remoteFileName, OutputStream out) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int list(String directory, RemoteEntryFilter filter, RemoteEntryVisitor visitor) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
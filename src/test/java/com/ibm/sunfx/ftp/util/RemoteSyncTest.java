@@ -0,0 +1,107 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RemoteSyncTest extends TestCase {
+
+    private File localRoot = new File("target/sync/local");
+
+    private File manifest = new File("target/sync/manifest.txt");
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.deleteDirectory(new File("target/sync"));
+    }
+
+    @Test
+    public void testOnlyChangedFilesDownloaded() throws IOException {
+        FakeSource source = new FakeSource();
+        source.directory("/data", "a", 100);
+        source.file("/data", "x.txt", "xxx", 100);
+        source.file("/data/a", "y.txt", "yy", 100);
+
+        RemoteSync sync = new RemoteSync();
+        assertEquals(2, sync.sync(source, "/data", localRoot, manifest).getResults().size());
+        assertEquals("yy", FileUtils.readFileToString(new File(localRoot, "a/y.txt")));
+
+        // 未变化时不下载
+        assertEquals(0, sync.sync(source, "/data", localRoot, manifest).getResults().size());
+        assertEquals(2, sync.getSkippedFiles());
+
+        // 修改时间变化后重新下载
+        source.file("/data/a", "y.txt", "zz", 200);
+        BatchReport report = sync.sync(source, "/data", localRoot, manifest);
+        assertEquals(1, report.getResults().size());
+        assertEquals("zz", FileUtils.readFileToString(new File(localRoot, "a/y.txt")));
+    }
+
+    @Test
+    public void testPruneUnchangedDirectory() throws IOException {
+        FakeSource source = new FakeSource();
+        source.directory("/data", "a", 100);
+        source.file("/data/a", "y.txt", "yy", 100);
+
+        RemoteSync sync = new RemoteSync();
+        sync.setPruneUnchangedDirectories(true);
+        sync.sync(source, "/data", localRoot, manifest);
+        source.listed.clear();
+
+        sync.sync(source, "/data", localRoot, manifest);
+        assertEquals(1, sync.getPrunedDirectories());
+        assertFalse(source.listed.contains("/data/a"));
+
+        // 被跳过目录的记录保留在清单中
+        assertNotNull(SyncManifest.load(manifest).get("a/y.txt"));
+    }
+
+    private static class FakeSource implements RemoteSyncSource {
+
+        final Map<String, Map<String, RemoteEntry>> tree = new HashMap<>();
+
+        final Map<String, String> contents = new HashMap<>();
+
+        final List<String> listed = new ArrayList<>();
+
+        void directory(String parent, String name, long modified) {
+            entries(parent).put(name, new RemoteEntry(name, parent + "/" + name, true, 0, modified));
+            entries(parent + "/" + name);
+        }
+
+        void file(String parent, String name, String content, long modified) {
+            entries(parent).put(name, new RemoteEntry(name, parent + "/" + name, false, content.length(), modified));
+            contents.put(parent + "/" + name, content);
+        }
+
+        Map<String, RemoteEntry> entries(String directory) {
+            Map<String, RemoteEntry> entries = tree.get(directory);
+            if (entries == null) {
+                entries = new HashMap<>();
+                tree.put(directory, entries);
+            }
+            return entries;
+        }
+
+        @Override
+        public List<RemoteEntry> list(String directory) {
+            listed.add(directory);
+            return new ArrayList<>(entries(directory).values());
+        }
+
+        @Override
+        public void download(RemoteEntry entry, File localFile) throws IOException {
+            FileUtils.writeStringToFile(localFile, contents.get(entry.getPath()));
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class SegmentedDownloaderTest extends TestCase {
+
+    @Test
+    public void testSegmentsWithRetry() throws IOException {
+        byte[] content = new byte[100000];
+        new Random(7).nextBytes(content);
+        FlakyReader reader = new FlakyReader(content);
+        SegmentedDownloader downloader = new SegmentedDownloader(reader, 4);
+        downloader.setMinSegmentSize(10000);
+        downloader.setBufferSize(1024);
+
+        File file = new File("target/segmented/data.bin");
+        FileUtils.forceMkdir(file.getParentFile());
+        TransferResult result = downloader.download("/data.bin", file);
+
+        assertTrue(result.isSuccess());
+        assertEquals(content.length, result.getBytes());
+        assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(file)));
+        // 4段各打开一次, 第一次打开中途失败后续传
+        assertEquals(5, reader.opened.get());
+    }
+
+    @Test
+    public void testFailedVerificationKeepsExistingFile() throws IOException {
+        File file = new File("target/segmented/small.bin");
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.writeStringToFile(file, "old");
+        SegmentedDownloader downloader = new SegmentedDownloader(new FlakyReader("abc".getBytes()), 2);
+        final File[] verified = new File[1];
+        TransferResult result = downloader.download("/small.bin", file, new DownloadVerifier() {
+            @Override
+            public TransferResult verify(TransferResult result, File downloaded) {
+                verified[0] = downloaded;
+                return result.withVerification(TransferVerification.size(null, downloaded.length(), 4));
+            }
+        });
+
+        assertFalse(result.isSuccess());
+        // 校验的是临时文件, 原有的本地文件不被覆盖
+        assertEquals(new File(file.getPath() + ".part"), verified[0]);
+        assertEquals("old", FileUtils.readFileToString(file));
+        assertFalse(verified[0].exists());
+
+        assertTrue(downloader.download("/small.bin", file, new DownloadVerifier() {
+            @Override
+            public TransferResult verify(TransferResult result, File downloaded) {
+                return result.withVerification(TransferVerification.size(null, downloaded.length(), 3));
+            }
+        }).isSuccess());
+        assertEquals("abc", FileUtils.readFileToString(file));
+    }
+
+    @Test
+    public void testFailedSegmentLeavesNoFile() throws IOException {
+        byte[] content = new byte[10000];
+        new Random(9).nextBytes(content);
+        File file = new File("target/segmented/failed.bin");
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.deleteQuietly(file);
+        SegmentedDownloader downloader = new SegmentedDownloader(new FlakyReader(content), 1);
+        downloader.setRetries(0);
+
+        assertFalse(downloader.download("/failed.bin", file).isSuccess());
+        // 不留下完整大小但部分为空的文件, 续传时不会当作已完成
+        assertFalse(file.exists());
+        assertFalse(new File(file.getPath() + ".part").exists());
+    }
+
+    /**
+     * 第一次打开的流读到一半时抛出异常
+     */
+    private static class FlakyReader implements RemoteRangeReader {
+
+        final byte[] content;
+
+        final AtomicInteger opened = new AtomicInteger();
+
+        FlakyReader(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public long size(String remotePath) {
+            return content.length;
+        }
+
+        @Override
+        public InputStream openRange(String remotePath, long offset, long length) {
+            final boolean fail = opened.incrementAndGet() == 1 && length > 1;
+            final long failAt = length / 2;
+            return new RangeInputStream(new ByteArrayInputStream(content, (int) offset, content.length - (int) offset), length) {
+
+                long read;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (fail && read >= failAt) {
+                        throw new IOException("connection reset");
+                    }
+                    int n = super.read(b, off, (int) Math.min(len, fail ? failAt - read : len));
+                    read += Math.max(n, 0);
+                    return n;
+                }
+
+                @Override
+                protected void onClose(boolean complete) {
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class StreamDigestTest extends TestCase {
+
+    @Test
+    public void testKnownValues() {
+        byte[] check = "123456789".getBytes();
+        assertEquals("cbf43926", digest(ChecksumAlgorithm.CRC32, check));
+        assertEquals("e3069283", digest(ChecksumAlgorithm.CRC32C, check));
+        assertEquals("25f9e794323b453885f5181f1b624d0b", digest(ChecksumAlgorithm.MD5, check));
+        assertEquals("15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225", digest(ChecksumAlgorithm.SHA_256, check));
+    }
+
+    @Test
+    public void testPureJavaCRC32C() {
+        byte[] data = new byte[1000];
+        new Random(3).nextBytes(data);
+        PureJavaCRC32C whole = new PureJavaCRC32C();
+        whole.update(data, 0, data.length);
+        // 分段及不按8字节对齐的更新结果相同
+        PureJavaCRC32C parts = new PureJavaCRC32C();
+        parts.update(data, 0, 13);
+        parts.update(data[13]);
+        parts.update(data, 14, data.length - 14);
+        assertEquals(whole.getValue(), parts.getValue());
+        StreamDigest digest = new StreamDigest(ChecksumAlgorithm.CRC32C);
+        digest.update(data, 0, data.length);
+        assertEquals(String.format("%08x", whole.getValue()), digest.getValue());
+    }
+
+    @Test
+    public void testWrappedStreams() throws IOException {
+        byte[] data = new byte[100000];
+        new Random(5).nextBytes(data);
+        String expected = digest(ChecksumAlgorithm.SHA_256, data);
+
+        StreamDigest read = new StreamDigest(ChecksumAlgorithm.SHA_256);
+        InputStream in = read.wrap(new ByteArrayInputStream(data));
+        // 续传上传时跳过的部分也计入摘要
+        assertEquals(30000, in.skip(30000));
+        IOUtils.copy(in, new ByteArrayOutputStream());
+        assertEquals(expected, read.getValue());
+
+        StreamDigest write = new StreamDigest(ChecksumAlgorithm.SHA_256);
+        File prefix = new File("target/digest/prefix.bin");
+        FileUtils.writeByteArrayToFile(prefix, Arrays.copyOf(data, 40000));
+        write.update(prefix, 40000);
+        OutputStream out = write.wrap(new ByteArrayOutputStream());
+        out.write(data, 40000, data.length - 40000);
+        assertEquals(expected, write.getValue());
+        assertEquals(data.length, write.getBytes());
+    }
+
+    @Test
+    public void testVerification() {
+        StreamDigest digest = new StreamDigest(ChecksumAlgorithm.MD5);
+        digest.update("abc".getBytes(), 0, 3);
+        TransferResult result = TransferResult.success("a", "/a", 3, 1);
+        TransferResult verified = result.withVerification(TransferVerification.digest("MD5", digest, "900150983CD24FB0D6963F7D28E17F72", 3));
+        assertTrue(verified.isSuccess());
+        assertTrue(verified.getVerification().isDigestCompared());
+        TransferResult mismatch = result.withVerification(TransferVerification.size(null, 3, 2));
+        assertFalse(mismatch.isSuccess());
+        assertNotNull(mismatch.getError());
+
+        assertEquals(ChecksumAlgorithm.MD5, IntegrityPolicy.digest().choose(Arrays.asList(ChecksumAlgorithm.CRC32, ChecksumAlgorithm.MD5)));
+        assertEquals(ChecksumAlgorithm.CRC32C, IntegrityPolicy.digest().newDigest(null).getAlgorithm());
+        assertNull(IntegrityPolicy.size().newDigest(null));
+        assertEquals(ChecksumAlgorithm.SHA_256, ChecksumAlgorithm.forName("sha256"));
+    }
+
+    private static String digest(ChecksumAlgorithm algorithm, byte[] data) {
+        StreamDigest digest = new StreamDigest(algorithm);
+        digest.update(data, 0, data.length);
+        return digest.getValue();
+    }
+
+}
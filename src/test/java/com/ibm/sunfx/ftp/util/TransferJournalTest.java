@@ -0,0 +1,69 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TransferJournalTest extends TestCase {
+
+    private File dir = new File("target/journal");
+
+    @Override
+    protected void setUp() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testResumeAfterRestart() throws IOException {
+        File a = new File(dir, "a.txt");
+        File b = new File(dir, "b.txt");
+        FileUtils.writeStringToFile(a, "aaa");
+        FileUtils.writeStringToFile(b, "bbb");
+        File file = new File(dir, "batch.journal");
+
+        TransferJournal journal = new TransferJournal(file);
+        journal.started(a, "/out/a.txt");
+        journal.completed(a, "/out/a.txt");
+        journal.started(b, "/out/b.txt");
+        journal.close();
+        // 崩溃时写了一半的行
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write("D\t3\t".getBytes());
+        out.close();
+
+        journal = new TransferJournal(file);
+        assertTrue(journal.isCompleted(a, "/out/a.txt"));
+        assertFalse(journal.isCompleted(b, "/out/b.txt"));
+        assertEquals(1, journal.getPending().size());
+        assertTrue(journal.getPending().contains("/out/b.txt"));
+
+        // 半行截掉后, 之后追加的完成记录重启后仍然有效
+        journal.completed(b, "/out/b.txt");
+        journal.close();
+        journal = new TransferJournal(file);
+        assertTrue(journal.isCompleted(b, "/out/b.txt"));
+        assertTrue(journal.getPending().isEmpty());
+
+        // 本地文件修改后重新上传
+        FileUtils.writeStringToFile(a, "changed");
+        assertFalse(journal.isCompleted(a, "/out/a.txt"));
+
+        journal.clear();
+        assertEquals(0, journal.getCompletedCount());
+        journal.close();
+        assertEquals(0, new TransferJournal(file).getCompletedCount());
+    }
+
+    @Test
+    public void testTempPath() {
+        PublishPolicy publish = PublishPolicy.atomic();
+        assertEquals("/out/.a.txt.part", publish.targetPath("/out/a.txt"));
+        assertEquals("/out/a.txt", PublishPolicy.direct().targetPath("/out/a.txt"));
+    }
+
+}
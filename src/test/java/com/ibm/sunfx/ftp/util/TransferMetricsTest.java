@@ -0,0 +1,77 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpException;
+
+import junit.framework.TestCase;
+
+public class TransferMetricsTest extends TestCase {
+
+    @Test
+    public void testCountersAndFailureCauses() {
+        TransferMetrics metrics = new TransferMetrics();
+        metrics.transferStarted(TransferDirection.UPLOAD, "a", "/a", 100);
+        assertEquals(1, metrics.getInFlight(TransferDirection.UPLOAD));
+        metrics.transferCompleted(TransferDirection.UPLOAD, TransferResult.success("a", "/a", 100, 10));
+        metrics.record(TransferDirection.UPLOAD, TransferResult.failure("b", "/b", 5, new FTPReplyException(550, "denied")));
+        metrics.record(TransferDirection.DOWNLOAD, TransferResult.failure("c", "/c", 5,
+                new IOException("get failure", new SftpException(ChannelSftp.SSH_FX_NO_SUCH_FILE, "no such file"))));
+        metrics.recordConnectFailure(new SocketTimeoutException());
+
+        assertEquals(0, metrics.getInFlight(TransferDirection.UPLOAD));
+        assertEquals(1, metrics.getFiles(TransferDirection.UPLOAD));
+        assertEquals(100, metrics.getBytes(TransferDirection.UPLOAD));
+        assertEquals(10000.0, metrics.getThroughput(TransferDirection.UPLOAD));
+        Map<String, Long> failures = metrics.getFailuresByCause();
+        assertEquals(Long.valueOf(1), failures.get("ftp-550"));
+        assertEquals(Long.valueOf(1), failures.get("sftp-2"));
+        assertEquals(Long.valueOf(1), failures.get("SocketTimeoutException"));
+
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(Long.valueOf(1), snapshot.get("upload.files"));
+        assertEquals(Long.valueOf(1), snapshot.get("upload.latency.le.10"));
+        assertEquals(Long.valueOf(1), snapshot.get("connect.failures"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getBytes(TransferDirection.UPLOAD));
+        assertTrue(metrics.getFailuresByCause().isEmpty());
+    }
+
+    @Test
+    public void testHistogramPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+        for (int i = 0; i < 98; i++) {
+            histogram.record(3);
+        }
+        histogram.record(150);
+        histogram.record(400000);
+        assertEquals(5, histogram.percentile(50));
+        assertEquals(200, histogram.percentile(99));
+        assertEquals(400000, histogram.percentile(100));
+        assertEquals(400000, histogram.getMax());
+        assertEquals(100, histogram.getCount());
+    }
+
+    @Test
+    public void testWindowUse() {
+        TransferMetrics metrics = new TransferMetrics();
+        long window = 16 * TransferIOConfig.SFTP_REQUEST_SIZE;
+        // 10M用时1秒, 往返25ms: 在途约256K, 即窗口的一半
+        metrics.recordWindowUse(TransferDirection.DOWNLOAD, 10 * 1024 * 1024, 1000, 25000, window);
+        // 窗口填满
+        metrics.recordWindowUse(TransferDirection.DOWNLOAD, 10 * 1024 * 1024, 100, 25000, window);
+        // 小文件不计入
+        metrics.recordWindowUse(TransferDirection.DOWNLOAD, 1024, 1, 25000, window);
+        assertEquals(75.0, metrics.getWindowUse(TransferDirection.DOWNLOAD), 1.0);
+        assertEquals(Long.valueOf(2), metrics.snapshot().get("download.window.samples"));
+        assertEquals(0.0, metrics.getWindowUse(TransferDirection.UPLOAD));
+    }
+
+}
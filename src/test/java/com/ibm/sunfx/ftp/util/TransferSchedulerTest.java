@@ -0,0 +1,88 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TransferSchedulerTest extends TestCase {
+
+    @Test
+    public void testHostLimit() throws Exception {
+        TransferScheduler scheduler = new TransferScheduler(8);
+        scheduler.setHostLimit("a", 2);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(scheduler.submit("a", "t", 0, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int n = active.incrementAndGet();
+                    peak.accumulateAndGet(n, Math::max);
+                    Thread.sleep(20);
+                    active.decrementAndGet();
+                    return n;
+                }
+            }));
+        }
+        // 服务器a已满时, 其他服务器的任务不用等待
+        assertEquals("b", scheduler.submit("b", "t", 0, () -> "b").get(1, TimeUnit.SECONDS));
+        for (CompletableFuture<Integer> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(2, peak.get());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(11, scheduler.getWaitTime().getCount());
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPriorityAndTenantOrder() throws Exception {
+        TransferScheduler scheduler = new TransferScheduler(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        // 占住唯一的执行名额, 其余任务排队
+        CompletableFuture<Boolean> blocker = scheduler.submit("h", "x", 0, () -> gate.await(5, TimeUnit.SECONDS));
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        String[][] tasks = { { "a1", "a", "0" }, { "a2", "a", "0" }, { "a3", "a", "0" }, { "b1", "b", "0" }, { "b2", "b", "0" }, { "u", "c", "5" } };
+        for (final String[] task : tasks) {
+            futures.add(scheduler.submit("h", task[1], Integer.parseInt(task[2]), () -> order.add(task[0])));
+        }
+        assertEquals(6, scheduler.getQueueDepth());
+        assertEquals(6, scheduler.getQueueDepth("h"));
+        gate.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Boolean> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        // 高优先级先执行, 同一优先级租户轮流
+        assertEquals(Arrays.asList("u", "a1", "b1", "a2", "b2", "a3"), order);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(1000, 500);
+        long now = System.nanoTime();
+        // 初始可突发capacity
+        assertEquals(0, bucket.reserve(500, now));
+        // 透支250字节等待0.25秒
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), bucket.reserve(250, now));
+        // 1秒后补充1000, 抵扣透支后最多积累500
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertEquals(0, bucket.reserve(500, now));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), bucket.reserve(1, now));
+    }
+
+}
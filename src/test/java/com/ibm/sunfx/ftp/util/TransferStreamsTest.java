@@ -0,0 +1,56 @@
+package com.ibm.sunfx.ftp.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TransferStreamsTest extends TestCase {
+
+    @Test
+    public void testCopyWithOffset() throws IOException {
+        byte[] content = new byte[10000];
+        new Random(3).nextBytes(content);
+        File file = new File("target/streams/data.bin");
+        FileUtils.forceMkdir(file.getParentFile());
+        BufferPool buffers = new BufferPool(1024, 2);
+
+        // 从偏移处续写
+        RandomAccessFile target = new RandomAccessFile(file, "rw");
+        try {
+            target.setLength(0);
+            target.write(content, 0, 4000);
+            assertEquals(6000, TransferStreams.copy(new ByteArrayInputStream(content, 4000, 6000), target.getChannel(), 4000, buffers, null));
+        } finally {
+            target.close();
+        }
+        assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(file)));
+
+        // 从偏移处读出
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RandomAccessFile source = new RandomAccessFile(file, "r");
+        try {
+            assertEquals(7000, TransferStreams.copy(source.getChannel(), 3000, out, buffers, null));
+        } finally {
+            source.close();
+        }
+        assertTrue(Arrays.equals(Arrays.copyOfRange(content, 3000, 10000), out.toByteArray()));
+
+        // 缓冲区归还后复用
+        assertEquals(1, buffers.getPooled());
+        byte[] buffer = buffers.acquire();
+        assertEquals(0, buffers.getPooled());
+        buffers.release(buffer);
+        buffers.release(new byte[10]);
+        assertEquals(1, buffers.getPooled());
+    }
+
+}